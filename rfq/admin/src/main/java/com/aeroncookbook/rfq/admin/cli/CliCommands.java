@@ -18,6 +18,8 @@
 package com.aeroncookbook.rfq.admin.cli;
 
 import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
 import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
 import org.jline.reader.LineReader;
 import picocli.CommandLine;
@@ -37,10 +39,12 @@ import java.io.PrintWriter;
     subcommands = {
         PicocliCommands.ClearScreen.class, CommandLine.HelpCommand.class,
         ConnectCluster.class, DisconnectCluster.class, InstrumentAdd.class, InstrumentDisable.class,
-        InstrumentEnable.class, InstrumentList.class, RfqCreate.class, RfqCancel.class, RfqQuote.class,
-        RfqCounter.class, RfqAccept.class, RfqReject.class})
+        InstrumentEnable.class, InstrumentList.class, InstrumentLoad.class, RfqCreate.class, RfqCancel.class,
+        RfqQuote.class, RfqCounter.class, RfqAccept.class, RfqReject.class, RfqQuery.class, Subscribe.class,
+        UserAdd.class, UserDisable.class, UserEnable.class, UserEntitle.class})
 public class CliCommands implements Runnable
 {
+    private static final long OFFER_TIMEOUT_MS = 5_000;
     PrintWriter out;
     private OneToOneRingBuffer adminChannel;
 
@@ -95,4 +99,32 @@ public class CliCommands implements Runnable
         }
     }
 
+    /**
+     * Offers a message to the admin channel, waiting for the cluster interaction agent to make space when the
+     * channel is full, such as when a bulk command sends many messages in a row
+     *
+     * @param buffer        the buffer
+     * @param offset        the offset
+     * @param encodedLength the encoded length
+     * @return true if the message was written, false if there was still no space after a timeout
+     */
+    public boolean offerRingBufferMessageWaiting(
+        final ExpandableArrayBuffer buffer,
+        final int offset,
+        final int encodedLength)
+    {
+        final IdleStrategy idleStrategy = new SleepingMillisIdleStrategy();
+        final long deadlineMs = System.currentTimeMillis() + OFFER_TIMEOUT_MS;
+        while (!adminChannel.write(10, buffer, offset, encodedLength))
+        {
+            if (System.currentTimeMillis() > deadlineMs)
+            {
+                out.println("Failed to send message to cluster interaction agent. Buffer is full.");
+                return false;
+            }
+            idleStrategy.idle();
+        }
+        return true;
+    }
+
 }
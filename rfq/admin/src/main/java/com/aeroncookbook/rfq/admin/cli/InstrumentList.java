@@ -23,18 +23,22 @@ import org.agrona.ExpandableArrayBuffer;
 import picocli.CommandLine;
 
 /**
- * Lists instruments in the cluster
+ * Lists instruments in the cluster, a page at a time
  */
 @CommandLine.Command(name = "instrument-list", mixinStandardHelpOptions = false,
-    description = "Lists instruments in the cluster")
+    description = "Lists instruments in the cluster in CUSIP order")
 public class InstrumentList implements Runnable
 {
     @CommandLine.ParentCommand
     CliCommands parent;
 
     @SuppressWarnings("all")
-    @CommandLine.Option(names = "cusip", description = "Instrument CUSIP")
-    private String cusip = "";
+    @CommandLine.Option(names = "after", description = "Only list instruments after this CUSIP, for paging")
+    private String afterCusip = "";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "limit", description = "Maximum instruments to list. Default 100")
+    private Integer limit = 100;
 
     private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
     private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
@@ -43,9 +47,9 @@ public class InstrumentList implements Runnable
     public void run()
     {
         listInstrumentsCommandEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        listInstrumentsCommandEncoder.afterCusip(afterCusip);
+        listInstrumentsCommandEncoder.maxResults(limit);
         parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
             listInstrumentsCommandEncoder.encodedLength());
     }
-
-
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.AddInstrumentsBatchEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.BooleanType;
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads instruments into the cluster from a file, many instruments per cluster command
+ */
+@CommandLine.Command(name = "instrument-load", mixinStandardHelpOptions = false,
+    description = "Loads instruments from a file of cusip,min-quantity,enabled lines")
+public class InstrumentLoad implements Runnable
+{
+    /**
+     * Maximum number of instruments sent in one batch, keeping the command within the ingress max message size
+     */
+    public static final int MAX_BATCH_SIZE = 2_000;
+
+    private static final int DEFAULT_MIN_SIZE = 100;
+    private static final int CUSIP_LENGTH = 9;
+
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "file", description = "File with one instrument per line as " +
+        "cusip,min-quantity,enabled. Quantity defaults to 100 and enabled to true. Lines starting with # are ignored")
+    private String file = "";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "batch-size", description = "Instruments sent per cluster command. Default 2000")
+    private Integer batchSize = MAX_BATCH_SIZE;
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final AddInstrumentsBatchEncoder addInstrumentsBatchEncoder = new AddInstrumentsBatchEncoder();
+
+    public void run()
+    {
+        final List<String[]> instruments = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file)))
+        {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                final String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                {
+                    continue;
+                }
+
+                final String[] fields = trimmed.split(",");
+                if (!isValid(fields))
+                {
+                    parent.out.println("Invalid instrument on line " + lineNumber + ": " + line);
+                    return;
+                }
+                instruments.add(fields);
+            }
+        }
+        catch (final IOException e)
+        {
+            parent.out.println("Failed to read instrument file " + file + ": " + e.getMessage());
+            return;
+        }
+
+        final int perBatch = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        int batches = 0;
+        for (int batchStart = 0; batchStart < instruments.size(); batchStart += perBatch)
+        {
+            final int batchEnd = Math.min(batchStart + perBatch, instruments.size());
+            if (!sendBatch(instruments, batchStart, batchEnd))
+            {
+                parent.out.println("Stopped after " + batches + " batches, the cluster interaction agent is not " +
+                    "keeping up");
+                return;
+            }
+            batches++;
+        }
+
+        parent.out.println("Sent " + instruments.size() + " instruments in " + batches + " batches");
+    }
+
+    private boolean sendBatch(final List<String[]> instruments, final int batchStart, final int batchEnd)
+    {
+        addInstrumentsBatchEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final AddInstrumentsBatchEncoder.InstrumentsEncoder instrumentsEncoder =
+            addInstrumentsBatchEncoder.instrumentsCount(batchEnd - batchStart);
+        for (int i = batchStart; i < batchEnd; i++)
+        {
+            final String[] fields = instruments.get(i);
+            instrumentsEncoder.next()
+                .cusip(fields[0].trim())
+                .enabled(fields.length > 2 && !Boolean.parseBoolean(fields[2].trim()) ?
+                    BooleanType.FALSE : BooleanType.TRUE)
+                .minSize(fields.length > 1 ? Integer.parseInt(fields[1].trim()) : DEFAULT_MIN_SIZE);
+        }
+
+        return parent.offerRingBufferMessageWaiting(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            addInstrumentsBatchEncoder.encodedLength());
+    }
+
+    private static boolean isValid(final String[] fields)
+    {
+        if (fields.length > 3 || fields[0].isBlank() || fields[0].trim().length() > CUSIP_LENGTH)
+        {
+            return false;
+        }
+
+        try
+        {
+            return fields.length < 2 || Integer.parseInt(fields[1].trim()) >= 0;
+        }
+        catch (final NumberFormatException e)
+        {
+            return false;
+        }
+    }
+}
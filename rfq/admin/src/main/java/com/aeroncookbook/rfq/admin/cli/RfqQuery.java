@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.QueryRfqsCommandEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.RfqQueryType;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.admin.util.EnvironmentUtil.tryGetUserId;
+
+/**
+ * Queries live RFQs
+ */
+@CommandLine.Command(name = "rfq-query", mixinStandardHelpOptions = false,
+    description = "Lists live RFQs by instrument, requester, responder or state")
+public class RfqQuery implements Runnable
+{
+    /**
+     * RFQ state names, indexed by state id
+     */
+    public static final List<String> STATE_NAMES = Arrays.asList(
+        "CREATED", "QUOTED", "COUNTERED", "ACCEPTED", "REJECTED", "EXPIRED", "CANCELED", "COMPLETED");
+
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "by", description = "One of cusip, requester, responder or state. Default cusip")
+    private String by = "cusip";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "cusip", description = "Instrument CUSIP, when querying by cusip")
+    private String cusip = "";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "user-id", description = "User id, when querying by requester or responder. " +
+        "Default is USER_ID env var.")
+    private Integer userId = tryGetUserId();
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "state", description = "RFQ state, when querying by state. Default CREATED")
+    private String state = "CREATED";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "after", description = "Only list RFQs with a greater id, for paging. Default 0")
+    private Integer afterRfqId = 0;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "limit", description = "Maximum RFQs to list. Default 100")
+    private Integer limit = 100;
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final QueryRfqsCommandEncoder queryRfqsCommandEncoder = new QueryRfqsCommandEncoder();
+
+    public void run()
+    {
+        final RfqQueryType queryType = parseQueryType(by);
+        if (queryType == null)
+        {
+            parent.out.println("Unknown query type: " + by);
+            return;
+        }
+
+        final int stateId = STATE_NAMES.indexOf(state.toUpperCase());
+        if (queryType == RfqQueryType.BY_STATE && stateId < 0)
+        {
+            parent.out.println("Unknown RFQ state: " + state);
+            return;
+        }
+
+        queryRfqsCommandEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        queryRfqsCommandEncoder.queryType(queryType);
+        queryRfqsCommandEncoder.cusip(cusip);
+        queryRfqsCommandEncoder.userId(userId);
+        queryRfqsCommandEncoder.state((short)Math.max(stateId, 0));
+        queryRfqsCommandEncoder.afterRfqId(afterRfqId);
+        queryRfqsCommandEncoder.maxResults(limit);
+
+        parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            queryRfqsCommandEncoder.encodedLength());
+    }
+
+    private static RfqQueryType parseQueryType(final String by)
+    {
+        return switch (by.toLowerCase())
+        {
+            case "cusip" -> RfqQueryType.BY_CUSIP;
+            case "requester" -> RfqQueryType.BY_REQUESTER;
+            case "responder" -> RfqQueryType.BY_RESPONDER;
+            case "state" -> RfqQueryType.BY_STATE;
+            default -> null;
+        };
+    }
+}
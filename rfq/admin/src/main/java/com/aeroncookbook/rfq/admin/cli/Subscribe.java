@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.BooleanType;
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.SubscribeCommandEncoder;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+import static com.aeroncookbook.rfq.admin.util.EnvironmentUtil.tryGetUserId;
+
+/**
+ * Sets the RFQ events this client is sent
+ */
+@CommandLine.Command(name = "subscribe", mixinStandardHelpOptions = false,
+    description = "Limits the RFQ events sent to this client to the given instruments, and optionally to RFQs the " +
+    "user is a party to")
+public class Subscribe implements Runnable
+{
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final SubscribeCommandEncoder subscribeCommandEncoder = new SubscribeCommandEncoder();
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "cusips", description = "Comma separated instrument CUSIPs. Default is all instruments")
+    private String cusips = "";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "parties-only", description = "True to only receive RFQs the user is a party to. " +
+        "Default false")
+    private String partiesOnly = "false";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "user-id", description = "User id. Default is USER_ID env var.")
+    private Integer userId = tryGetUserId();
+
+    public void run()
+    {
+        final String[] values = cusips.isBlank() ? new String[0] : cusips.split(",");
+
+        subscribeCommandEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        subscribeCommandEncoder.userId(userId);
+        subscribeCommandEncoder.partiesOnly(Boolean.parseBoolean(partiesOnly) ? BooleanType.TRUE : BooleanType.FALSE);
+        final SubscribeCommandEncoder.InstrumentsEncoder instrumentsEncoder =
+            subscribeCommandEncoder.instrumentsCount(values.length);
+        for (final String value : values)
+        {
+            instrumentsEncoder.next().cusip(value.trim());
+        }
+
+        parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            subscribeCommandEncoder.encodedLength());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.AddUserEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+/**
+ * Adds a user to the cluster
+ */
+@CommandLine.Command(name = "user-add", mixinStandardHelpOptions = false,
+    description = "Adds a user to the cluster, or re-enables an existing one and updates its open RFQ limit")
+public class UserAdd implements Runnable
+{
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "user-id", description = "User id")
+    private Integer userId = 0;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "max-open-rfqs", description = "Maximum live RFQs the user may have requested at " +
+        "once. Default 0, no limit")
+    private Integer maxOpenRfqs = 0;
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final AddUserEncoder addUserEncoder = new AddUserEncoder();
+
+    public void run()
+    {
+        addUserEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        addUserEncoder.userId(userId);
+        addUserEncoder.maxOpenRfqs(maxOpenRfqs);
+        parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            addUserEncoder.encodedLength());
+    }
+}
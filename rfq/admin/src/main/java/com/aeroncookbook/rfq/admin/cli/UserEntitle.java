@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.SetUserEntitlementsEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.UserEntitlementAction;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+/**
+ * Grants or revokes the instruments a user may trade
+ */
+@CommandLine.Command(name = "user-entitle", mixinStandardHelpOptions = false,
+    description = "Grants or revokes the instruments a user may request and quote")
+public class UserEntitle implements Runnable
+{
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "user-id", description = "User id")
+    private Integer userId = 0;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "cusips", description = "Comma separated instrument CUSIPs. Ignored for grant-all " +
+        "and revoke-all")
+    private String cusips = "";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "action", description = "One of grant, revoke, grant-all or revoke-all. " +
+        "Default grant")
+    private String action = "grant";
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final SetUserEntitlementsEncoder setUserEntitlements = new SetUserEntitlementsEncoder();
+
+    public void run()
+    {
+        final UserEntitlementAction entitlementAction = parseAction(action);
+        if (entitlementAction == null)
+        {
+            parent.out.println("Unknown action: " + action);
+            return;
+        }
+
+        final boolean listsInstruments = entitlementAction == UserEntitlementAction.GRANT ||
+            entitlementAction == UserEntitlementAction.REVOKE;
+        final String[] values = !listsInstruments || cusips.isBlank() ? new String[0] : cusips.split(",");
+
+        setUserEntitlements.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        setUserEntitlements.userId(userId);
+        setUserEntitlements.action(entitlementAction);
+        final SetUserEntitlementsEncoder.InstrumentsEncoder instrumentsEncoder =
+            setUserEntitlements.instrumentsCount(values.length);
+        for (final String value : values)
+        {
+            instrumentsEncoder.next().cusip(value.trim());
+        }
+
+        parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            setUserEntitlements.encodedLength());
+    }
+
+    private static UserEntitlementAction parseAction(final String action)
+    {
+        return switch (action.trim().toLowerCase())
+        {
+            case "grant" -> UserEntitlementAction.GRANT;
+            case "revoke" -> UserEntitlementAction.REVOKE;
+            case "grant-all" -> UserEntitlementAction.GRANT_ALL;
+            case "revoke-all" -> UserEntitlementAction.REVOKE_ALL;
+            default -> null;
+        };
+    }
+}
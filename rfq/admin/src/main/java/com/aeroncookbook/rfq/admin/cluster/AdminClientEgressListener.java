@@ -17,9 +17,11 @@
 
 package com.aeroncookbook.rfq.admin.cluster;
 
+import com.aeroncookbook.cluster.rfq.EgressBatchReader;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqConfirmEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentsBatchResultDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqConfirmEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
@@ -27,9 +29,13 @@ import com.aeroncookbook.cluster.rfq.sbe.CounterRfqConfirmEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentsListDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRetransmitResultDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsResultDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqConfirmEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqConfirmEventDecoder;
@@ -42,8 +48,12 @@ import com.aeroncookbook.cluster.rfq.sbe.RfqCreatedEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqExpiredEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqQuotedEventDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqRejectedEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqsPageDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagResultDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserResultDecoder;
+import com.aeroncookbook.rfq.admin.cli.RfqQuery;
 import io.aeron.cluster.client.EgressListener;
 import io.aeron.cluster.codecs.EventCode;
 import io.aeron.logbuffer.Header;
@@ -67,6 +77,8 @@ public class AdminClientEgressListener implements EgressListener
         new SetInstrumentEnabledFlagResultDecoder();
     private final CreateRfqConfirmEventDecoder createRfqConfirmEventDecoder = new CreateRfqConfirmEventDecoder();
     private final ListInstrumentsResultDecoder listInstrumentsResultDecoder = new ListInstrumentsResultDecoder();
+    private final AddInstrumentsBatchResultDecoder addInstrumentsBatchResultDecoder =
+        new AddInstrumentsBatchResultDecoder();
     private final RfqCreatedEventDecoder rfqCreatedEventDecoder = new RfqCreatedEventDecoder();
     private final InstrumentsListDecoder instrumentsListDecoder = new InstrumentsListDecoder();
     private final RfqExpiredEventDecoder rfqExpiredEventDecoder = new RfqExpiredEventDecoder();
@@ -79,10 +91,18 @@ public class AdminClientEgressListener implements EgressListener
     private final RejectRfqConfirmEventDecoder rejectRfqConfirmEventDecoder = new RejectRfqConfirmEventDecoder();
     private final RfqAcceptedEventDecoder rfqAcceptedEventDecoder = new RfqAcceptedEventDecoder();
     private final RfqRejectedEventDecoder rfqRejectedEventDecoder = new RfqRejectedEventDecoder();
-
+    private final SubscribeResultDecoder subscribeResultDecoder = new SubscribeResultDecoder();
+    private final UserResultDecoder userResultDecoder = new UserResultDecoder();
+    private final RfqsPageDecoder rfqsPageDecoder = new RfqsPageDecoder();
+    private final QueryRfqsResultDecoder queryRfqsResultDecoder = new QueryRfqsResultDecoder();
+    private final MarketDataRetransmitResultDecoder marketDataRetransmitResultDecoder =
+        new MarketDataRetransmitResultDecoder();
+
+    private final EgressBatchReader egressBatchReader = new EgressBatchReader();
     private final PendingMessageManager pendingMessageManager;
 
     private LineReader lineReader;
+    private MarketDataListener marketDataListener;
 
     /**
      * Constructor
@@ -111,6 +131,9 @@ public class AdminClientEgressListener implements EgressListener
 
         switch (messageHeaderDecoder.templateId())
         {
+            case EgressBatchDecoder.TEMPLATE_ID -> egressBatchReader.read(buffer, offset, length,
+                (batchBuffer, batchOffset, batchLength) ->
+                    onMessage(clusterSessionId, timestamp, batchBuffer, batchOffset, batchLength, header));
             case CreateRfqConfirmEventDecoder.TEMPLATE_ID -> createRfqConfirmEvent(buffer, offset);
             case RfqCreatedEventDecoder.TEMPLATE_ID -> rfqCreatedEvent(buffer, offset);
             case RfqExpiredEventDecoder.TEMPLATE_ID -> rfqExpiredEvent(buffer, offset);
@@ -121,6 +144,7 @@ public class AdminClientEgressListener implements EgressListener
             case AddInstrumentResultDecoder.TEMPLATE_ID -> addInstrumentResult(buffer, offset);
             case SetInstrumentEnabledFlagResultDecoder.TEMPLATE_ID -> setInstrumentEnabledFlag(buffer, offset);
             case ListInstrumentsResultDecoder.TEMPLATE_ID -> listInstruments(buffer, offset);
+            case AddInstrumentsBatchResultDecoder.TEMPLATE_ID -> addInstrumentsBatchResult(buffer, offset);
             case InstrumentsListDecoder.TEMPLATE_ID -> displayInstruments(buffer, offset);
             case CounterRfqConfirmEventDecoder.TEMPLATE_ID -> counterRfqConfirmEvent(buffer, offset);
             case RfqCounteredEventDecoder.TEMPLATE_ID -> rfqCounteredEvent(buffer, offset);
@@ -128,6 +152,12 @@ public class AdminClientEgressListener implements EgressListener
             case RfqAcceptedEventDecoder.TEMPLATE_ID -> rfqAcceptedEvent(buffer, offset);
             case RejectRfqConfirmEventDecoder.TEMPLATE_ID -> rejectRfqConfirmEvent(buffer, offset);
             case RfqRejectedEventDecoder.TEMPLATE_ID -> rfqRejectedEvent(buffer, offset);
+            case SubscribeResultDecoder.TEMPLATE_ID -> subscribeResult(buffer, offset);
+            case UserResultDecoder.TEMPLATE_ID -> userResult(buffer, offset);
+            case RfqsPageDecoder.TEMPLATE_ID -> displayRfqs(buffer, offset);
+            case QueryRfqsResultDecoder.TEMPLATE_ID -> queryRfqsResult(buffer, offset);
+            case MarketDataHeaderDecoder.TEMPLATE_ID -> marketData(buffer, offset, length, header);
+            case MarketDataRetransmitResultDecoder.TEMPLATE_ID -> marketDataRetransmitResult(buffer, offset);
             default -> log("unknown message type: " + messageHeaderDecoder.templateId(), AttributedStyle.RED);
         }
     }
@@ -142,7 +172,7 @@ public class AdminClientEgressListener implements EgressListener
     private void rejectRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         rejectRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = rejectRfqConfirmEventDecoder.correlation();
+        final long correlation = rejectRfqConfirmEventDecoder.correlation();
         final int rfqId = rejectRfqConfirmEventDecoder.rfqId();
         final RejectRfqResult result = rejectRfqConfirmEventDecoder.result();
         if (result == RejectRfqResult.SUCCESS)
@@ -166,7 +196,7 @@ public class AdminClientEgressListener implements EgressListener
     private void acceptRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         acceptRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = acceptRfqConfirmEventDecoder.correlation();
+        final long correlation = acceptRfqConfirmEventDecoder.correlation();
         final int rfqId = acceptRfqConfirmEventDecoder.rfqId();
         final AcceptRfqResult result = acceptRfqConfirmEventDecoder.result();
         if (result == AcceptRfqResult.SUCCESS)
@@ -191,7 +221,7 @@ public class AdminClientEgressListener implements EgressListener
     private void counterRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         counterRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = counterRfqConfirmEventDecoder.correlation();
+        final long correlation = counterRfqConfirmEventDecoder.correlation();
         final int rfqId = counterRfqConfirmEventDecoder.rfqId();
         final CounterRfqResult result = counterRfqConfirmEventDecoder.result();
         if (result == CounterRfqResult.SUCCESS)
@@ -208,7 +238,7 @@ public class AdminClientEgressListener implements EgressListener
     private void rfqQuotedEvent(final DirectBuffer buffer, final int offset)
     {
         rfqQuotedEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = rfqQuotedEventDecoder.correlation();
+        final long correlation = rfqQuotedEventDecoder.correlation();
         final int rfqId = rfqQuotedEventDecoder.rfqId();
         final long price = rfqQuotedEventDecoder.price();
         log("RFQ Quoted: id=" + rfqId + " price=" + price, AttributedStyle.GREEN);
@@ -218,7 +248,7 @@ public class AdminClientEgressListener implements EgressListener
     private void quotedRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         quoteRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = quoteRfqConfirmEventDecoder.correlation();
+        final long correlation = quoteRfqConfirmEventDecoder.correlation();
         final int rfqId = quoteRfqConfirmEventDecoder.rfqId();
         final QuoteRfqResult result = quoteRfqConfirmEventDecoder.result();
         if (result != QuoteRfqResult.SUCCESS)
@@ -242,7 +272,7 @@ public class AdminClientEgressListener implements EgressListener
     private void cancelRfqResult(final DirectBuffer buffer, final int offset)
     {
         cancelRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = cancelRfqConfirmEventDecoder.correlation();
+        final long correlation = cancelRfqConfirmEventDecoder.correlation();
         final int rfqId = cancelRfqConfirmEventDecoder.rfqId();
         final CancelRfqResult result = cancelRfqConfirmEventDecoder.result();
         if (result != CancelRfqResult.SUCCESS)
@@ -279,7 +309,7 @@ public class AdminClientEgressListener implements EgressListener
     private void createRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         createRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = createRfqConfirmEventDecoder.correlation();
+        final long correlation = createRfqConfirmEventDecoder.correlation();
         final int rfqId = createRfqConfirmEventDecoder.rfqId();
         final CreateRfqResult result = createRfqConfirmEventDecoder.result();
 
@@ -295,19 +325,119 @@ public class AdminClientEgressListener implements EgressListener
         pendingMessageManager.markMessageAsReceived(correlation);
     }
 
+    private void subscribeResult(final DirectBuffer buffer, final int offset)
+    {
+        subscribeResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long correlation = subscribeResultDecoder.correlation();
+        final RequestResult result = subscribeResultDecoder.result();
+        log("Subscribe result: " + result.name(), AttributedStyle.GREEN);
+        pendingMessageManager.markMessageAsReceived(correlation);
+    }
+
+    private void userResult(final DirectBuffer buffer, final int offset)
+    {
+        userResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long correlation = userResultDecoder.correlation();
+        final RequestResult result = userResultDecoder.result();
+        log("User result: " + result.name() + " instruments applied: " + userResultDecoder.instruments(),
+            AttributedStyle.GREEN);
+        pendingMessageManager.markMessageAsReceived(correlation);
+    }
+
+    private void marketData(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (marketDataListener != null)
+        {
+            marketDataListener.onMarketData(buffer, offset, length, header);
+        }
+    }
+
+    private void marketDataRetransmitResult(final DirectBuffer buffer, final int offset)
+    {
+        marketDataRetransmitResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long correlation = marketDataRetransmitResultDecoder.correlation();
+        final long firstSequence = marketDataRetransmitResultDecoder.firstSequence();
+        final long lastSequence = marketDataRetransmitResultDecoder.lastSequence();
+        if (marketDataRetransmitResultDecoder.result() != RequestResult.SUCCESS)
+        {
+            log("Market data retransmit incomplete: first=" + firstSequence + " last=" + lastSequence,
+                AttributedStyle.YELLOW);
+        }
+        pendingMessageManager.markMessageAsReceived(correlation);
+        if (marketDataListener != null)
+        {
+            marketDataListener.onRetransmitResult(firstSequence);
+        }
+    }
+
+    private void displayRfqs(final DirectBuffer buffer, final int offset)
+    {
+        rfqsPageDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final RfqsPageDecoder.RfqsDecoder rfqs = rfqsPageDecoder.rfqs();
+        while (rfqs.hasNext())
+        {
+            rfqs.next();
+            final short state = rfqs.state();
+            final String stateName = state >= 0 && state < RfqQuery.STATE_NAMES.size() ?
+                RfqQuery.STATE_NAMES.get(state) : Short.toString(state);
+            log("RFQ: id=" + rfqs.rfqId() + " cusip=" + rfqs.cusip() + " quantity=" + rfqs.quantity() +
+                " side=" + rfqs.requesterSide() + " requester=" + rfqs.requesterUserId() +
+                " responder=" + rfqs.responderUserId() + " state=" + stateName + " price=" + rfqs.price() +
+                " expires=" + rfqs.expireTimeMs(), AttributedStyle.GREEN);
+        }
+    }
+
+    private void queryRfqsResult(final DirectBuffer buffer, final int offset)
+    {
+        queryRfqsResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long correlation = queryRfqsResultDecoder.correlation();
+        final RequestResult result = queryRfqsResultDecoder.result();
+        if (result != RequestResult.SUCCESS)
+        {
+            log("RFQ query failed", AttributedStyle.RED);
+        }
+        else if (queryRfqsResultDecoder.nextAfterRfqId() != 0)
+        {
+            log("RFQ count: " + queryRfqsResultDecoder.count() + ", more with after=" +
+                queryRfqsResultDecoder.nextAfterRfqId(), AttributedStyle.YELLOW);
+        }
+        else
+        {
+            log("RFQ count: " + queryRfqsResultDecoder.count(), AttributedStyle.YELLOW);
+        }
+        pendingMessageManager.markMessageAsReceived(correlation);
+    }
+
     private void listInstruments(final DirectBuffer buffer, final int offset)
     {
         listInstrumentsResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = listInstrumentsResultDecoder.correlation();
+        final long correlation = listInstrumentsResultDecoder.correlation();
         final RequestResult result = listInstrumentsResultDecoder.result();
-        log("List instruments result: " + result.name(), AttributedStyle.GREEN);
+        final int count = listInstrumentsResultDecoder.count();
+        final String nextAfterCusip = listInstrumentsResultDecoder.nextAfterCusip();
+        if (result != RequestResult.SUCCESS)
+        {
+            log("List instruments failed", AttributedStyle.RED);
+        }
+        else if (0 == count)
+        {
+            log("No instruments exist in the cluster.", AttributedStyle.YELLOW);
+        }
+        else if (!nextAfterCusip.isEmpty())
+        {
+            log("Instrument count: " + count + ", more with after=" + nextAfterCusip, AttributedStyle.YELLOW);
+        }
+        else
+        {
+            log("Instrument count: " + count, AttributedStyle.YELLOW);
+        }
         pendingMessageManager.markMessageAsReceived(correlation);
     }
 
     private void setInstrumentEnabledFlag(final DirectBuffer buffer, final int offset)
     {
         setInstrumentEnabledFlagResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = setInstrumentEnabledFlagResultDecoder.correlation();
+        final long correlation = setInstrumentEnabledFlagResultDecoder.correlation();
         final RequestResult result = setInstrumentEnabledFlagResultDecoder.result();
         log("Set instrument enabled flag result: " + result.name(), AttributedStyle.GREEN);
         pendingMessageManager.markMessageAsReceived(correlation);
@@ -316,36 +446,34 @@ public class AdminClientEgressListener implements EgressListener
     private void addInstrumentResult(final DirectBuffer buffer, final int offset)
     {
         addInstrumentResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = addInstrumentResultDecoder.correlation();
+        final long correlation = addInstrumentResultDecoder.correlation();
         final RequestResult result = addInstrumentResultDecoder.result();
         log("Add instrument result: " + result.name(), AttributedStyle.GREEN);
         pendingMessageManager.markMessageAsReceived(correlation);
     }
 
 
+    private void addInstrumentsBatchResult(final DirectBuffer buffer, final int offset)
+    {
+        addInstrumentsBatchResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long correlation = addInstrumentsBatchResultDecoder.correlation();
+        final RequestResult result = addInstrumentsBatchResultDecoder.result();
+        log("Load instruments result: " + result.name() + " added: " + addInstrumentsBatchResultDecoder.added() +
+            " replaced: " + addInstrumentsBatchResultDecoder.replaced(), AttributedStyle.GREEN);
+        pendingMessageManager.markMessageAsReceived(correlation);
+    }
+
     private void displayInstruments(final DirectBuffer buffer, final int offset)
     {
         instrumentsListDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        pendingMessageManager.markMessageAsReceived(instrumentsListDecoder.correlation());
         final InstrumentsListDecoder.ValuesDecoder values = instrumentsListDecoder.values();
-        final int count = values.count();
-        if (0 == count)
-        {
-            log("No instruments exist in the cluster.",
-                AttributedStyle.YELLOW);
-        }
-        else
+        while (values.hasNext())
         {
-            log("Instrument count: " + count, AttributedStyle.YELLOW);
-            while (values.hasNext())
-            {
-                values.next();
-                final String participantId = values.cusip();
-                final long minSize = values.minSize();
-                final boolean enabled = values.enabled() == BooleanType.TRUE;
-                log("Instrument: " + participantId + " minSize: " + minSize + " enabled: " + enabled,
-                    AttributedStyle.GREEN);
-            }
+            values.next();
+            final String cusip = values.cusip();
+            final long minSize = values.minSize();
+            final boolean enabled = values.enabled() == BooleanType.TRUE;
+            log("Instrument: " + cusip + " minSize: " + minSize + " enabled: " + enabled, AttributedStyle.GREEN);
         }
     }
 
@@ -385,6 +513,16 @@ public class AdminClientEgressListener implements EgressListener
         this.lineReader = lineReader;
     }
 
+    /**
+     * Sets the listener which orders market data events, including those retransmitted on egress
+     *
+     * @param marketDataListener the market data listener
+     */
+    public void setMarketDataListener(final MarketDataListener marketDataListener)
+    {
+        this.marketDataListener = marketDataListener;
+    }
+
     /**
      * Logs a message to the terminal if available or to the logger if not
      *
@@ -17,19 +17,32 @@
 
 package com.aeroncookbook.rfq.admin.cluster;
 
+import com.aeroncookbook.cluster.rfq.RfqShards;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentsBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddUserEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRetransmitRequestEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqQueryType;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEnabledFlagEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEntitlementsEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserEntitlementAction;
+import com.aeroncookbook.rfq.admin.util.EnvironmentUtil;
 import com.aeroncookbook.rfq.cluster.admin.protocol.AcceptRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.AddInstrumentDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.AddInstrumentsBatchDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.AddUserDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.CancelRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.ConnectClusterDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.CounterRfqCommandDecoder;
@@ -37,21 +50,28 @@ import com.aeroncookbook.rfq.cluster.admin.protocol.CreateRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.DisconnectClusterDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.ListInstrumentsCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.QueryRfqsCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.QuoteRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.RejectRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.SetInstrumentEnabledFlagDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.SetUserEnabledFlagDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.SetUserEntitlementsDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.Side;
+import com.aeroncookbook.rfq.cluster.admin.protocol.SubscribeCommandDecoder;
 import io.aeron.Publication;
+import io.aeron.Subscription;
 import io.aeron.cluster.client.AeronCluster;
 import io.aeron.driver.MediaDriver;
 import io.aeron.driver.ThreadingMode;
 import io.aeron.samples.cluster.ClusterConfig;
+import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
 import org.agrona.ExpandableDirectByteBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.SnowflakeIdGenerator;
 import org.agrona.concurrent.SystemEpochClock;
 import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
 import org.jline.reader.LineReader;
@@ -59,7 +79,6 @@ import org.jline.utils.AttributedStyle;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -69,15 +88,18 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
 {
     private static final long HEARTBEAT_INTERVAL = 250;
     private static final long RETRY_COUNT = 10;
-    private static final String INGRESS_CHANNEL = "aeron:udp?term-length=64k";
+    private static final int MARKET_DATA_FRAGMENT_LIMIT = 10;
+    private static final String INGRESS_CHANNEL = "aeron:udp?term-length=256k";
     private final MutableDirectBuffer sendBuffer = new ExpandableDirectByteBuffer(1024);
     private final OneToOneRingBuffer adminClusterComms;
     private final IdleStrategy idleStrategy;
     private final AtomicBoolean runningFlag;
     private final PendingMessageManager pendingMessageManager;
+    private final SnowflakeIdGenerator correlationIdGenerator;
     private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
     private final ConnectClusterDecoder connectClusterDecoder = new ConnectClusterDecoder();
     private final AddInstrumentDecoder addInstrumentDecoder = new AddInstrumentDecoder();
+    private final AddInstrumentsBatchDecoder addInstrumentsBatchDecoder = new AddInstrumentsBatchDecoder();
     private final CreateRfqCommandDecoder createRfqCommandDecoder = new CreateRfqCommandDecoder();
     private final SetInstrumentEnabledFlagDecoder setInstrumentEnabledDecoder = new SetInstrumentEnabledFlagDecoder();
     private final CancelRfqCommandDecoder cancelRfqCommandDecoder = new CancelRfqCommandDecoder();
@@ -85,8 +107,15 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     private final CounterRfqCommandDecoder counterRfqCommandDecoder = new CounterRfqCommandDecoder();
     private final AcceptRfqCommandDecoder acceptRfqCommandDecoder = new AcceptRfqCommandDecoder();
     private final RejectRfqCommandDecoder rejectRfqCommandDecoder = new RejectRfqCommandDecoder();
+    private final SubscribeCommandDecoder subscribeCommandDecoder = new SubscribeCommandDecoder();
+    private final QueryRfqsCommandDecoder queryRfqsCommandDecoder = new QueryRfqsCommandDecoder();
+    private final ListInstrumentsCommandDecoder listInstrumentsCommandDecoder = new ListInstrumentsCommandDecoder();
+    private final AddUserDecoder addUserDecoder = new AddUserDecoder();
+    private final SetUserEnabledFlagDecoder setUserEnabledDecoder = new SetUserEnabledFlagDecoder();
+    private final SetUserEntitlementsDecoder setUserEntitlementsDecoder = new SetUserEntitlementsDecoder();
     private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
     private final AddInstrumentEncoder addInstrumentEncoder = new AddInstrumentEncoder();
+    private final AddInstrumentsBatchEncoder addInstrumentsBatchEncoder = new AddInstrumentsBatchEncoder();
     private final ListInstrumentsCommandEncoder listInstrumentsCommandEncoder = new ListInstrumentsCommandEncoder();
     private final SetInstrumentEnabledFlagEncoder setInstrumentEnabledEncoder = new SetInstrumentEnabledFlagEncoder();
     private final CreateRfqCommandEncoder createRfqCommandEncoder = new CreateRfqCommandEncoder();
@@ -95,9 +124,19 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     private final CounterRfqCommandEncoder counterRfqCommandEncoder = new CounterRfqCommandEncoder();
     private final AcceptRfqCommandEncoder acceptRfqCommandEncoder = new AcceptRfqCommandEncoder();
     private final RejectRfqCommandEncoder rejectRfqCommandEncoder = new RejectRfqCommandEncoder();
+    private final SubscribeCommandEncoder subscribeCommandEncoder = new SubscribeCommandEncoder();
+    private final QueryRfqsCommandEncoder queryRfqsCommandEncoder = new QueryRfqsCommandEncoder();
+    private final AddUserEncoder addUserEncoder = new AddUserEncoder();
+    private final SetUserEnabledFlagEncoder setUserEnabledEncoder = new SetUserEnabledFlagEncoder();
+    private final SetUserEntitlementsEncoder setUserEntitlementsEncoder = new SetUserEntitlementsEncoder();
+    private final MarketDataRetransmitRequestEncoder marketDataRetransmitRequestEncoder =
+        new MarketDataRetransmitRequestEncoder();
     private long lastHeartbeatTime = Long.MIN_VALUE;
-    private AdminClientEgressListener adminClientEgressListener;
-    private AeronCluster aeronCluster;
+    private AdminClientEgressListener[] egressListeners;
+    private ShardedCluster shardedCluster;
+    private ViewClient[] viewClients;
+    private Subscription[] marketDataSubscriptions;
+    private MarketDataListener[] marketDataListeners;
     private ConnectionState connectionState = ConnectionState.NOT_CONNECTED;
     private LineReader lineReader;
     private MediaDriver mediaDriver;
@@ -118,6 +157,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         this.idleStrategy = idleStrategy;
         this.runningFlag = runningFlag;
         this.pendingMessageManager = new PendingMessageManager(SystemEpochClock.INSTANCE);
+        this.correlationIdGenerator = new SnowflakeIdGenerator(EnvironmentUtil.tryGetCorrelationNodeId());
     }
 
     @Override
@@ -130,17 +170,35 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
             lastHeartbeatTime = now;
             if (connectionState == ConnectionState.CONNECTED)
             {
-                aeronCluster.sendKeepAlive();
+                shardedCluster.sendKeepAlive();
             }
         }
 
         //poll inbound to this agent messages (from the REPL)
         adminClusterComms.read(this);
 
-        //poll outbound messages from the cluster
-        if (null != aeronCluster && !aeronCluster.isClosed())
+        //poll outbound messages from every shard of the cluster
+        if (null != shardedCluster)
         {
-            aeronCluster.pollEgress();
+            shardedCluster.pollEgress();
+        }
+
+        //poll query replies from the view nodes, if connected
+        if (null != viewClients)
+        {
+            for (final ViewClient viewClient : viewClients)
+            {
+                viewClient.poll();
+            }
+        }
+
+        //poll public events from each shard's market data stream, if subscribed
+        if (null != marketDataSubscriptions)
+        {
+            for (int shardId = 0; shardId < marketDataSubscriptions.length; shardId++)
+            {
+                marketDataSubscriptions[shardId].poll(marketDataListeners[shardId], MARKET_DATA_FRAGMENT_LIMIT);
+            }
         }
 
         //check for timed-out messages
@@ -170,20 +228,85 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
             case RejectRfqCommandDecoder.TEMPLATE_ID -> processRejectRfqCommand(messageHeaderDecoder, buffer, offset);
             case ConnectClusterDecoder.TEMPLATE_ID -> processConnectCluster(buffer, offset);
             case DisconnectClusterDecoder.TEMPLATE_ID -> processDisconnectCluster();
-            case ListInstrumentsCommandDecoder.TEMPLATE_ID -> processInstrumentListCommand();
+            case ListInstrumentsCommandDecoder.TEMPLATE_ID ->
+                processInstrumentListCommand(messageHeaderDecoder, buffer, offset);
             case AddInstrumentDecoder.TEMPLATE_ID -> processAddInstrument(messageHeaderDecoder, buffer, offset);
+            case AddInstrumentsBatchDecoder.TEMPLATE_ID ->
+                processAddInstrumentsBatch(messageHeaderDecoder, buffer, offset);
             case SetInstrumentEnabledFlagDecoder.TEMPLATE_ID ->
                 processSetInstrumentEnabled(messageHeaderDecoder, buffer, offset);
+            case SubscribeCommandDecoder.TEMPLATE_ID -> processSubscribeCommand(messageHeaderDecoder, buffer, offset);
+            case QueryRfqsCommandDecoder.TEMPLATE_ID -> processQueryRfqsCommand(messageHeaderDecoder, buffer, offset);
+            case AddUserDecoder.TEMPLATE_ID -> processAddUser(messageHeaderDecoder, buffer, offset);
+            case SetUserEnabledFlagDecoder.TEMPLATE_ID -> processSetUserEnabled(messageHeaderDecoder, buffer, offset);
+            case SetUserEntitlementsDecoder.TEMPLATE_ID ->
+                processSetUserEntitlements(messageHeaderDecoder, buffer, offset);
             default -> log("Unknown message type: " + messageHeaderDecoder.templateId(), AttributedStyle.RED);
         }
     }
 
+    private void processSubscribeCommand(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        subscribeCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+
+        subscribeCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        subscribeCommandEncoder.correlation(correlationId);
+        subscribeCommandEncoder.userId(subscribeCommandDecoder.userId());
+        subscribeCommandEncoder.partiesOnly(mapBoolean(subscribeCommandDecoder.partiesOnly()));
+        final SubscribeCommandDecoder.InstrumentsDecoder instrumentsDecoder = subscribeCommandDecoder.instruments();
+        final SubscribeCommandEncoder.InstrumentsEncoder instrumentsEncoder =
+            subscribeCommandEncoder.instrumentsCount(instrumentsDecoder.count());
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsEncoder.next().cusip(instrumentsDecoder.next().cusip());
+        }
+
+        offerToEveryShard(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+            subscribeCommandEncoder.encodedLength(), correlationId, "subscribe", false);
+    }
+
+    private void processQueryRfqsCommand(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        queryRfqsCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+
+        final RfqQueryType queryType = RfqQueryType.get(queryRfqsCommandDecoder.queryTypeRaw());
+        final String cusip = queryRfqsCommandDecoder.cusip();
+
+        queryRfqsCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        queryRfqsCommandEncoder.correlation(correlationId);
+        queryRfqsCommandEncoder.queryType(queryType);
+        queryRfqsCommandEncoder.cusip(cusip);
+        queryRfqsCommandEncoder.userId(queryRfqsCommandDecoder.userId());
+        queryRfqsCommandEncoder.state(queryRfqsCommandDecoder.state());
+        queryRfqsCommandEncoder.afterRfqId(queryRfqsCommandDecoder.afterRfqId());
+        queryRfqsCommandEncoder.maxResults(queryRfqsCommandDecoder.maxResults());
+
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + queryRfqsCommandEncoder.encodedLength();
+        if (queryType == RfqQueryType.BY_CUSIP)
+        {
+            retryingQueryOffer(shardForCusip(cusip), sendBuffer, length);
+            pendingMessageManager.addMessage(correlationId, "rfq-query");
+        }
+        else
+        {
+            offerToEveryShard(sendBuffer, length, correlationId, "rfq-query", true);
+        }
+    }
+
     private void processRejectRfqCommand(
         final MessageHeaderDecoder messageHeaderDecoder,
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         rejectRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = rejectRfqCommandDecoder.rfqId();
         final int userId = rejectRfqCommandDecoder.userId();
@@ -193,7 +316,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         rejectRfqCommandEncoder.rfqId(rfqId);
         rejectRfqCommandEncoder.responderUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForRfqId(rfqId), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             rejectRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "reject-rfq");
@@ -204,7 +327,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         acceptRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = acceptRfqCommandDecoder.rfqId();
         final int userId = acceptRfqCommandDecoder.userId();
@@ -214,7 +337,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         acceptRfqCommandEncoder.rfqId(rfqId);
         acceptRfqCommandEncoder.acceptUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForRfqId(rfqId), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             acceptRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "accept-rfq");
@@ -225,7 +348,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         counterRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = counterRfqCommandDecoder.rfqId();
         final int responderId = counterRfqCommandDecoder.userId();
@@ -237,7 +360,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         counterRfqCommandEncoder.counterUserId(responderId);
         counterRfqCommandEncoder.price(price);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForRfqId(rfqId), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             counterRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "counter-rfq");
@@ -249,7 +372,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         quoteRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = quoteRfqCommandDecoder.rfqId();
         final int responderId = quoteRfqCommandDecoder.userId();
@@ -261,7 +384,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         quoteRfqCommandEncoder.responderUserId(responderId);
         quoteRfqCommandEncoder.price(price);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForRfqId(rfqId), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             quoteRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "quote-rfq");
@@ -272,7 +395,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         cancelRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = cancelRfqCommandDecoder.rfqId();
         final int userId = cancelRfqCommandDecoder.userId();
@@ -283,7 +406,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         cancelRfqCommandEncoder.cancelUserId(userId);
 
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForRfqId(rfqId), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             cancelRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "cancel-rfq");
@@ -295,7 +418,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         createRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final long expireTimeMs = createRfqCommandDecoder.expireTimeMs();
         final int quantity = createRfqCommandDecoder.quantity();
@@ -311,7 +434,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         createRfqCommandEncoder.cusip(cusip);
         createRfqCommandEncoder.requesterUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForCusip(cusip), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             createRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "create-rfq");
@@ -336,17 +459,21 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         }
     }
 
-    private void processInstrumentListCommand()
+    private void processInstrumentListCommand(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
+        listInstrumentsCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
 
         listInstrumentsCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
         listInstrumentsCommandEncoder.correlation(correlationId);
+        listInstrumentsCommandEncoder.afterCusip(listInstrumentsCommandDecoder.afterCusip());
+        listInstrumentsCommandEncoder.maxResults(listInstrumentsCommandDecoder.maxResults());
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
-            listInstrumentsCommandEncoder.encodedLength());
-
-        pendingMessageManager.addMessage(correlationId, "instrument-list");
+        offerToEveryShard(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+            listInstrumentsCommandEncoder.encodedLength(), correlationId, "instrument-list", true);
     }
 
     /**
@@ -386,21 +513,73 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
 
         addInstrumentDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final String cusip = addInstrumentDecoder.cusip();
         addInstrumentEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
         addInstrumentEncoder.correlation(correlationId);
-        addInstrumentEncoder.cusip(addInstrumentDecoder.cusip());
+        addInstrumentEncoder.cusip(cusip);
         addInstrumentEncoder.enabled(mapBoolean(addInstrumentDecoder.enabled()));
         addInstrumentEncoder.minSize(addInstrumentDecoder.minSize());
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForCusip(cusip), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             addInstrumentEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "instrument-add");
     }
 
+    private void processAddInstrumentsBatch(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+
+        final int[] shardCounts = new int[shardCount()];
+        addInstrumentsBatchDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final AddInstrumentsBatchDecoder.InstrumentsDecoder countDecoder = addInstrumentsBatchDecoder.instruments();
+        final boolean empty = countDecoder.count() == 0;
+        while (countDecoder.hasNext())
+        {
+            shardCounts[shardForCusip(countDecoder.next().cusip())]++;
+        }
+
+        //split the batch so that each shard is sent only its own instruments, under the same correlation id
+        for (int shardId = 0; shardId < shardCounts.length; shardId++)
+        {
+            if (shardCounts[shardId] == 0 && !(empty && shardId == 0))
+            {
+                continue;
+            }
+
+            addInstrumentsBatchDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+            addInstrumentsBatchEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+            addInstrumentsBatchEncoder.correlation(correlationId);
+            final AddInstrumentsBatchDecoder.InstrumentsDecoder instrumentsDecoder =
+                addInstrumentsBatchDecoder.instruments();
+            final AddInstrumentsBatchEncoder.InstrumentsEncoder instrumentsEncoder =
+                addInstrumentsBatchEncoder.instrumentsCount(shardCounts[shardId]);
+            while (instrumentsDecoder.hasNext())
+            {
+                instrumentsDecoder.next();
+                final String cusip = instrumentsDecoder.cusip();
+                if (shardForCusip(cusip) == shardId)
+                {
+                    instrumentsEncoder.next()
+                        .cusip(cusip)
+                        .enabled(mapBoolean(instrumentsDecoder.enabled()))
+                        .minSize(instrumentsDecoder.minSize());
+                }
+            }
+
+            retryingClusterOffer(shardId, sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+                addInstrumentsBatchEncoder.encodedLength());
+
+            pendingMessageManager.addMessage(correlationId, "instrument-load");
+        }
+    }
+
 
     /**
      * Marshals the CLI protocol to cluster protocol for Adding a Participant
@@ -414,30 +593,168 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = correlationIdGenerator.nextId();
         setInstrumentEnabledDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final String cusip = setInstrumentEnabledDecoder.cusip();
         setInstrumentEnabledEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
 
         setInstrumentEnabledEncoder.correlation(correlationId);
-        setInstrumentEnabledEncoder.cusip(setInstrumentEnabledDecoder.cusip());
+        setInstrumentEnabledEncoder.cusip(cusip);
         setInstrumentEnabledEncoder.enabled(mapBoolean(setInstrumentEnabledDecoder.enabled()));
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        retryingClusterOffer(shardForCusip(cusip), sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             setInstrumentEnabledEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "instrument-set-enabled");
     }
 
+    /**
+     * Adds a user. Every shard keeps its own copy of the user registry, so the command goes to every shard.
+     *
+     * @param messageHeaderDecoder the message header decoder
+     * @param buffer               the buffer containing the message
+     * @param offset               the offset of the message
+     */
+    private void processAddUser(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        addUserDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+
+        addUserEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        addUserEncoder.correlation(correlationId);
+        addUserEncoder.userId(addUserDecoder.userId());
+        addUserEncoder.maxOpenRfqs(addUserDecoder.maxOpenRfqs());
+
+        offerToEveryShard(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH + addUserEncoder.encodedLength(),
+            correlationId, "user-add", false);
+    }
+
+    private void processSetUserEnabled(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        setUserEnabledDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+
+        setUserEnabledEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        setUserEnabledEncoder.correlation(correlationId);
+        setUserEnabledEncoder.userId(setUserEnabledDecoder.userId());
+        setUserEnabledEncoder.enabled(mapBoolean(setUserEnabledDecoder.enabled()));
+
+        offerToEveryShard(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH + setUserEnabledEncoder.encodedLength(),
+            correlationId, "user-set-enabled", false);
+    }
+
+    /**
+     * Grants or revokes user entitlements. Each shard applies the instruments it holds and ignores the rest.
+     *
+     * @param messageHeaderDecoder the message header decoder
+     * @param buffer               the buffer containing the message
+     * @param offset               the offset of the message
+     */
+    private void processSetUserEntitlements(
+        final MessageHeaderDecoder messageHeaderDecoder,
+        final MutableDirectBuffer buffer,
+        final int offset)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        setUserEntitlementsDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+
+        setUserEntitlementsEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        setUserEntitlementsEncoder.correlation(correlationId);
+        setUserEntitlementsEncoder.userId(setUserEntitlementsDecoder.userId());
+        setUserEntitlementsEncoder.action(UserEntitlementAction.get(setUserEntitlementsDecoder.actionRaw()));
+        final SetUserEntitlementsDecoder.InstrumentsDecoder instrumentsDecoder =
+            setUserEntitlementsDecoder.instruments();
+        final SetUserEntitlementsEncoder.InstrumentsEncoder instrumentsEncoder =
+            setUserEntitlementsEncoder.instrumentsCount(instrumentsDecoder.count());
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsEncoder.next().cusip(instrumentsDecoder.next().cusip());
+        }
+
+        offerToEveryShard(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+            setUserEntitlementsEncoder.encodedLength(), correlationId, "user-entitle", false);
+    }
+
+
+    /**
+     * Asks a shard to resend market data events missed on its market data stream. They arrive on its egress.
+     *
+     * @param shardId      the shard whose events were missed
+     * @param fromSequence the first sequence to request
+     * @param toSequence   the last sequence to request
+     */
+    private void requestMarketDataRetransmit(final int shardId, final long fromSequence, final long toSequence)
+    {
+        final long correlationId = correlationIdGenerator.nextId();
+        log("Requesting market data retransmit from shard " + shardId + ": " + fromSequence + " to " + toSequence,
+            AttributedStyle.YELLOW);
+
+        marketDataRetransmitRequestEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
+        marketDataRetransmitRequestEncoder.correlation(correlationId);
+        marketDataRetransmitRequestEncoder.fromSequence(fromSequence);
+        marketDataRetransmitRequestEncoder.toSequence(toSequence);
+
+        retryingClusterOffer(shardId, sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+            marketDataRetransmitRequestEncoder.encodedLength());
+
+        pendingMessageManager.addMessage(correlationId, "market-data-retransmit");
+    }
+
+    /**
+     * Subscribes to the market data channel, if one is configured. Each shard sequences its own events on its own
+     * stream, so each has its own listener to detect gaps and request retransmits from that shard.
+     */
+    private void subscribeMarketData()
+    {
+        final String marketDataChannel = EnvironmentUtil.tryGetMarketDataChannelFromEnv();
+        if (marketDataChannel.isEmpty())
+        {
+            return;
+        }
+
+        final int streamId = EnvironmentUtil.tryGetMarketDataStreamIdFromEnv();
+        final int shardCount = shardedCluster.shardCount();
+        marketDataListeners = new MarketDataListener[shardCount];
+        marketDataSubscriptions = new Subscription[shardCount];
+        for (int shardId = 0; shardId < shardCount; shardId++)
+        {
+            final int retransmitShardId = shardId;
+            marketDataListeners[shardId] = new MarketDataListener(egressListeners[shardId],
+                (fromSequence, toSequence) -> requestMarketDataRetransmit(retransmitShardId, fromSequence, toSequence));
+            egressListeners[shardId].setMarketDataListener(marketDataListeners[shardId]);
+            marketDataSubscriptions[shardId] = shardedCluster.cluster(shardId).context().aeron().addSubscription(
+                marketDataChannel, streamId + shardId);
+        }
+        log("Subscribed to market data on " + marketDataChannel, AttributedStyle.GREEN);
+    }
 
     /**
      * Disconnects from the cluster
      */
     private void disconnectCluster()
     {
-        adminClientEgressListener = null;
-        if (aeronCluster != null)
+        if (viewClients != null)
         {
-            aeronCluster.close();
+            CloseHelper.closeAll(viewClients);
+            viewClients = null;
+        }
+        egressListeners = null;
+        marketDataListeners = null;
+        if (marketDataSubscriptions != null)
+        {
+            CloseHelper.closeAll(marketDataSubscriptions);
+            marketDataSubscriptions = null;
+        }
+        if (shardedCluster != null)
+        {
+            shardedCluster.close();
+            shardedCluster = null;
         }
         if (mediaDriver != null)
         {
@@ -460,26 +777,97 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final String localHostName)
     {
         final List<String> hostnames = Arrays.asList(clusterHosts.split(","));
-        final String ingressEndpoints = ClusterConfig.ingressEndpoints(
-            hostnames, basePort, ClusterConfig.CLIENT_FACING_PORT_OFFSET);
-        final String egressChannel = "aeron:udp?endpoint=" + localHostName + ":" + port;
-        adminClientEgressListener = new AdminClientEgressListener(pendingMessageManager);
-        adminClientEgressListener.setLineReader(lineReader);
+        final RfqShards shards = RfqShards.parse(EnvironmentUtil.tryGetShardBoundsFromEnv());
+        final int portStride = EnvironmentUtil.tryGetShardPortStrideFromEnv();
+        egressListeners = new AdminClientEgressListener[shards.shardCount()];
         mediaDriver = MediaDriver.launch(new MediaDriver.Context()
             .threadingMode(ThreadingMode.SHARED)
             .dirDeleteOnStart(true)
             .errorHandler(this::logError)
             .dirDeleteOnShutdown(true));
-        aeronCluster = AeronCluster.connect(
-            new AeronCluster.Context()
-                .egressListener(adminClientEgressListener)
-                .egressChannel(egressChannel)
-                .ingressChannel(INGRESS_CHANNEL)
-                .ingressEndpoints(ingressEndpoints)
-                .errorHandler(this::logError)
-                .aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+        shardedCluster = new ShardedCluster(shards, shardId -> shardContext(
+            shardId, hostnames, basePort + shardId * portStride, port == 0 ? 0 : port + shardId, localHostName));
+
+        for (int shardId = 0; shardId < shardedCluster.shardCount(); shardId++)
+        {
+            final String shardName = shardedCluster.shardCount() > 1 ? "shard " + shardId + " " : "";
+            log("Connected to " + shardName + "cluster leader, node " +
+                shardedCluster.cluster(shardId).leaderMemberId(), AttributedStyle.GREEN);
+        }
+        subscribeMarketData();
+        connectViewNodes(localHostName);
+    }
+
+    /**
+     * Connects to a view node for each shard, if configured, so that queries are served off the consensus path. If
+     * any view node cannot be connected to, queries are sent to the cluster.
+     *
+     * @param localHostName the host query replies are received on
+     */
+    private void connectViewNodes(final String localHostName)
+    {
+        final String viewEndpoints = EnvironmentUtil.tryGetViewEndpointsFromEnv();
+        if (viewEndpoints.isEmpty())
+        {
+            return;
+        }
 
-        log("Connected to cluster leader, node " + aeronCluster.leaderMemberId(), AttributedStyle.GREEN);
+        final String[] endpoints = viewEndpoints.split(",");
+        if (endpoints.length != shardedCluster.shardCount())
+        {
+            log("Expected a view node for each of " + shardedCluster.shardCount() + " shards, got " +
+                endpoints.length + ". Queries go to the cluster.", AttributedStyle.RED);
+            return;
+        }
+
+        final int viewStreamId = EnvironmentUtil.tryGetViewStreamIdFromEnv();
+        viewClients = new ViewClient[endpoints.length];
+        try
+        {
+            for (int shardId = 0; shardId < endpoints.length; shardId++)
+            {
+                final String endpoint = endpoints[shardId].trim();
+                viewClients[shardId] = new ViewClient(shardedCluster.cluster(shardId).context().aeron(),
+                    endpoint, viewStreamId, localHostName, egressListeners[shardId]);
+                log("Connected to view node " + endpoint, AttributedStyle.GREEN);
+            }
+        }
+        catch (final RuntimeException ex)
+        {
+            CloseHelper.quietCloseAll(viewClients);
+            viewClients = null;
+            log(ex.getMessage() + ". Queries go to the cluster.", AttributedStyle.RED);
+        }
+    }
+
+    /**
+     * Creates the connection context for a shard, with its own egress listener
+     *
+     * @param shardId       the shard id
+     * @param hostnames     the cluster hosts
+     * @param basePort      the base port of the shard's cluster
+     * @param port          the egress port for the shard, or 0 for ephemeral
+     * @param localHostName the host egress is received on
+     * @return the connection context
+     */
+    private AeronCluster.Context shardContext(
+        final int shardId,
+        final List<String> hostnames,
+        final int basePort,
+        final int port,
+        final String localHostName)
+    {
+        final AdminClientEgressListener egressListener = new AdminClientEgressListener(pendingMessageManager);
+        egressListener.setLineReader(lineReader);
+        egressListeners[shardId] = egressListener;
+        return new AeronCluster.Context()
+            .egressListener(egressListener)
+            .egressChannel("aeron:udp?endpoint=" + localHostName + ":" + port)
+            .ingressChannel(INGRESS_CHANNEL)
+            .ingressEndpoints(ClusterConfig.ingressEndpoints(
+                hostnames, basePort, ClusterConfig.CLIENT_FACING_PORT_OFFSET))
+            .errorHandler(this::logError)
+            .aeronDirectoryName(mediaDriver.aeronDirectoryName());
     }
 
     private void logError(final Throwable throwable)
@@ -509,20 +897,105 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         LineReaderHelper.log(lineReader, message, color);
     }
 
+    private int shardCount()
+    {
+        return shardedCluster == null ? 1 : shardedCluster.shardCount();
+    }
+
+    private int shardForCusip(final String cusip)
+    {
+        return shardedCluster == null ? 0 : shardedCluster.shardForCusip(cusip);
+    }
+
+    private int shardForRfqId(final int rfqId)
+    {
+        return shardedCluster == null ? 0 : shardedCluster.shardForRfqId(rfqId);
+    }
+
+    /**
+     * sends to every shard of the cluster, tracking a reply from each
+     *
+     * @param buffer        buffer containing the message
+     * @param length        length of the message
+     * @param correlationId correlation id of the message
+     * @param messageType   type of the message, for timeouts
+     * @param isQuery       true if the message is a query, which view nodes can serve
+     */
+    private void offerToEveryShard(
+        final DirectBuffer buffer,
+        final int length,
+        final long correlationId,
+        final String messageType,
+        final boolean isQuery)
+    {
+        for (int shardId = 0; shardId < shardCount(); shardId++)
+        {
+            if (isQuery)
+            {
+                retryingQueryOffer(shardId, buffer, length);
+            }
+            else
+            {
+                retryingClusterOffer(shardId, buffer, length);
+            }
+            pendingMessageManager.addMessage(correlationId, messageType);
+        }
+    }
+
     /**
-     * sends to cluster with retry as needed, up to the limit
+     * sends a query to the view node of a shard with retry as needed, up to the limit, or to the shard's cluster if
+     * not connected to view nodes
      *
-     * @param buffer buffer containing the message
-     * @param length length of the message
+     * @param shardId shard to query
+     * @param buffer  buffer containing the query
+     * @param length  length of the query
      */
-    private void retryingClusterOffer(final DirectBuffer buffer, final int length)
+    private void retryingQueryOffer(final int shardId, final DirectBuffer buffer, final int length)
+    {
+        if (viewClients == null)
+        {
+            retryingClusterOffer(shardId, buffer, length);
+            return;
+        }
+
+        int retries = 0;
+        do
+        {
+            final long result = viewClients[shardId].offer(buffer, 0, length);
+            if (result > 0L)
+            {
+                return;
+            }
+            else if (result == Publication.NOT_CONNECTED || result == Publication.MAX_POSITION_EXCEEDED)
+            {
+                log("View node is not connected, or maximum position has been exceeded. Message lost.",
+                    AttributedStyle.RED);
+                return;
+            }
+
+            idleStrategy.idle();
+            retries += 1;
+        }
+        while (retries < RETRY_COUNT);
+
+        log("Failed to send message to view node. Message lost.", AttributedStyle.RED);
+    }
+
+    /**
+     * sends to a shard of the cluster with retry as needed, up to the limit
+     *
+     * @param shardId shard to send to
+     * @param buffer  buffer containing the message
+     * @param length  length of the message
+     */
+    private void retryingClusterOffer(final int shardId, final DirectBuffer buffer, final int length)
     {
         if (connectionState == ConnectionState.CONNECTED)
         {
             int retries = 0;
             do
             {
-                final long result = aeronCluster.offer(buffer, 0, length);
+                final long result = shardedCluster.cluster(shardId).offer(buffer, 0, length);
                 if (result > 0L)
                 {
                     return;
@@ -556,9 +1029,13 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     @Override
     public void onClose()
     {
-        if (aeronCluster != null)
+        if (viewClients != null)
+        {
+            CloseHelper.quietCloseAll(viewClients);
+        }
+        if (shardedCluster != null)
         {
-            aeronCluster.close();
+            shardedCluster.close();
         }
         if (mediaDriver != null)
         {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cluster;
+
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives sequenced public RFQ events, either from the market data channel or as retransmits on egress, and hands
+ * them to the egress listener in sequence order. A gap triggers a single retransmit request; events after the gap
+ * are dropped until the retransmit catches up, as they are covered by the next request.
+ */
+public class MarketDataListener implements FragmentHandler
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarketDataListener.class);
+    private static final int ENVELOPE_LENGTH =
+        MessageHeaderDecoder.ENCODED_LENGTH + MarketDataHeaderDecoder.BLOCK_LENGTH;
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final MarketDataHeaderDecoder marketDataHeaderDecoder = new MarketDataHeaderDecoder();
+    private final AdminClientEgressListener adminClientEgressListener;
+    private final RetransmitRequester retransmitRequester;
+    private long nextSequence;
+    private long highestSequence;
+    private boolean retransmitPending;
+
+    /**
+     * Constructor
+     *
+     * @param adminClientEgressListener the listener to which events are handed in sequence order
+     * @param retransmitRequester       requests missed events from the cluster
+     */
+    public MarketDataListener(
+        final AdminClientEgressListener adminClientEgressListener,
+        final RetransmitRequester retransmitRequester)
+    {
+        this.adminClientEgressListener = adminClientEgressListener;
+        this.retransmitRequester = retransmitRequester;
+    }
+
+    @Override
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        onMarketData(buffer, offset, length, header);
+    }
+
+    /**
+     * Handles a market data event, including its market data header
+     *
+     * @param buffer the buffer holding the event
+     * @param offset the offset of the market data header
+     * @param length the length of the market data header and event
+     * @param header the Aeron header of the fragment
+     */
+    public void onMarketData(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (length < ENVELOPE_LENGTH)
+        {
+            LOGGER.warn("Market data message too short");
+            return;
+        }
+
+        marketDataHeaderDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        final long sequence = marketDataHeaderDecoder.sequence();
+        highestSequence = Math.max(highestSequence, sequence);
+
+        if (nextSequence == 0)
+        {
+            nextSequence = sequence;
+        }
+
+        if (sequence < nextSequence)
+        {
+            return;
+        }
+
+        if (sequence > nextSequence)
+        {
+            if (!retransmitPending)
+            {
+                retransmitPending = true;
+                retransmitRequester.requestRetransmit(nextSequence, sequence);
+            }
+            return;
+        }
+
+        nextSequence++;
+        adminClientEgressListener.onMessage(0, marketDataHeaderDecoder.timestamp(), buffer,
+            offset + ENVELOPE_LENGTH, length - ENVELOPE_LENGTH, header);
+    }
+
+    /**
+     * Handles the outcome of a retransmit request, skipping events no longer retained and requesting again if the
+     * gap is not yet closed, such as when the cluster limited the number of events sent
+     *
+     * @param firstSequence the first sequence sent
+     */
+    public void onRetransmitResult(final long firstSequence)
+    {
+        retransmitPending = false;
+        if (firstSequence > nextSequence)
+        {
+            LOGGER.warn("Market data events {} to {} are no longer retained", nextSequence, firstSequence - 1);
+            nextSequence = firstSequence;
+        }
+
+        if (nextSequence <= highestSequence)
+        {
+            retransmitPending = true;
+            retransmitRequester.requestRetransmit(nextSequence, highestSequence);
+        }
+    }
+
+    /**
+     * Requests missed market data events from the cluster
+     */
+    @FunctionalInterface
+    public interface RetransmitRequester
+    {
+        /**
+         * Requests a range of events
+         *
+         * @param fromSequence the first sequence to request
+         * @param toSequence   the last sequence to request
+         */
+        void requestRetransmit(long fromSequence, long toSequence);
+    }
+}
@@ -19,6 +19,6 @@ package com.aeroncookbook.rfq.admin.cluster;
 /**
  * A message that has been sent to the cluster but has not yet been received by the client.
  */
-public record PendingMessage(long timeoutAt, String correlationId, String messageType)
+public record PendingMessage(long timeoutAt, long correlationId, String messageType)
 {
 }
@@ -21,6 +21,7 @@ import org.jline.reader.LineReader;
 import org.jline.utils.AttributedStyle;
 
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.TimeUnit;
 
@@ -48,19 +49,28 @@ public class PendingMessageManager
      * @param correlationId the correlation id of the message
      * @param messageType  the type of message
      */
-    public void addMessage(final String correlationId, final String messageType)
+    public void addMessage(final long correlationId, final String messageType)
     {
         final long timeoutAt = current.time() + TIMEOUT_MS;
         trackedMessages.add(new PendingMessage(timeoutAt, correlationId, messageType));
     }
 
     /**
-     * Mark a message as received
+     * Mark a message as received. A message sent to several shards is added once per shard, and is only complete
+     * once each has replied.
      * @param correlationId the correlation id of the message
      */
-    public void markMessageAsReceived(final String correlationId)
+    public void markMessageAsReceived(final long correlationId)
     {
-        trackedMessages.removeIf(pendingMessage -> pendingMessage.correlationId().equals(correlationId));
+        final Iterator<PendingMessage> iterator = trackedMessages.iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().correlationId() == correlationId)
+            {
+                iterator.remove();
+                return;
+            }
+        }
     }
 
     /**
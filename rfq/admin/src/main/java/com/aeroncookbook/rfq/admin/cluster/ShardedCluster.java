@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cluster;
+
+import com.aeroncookbook.cluster.rfq.RfqShards;
+import io.aeron.cluster.client.AeronCluster;
+import org.agrona.CloseHelper;
+
+import java.util.function.IntFunction;
+
+/**
+ * Connections to every shard of an RFQ deployment, each shard being a separate cluster owning a range of CUSIPs.
+ * Commands are routed to the shard owning their instrument, or holding their RFQ as found from the RFQ id, while
+ * commands that span instruments are sent to every shard. Each shard's egress goes to the listener given in its
+ * connection context, so broadcasts from all shards are merged as they are polled.
+ * <p>
+ * An unsharded deployment is a single shard, and behaves as a plain cluster connection.
+ */
+public class ShardedCluster implements AutoCloseable
+{
+    private final RfqShards shards;
+    private final AeronCluster[] clusters;
+
+    /**
+     * Connects to every shard
+     *
+     * @param shards          the shard map, which must match the clusters'
+     * @param contextForShard the connection context for a shard id, with its ingress endpoints and egress listener
+     */
+    public ShardedCluster(final RfqShards shards, final IntFunction<AeronCluster.Context> contextForShard)
+    {
+        this.shards = shards;
+        this.clusters = new AeronCluster[shards.shardCount()];
+        try
+        {
+            for (int shardId = 0; shardId < clusters.length; shardId++)
+            {
+                clusters[shardId] = AeronCluster.connect(contextForShard.apply(shardId));
+            }
+        }
+        catch (final RuntimeException ex)
+        {
+            CloseHelper.closeAll(clusters);
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of shards
+     *
+     * @return the number of shards
+     */
+    public int shardCount()
+    {
+        return clusters.length;
+    }
+
+    /**
+     * Gets the shard a command for an instrument is routed to
+     *
+     * @param cusip the cusip of the instrument
+     * @return the shard id
+     */
+    public int shardForCusip(final CharSequence cusip)
+    {
+        return shards.shardForCusip(cusip);
+    }
+
+    /**
+     * Gets the shard a command for an RFQ is routed to
+     *
+     * @param rfqId the RFQ id
+     * @return the shard id
+     */
+    public int shardForRfqId(final int rfqId)
+    {
+        return shards.shardForRfqId(rfqId);
+    }
+
+    /**
+     * Gets the connection to a shard
+     *
+     * @param shardId the shard id
+     * @return the connection
+     */
+    public AeronCluster cluster(final int shardId)
+    {
+        return clusters[shardId];
+    }
+
+    /**
+     * Sends a keep alive to every shard
+     */
+    public void sendKeepAlive()
+    {
+        for (final AeronCluster cluster : clusters)
+        {
+            if (!cluster.isClosed())
+            {
+                cluster.sendKeepAlive();
+            }
+        }
+    }
+
+    /**
+     * Polls the egress of every shard
+     *
+     * @return the number of fragments received
+     */
+    public int pollEgress()
+    {
+        int workCount = 0;
+        for (final AeronCluster cluster : clusters)
+        {
+            if (!cluster.isClosed())
+            {
+                workCount += cluster.pollEgress();
+            }
+        }
+        return workCount;
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(clusters);
+    }
+}
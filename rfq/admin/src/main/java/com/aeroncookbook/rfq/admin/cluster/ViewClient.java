@@ -0,0 +1,170 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cluster;
+
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.ViewConnectRequestEncoder;
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.FragmentAssembler;
+import io.aeron.Subscription;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.client.EgressListener;
+import io.aeron.cluster.codecs.MessageHeaderDecoder;
+import io.aeron.cluster.codecs.SessionMessageHeaderDecoder;
+import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection to a view node, a read only replica of a cluster which serves queries off the consensus path. Replies
+ * carry the same session header as cluster egress and are handed to an egress listener, so they are handled as if
+ * they came from the cluster.
+ */
+public class ViewClient implements AutoCloseable
+{
+    private static final int RESPONSE_STREAM_ID = 3002;
+    private static final int FRAGMENT_LIMIT = 10;
+    private static final long CONNECT_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(10);
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final SessionMessageHeaderDecoder sessionMessageHeaderDecoder = new SessionMessageHeaderDecoder();
+    private final FragmentAssembler fragmentAssembler = new FragmentAssembler(this::onReply);
+    private final IdleStrategy idleStrategy = new SleepingMillisIdleStrategy(1);
+    private final String viewEndpoint;
+    private final EgressListener egressListener;
+    private final Subscription subscription;
+    private final ExclusivePublication publication;
+
+    /**
+     * Constructor, connecting to the view node
+     *
+     * @param aeron          the Aeron client to connect with
+     * @param viewEndpoint   the host:port the view node receives queries on
+     * @param viewStreamId   the stream id the view node receives queries on
+     * @param localHostName  the host replies are received on
+     * @param egressListener the listener to which replies are handed
+     * @throws IllegalStateException if the view node does not connect in time
+     */
+    public ViewClient(
+        final Aeron aeron,
+        final String viewEndpoint,
+        final int viewStreamId,
+        final String localHostName,
+        final EgressListener egressListener)
+    {
+        this.viewEndpoint = viewEndpoint;
+        this.egressListener = egressListener;
+        this.subscription = aeron.addSubscription("aeron:udp?endpoint=" + localHostName + ":0", RESPONSE_STREAM_ID);
+        this.publication = aeron.addExclusivePublication("aeron:udp?endpoint=" + viewEndpoint, viewStreamId);
+        try
+        {
+            connect(System.nanoTime() + CONNECT_TIMEOUT_NS);
+        }
+        catch (final RuntimeException ex)
+        {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Offers a query to the view node
+     *
+     * @param buffer the buffer containing the query
+     * @param offset the offset of the query
+     * @param length the length of the query
+     * @return the publication position, or a negative result as for {@link ExclusivePublication#offer}
+     */
+    public long offer(final DirectBuffer buffer, final int offset, final int length)
+    {
+        return publication.offer(buffer, offset, length);
+    }
+
+    /**
+     * Polls for replies from the view node
+     *
+     * @return the number of fragments received
+     */
+    public int poll()
+    {
+        return subscription.poll(fragmentAssembler, FRAGMENT_LIMIT);
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.quietCloseAll(publication, subscription);
+    }
+
+    private void connect(final long deadlineNs)
+    {
+        String responseChannel;
+        while ((responseChannel = subscription.tryResolveChannelEndpointPort()) == null || !publication.isConnected())
+        {
+            awaitUntil(deadlineNs);
+        }
+
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final ViewConnectRequestEncoder viewConnectRequestEncoder = new ViewConnectRequestEncoder()
+            .wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder())
+            .responseStreamId(RESPONSE_STREAM_ID)
+            .responseChannel(responseChannel);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + viewConnectRequestEncoder.encodedLength();
+        while (publication.offer(buffer, 0, length) < 0)
+        {
+            awaitUntil(deadlineNs);
+        }
+
+        while (!subscription.isConnected())
+        {
+            awaitUntil(deadlineNs);
+        }
+    }
+
+    private void awaitUntil(final long deadlineNs)
+    {
+        if (System.nanoTime() > deadlineNs)
+        {
+            throw new IllegalStateException("Timed out connecting to view node " + viewEndpoint);
+        }
+        idleStrategy.idle();
+    }
+
+    private void onReply(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        messageHeaderDecoder.wrap(buffer, offset);
+        if (messageHeaderDecoder.templateId() != SessionMessageHeaderDecoder.TEMPLATE_ID)
+        {
+            return;
+        }
+
+        sessionMessageHeaderDecoder.wrap(buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH,
+            messageHeaderDecoder.blockLength(), messageHeaderDecoder.version());
+        egressListener.onMessage(
+            sessionMessageHeaderDecoder.clusterSessionId(),
+            sessionMessageHeaderDecoder.timestamp(),
+            buffer,
+            offset + AeronCluster.SESSION_HEADER_LENGTH,
+            length - AeronCluster.SESSION_HEADER_LENGTH,
+            header);
+    }
+}
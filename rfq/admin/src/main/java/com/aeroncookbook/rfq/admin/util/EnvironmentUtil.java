@@ -22,6 +22,7 @@ import java.net.NetworkInterface;
 import java.util.Enumeration;
 
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 
 /**
  * Utility class for cluster connection
@@ -70,6 +71,118 @@ public final class EnvironmentUtil
         return parseInt(responsePort);
     }
 
+    /**
+     * Tries to get the market data channel from the environment variable MARKET_DATA_CHANNEL. If that is not set, it
+     * will try to get it from the system property market.data.channel. If that is not set, it will return an empty
+     * string, and public RFQ events are expected on egress.
+     *
+     * This must match the channel the cluster publishes market data on, for example a multicast address.
+     *
+     * @return the market data channel, or empty if not set
+     */
+    public static String tryGetMarketDataChannelFromEnv()
+    {
+        String marketDataChannel = System.getenv("MARKET_DATA_CHANNEL");
+        if (null == marketDataChannel || marketDataChannel.isEmpty())
+        {
+            marketDataChannel = System.getProperty("market.data.channel", "");
+        }
+        return marketDataChannel;
+    }
+
+    /**
+     * Tries to get the market data stream id from the environment variable MARKET_DATA_STREAM_ID. If that is not set,
+     * it will try to get it from the system property market.data.stream.id. If that is not set, it will return 2001.
+     *
+     * @return the market data stream id
+     */
+    public static int tryGetMarketDataStreamIdFromEnv()
+    {
+        String streamId = System.getenv("MARKET_DATA_STREAM_ID");
+        if (null == streamId || streamId.isEmpty())
+        {
+            streamId = System.getProperty("market.data.stream.id", "2001");
+        }
+        return parseInt(streamId);
+    }
+
+    /**
+     * Tries to get the shard bounds from the environment variable SHARD_BOUNDS. If that is not set, it will try to
+     * get it from the system property shard.bounds. If that is not set, it will return an empty string, for an
+     * unsharded cluster.
+     *
+     * This must match the shard bounds the clusters are started with. Shard i's market data is on the market data
+     * stream id plus i.
+     *
+     * @return the comma separated lowest cusips of shards 1 onwards, or empty if not set
+     */
+    public static String tryGetShardBoundsFromEnv()
+    {
+        String shardBounds = System.getenv("SHARD_BOUNDS");
+        if (null == shardBounds || shardBounds.isEmpty())
+        {
+            shardBounds = System.getProperty("shard.bounds", "");
+        }
+        return shardBounds;
+    }
+
+    /**
+     * Tries to get the shard port stride from the environment variable SHARD_PORT_STRIDE. If that is not set, it
+     * will try to get it from the system property shard.port.stride. If that is not set, it will return 1000.
+     *
+     * Shard i's cluster uses the base port plus i times the stride, and this client's egress for it the response
+     * port plus i.
+     *
+     * @return the shard port stride
+     */
+    public static int tryGetShardPortStrideFromEnv()
+    {
+        String portStride = System.getenv("SHARD_PORT_STRIDE");
+        if (null == portStride || portStride.isEmpty())
+        {
+            portStride = System.getProperty("shard.port.stride", "1000");
+        }
+        return parseInt(portStride);
+    }
+
+    /**
+     * Tries to get the view node endpoints from the environment variable VIEW_ENDPOINTS. If that is not set, it will
+     * try to get it from the system property view.endpoints. If that is not set, it will return an empty string, and
+     * queries are sent to the cluster.
+     *
+     * There is one host:port endpoint per shard, in shard order, each the query port of a view node following that
+     * shard's cluster.
+     *
+     * @return the comma separated view node endpoints, or empty if not set
+     */
+    public static String tryGetViewEndpointsFromEnv()
+    {
+        String viewEndpoints = System.getenv("VIEW_ENDPOINTS");
+        if (null == viewEndpoints || viewEndpoints.isEmpty())
+        {
+            viewEndpoints = System.getProperty("view.endpoints", "");
+        }
+        return viewEndpoints;
+    }
+
+    /**
+     * Tries to get the view node stream id from the environment variable VIEW_STREAM_ID. If that is not set, it will
+     * try to get it from the system property view.stream.id. If that is not set, it will return 3001.
+     *
+     * This must match the view nodes' rfq.view.stream.id.
+     *
+     * @return the view node stream id
+     */
+    public static int tryGetViewStreamIdFromEnv()
+    {
+        String streamId = System.getenv("VIEW_STREAM_ID");
+        if (null == streamId || streamId.isEmpty())
+        {
+            streamId = System.getProperty("view.stream.id", "3001");
+        }
+        return parseInt(streamId);
+    }
+
     /**
      * Tries to get the participant id from the environment variable PARTICIPANT_ID.
      * If that is not set, it will try to get it from the system property participant.id.
@@ -87,6 +200,25 @@ public final class EnvironmentUtil
         return parseInt(responsePort);
     }
 
+    /**
+     * Tries to get the node id for the correlation id generator from the environment variable CORRELATION_NODE_ID.
+     * If that is not set, it will try to get it from the system property correlation.node.id.
+     * If that is not set, it will return 0.
+     *
+     * Correlation ids only need to be unique per client, so this only matters when ids are shared between clients.
+     *
+     * @return the correlation node id
+     */
+    public static long tryGetCorrelationNodeId()
+    {
+        String nodeId = System.getenv("CORRELATION_NODE_ID");
+        if (null == nodeId || nodeId.isEmpty())
+        {
+            nodeId = System.getProperty("correlation.node.id", "0");
+        }
+        return parseLong(nodeId);
+    }
+
     /**
      * Reads DUMB_TERMINAL from the environment variable DUMB_TERMINAL. If that is not set, it will return false
      *
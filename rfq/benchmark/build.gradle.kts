@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+plugins {
+    application
+    checkstyle
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    checkstyle(libs.checkstyle)
+    implementation(libs.agrona)
+    implementation(libs.aeron)
+    implementation(libs.slf4j)
+    implementation(libs.logback)
+    implementation(libs.hdrHistogram)
+    implementation(project(":rfq:cluster"))
+    implementation(project(":rfq:cluster-protocol"))
+    testImplementation(libs.bundles.testing)
+}
+
+application {
+    mainClass.set("com.aeroncookbook.rfq.benchmark.RfqBenchmark")
+}
+
+testing {
+    suites {
+        // Configure the built-in test suite
+        val test by getting(JvmTestSuite::class) {
+            // Use JUnit Jupiter test framework
+            useJUnitJupiter(libs.versions.junitVersion.get())
+        }
+    }
+}
+
+tasks {
+    task("runBenchmark", JavaExec::class) {
+        group = "benchmark"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("com.aeroncookbook.rfq.benchmark.RfqBenchmark")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+        val runDir = file("${buildDir}/benchmark")
+        workingDir = runDir
+        doFirst { runDir.mkdirs() }
+        systemProperties(System.getProperties()
+            .filterKeys { it.toString().startsWith("rfq.bench.") }
+            .mapKeys { it.key.toString() })
+    }
+
+    task("replayLog", JavaExec::class) {
+        group = "benchmark"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("com.aeroncookbook.rfq.benchmark.LogReplay")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import org.agrona.SystemUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for a benchmark run, read from system properties.
+ *
+ * @param clients              the number of synthetic clients, each with its own cluster session
+ * @param workflowsPerSecond   the target rate at which workflows are started, across all clients
+ * @param mix                  the weighted mix of workflows, such as {@code accept=2,counter=1}
+ * @param warmupNs             the time to run before recording
+ * @param durationNs           the time to record for
+ * @param failover             true to kill the leader after recording and measure the recovery
+ * @param failoverNs           the time to keep running after the leader is killed
+ * @param responseTimeoutNs    the time after which an unanswered command abandons its workflow
+ * @param expiryNs             the time after which RFQs left open by a workflow expire
+ * @param expireWorkflowNs     the time after which RFQs of the expire workflow expire
+ * @param maxInFlightPerClient the most workflows a client may have in progress at once
+ * @param batchLength          the most bytes of commands a client sends in one batch, or 0 to send each alone
+ * @param batchWindowNs        the longest a client holds a command back waiting for others to batch with it
+ * @param portBase             the base port of the cluster nodes
+ * @param egressPortBase       the port of the first client's egress, with one port per client
+ * @param resultsFile          the file the results are written to
+ */
+public record BenchmarkConfig(
+    int clients,
+    int workflowsPerSecond,
+    String mix,
+    long warmupNs,
+    long durationNs,
+    boolean failover,
+    long failoverNs,
+    long responseTimeoutNs,
+    long expiryNs,
+    long expireWorkflowNs,
+    int maxInFlightPerClient,
+    int batchLength,
+    long batchWindowNs,
+    int portBase,
+    int egressPortBase,
+    String resultsFile)
+{
+    /**
+     * Prefix of the benchmark system properties
+     */
+    public static final String PROP_PREFIX = "rfq.bench.";
+
+    /**
+     * Reads the settings from system properties, using defaults for any not set
+     *
+     * @return the settings
+     */
+    public static BenchmarkConfig fromSystemProperties()
+    {
+        return new BenchmarkConfig(
+            Integer.getInteger(PROP_PREFIX + "clients", 4),
+            Integer.getInteger(PROP_PREFIX + "rate", 2_000),
+            System.getProperty(PROP_PREFIX + "mix", "create=1,quote=1,counter=1,accept=2,expire=1"),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "warmup", TimeUnit.SECONDS.toNanos(10)),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "duration", TimeUnit.SECONDS.toNanos(30)),
+            Boolean.parseBoolean(System.getProperty(PROP_PREFIX + "failover", "true")),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "failover.duration", TimeUnit.SECONDS.toNanos(20)),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "response.timeout", TimeUnit.SECONDS.toNanos(5)),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "expiry", TimeUnit.SECONDS.toNanos(10)),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "expire.workflow.expiry", TimeUnit.MILLISECONDS.toNanos(500)),
+            Integer.getInteger(PROP_PREFIX + "max.in.flight", 10_000),
+            Integer.getInteger(PROP_PREFIX + "batch.length", 0),
+            SystemUtil.getDurationInNanos(PROP_PREFIX + "batch.window", TimeUnit.MICROSECONDS.toNanos(100)),
+            Integer.getInteger(PROP_PREFIX + "port.base", 9000),
+            Integer.getInteger(PROP_PREFIX + "egress.port.base", 9500),
+            System.getProperty(PROP_PREFIX + "results", "rfq-benchmark-results.json"));
+    }
+}
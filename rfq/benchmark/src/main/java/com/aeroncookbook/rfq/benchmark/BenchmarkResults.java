@@ -0,0 +1,277 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of a benchmark run, merged from every client and written as JSON so that runs can be compared by tooling.
+ * Latencies are in microseconds.
+ */
+public final class BenchmarkResults
+{
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99_9", "p99_99"};
+    private final BenchmarkConfig config;
+    private final Histogram workflowLatency =
+        new Histogram(LoadClient.HIGHEST_TRACKABLE_NS, LoadClient.SIGNIFICANT_DIGITS);
+    private final Histogram[] stepLatency = new Histogram[RfqStep.values().length];
+    private long recordedNs;
+    private long workflowsStarted;
+    private long workflowsCompleted;
+    private long workflowsRefused;
+    private long workflowsTimedOut;
+    private long commandsConfirmed;
+    private long missedStarts;
+    private long offerRetries;
+    private long sessionsLost;
+    private int killedNodeId = InJvmCluster.NO_LEADER;
+    private int newLeaderNodeId = InJvmCluster.NO_LEADER;
+    private long failoverTimeouts;
+    private int clientsRecovered;
+    private long slowestRecoveryNs;
+
+    /**
+     * Constructor
+     *
+     * @param config the settings of the run
+     */
+    public BenchmarkResults(final BenchmarkConfig config)
+    {
+        this.config = config;
+        for (int i = 0; i < stepLatency.length; i++)
+        {
+            stepLatency[i] = new Histogram(LoadClient.HIGHEST_TRACKABLE_NS, LoadClient.SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * Sets the time for which results were recorded
+     *
+     * @param recordedNs the recording time
+     */
+    public void recordedNs(final long recordedNs)
+    {
+        this.recordedNs = recordedNs;
+    }
+
+    /**
+     * Sets the nodes involved in the failover
+     *
+     * @param killedNodeId    the leader which was killed
+     * @param newLeaderNodeId the leader elected after it, or {@link InJvmCluster#NO_LEADER} if none was
+     */
+    public void failover(final int killedNodeId, final int newLeaderNodeId)
+    {
+        this.killedNodeId = killedNodeId;
+        this.newLeaderNodeId = newLeaderNodeId;
+    }
+
+    /**
+     * Merges the results of a client, whose agent must be closed
+     *
+     * @param client the client
+     */
+    public void add(final LoadClient client)
+    {
+        workflowLatency.add(client.workflowLatency());
+        for (final RfqStep step : RfqStep.values())
+        {
+            stepLatency[step.ordinal()].add(client.stepLatency(step));
+        }
+
+        final LoadClient.ClientResults results = client.results();
+        workflowsStarted += results.workflowsStarted;
+        workflowsCompleted += results.workflowsCompleted;
+        workflowsRefused += results.workflowsRefused;
+        workflowsTimedOut += results.workflowsTimedOut;
+        commandsConfirmed += results.commandsConfirmed;
+        missedStarts += results.missedStarts;
+        offerRetries += results.offerRetries;
+        failoverTimeouts += results.failoverTimeouts;
+        if (results.sessionLost)
+        {
+            sessionsLost++;
+        }
+        if (results.failoverRecoveredNs != 0)
+        {
+            clientsRecovered++;
+            slowestRecoveryNs = Math.max(slowestRecoveryNs, results.failoverRecoveredNs);
+        }
+    }
+
+    /**
+     * Writes the results as JSON
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(final Path file) throws IOException
+    {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Prints a summary of the results
+     *
+     * @param out the stream to print to
+     */
+    public void printSummary(final PrintStream out)
+    {
+        final double seconds = recordedNs / (double)TimeUnit.SECONDS.toNanos(1);
+        out.printf(Locale.ROOT, "workflows: %d completed of %d started, %.1f/s; commands %.1f/s%n",
+            workflowsCompleted, workflowsStarted, workflowsCompleted / seconds, commandsConfirmed / seconds);
+        out.printf(Locale.ROOT, "refused %d, timed out %d, missed starts %d, offer retries %d, sessions lost %d%n",
+            workflowsRefused, workflowsTimedOut, missedStarts, offerRetries, sessionsLost);
+        printLatency(out, "workflow", workflowLatency);
+        for (final RfqStep step : RfqStep.values())
+        {
+            printLatency(out, step.name().toLowerCase(Locale.ROOT), stepLatency[step.ordinal()]);
+        }
+        if (config.failover())
+        {
+            out.printf(Locale.ROOT, "failover: killed node %d, new leader %d, %d of %d clients recovered, " +
+                "slowest recovery %d ms, %d workflows timed out%n",
+                killedNodeId, newLeaderNodeId, clientsRecovered, config.clients(),
+                TimeUnit.NANOSECONDS.toMillis(slowestRecoveryNs), failoverTimeouts);
+        }
+    }
+
+    /**
+     * Renders the results as JSON
+     *
+     * @return the JSON document
+     */
+    public String toJson()
+    {
+        final double seconds = recordedNs / (double)TimeUnit.SECONDS.toNanos(1);
+        final StringBuilder json = new StringBuilder(2048);
+        json.append("{\n");
+        json.append("  \"config\": {\n");
+        field(json, 4, "clients", config.clients()).append(",\n");
+        field(json, 4, "targetWorkflowsPerSecond", config.workflowsPerSecond()).append(",\n");
+        indent(json, 4).append("\"mix\": \"").append(config.mix()).append("\",\n");
+        field(json, 4, "warmupMs", TimeUnit.NANOSECONDS.toMillis(config.warmupNs())).append(",\n");
+        field(json, 4, "durationMs", TimeUnit.NANOSECONDS.toMillis(config.durationNs())).append(",\n");
+        field(json, 4, "batchLength", config.batchLength()).append(",\n");
+        field(json, 4, "batchWindowUs", TimeUnit.NANOSECONDS.toMicros(config.batchWindowNs())).append(",\n");
+        field(json, 4, "nodes", InJvmCluster.NODE_COUNT).append('\n');
+        json.append("  },\n");
+
+        json.append("  \"throughput\": {\n");
+        field(json, 4, "recordedMs", TimeUnit.NANOSECONDS.toMillis(recordedNs)).append(",\n");
+        field(json, 4, "workflowsPerSecond", workflowsCompleted / seconds).append(",\n");
+        field(json, 4, "commandsPerSecond", commandsConfirmed / seconds).append(",\n");
+        field(json, 4, "workflowsStarted", workflowsStarted).append(",\n");
+        field(json, 4, "workflowsCompleted", workflowsCompleted).append(",\n");
+        field(json, 4, "workflowsRefused", workflowsRefused).append(",\n");
+        field(json, 4, "workflowsTimedOut", workflowsTimedOut).append(",\n");
+        field(json, 4, "commandsConfirmed", commandsConfirmed).append(",\n");
+        field(json, 4, "missedStarts", missedStarts).append(",\n");
+        field(json, 4, "offerRetries", offerRetries).append(",\n");
+        field(json, 4, "sessionsLost", sessionsLost).append('\n');
+        json.append("  },\n");
+
+        json.append("  \"latencyUs\": {\n");
+        latency(json, "workflow", workflowLatency);
+        for (final RfqStep step : RfqStep.values())
+        {
+            json.append(",\n");
+            latency(json, step.name().toLowerCase(Locale.ROOT), stepLatency[step.ordinal()]);
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"failover\": {\n");
+        indent(json, 4).append("\"enabled\": ").append(config.failover()).append(",\n");
+        field(json, 4, "killedNode", killedNodeId).append(",\n");
+        field(json, 4, "newLeaderNode", newLeaderNodeId).append(",\n");
+        field(json, 4, "clientsRecovered", clientsRecovered).append(",\n");
+        field(json, 4, "recoveryMs", TimeUnit.NANOSECONDS.toMillis(slowestRecoveryNs)).append(",\n");
+        field(json, 4, "workflowsTimedOut", failoverTimeouts).append('\n');
+        json.append("  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static void latency(final StringBuilder json, final String name, final Histogram histogram)
+    {
+        indent(json, 4).append('"').append(name).append("\": {");
+        json.append("\"count\": ").append(histogram.getTotalCount());
+        json.append(", \"mean\": ").append(toMicros(histogram.getMean()));
+        for (int i = 0; i < PERCENTILES.length; i++)
+        {
+            json.append(", \"").append(PERCENTILE_NAMES[i]).append("\": ")
+                .append(toMicros(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        json.append(", \"max\": ").append(toMicros(histogram.getMaxValue()));
+        json.append('}');
+    }
+
+    private static void printLatency(final PrintStream out, final String name, final Histogram histogram)
+    {
+        if (histogram.getTotalCount() == 0)
+        {
+            return;
+        }
+
+        out.printf(Locale.ROOT, "%-8s us: p50 %.1f p90 %.1f p99 %.1f p99.9 %.1f max %.1f (%d)%n",
+            name,
+            toMicros(histogram.getValueAtPercentile(50.0)),
+            toMicros(histogram.getValueAtPercentile(90.0)),
+            toMicros(histogram.getValueAtPercentile(99.0)),
+            toMicros(histogram.getValueAtPercentile(99.9)),
+            toMicros(histogram.getMaxValue()),
+            histogram.getTotalCount());
+    }
+
+    private static double toMicros(final double nanos)
+    {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    private static StringBuilder field(final StringBuilder json, final int indent, final String name, final long value)
+    {
+        return indent(json, indent).append('"').append(name).append("\": ").append(value);
+    }
+
+    private static StringBuilder field(
+        final StringBuilder json,
+        final int indent,
+        final String name,
+        final double value)
+    {
+        final double rounded = Double.isFinite(value) ? Math.round(value * 10.0) / 10.0 : 0.0;
+        return indent(json, indent).append('"').append(name).append("\": ").append(rounded);
+    }
+
+    private static StringBuilder indent(final StringBuilder json, final int indent)
+    {
+        for (int i = 0; i < indent; i++)
+        {
+            json.append(' ');
+        }
+        return json;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import io.aeron.cluster.RecordingLog;
+import io.aeron.logbuffer.FrameDescriptor;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reads a cluster log straight from the segment files of its archive recording, without running an archive. Frames
+ * are read in position order and fragments reassembled into whole messages. Recorded frames are the same as those
+ * in the original log buffers, so padding frames at the end of each term are skipped, and a recording which does not
+ * start at position zero has zeroed space before its first frame.
+ */
+public final class ClusterLogReader
+{
+    private static final String SEGMENT_SUFFIX = ".rec";
+
+    private ClusterLogReader()
+    {
+    }
+
+    /**
+     * Finds the id of the log recording from the recording log in a cluster directory
+     *
+     * @param clusterDir the cluster directory of a node
+     * @return the recording id of the log
+     * @throws IllegalStateException if the recording log has no term entries
+     */
+    public static long logRecordingId(final File clusterDir)
+    {
+        try (RecordingLog recordingLog = new RecordingLog(clusterDir, false))
+        {
+            for (final RecordingLog.Entry entry : recordingLog.entries())
+            {
+                if (entry.type == RecordingLog.ENTRY_TYPE_TERM)
+                {
+                    return entry.recordingId;
+                }
+            }
+        }
+        throw new IllegalStateException("No log recording found in " + clusterDir);
+    }
+
+    /**
+     * Reads every message of a recording into memory
+     *
+     * @param archiveDir  the archive directory holding the recording's segment files
+     * @param recordingId the id of the recording
+     * @return the messages of the recording
+     * @throws IllegalStateException if the archive has no segments for the recording
+     */
+    public static ReplayLog read(final File archiveDir, final long recordingId)
+    {
+        final String prefix = recordingId + "-";
+        final File[] segments = archiveDir.listFiles(
+            (dir, name) -> name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null || segments.length == 0)
+        {
+            throw new IllegalStateException("No segments for recording " + recordingId + " in " + archiveDir);
+        }
+        Arrays.sort(segments, Comparator.comparingLong(ClusterLogReader::segmentBasePosition));
+
+        final ReplayLog log = new ReplayLog();
+        final ExpandableArrayBuffer assembly = new ExpandableArrayBuffer();
+        int assemblyLength = 0;
+        boolean started = false;
+        for (final File segment : segments)
+        {
+            final MappedByteBuffer mappedSegment = IoUtil.mapExistingFile(segment, segment.getName());
+            try
+            {
+                final UnsafeBuffer buffer = new UnsafeBuffer(mappedSegment);
+                int offset = 0;
+                while (offset < buffer.capacity() - DataHeaderFlyweight.HEADER_LENGTH)
+                {
+                    final int frameLength = buffer.getInt(
+                        offset + DataHeaderFlyweight.FRAME_LENGTH_FIELD_OFFSET, ByteOrder.LITTLE_ENDIAN);
+                    if (frameLength <= 0)
+                    {
+                        if (started)
+                        {
+                            break;
+                        }
+                        offset += FrameDescriptor.FRAME_ALIGNMENT;
+                        continue;
+                    }
+                    started = true;
+
+                    final int type = buffer.getShort(
+                        offset + DataHeaderFlyweight.TYPE_FIELD_OFFSET, ByteOrder.LITTLE_ENDIAN) & 0xFFFF;
+                    if (type == DataHeaderFlyweight.HDR_TYPE_DATA)
+                    {
+                        final byte flags = buffer.getByte(offset + DataHeaderFlyweight.FLAGS_FIELD_OFFSET);
+                        final int payloadOffset = offset + DataHeaderFlyweight.HEADER_LENGTH;
+                        final int payloadLength = frameLength - DataHeaderFlyweight.HEADER_LENGTH;
+                        if ((flags & FrameDescriptor.UNFRAGMENTED) == FrameDescriptor.UNFRAGMENTED)
+                        {
+                            log.add(buffer, payloadOffset, payloadLength);
+                        }
+                        else
+                        {
+                            if ((flags & FrameDescriptor.BEGIN_FRAG_FLAG) == FrameDescriptor.BEGIN_FRAG_FLAG)
+                            {
+                                assemblyLength = 0;
+                            }
+                            assembly.putBytes(assemblyLength, buffer, payloadOffset, payloadLength);
+                            assemblyLength += payloadLength;
+                            if ((flags & FrameDescriptor.END_FRAG_FLAG) == FrameDescriptor.END_FRAG_FLAG)
+                            {
+                                log.add(assembly, 0, assemblyLength);
+                            }
+                        }
+                    }
+                    offset += align(frameLength);
+                }
+            }
+            finally
+            {
+                IoUtil.unmap(mappedSegment);
+            }
+        }
+        return log;
+    }
+
+    private static long segmentBasePosition(final File segment)
+    {
+        final String name = segment.getName();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int align(final int frameLength)
+    {
+        return (frameLength + FrameDescriptor.FRAME_ALIGNMENT - 1) & -FrameDescriptor.FRAME_ALIGNMENT;
+    }
+}
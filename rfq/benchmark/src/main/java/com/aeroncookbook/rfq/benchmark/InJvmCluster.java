@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import com.aeroncookbook.rfq.infra.AppClusteredService;
+import io.aeron.cluster.ClusteredMediaDriver;
+import io.aeron.cluster.service.Cluster;
+import io.aeron.cluster.service.ClusteredServiceContainer;
+import io.aeron.samples.cluster.ClusterConfig;
+import org.agrona.CloseHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cluster of RFQ nodes running in this JVM, each with its own media driver, archive, consensus module and
+ * clustered service, talking over loopback UDP. Nodes start from empty directories on every launch.
+ */
+public final class InJvmCluster implements AutoCloseable
+{
+    /**
+     * The number of nodes in the cluster
+     */
+    public static final int NODE_COUNT = 3;
+
+    /**
+     * Value returned when no node is leader
+     */
+    public static final int NO_LEADER = -1;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InJvmCluster.class);
+    private static final String HOSTNAME = "localhost";
+    private static final long LEADER_HEARTBEAT_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(3);
+    private final List<String> hostnames = Collections.nCopies(NODE_COUNT, HOSTNAME);
+    private final int portBase;
+    private final ClusterConfig[] configs = new ClusterConfig[NODE_COUNT];
+    private final ClusteredMediaDriver[] drivers = new ClusteredMediaDriver[NODE_COUNT];
+    private final ClusteredServiceContainer[] containers = new ClusteredServiceContainer[NODE_COUNT];
+
+    /**
+     * Constructor
+     *
+     * @param portBase the base port from which each node's ports are allocated
+     */
+    public InJvmCluster(final int portBase)
+    {
+        this.portBase = portBase;
+    }
+
+    /**
+     * Launches every node
+     */
+    public void launch()
+    {
+        for (int nodeId = 0; nodeId < NODE_COUNT; nodeId++)
+        {
+            launchNode(nodeId);
+        }
+    }
+
+    /**
+     * Gets the ingress endpoints for clients of the cluster
+     *
+     * @return the ingress endpoints
+     */
+    public String ingressEndpoints()
+    {
+        return ClusterConfig.ingressEndpoints(hostnames, portBase, ClusterConfig.CLIENT_FACING_PORT_OFFSET);
+    }
+
+    /**
+     * Finds the node which is currently leader, from the role counter of each running node
+     *
+     * @return the leader node id, or {@link #NO_LEADER} if there is none
+     */
+    public int leaderNodeId()
+    {
+        for (int nodeId = 0; nodeId < NODE_COUNT; nodeId++)
+        {
+            if (drivers[nodeId] != null &&
+                configs[nodeId].consensusModuleContext().clusterNodeRoleCounter().get() == Cluster.Role.LEADER.code())
+            {
+                return nodeId;
+            }
+        }
+        return NO_LEADER;
+    }
+
+    /**
+     * Stops a node abruptly, as if its process had died
+     *
+     * @param nodeId the node to stop
+     */
+    public void killNode(final int nodeId)
+    {
+        LOGGER.info("Killing node {}", nodeId);
+        CloseHelper.closeAll(containers[nodeId], drivers[nodeId]);
+        containers[nodeId] = null;
+        drivers[nodeId] = null;
+    }
+
+    @Override
+    public void close()
+    {
+        for (int nodeId = 0; nodeId < NODE_COUNT; nodeId++)
+        {
+            CloseHelper.closeAll(containers[nodeId], drivers[nodeId]);
+        }
+    }
+
+    private void launchNode(final int nodeId)
+    {
+        final ClusterConfig clusterConfig =
+            ClusterConfig.create(nodeId, hostnames, hostnames, portBase, new AppClusteredService());
+        clusterConfig.consensusModuleContext().ingressChannel("aeron:udp");
+        clusterConfig.consensusModuleContext().leaderHeartbeatTimeoutNs(LEADER_HEARTBEAT_TIMEOUT_NS);
+        clusterConfig.consensusModuleContext().deleteDirOnStart(true);
+        clusterConfig.archiveContext().deleteArchiveOnStart(true);
+        clusterConfig.mediaDriverContext().dirDeleteOnStart(true);
+        clusterConfig.errorHandler(throwable -> LOGGER.error("Node " + nodeId + " error", throwable));
+
+        configs[nodeId] = clusterConfig;
+        drivers[nodeId] = ClusteredMediaDriver.launch(
+            clusterConfig.mediaDriverContext(),
+            clusterConfig.archiveContext(),
+            clusterConfig.consensusModuleContext());
+        containers[nodeId] = ClusteredServiceContainer.launch(clusterConfig.clusteredServiceContext());
+        LOGGER.info("Started node {} in {}", nodeId, clusterConfig.consensusModuleContext().clusterDir());
+    }
+}
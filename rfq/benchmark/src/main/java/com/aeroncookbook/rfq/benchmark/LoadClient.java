@@ -0,0 +1,603 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import com.aeroncookbook.cluster.rfq.CommandBatcher;
+import com.aeroncookbook.cluster.rfq.EgressBatchReader;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.client.EgressListener;
+import io.aeron.logbuffer.Header;
+import org.HdrHistogram.Histogram;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentTerminationException;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A synthetic client with its own cluster session, starting workflows at a fixed rate regardless of how quickly the
+ * cluster responds. Latency is measured from when each workflow was due to start, so time spent waiting behind a
+ * slow cluster is included rather than hidden. Each step of a workflow is sent as soon as the previous one is
+ * confirmed; a command which cannot be offered is retried on later duty cycles, and one left unconfirmed for longer
+ * than the response timeout abandons its workflow.
+ * <p>
+ * With batching on, commands are collected by a {@link CommandBatcher} and sent as command batches. A command counts
+ * as sent once it is in a batch, and the batch is offered on later duty cycles until the cluster takes it.
+ * <p>
+ * Results are only updated on the client's own thread, and must be read after the agent has been closed.
+ */
+public final class LoadClient implements Agent, EgressListener
+{
+    /**
+     * User which creates, counters and cancels RFQs, and accepts quotes
+     */
+    public static final int REQUESTER_USER_ID = 500;
+
+    /**
+     * User which quotes RFQs and accepts counters
+     */
+    public static final int RESPONDER_USER_ID = 501;
+
+    /**
+     * Cusip of the instrument RFQs are created for
+     */
+    public static final String CUSIP = "037833100";
+
+    /**
+     * Highest latency recorded; longer latencies are recorded as this value
+     */
+    public static final long HIGHEST_TRACKABLE_NS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Significant digits of the latency histograms
+     */
+    public static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final long QUANTITY = 100;
+    private static final long QUOTE_PRICE = 100;
+    private static final long COUNTER_PRICE = 99;
+    private static final long KEEP_ALIVE_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final long TIMEOUT_CHECK_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int BUFFER_LENGTH = 256;
+    private final int clientIndex;
+    private final BenchmarkConfig config;
+    private final WorkflowMix mix;
+    private final AeronCluster.Context clusterContext;
+    private final NanoClock nanoClock;
+    private final EpochClock epochClock;
+    private final SplittableRandom random;
+    private final long intervalNs;
+    private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(BUFFER_LENGTH));
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final EgressBatchReader egressBatchReader = new EgressBatchReader();
+    private final EgressBatchReader.MessageHandler egressMessageHandler = this::onEgressMessage;
+    private final CreateRfqCommandEncoder createRfqCommandEncoder = new CreateRfqCommandEncoder();
+    private final QuoteRfqCommandEncoder quoteRfqCommandEncoder = new QuoteRfqCommandEncoder();
+    private final CounterRfqCommandEncoder counterRfqCommandEncoder = new CounterRfqCommandEncoder();
+    private final AcceptRfqCommandEncoder acceptRfqCommandEncoder = new AcceptRfqCommandEncoder();
+    private final CancelRfqCommandEncoder cancelRfqCommandEncoder = new CancelRfqCommandEncoder();
+    private final CreateRfqConfirmEventDecoder createRfqConfirmDecoder = new CreateRfqConfirmEventDecoder();
+    private final QuoteRfqConfirmEventDecoder quoteRfqConfirmDecoder = new QuoteRfqConfirmEventDecoder();
+    private final CounterRfqConfirmEventDecoder counterRfqConfirmDecoder = new CounterRfqConfirmEventDecoder();
+    private final AcceptRfqConfirmEventDecoder acceptRfqConfirmDecoder = new AcceptRfqConfirmEventDecoder();
+    private final CancelRfqConfirmEventDecoder cancelRfqConfirmDecoder = new CancelRfqConfirmEventDecoder();
+    private final Long2ObjectHashMap<WorkflowRun> awaitingConfirm = new Long2ObjectHashMap<>();
+    private final ArrayDeque<WorkflowRun> unsent = new ArrayDeque<>();
+    private final ArrayDeque<WorkflowRun> pool = new ArrayDeque<>();
+    private final Histogram workflowLatency = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+    private final Histogram[] stepLatency = new Histogram[RfqStep.values().length];
+    private final ClientResults results = new ClientResults();
+    private final CommandBatcher batcher;
+    private volatile boolean recording;
+    private volatile long failoverStartNs;
+    private AeronCluster aeronCluster;
+    private long nextCorrelation;
+    private long nextStartNs;
+    private long nextTimeoutCheckNs;
+    private long lastSendNs;
+
+    /**
+     * Constructor
+     *
+     * @param clientIndex    the index of this client, from zero
+     * @param config         the benchmark settings
+     * @param mix            the mix of workflows to run
+     * @param clusterContext the context used to connect to the cluster, with this client as the egress listener
+     * @param nanoClock      the clock latencies are measured with
+     * @param epochClock     the clock RFQ expiry times are set from
+     */
+    public LoadClient(
+        final int clientIndex,
+        final BenchmarkConfig config,
+        final WorkflowMix mix,
+        final AeronCluster.Context clusterContext,
+        final NanoClock nanoClock,
+        final EpochClock epochClock)
+    {
+        this.clientIndex = clientIndex;
+        this.config = config;
+        this.mix = mix;
+        this.clusterContext = clusterContext.egressListener(this);
+        this.nanoClock = nanoClock;
+        this.epochClock = epochClock;
+        this.random = new SplittableRandom(clientIndex);
+        this.intervalNs = TimeUnit.SECONDS.toNanos(config.clients()) / config.workflowsPerSecond();
+        this.batcher = config.batchLength() > 0 ?
+            new CommandBatcher(config.batchLength(), config.batchWindowNs(), this::offerToCluster) : null;
+        for (int i = 0; i < stepLatency.length; i++)
+        {
+            stepLatency[i] = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * Starts recording latencies and counts for workflows started from now on
+     */
+    public void startRecording()
+    {
+        recording = true;
+    }
+
+    /**
+     * Stops recording for workflows started from now on; workflows already recording carry on until they end
+     */
+    public void stopRecording()
+    {
+        recording = false;
+    }
+
+    /**
+     * Marks the time the leader was killed, from which recovery is measured
+     *
+     * @param nowNs the time the leader was killed
+     */
+    public void startFailover(final long nowNs)
+    {
+        failoverStartNs = nowNs;
+    }
+
+    /**
+     * Gets the latency of complete recorded workflows
+     *
+     * @return the histogram, to be read once the agent is closed
+     */
+    public Histogram workflowLatency()
+    {
+        return workflowLatency;
+    }
+
+    /**
+     * Gets the latency of recorded commands of a step, from when the command was due to be sent until confirmed
+     *
+     * @param step the step
+     * @return the histogram, to be read once the agent is closed
+     */
+    public Histogram stepLatency(final RfqStep step)
+    {
+        return stepLatency[step.ordinal()];
+    }
+
+    /**
+     * Gets the counts of this client
+     *
+     * @return the results, to be read once the agent is closed
+     */
+    public ClientResults results()
+    {
+        return results;
+    }
+
+    @Override
+    public void onStart()
+    {
+        aeronCluster = AeronCluster.connect(clusterContext);
+        final long nowNs = nanoClock.nanoTime();
+        nextStartNs = nowNs;
+        nextTimeoutCheckNs = nowNs + TIMEOUT_CHECK_INTERVAL_NS;
+        lastSendNs = nowNs;
+    }
+
+    @Override
+    public int doWork()
+    {
+        if (aeronCluster.isClosed())
+        {
+            results.sessionLost = true;
+            throw new AgentTerminationException("Cluster session closed for client " + clientIndex);
+        }
+
+        int workCount = aeronCluster.pollEgress();
+        final long nowNs = nanoClock.nanoTime();
+
+        while (!unsent.isEmpty() && trySend(unsent.peekFirst(), nowNs))
+        {
+            unsent.pollFirst();
+            workCount++;
+        }
+
+        if (nowNs - nextStartNs > config.responseTimeoutNs())
+        {
+            final long skipped = (nowNs - nextStartNs) / intervalNs;
+            if (recording)
+            {
+                results.missedStarts += skipped;
+            }
+            nextStartNs += skipped * intervalNs;
+        }
+
+        while (nextStartNs <= nowNs)
+        {
+            startWorkflow(nextStartNs, nowNs);
+            nextStartNs += intervalNs;
+            workCount++;
+        }
+
+        if (batcher != null)
+        {
+            workCount += batcher.poll(nowNs);
+        }
+
+        if (nowNs >= nextTimeoutCheckNs)
+        {
+            nextTimeoutCheckNs = nowNs + TIMEOUT_CHECK_INTERVAL_NS;
+            workCount += abandonTimedOut(nowNs);
+        }
+
+        if (nowNs - lastSendNs > KEEP_ALIVE_INTERVAL_NS && aeronCluster.sendKeepAlive())
+        {
+            lastSendNs = nowNs;
+        }
+
+        return workCount;
+    }
+
+    @Override
+    public void onClose()
+    {
+        CloseHelper.close(aeronCluster);
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "rfq-load-client-" + clientIndex;
+    }
+
+    @Override
+    public void onMessage(
+        final long clusterSessionId,
+        final long timestamp,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final Header header)
+    {
+        egressBatchReader.read(buffer, offset, length, egressMessageHandler);
+    }
+
+    private void onEgressMessage(final DirectBuffer buffer, final int offset, final int length)
+    {
+        headerDecoder.wrap(buffer, offset);
+        switch (headerDecoder.templateId())
+        {
+            case CreateRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                createRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                onConfirm(createRfqConfirmDecoder.correlation(), createRfqConfirmDecoder.rfqId(),
+                    createRfqConfirmDecoder.result() == CreateRfqResult.SUCCESS);
+            }
+            case QuoteRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                quoteRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                onConfirm(quoteRfqConfirmDecoder.correlation(), quoteRfqConfirmDecoder.rfqId(),
+                    quoteRfqConfirmDecoder.result() == QuoteRfqResult.SUCCESS);
+            }
+            case CounterRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                counterRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                onConfirm(counterRfqConfirmDecoder.correlation(), counterRfqConfirmDecoder.rfqId(),
+                    counterRfqConfirmDecoder.result() == CounterRfqResult.SUCCESS);
+            }
+            case AcceptRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                acceptRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                onConfirm(acceptRfqConfirmDecoder.correlation(), acceptRfqConfirmDecoder.rfqId(),
+                    acceptRfqConfirmDecoder.result() == AcceptRfqResult.SUCCESS);
+            }
+            case CancelRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                cancelRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                onConfirm(cancelRfqConfirmDecoder.correlation(), cancelRfqConfirmDecoder.rfqId(),
+                    cancelRfqConfirmDecoder.result() == CancelRfqResult.SUCCESS);
+            }
+            default ->
+            {
+                // RFQ events broadcast to every session are part of the load but need no response
+            }
+        }
+    }
+
+    private void startWorkflow(final long dueNs, final long nowNs)
+    {
+        final boolean recorded = recording;
+        if (awaitingConfirm.size() + unsent.size() >= config.maxInFlightPerClient())
+        {
+            if (recorded)
+            {
+                results.missedStarts++;
+            }
+            return;
+        }
+
+        final WorkflowRun run = pool.isEmpty() ? new WorkflowRun() : pool.pollFirst();
+        run.workflow = mix.next(random);
+        run.stepIndex = 0;
+        run.rfqId = 0;
+        run.startNs = dueNs;
+        run.stepDueNs = dueNs;
+        run.stepSentNs = 0;
+        run.correlation = nextCorrelation++;
+        run.recorded = recorded;
+        if (recorded)
+        {
+            results.workflowsStarted++;
+        }
+        send(run, nowNs);
+    }
+
+    private void onConfirm(final long correlation, final int rfqId, final boolean success)
+    {
+        final WorkflowRun run = awaitingConfirm.remove(correlation);
+        if (run == null)
+        {
+            return;
+        }
+
+        final long nowNs = nanoClock.nanoTime();
+        final RfqStep step = run.workflow.step(run.stepIndex);
+        if (run.recorded)
+        {
+            results.commandsConfirmed++;
+            stepLatency[step.ordinal()].recordValue(Math.min(nowNs - run.stepDueNs, HIGHEST_TRACKABLE_NS));
+        }
+
+        if (!success)
+        {
+            if (run.recorded)
+            {
+                results.workflowsRefused++;
+            }
+            pool.addLast(run);
+            return;
+        }
+
+        final long failoverNs = failoverStartNs;
+        if (failoverNs != 0 && results.failoverRecoveredNs == 0 && run.stepSentNs >= failoverNs)
+        {
+            results.failoverRecoveredNs = nowNs - failoverNs;
+        }
+
+        if (step == RfqStep.CREATE)
+        {
+            run.rfqId = rfqId;
+        }
+
+        if (++run.stepIndex == run.workflow.stepCount())
+        {
+            if (run.recorded)
+            {
+                results.workflowsCompleted++;
+                workflowLatency.recordValue(Math.min(nowNs - run.startNs, HIGHEST_TRACKABLE_NS));
+            }
+            pool.addLast(run);
+            return;
+        }
+
+        run.stepDueNs = nowNs;
+        run.stepSentNs = 0;
+        run.correlation = nextCorrelation++;
+        send(run, nowNs);
+    }
+
+    private void send(final WorkflowRun run, final long nowNs)
+    {
+        if (!unsent.isEmpty() || !trySend(run, nowNs))
+        {
+            unsent.addLast(run);
+        }
+    }
+
+    private boolean trySend(final WorkflowRun run, final long nowNs)
+    {
+        final int length = encode(run);
+        final boolean sent = batcher != null ?
+            batcher.offer(buffer, 0, length, nowNs) : offerToCluster(buffer, 0, length);
+        if (!sent)
+        {
+            if (run.recorded)
+            {
+                results.offerRetries++;
+            }
+            return false;
+        }
+
+        run.stepSentNs = nowNs;
+        lastSendNs = nowNs;
+        awaitingConfirm.put(run.correlation, run);
+        return true;
+    }
+
+    private boolean offerToCluster(final DirectBuffer buffer, final int offset, final int length)
+    {
+        return aeronCluster.offer(buffer, offset, length) >= 0;
+    }
+
+    private int encode(final WorkflowRun run)
+    {
+        final RfqStep step = run.workflow.step(run.stepIndex);
+        switch (step)
+        {
+            case CREATE ->
+            {
+                final long expiryNs = run.workflow == Workflow.EXPIRE ? config.expireWorkflowNs() : config.expiryNs();
+                createRfqCommandEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .correlation(run.correlation)
+                    .expireTimeMs(epochClock.time() + TimeUnit.NANOSECONDS.toMillis(expiryNs))
+                    .quantity(QUANTITY)
+                    .requesterSide(Side.BUY)
+                    .cusip(CUSIP)
+                    .requesterUserId(REQUESTER_USER_ID);
+                return MessageHeaderEncoder.ENCODED_LENGTH + createRfqCommandEncoder.encodedLength();
+            }
+            case QUOTE ->
+            {
+                quoteRfqCommandEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .correlation(run.correlation)
+                    .rfqId(run.rfqId)
+                    .responderUserId(RESPONDER_USER_ID)
+                    .price(QUOTE_PRICE);
+                return MessageHeaderEncoder.ENCODED_LENGTH + quoteRfqCommandEncoder.encodedLength();
+            }
+            case COUNTER ->
+            {
+                counterRfqCommandEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .correlation(run.correlation)
+                    .rfqId(run.rfqId)
+                    .counterUserId(REQUESTER_USER_ID)
+                    .price(COUNTER_PRICE);
+                return MessageHeaderEncoder.ENCODED_LENGTH + counterRfqCommandEncoder.encodedLength();
+            }
+            case ACCEPT ->
+            {
+                final boolean countered = run.workflow.step(run.stepIndex - 1) == RfqStep.COUNTER;
+                acceptRfqCommandEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .correlation(run.correlation)
+                    .rfqId(run.rfqId)
+                    .acceptUserId(countered ? RESPONDER_USER_ID : REQUESTER_USER_ID);
+                return MessageHeaderEncoder.ENCODED_LENGTH + acceptRfqCommandEncoder.encodedLength();
+            }
+            case CANCEL ->
+            {
+                cancelRfqCommandEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .correlation(run.correlation)
+                    .rfqId(run.rfqId)
+                    .cancelUserId(REQUESTER_USER_ID);
+                return MessageHeaderEncoder.ENCODED_LENGTH + cancelRfqCommandEncoder.encodedLength();
+            }
+            default -> throw new IllegalStateException("Unknown step " + step);
+        }
+    }
+
+    private int abandonTimedOut(final long nowNs)
+    {
+        int abandoned = 0;
+        final Iterator<WorkflowRun> awaiting = awaitingConfirm.values().iterator();
+        while (awaiting.hasNext())
+        {
+            final WorkflowRun run = awaiting.next();
+            if (nowNs - run.stepDueNs > config.responseTimeoutNs())
+            {
+                awaiting.remove();
+                abandon(run);
+                abandoned++;
+            }
+        }
+
+        final Iterator<WorkflowRun> waiting = unsent.iterator();
+        while (waiting.hasNext())
+        {
+            final WorkflowRun run = waiting.next();
+            if (nowNs - run.stepDueNs > config.responseTimeoutNs())
+            {
+                waiting.remove();
+                abandon(run);
+                abandoned++;
+            }
+        }
+        return abandoned;
+    }
+
+    private void abandon(final WorkflowRun run)
+    {
+        if (run.recorded)
+        {
+            results.workflowsTimedOut++;
+        }
+        if (failoverStartNs != 0)
+        {
+            results.failoverTimeouts++;
+        }
+        pool.addLast(run);
+    }
+
+    /**
+     * Counts kept by a client, read once its agent is closed
+     */
+    public static final class ClientResults
+    {
+        long workflowsStarted;
+        long workflowsCompleted;
+        long workflowsRefused;
+        long workflowsTimedOut;
+        long commandsConfirmed;
+        long missedStarts;
+        long offerRetries;
+        long failoverTimeouts;
+        long failoverRecoveredNs;
+        boolean sessionLost;
+    }
+
+    private static final class WorkflowRun
+    {
+        Workflow workflow;
+        int stepIndex;
+        int rfqId;
+        long startNs;
+        long stepDueNs;
+        long stepSentNs;
+        long correlation;
+        boolean recorded;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import com.aeroncookbook.rfq.infra.ServiceCounters;
+import io.aeron.Aeron;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.HdrHistogram.Histogram;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays the recorded log of a cluster node into the RFQ service offline, with no consensus module, archive or
+ * network, to profile the service alone. The log is read from the node's archive into memory once, then replayed
+ * into a fresh service for each iteration, the first being a warmup when more than one is run. Each iteration
+ * reports messages per second, bytes allocated per message and the egress the service produced; the same log always
+ * produces the same egress, so a change in it means the service's behaviour changed. Handling time is reported by
+ * command across the measured iterations.
+ * <p>
+ * The replay starts from the beginning of the recording and does not load a snapshot, so the recording must hold
+ * the full history, as it does for a cluster which has not yet taken a snapshot and truncated its log.
+ * <p>
+ * Usage: {@code LogReplay <cluster dir> <archive dir> [iterations]}
+ */
+public final class LogReplay
+{
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private LogReplay()
+    {
+    }
+
+    /**
+     * Entry point
+     *
+     * @param args the cluster directory and archive directory of a node, and optionally the number of iterations
+     * @throws IOException if the working directory cannot be created
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: LogReplay <cluster dir> <archive dir> [iterations]");
+            System.exit(1);
+        }
+        final File clusterDir = new File(args[0]);
+        final File archiveDir = new File(args[1]);
+        final int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+
+        final long recordingId = ClusterLogReader.logRecordingId(clusterDir);
+        final ReplayLog log = ClusterLogReader.read(archiveDir, recordingId);
+        System.out.printf(Locale.ROOT, "recording %d: %d messages, %d bytes%n", recordingId, log.size(), log.length());
+
+        final File workDir = Files.createTempDirectory("rfq-replay").toFile();
+        final Int2ObjectHashMap<Histogram> timings = new Int2ObjectHashMap<>();
+        try (
+            MediaDriver driver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+                .threadingMode(ThreadingMode.SHARED)
+                .dirDeleteOnStart(true)
+                .dirDeleteOnShutdown(true));
+            Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(driver.aeronDirectoryName())))
+        {
+            for (int i = 0; i < iterations; i++)
+            {
+                final boolean warmup = iterations > 1 && i == 0;
+                final Int2ObjectHashMap<Histogram> iterationTimings = warmup ? new Int2ObjectHashMap<>() : timings;
+                final LogReplayer.Result result =
+                    new LogReplayer(aeron, new File(workDir, "iteration-" + i), iterationTimings).replay(log);
+                printResult(System.out, warmup ? "warmup" : "iteration " + i, result);
+            }
+        }
+        printTimings(System.out, timings);
+        System.out.println("service output written to " + workDir);
+    }
+
+    private static void printResult(final PrintStream out, final String name, final LogReplayer.Result result)
+    {
+        out.printf(Locale.ROOT, "%-12s %d msgs in %.1f ms, %.0f msgs/s, %.1f bytes allocated/msg, " +
+            "egress %d msgs %d bytes%n",
+            name,
+            result.messages(),
+            result.elapsedNs() / NANOS_PER_MICRO / NANOS_PER_MICRO,
+            result.messagesPerSecond(),
+            result.bytesPerMessage(),
+            result.egressMessages(),
+            result.egressBytes());
+    }
+
+    private static void printTimings(final PrintStream out, final Int2ObjectHashMap<Histogram> timings)
+    {
+        final int[] keys = timings.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(keys);
+        for (final int key : keys)
+        {
+            final Histogram histogram = timings.get(key);
+            out.printf(Locale.ROOT, "%-28s us: p50 %.2f p99 %.2f p99.9 %.2f max %.2f mean %.2f (%d)%n",
+                keyName(key),
+                histogram.getValueAtPercentile(50) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO,
+                histogram.getMaxValue() / NANOS_PER_MICRO,
+                histogram.getMean() / NANOS_PER_MICRO,
+                histogram.getTotalCount());
+        }
+    }
+
+    private static String keyName(final int key)
+    {
+        return switch (key)
+        {
+            case LogReplayer.TIMER_EVENT_KEY -> "TimerEvent";
+            case LogReplayer.UNKNOWN_TEMPLATE_KEY -> "unknown";
+            default -> ServiceCounters.commandName(key);
+        };
+    }
+}
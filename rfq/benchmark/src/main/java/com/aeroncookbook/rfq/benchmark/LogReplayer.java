@@ -0,0 +1,226 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import com.aeroncookbook.rfq.infra.AppClusteredService;
+import com.aeroncookbook.rfq.infra.LogCluster;
+import io.aeron.Aeron;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.codecs.MessageHeaderDecoder;
+import io.aeron.cluster.codecs.SessionCloseEventDecoder;
+import io.aeron.cluster.codecs.SessionMessageHeaderDecoder;
+import io.aeron.cluster.codecs.SessionOpenEventDecoder;
+import io.aeron.cluster.codecs.TimerEventDecoder;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.cluster.service.Cluster;
+import org.HdrHistogram.Histogram;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a log into a fresh RFQ service once, as fast as the service handles it, timing each session message by
+ * the template id of the command it carries and each timer event. Session open and close events are applied so the
+ * service sees the same sessions as it did live; other cluster events, such as leadership changes, are skipped.
+ */
+final class LogReplayer implements ReplayLog.MessageConsumer
+{
+    /**
+     * Key under which timer events are timed, outside the range of template ids
+     */
+    static final int TIMER_EVENT_KEY = -1;
+
+    /**
+     * Key under which session messages too short to carry a command are timed
+     */
+    static final int UNKNOWN_TEMPLATE_KEY = -2;
+
+    private static final long HIGHEST_TRACKABLE_NS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final SessionMessageHeaderDecoder sessionMessageHeaderDecoder = new SessionMessageHeaderDecoder();
+    private final TimerEventDecoder timerEventDecoder = new TimerEventDecoder();
+    private final SessionOpenEventDecoder sessionOpenEventDecoder = new SessionOpenEventDecoder();
+    private final SessionCloseEventDecoder sessionCloseEventDecoder = new SessionCloseEventDecoder();
+    private final com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder commandHeaderDecoder =
+        new com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder();
+    private final Int2ObjectHashMap<Histogram> timings;
+    private final AppClusteredService service = new AppClusteredService();
+    private final LogCluster replayCluster;
+    private long messages;
+
+    /**
+     * Constructor
+     *
+     * @param aeron      the Aeron client for the service's counters and publications
+     * @param clusterDir the directory the service writes its journal and latency log to
+     * @param timings    histograms of handling time in nanoseconds by template id, added to as the log is replayed
+     */
+    LogReplayer(final Aeron aeron, final File clusterDir, final Int2ObjectHashMap<Histogram> timings)
+    {
+        this.replayCluster = new LogCluster(aeron, clusterDir, Cluster.Role.LEADER, true);
+        this.timings = timings;
+    }
+
+    /**
+     * Replays the whole log then terminates the service
+     *
+     * @param log the log to replay
+     * @return the outcome of the replay
+     */
+    Result replay(final ReplayLog log)
+    {
+        final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        service.onStart(replayCluster.cluster(), null);
+        try
+        {
+            final long startAllocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+            final long startNs = System.nanoTime();
+            log.forEach(this);
+            final long elapsedNs = System.nanoTime() - startNs;
+            final long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+            return new Result(messages, elapsedNs, allocatedBytes,
+                replayCluster.egressMessages(), replayCluster.egressBytes());
+        }
+        finally
+        {
+            service.onTerminate(replayCluster.cluster());
+        }
+    }
+
+    @Override
+    public void onMessage(final DirectBuffer buffer, final int offset, final int length)
+    {
+        messageHeaderDecoder.wrap(buffer, offset);
+        final int bodyOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH;
+        final int blockLength = messageHeaderDecoder.blockLength();
+        final int version = messageHeaderDecoder.version();
+        switch (messageHeaderDecoder.templateId())
+        {
+            case SessionMessageHeaderDecoder.TEMPLATE_ID ->
+            {
+                sessionMessageHeaderDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                onSessionMessage(sessionMessageHeaderDecoder.clusterSessionId(),
+                    sessionMessageHeaderDecoder.timestamp(), buffer, offset, length);
+            }
+            case TimerEventDecoder.TEMPLATE_ID ->
+            {
+                timerEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = timerEventDecoder.timestamp();
+                replayCluster.time(timestamp);
+                final long startNs = System.nanoTime();
+                service.onTimerEvent(timerEventDecoder.correlationId(), timestamp);
+                record(TIMER_EVENT_KEY, System.nanoTime() - startNs);
+            }
+            case SessionOpenEventDecoder.TEMPLATE_ID ->
+            {
+                sessionOpenEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = sessionOpenEventDecoder.timestamp();
+                replayCluster.time(timestamp);
+                service.onSessionOpen(replayCluster.openSession(sessionOpenEventDecoder.clusterSessionId()), timestamp);
+            }
+            case SessionCloseEventDecoder.TEMPLATE_ID ->
+            {
+                sessionCloseEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = sessionCloseEventDecoder.timestamp();
+                final ClientSession session = replayCluster.closeSession(sessionCloseEventDecoder.clusterSessionId());
+                if (session != null)
+                {
+                    replayCluster.time(timestamp);
+                    service.onSessionClose(session, timestamp, sessionCloseEventDecoder.closeReason());
+                }
+            }
+            default ->
+            {
+            }
+        }
+    }
+
+    private void onSessionMessage(
+        final long sessionId,
+        final long timestamp,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        final int payloadOffset = offset + AeronCluster.SESSION_HEADER_LENGTH;
+        final int payloadLength = length - AeronCluster.SESSION_HEADER_LENGTH;
+        final int templateId;
+        if (payloadLength >= com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder.ENCODED_LENGTH)
+        {
+            templateId = commandHeaderDecoder.wrap(buffer, payloadOffset).templateId();
+        }
+        else
+        {
+            templateId = UNKNOWN_TEMPLATE_KEY;
+        }
+
+        final ClientSession session = replayCluster.openSession(sessionId);
+        replayCluster.time(timestamp);
+        final long startNs = System.nanoTime();
+        service.onSessionMessage(session, timestamp, buffer, payloadOffset, payloadLength, null);
+        record(templateId, System.nanoTime() - startNs);
+    }
+
+    private void record(final int key, final long durationNs)
+    {
+        Histogram histogram = timings.get(key);
+        if (histogram == null)
+        {
+            histogram = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+            timings.put(key, histogram);
+        }
+        histogram.recordValue(Math.min(durationNs, HIGHEST_TRACKABLE_NS));
+        messages++;
+    }
+
+    /**
+     * Outcome of one replay of a log
+     *
+     * @param messages       the number of session messages and timer events handled
+     * @param elapsedNs      the time taken to replay the log
+     * @param allocatedBytes the bytes allocated by the replaying thread
+     * @param egressMessages the number of egress messages the service sent
+     * @param egressBytes    the number of egress bytes the service sent
+     */
+    record Result(long messages, long elapsedNs, long allocatedBytes, long egressMessages, long egressBytes)
+    {
+        /**
+         * Gets the rate at which messages were handled
+         *
+         * @return messages per second
+         */
+        double messagesPerSecond()
+        {
+            return elapsedNs == 0 ? 0 : messages * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNs;
+        }
+
+        /**
+         * Gets the bytes allocated per message handled
+         *
+         * @return bytes per message
+         */
+        double bytesPerMessage()
+        {
+            return messages == 0 ? 0 : allocatedBytes / (double)messages;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.IntArrayList;
+
+/**
+ * Messages of a cluster log held in memory, each a complete message reassembled from its fragments and starting
+ * with its cluster message header, so that it can be replayed repeatedly without reading the archive again.
+ */
+public final class ReplayLog
+{
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private final ExpandableDirectByteBuffer messages = new ExpandableDirectByteBuffer(INITIAL_CAPACITY);
+    private final IntArrayList offsets = new IntArrayList();
+    private final IntArrayList lengths = new IntArrayList();
+    private int limit;
+
+    /**
+     * Adds a message
+     *
+     * @param buffer the buffer holding the message
+     * @param offset the offset of the message
+     * @param length the length of the message
+     */
+    public void add(final DirectBuffer buffer, final int offset, final int length)
+    {
+        messages.putBytes(limit, buffer, offset, length);
+        offsets.addInt(limit);
+        lengths.addInt(length);
+        limit += length;
+    }
+
+    /**
+     * Hands each message to a consumer in log order
+     *
+     * @param consumer the consumer of the messages
+     */
+    public void forEach(final MessageConsumer consumer)
+    {
+        for (int i = 0, size = offsets.size(); i < size; i++)
+        {
+            consumer.onMessage(messages, offsets.getInt(i), lengths.getInt(i));
+        }
+    }
+
+    /**
+     * Gets the number of messages held
+     *
+     * @return the number of messages
+     */
+    public int size()
+    {
+        return offsets.size();
+    }
+
+    /**
+     * Gets the total length of the messages held
+     *
+     * @return the length in bytes
+     */
+    public long length()
+    {
+        return limit;
+    }
+
+    /**
+     * Consumer of log messages
+     */
+    @FunctionalInterface
+    public interface MessageConsumer
+    {
+        /**
+         * Handles a message
+         *
+         * @param buffer the buffer holding the message
+         * @param offset the offset of the message
+         * @param length the length of the message
+         */
+        void onMessage(DirectBuffer buffer, int offset, int length);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import com.aeroncookbook.cluster.rfq.EgressBatchReader;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RequestResult;
+import io.aeron.Aeron;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.agrona.CloseHelper;
+import org.agrona.collections.MutableBoolean;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
+import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.SystemNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches a three node RFQ cluster in this JVM, drives it with synthetic clients at a target rate, and reports
+ * throughput and latency percentiles. After the recorded run the leader is killed, and the time until every client
+ * has a command confirmed again is reported as the failover recovery time.
+ * <p>
+ * Settings are read from {@code rfq.bench.*} system properties, see {@link BenchmarkConfig}. Results are printed and
+ * written as JSON to the results file so that runs can be tracked for regressions.
+ */
+public final class RfqBenchmark
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RfqBenchmark.class);
+    private static final long SETUP_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(30);
+
+    private RfqBenchmark()
+    {
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args unused
+     * @throws IOException if the results cannot be written
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        final BenchmarkConfig config = BenchmarkConfig.fromSystemProperties();
+        final WorkflowMix mix = new WorkflowMix(config.mix());
+        final BenchmarkResults results = new BenchmarkResults(config);
+
+        try (
+            InJvmCluster cluster = new InJvmCluster(config.portBase());
+            MediaDriver clientDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+                .threadingMode(ThreadingMode.SHARED)
+                .dirDeleteOnStart(true)
+                .dirDeleteOnShutdown(true));
+            Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(clientDriver.aeronDirectoryName())))
+        {
+            cluster.launch();
+            addInstrument(clusterContext(cluster, aeron, config.egressPortBase() + config.clients()));
+            run(config, mix, cluster, aeron, results);
+        }
+
+        results.printSummary(System.out);
+        results.writeJson(Path.of(config.resultsFile()));
+        LOGGER.info("Results written to {}", config.resultsFile());
+    }
+
+    private static void run(
+        final BenchmarkConfig config,
+        final WorkflowMix mix,
+        final InJvmCluster cluster,
+        final Aeron aeron,
+        final BenchmarkResults results)
+    {
+        final List<LoadClient> clients = new ArrayList<>();
+        final List<AgentRunner> runners = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < config.clients(); i++)
+            {
+                final LoadClient client = new LoadClient(i, config, mix,
+                    clusterContext(cluster, aeron, config.egressPortBase() + i),
+                    SystemNanoClock.INSTANCE, SystemEpochClock.INSTANCE);
+                final AgentRunner runner = new AgentRunner(
+                    new YieldingIdleStrategy(),
+                    throwable -> LOGGER.error("Load client error", throwable),
+                    null,
+                    client);
+                clients.add(client);
+                runners.add(runner);
+                AgentRunner.startOnThread(runner);
+            }
+
+            LOGGER.info("Warming up for {} ms", TimeUnit.NANOSECONDS.toMillis(config.warmupNs()));
+            sleep(config.warmupNs());
+
+            LOGGER.info("Recording for {} ms", TimeUnit.NANOSECONDS.toMillis(config.durationNs()));
+            final long recordingStartNs = System.nanoTime();
+            clients.forEach(LoadClient::startRecording);
+            sleep(config.durationNs());
+            clients.forEach(LoadClient::stopRecording);
+            results.recordedNs(System.nanoTime() - recordingStartNs);
+
+            if (config.failover())
+            {
+                final int leaderNodeId = cluster.leaderNodeId();
+                LOGGER.info("Killing leader node {}", leaderNodeId);
+                final long killNs = System.nanoTime();
+                cluster.killNode(leaderNodeId);
+                clients.forEach(client -> client.startFailover(killNs));
+                sleep(config.failoverNs());
+                results.failover(leaderNodeId, cluster.leaderNodeId());
+            }
+        }
+        finally
+        {
+            CloseHelper.closeAll(runners);
+        }
+
+        clients.forEach(results::add);
+    }
+
+    private static AeronCluster.Context clusterContext(
+        final InJvmCluster cluster,
+        final Aeron aeron,
+        final int egressPort)
+    {
+        return new AeronCluster.Context()
+            .aeron(aeron)
+            .ownsAeronClient(false)
+            .ingressChannel("aeron:udp")
+            .ingressEndpoints(cluster.ingressEndpoints())
+            .egressChannel("aeron:udp?endpoint=localhost:" + egressPort);
+    }
+
+    private static void addInstrument(final AeronCluster.Context clusterContext)
+    {
+        final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+        final AddInstrumentResultDecoder addInstrumentResultDecoder = new AddInstrumentResultDecoder();
+        final MutableBoolean added = new MutableBoolean();
+        final EgressBatchReader egressBatchReader = new EgressBatchReader();
+        final EgressBatchReader.MessageHandler messageHandler = (buffer, offset, length) ->
+        {
+            headerDecoder.wrap(buffer, offset);
+            if (headerDecoder.templateId() == AddInstrumentResultDecoder.TEMPLATE_ID)
+            {
+                addInstrumentResultDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                if (addInstrumentResultDecoder.result() != RequestResult.SUCCESS)
+                {
+                    throw new IllegalStateException("Instrument not added: " + addInstrumentResultDecoder.result());
+                }
+                added.set(true);
+            }
+        };
+        clusterContext.egressListener((clusterSessionId, timestamp, buffer, offset, length, header) ->
+            egressBatchReader.read(buffer, offset, length, messageHandler));
+
+        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(128));
+        final AddInstrumentEncoder addInstrumentEncoder = new AddInstrumentEncoder()
+            .wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder())
+            .correlation(1)
+            .cusip(LoadClient.CUSIP)
+            .enabled(BooleanType.TRUE)
+            .minSize(1);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + addInstrumentEncoder.encodedLength();
+
+        final IdleStrategy idleStrategy = new SleepingMillisIdleStrategy(1);
+        final long deadlineNs = System.nanoTime() + SETUP_TIMEOUT_NS;
+        try (AeronCluster aeronCluster = AeronCluster.connect(clusterContext))
+        {
+            LOGGER.info("Connected to leader node {}", aeronCluster.leaderMemberId());
+            while (aeronCluster.offer(buffer, 0, length) < 0)
+            {
+                checkDeadline(deadlineNs);
+                idleStrategy.idle(aeronCluster.pollEgress());
+            }
+
+            while (!added.get())
+            {
+                checkDeadline(deadlineNs);
+                idleStrategy.idle(aeronCluster.pollEgress());
+            }
+        }
+    }
+
+    private static void checkDeadline(final long deadlineNs)
+    {
+        if (System.nanoTime() > deadlineNs)
+        {
+            throw new IllegalStateException("Timed out adding the benchmark instrument");
+        }
+    }
+
+    private static void sleep(final long durationNs)
+    {
+        try
+        {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(durationNs));
+        }
+        catch (final InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", ex);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019-2023 Shaun Laurens.
+ * Copyright 2023 Shaun Laurens
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,15 +14,16 @@
  * limitations under the License.
  */
 
-package com.aeroncookbook.rfq.domain.rfq.states;
+package com.aeroncookbook.rfq.benchmark;
 
-public interface RfqState
+/**
+ * A command sent to the cluster as one step of a workflow, each with its own latency histogram
+ */
+public enum RfqStep
 {
-    RfqStates getCurrentState();
-
-    short getCurrentStateId();
-
-    boolean canTransitionTo(RfqStates newState);
-
-    RfqState transitionTo(RfqStates newState);
+    CREATE,
+    QUOTE,
+    COUNTER,
+    ACCEPT,
+    CANCEL
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+/**
+ * The synthetic RFQ workflows a client runs. Each is a sequence of commands, every one sent as soon as the previous
+ * one is confirmed. Workflows which leave an RFQ open let it expire in the cluster.
+ */
+public enum Workflow
+{
+    /**
+     * Requester creates and then cancels
+     */
+    CREATE(RfqStep.CREATE, RfqStep.CANCEL),
+
+    /**
+     * Requester creates, responder quotes, and the quote is left to expire
+     */
+    QUOTE(RfqStep.CREATE, RfqStep.QUOTE),
+
+    /**
+     * Requester creates, responder quotes, requester counters and responder accepts the counter
+     */
+    COUNTER(RfqStep.CREATE, RfqStep.QUOTE, RfqStep.COUNTER, RfqStep.ACCEPT),
+
+    /**
+     * Requester creates, responder quotes and requester accepts the quote
+     */
+    ACCEPT(RfqStep.CREATE, RfqStep.QUOTE, RfqStep.ACCEPT),
+
+    /**
+     * Requester creates an RFQ with a short expiry, which is left to expire
+     */
+    EXPIRE(RfqStep.CREATE);
+
+    private final RfqStep[] steps;
+
+    Workflow(final RfqStep... steps)
+    {
+        this.steps = steps;
+    }
+
+    /**
+     * Gets a step of the workflow
+     *
+     * @param index the index of the step
+     * @return the step
+     */
+    public RfqStep step(final int index)
+    {
+        return steps[index];
+    }
+
+    /**
+     * Gets the number of steps in the workflow
+     *
+     * @return the number of steps
+     */
+    public int stepCount()
+    {
+        return steps.length;
+    }
+}
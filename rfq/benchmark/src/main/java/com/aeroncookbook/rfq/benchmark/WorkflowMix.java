@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmark;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted mix of workflows, parsed from a list such as {@code create=1,quote=1,counter=1,accept=2,expire=1}.
+ * Workflows not listed are not run.
+ */
+public final class WorkflowMix
+{
+    private final Workflow[] workflows = Workflow.values();
+    private final int[] cumulativeWeights = new int[workflows.length];
+    private final int totalWeight;
+
+    /**
+     * Parses a mix
+     *
+     * @param mix the comma separated list of workflow name and weight pairs
+     * @throws IllegalArgumentException if the mix is malformed, names an unknown workflow or has no weight
+     */
+    public WorkflowMix(final String mix)
+    {
+        final int[] weights = new int[workflows.length];
+        for (final String entry : mix.split(","))
+        {
+            final String[] nameAndWeight = entry.trim().split("=");
+            if (nameAndWeight.length != 2)
+            {
+                throw new IllegalArgumentException("Expected workflow=weight but was: " + entry);
+            }
+
+            final Workflow workflow = Workflow.valueOf(nameAndWeight[0].trim().toUpperCase(Locale.ROOT));
+            final int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight < 0)
+            {
+                throw new IllegalArgumentException("Negative weight for " + workflow);
+            }
+            weights[workflow.ordinal()] = weight;
+        }
+
+        int total = 0;
+        for (int i = 0; i < workflows.length; i++)
+        {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+
+        if (total == 0)
+        {
+            throw new IllegalArgumentException("Workflow mix has no weight: " + mix);
+        }
+        totalWeight = total;
+    }
+
+    /**
+     * Picks a workflow at random according to the weights
+     *
+     * @param random the source of randomness
+     * @return the workflow
+     */
+    public Workflow next(final SplittableRandom random)
+    {
+        final int value = random.nextInt(totalWeight);
+        for (int i = 0; i < workflows.length; i++)
+        {
+            if (value < cumulativeWeights[i])
+            {
+                return workflows[i];
+            }
+        }
+        throw new IllegalStateException("Weight out of range: " + value);
+    }
+
+    /**
+     * Gets the weight of a workflow
+     *
+     * @param workflow the workflow
+     * @return the weight, zero if not run
+     */
+    public int weight(final Workflow workflow)
+    {
+        final int index = workflow.ordinal();
+        return cumulativeWeights[index] - (index == 0 ? 0 : cumulativeWeights[index - 1]);
+    }
+}
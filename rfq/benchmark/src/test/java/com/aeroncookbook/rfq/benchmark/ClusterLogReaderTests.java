@@ -0,0 +1,66 @@
+package com.aeroncookbook.rfq.benchmark;
+
+import io.aeron.logbuffer.FrameDescriptor;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClusterLogReaderTests
+{
+    private static final int SEGMENT_LENGTH = 1024;
+
+    @Test
+    void reassemblesFragmentsAndSkipsPaddingAndLeadingSpace(@TempDir final File archiveDir) throws IOException
+    {
+        final var segment = new UnsafeBuffer(new byte[SEGMENT_LENGTH]);
+        int offset = 64;
+        offset = putFrame(segment, offset, FrameDescriptor.UNFRAGMENTED, DataHeaderFlyweight.HDR_TYPE_DATA, 10, 1);
+        offset = putFrame(segment, offset, FrameDescriptor.BEGIN_FRAG_FLAG, DataHeaderFlyweight.HDR_TYPE_DATA, 8, 2);
+        offset = putFrame(segment, offset, FrameDescriptor.END_FRAG_FLAG, DataHeaderFlyweight.HDR_TYPE_DATA, 5, 3);
+        putFrame(segment, offset, FrameDescriptor.UNFRAGMENTED, DataHeaderFlyweight.HDR_TYPE_PAD, 100, 4);
+        Files.write(new File(archiveDir, "7-0.rec").toPath(), segment.byteArray());
+
+        final var log = ClusterLogReader.read(archiveDir, 7);
+
+        final var lengths = new IntArrayList();
+        final var firstBytes = new IntArrayList();
+        final var lastBytes = new IntArrayList();
+        log.forEach((buffer, messageOffset, length) ->
+        {
+            lengths.addInt(length);
+            firstBytes.addInt(buffer.getByte(messageOffset));
+            lastBytes.addInt(buffer.getByte(messageOffset + length - 1));
+        });
+        assertEquals(2, log.size());
+        assertEquals(10, lengths.getInt(0));
+        assertEquals(13, lengths.getInt(1));
+        assertEquals(1, firstBytes.getInt(0));
+        assertEquals(2, firstBytes.getInt(1));
+        assertEquals(3, lastBytes.getInt(1));
+    }
+
+    private static int putFrame(
+        final UnsafeBuffer segment,
+        final int offset,
+        final byte flags,
+        final int type,
+        final int payloadLength,
+        final int fill)
+    {
+        final int frameLength = DataHeaderFlyweight.HEADER_LENGTH + payloadLength;
+        segment.putInt(offset + DataHeaderFlyweight.FRAME_LENGTH_FIELD_OFFSET, frameLength, ByteOrder.LITTLE_ENDIAN);
+        segment.putByte(offset + DataHeaderFlyweight.FLAGS_FIELD_OFFSET, flags);
+        segment.putShort(offset + DataHeaderFlyweight.TYPE_FIELD_OFFSET, (short)type, ByteOrder.LITTLE_ENDIAN);
+        segment.setMemory(offset + DataHeaderFlyweight.HEADER_LENGTH, payloadLength, (byte)fill);
+        return offset + ((frameLength + FrameDescriptor.FRAME_ALIGNMENT - 1) & -FrameDescriptor.FRAME_ALIGNMENT);
+    }
+}
@@ -0,0 +1,39 @@
+package com.aeroncookbook.rfq.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkflowMixTests
+{
+    @Test
+    void picksOnlyWeightedWorkflowsInProportion()
+    {
+        final var mix = new WorkflowMix("accept=3, counter=1");
+        assertEquals(3, mix.weight(Workflow.ACCEPT));
+        assertEquals(1, mix.weight(Workflow.COUNTER));
+        assertEquals(0, mix.weight(Workflow.CREATE));
+
+        final var random = new SplittableRandom(42);
+        final var counts = new int[Workflow.values().length];
+        for (int i = 0; i < 40_000; i++)
+        {
+            counts[mix.next(random).ordinal()]++;
+        }
+
+        assertEquals(40_000, counts[Workflow.ACCEPT.ordinal()] + counts[Workflow.COUNTER.ordinal()]);
+        assertTrue(Math.abs(counts[Workflow.ACCEPT.ordinal()] - 30_000) < 1_000);
+    }
+
+    @Test
+    void rejectsMalformedMixes()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new WorkflowMix("accept"));
+        assertThrows(IllegalArgumentException.class, () -> new WorkflowMix("unknown=1"));
+        assertThrows(IllegalArgumentException.class, () -> new WorkflowMix("accept=0"));
+    }
+}
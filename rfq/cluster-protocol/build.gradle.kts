@@ -33,6 +33,16 @@ sourceSets {
     }
 }
 
+testing {
+    suites {
+        // Configure the built-in test suite
+        val test by getting(JvmTestSuite::class) {
+            // Use JUnit Jupiter test framework
+            useJUnitJupiter(libs.versions.junitVersion.get())
+        }
+    }
+}
+
 tasks {
     task("generateCodecs", JavaExec::class) {
         group = "sbe"
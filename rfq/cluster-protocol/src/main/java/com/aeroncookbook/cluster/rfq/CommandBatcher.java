@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.cluster.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Collects encoded commands from a client into {@code CommandBatch} messages, so that many commands cost one offer
+ * and one cluster log entry. The cluster processes the commands of a batch in order, as if each had been sent alone,
+ * and replies to each with its own correlation.
+ * <p>
+ * A batch is sent once it is full, or on the first {@link #poll(long)} after the oldest command in it has waited for
+ * the batch window. A window of zero sends whatever was collected on every poll, which batches the commands sent in
+ * one duty cycle without holding any back. A batch which cannot be sent, such as when the cluster is back pressured,
+ * is kept and retried on the next poll.
+ * <p>
+ * Not thread safe; commands must be offered and polled on the client's own thread.
+ */
+public final class CommandBatcher
+{
+    private static final int FIXED_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + CommandBatchEncoder.BLOCK_LENGTH +
+        CommandBatchEncoder.CommandsEncoder.HEADER_SIZE;
+    private static final int COMMAND_HEADER_LENGTH = CommandBatchEncoder.CommandsEncoder.commandHeaderLength();
+    private final int maxBatchLength;
+    private final long windowNs;
+    private final Sender sender;
+    private final UnsafeBuffer commands;
+    private final UnsafeBuffer batchBuffer;
+    private final IntArrayList commandLengths = new IntArrayList();
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final CommandBatchEncoder commandBatchEncoder = new CommandBatchEncoder();
+    private int commandsLength;
+    private long oldestCommandNs;
+
+    /**
+     * Sends an encoded message to the cluster
+     */
+    @FunctionalInterface
+    public interface Sender
+    {
+        /**
+         * Sends a message
+         *
+         * @param buffer the buffer holding the message
+         * @param offset the offset of the message
+         * @param length the length of the message
+         * @return true if sent, false if it should be retried later
+         */
+        boolean send(DirectBuffer buffer, int offset, int length);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxBatchLength the most bytes a batch may take, including its header; ideally no more than fits in one
+     *                       frame of the ingress channel
+     * @param windowNs       the longest a command is held back waiting for others to join its batch
+     * @param sender         the sender batches, and commands too long to batch, are sent with
+     */
+    public CommandBatcher(final int maxBatchLength, final long windowNs, final Sender sender)
+    {
+        if (maxBatchLength <= FIXED_LENGTH + COMMAND_HEADER_LENGTH + MessageHeaderEncoder.ENCODED_LENGTH)
+        {
+            throw new IllegalArgumentException("maxBatchLength too small to hold a command: " + maxBatchLength);
+        }
+        if (windowNs < 0)
+        {
+            throw new IllegalArgumentException("windowNs must not be negative: " + windowNs);
+        }
+
+        this.maxBatchLength = maxBatchLength;
+        this.windowNs = windowNs;
+        this.sender = sender;
+        this.commands = new UnsafeBuffer(ByteBuffer.allocateDirect(maxBatchLength));
+        this.batchBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(maxBatchLength));
+    }
+
+    /**
+     * Adds a command to the batch, first sending the batch if the command does not fit in it. A command too long to
+     * fit in any batch is sent alone, after the batch so that order is kept.
+     *
+     * @param buffer the buffer holding the encoded command, including its message header
+     * @param offset the offset of the command
+     * @param length the length of the command
+     * @param nowNs  the current time, from which the command's wait is measured
+     * @return true if the command was taken, false if the batch could not be sent to make room and the command
+     * should be offered again later
+     */
+    public boolean offer(final DirectBuffer buffer, final int offset, final int length, final long nowNs)
+    {
+        if (!fits(length))
+        {
+            if (!flush())
+            {
+                return false;
+            }
+
+            if (!fits(length))
+            {
+                return sender.send(buffer, offset, length);
+            }
+        }
+
+        if (commandLengths.isEmpty())
+        {
+            oldestCommandNs = nowNs;
+        }
+        commands.putBytes(commandsLength, buffer, offset, length);
+        commandsLength += length;
+        commandLengths.addInt(length);
+        return true;
+    }
+
+    /**
+     * Sends the batch if its oldest command has waited for the batch window
+     *
+     * @param nowNs the current time
+     * @return the number of commands sent
+     */
+    public int poll(final long nowNs)
+    {
+        if (commandLengths.isEmpty() || nowNs - oldestCommandNs < windowNs)
+        {
+            return 0;
+        }
+
+        final int commandCount = commandLengths.size();
+        return flush() ? commandCount : 0;
+    }
+
+    /**
+     * Sends the batch now, whether or not its window has passed
+     *
+     * @return true if the batch was sent or was empty, false if it could not be sent and is kept to retry
+     */
+    public boolean flush()
+    {
+        if (commandLengths.isEmpty())
+        {
+            return true;
+        }
+
+        final CommandBatchEncoder.CommandsEncoder commandsEncoder =
+            commandBatchEncoder.wrapAndApplyHeader(batchBuffer, 0, headerEncoder).commandsCount(commandLengths.size());
+        int commandOffset = 0;
+        for (int i = 0; i < commandLengths.size(); i++)
+        {
+            final int length = commandLengths.getInt(i);
+            commandsEncoder.next().putCommand(commands, commandOffset, length);
+            commandOffset += length;
+        }
+
+        if (!sender.send(batchBuffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + commandBatchEncoder.encodedLength()))
+        {
+            return false;
+        }
+
+        commandLengths.clear();
+        commandsLength = 0;
+        return true;
+    }
+
+    /**
+     * Gets the number of commands waiting in the batch
+     *
+     * @return the number of commands
+     */
+    public int commandCount()
+    {
+        return commandLengths.size();
+    }
+
+    private boolean fits(final int nextCommandLength)
+    {
+        final int commandCount = commandLengths.size() + 1;
+        return commandCount <= CommandBatchEncoder.CommandsEncoder.countMaxValue() &&
+            FIXED_LENGTH + commandsLength + nextCommandLength + commandCount * COMMAND_HEADER_LENGTH <= maxBatchLength;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.cluster.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Unpacks the {@code EgressBatch} messages the cluster coalesces egress into, so that a client egress listener
+ * handles each message as if it had been sent alone. Messages which are not batches are passed through unchanged.
+ * <p>
+ * Not thread safe; intended to be called from the client's egress listener.
+ */
+public final class EgressBatchReader
+{
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final EgressBatchDecoder egressBatchDecoder = new EgressBatchDecoder();
+    private final UnsafeBuffer message = new UnsafeBuffer(0, 0);
+
+    /**
+     * Handles one message from the cluster
+     */
+    @FunctionalInterface
+    public interface MessageHandler
+    {
+        /**
+         * Handles a message
+         *
+         * @param buffer the buffer holding the message, including its message header
+         * @param offset the offset of the message
+         * @param length the length of the message
+         */
+        void onMessage(DirectBuffer buffer, int offset, int length);
+    }
+
+    /**
+     * Hands an egress message to the handler, or each message of it in order if it is an {@code EgressBatch}
+     *
+     * @param buffer  the buffer holding the egress message
+     * @param offset  the offset of the egress message
+     * @param length  the length of the egress message
+     * @param handler the handler messages are handed to
+     * @return the number of messages handed to the handler
+     */
+    public int read(final DirectBuffer buffer, final int offset, final int length, final MessageHandler handler)
+    {
+        if (length < MessageHeaderDecoder.ENCODED_LENGTH)
+        {
+            return 0;
+        }
+
+        headerDecoder.wrap(buffer, offset);
+        if (headerDecoder.templateId() != EgressBatchDecoder.TEMPLATE_ID)
+        {
+            handler.onMessage(buffer, offset, length);
+            return 1;
+        }
+
+        egressBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final EgressBatchDecoder.MessagesDecoder messagesDecoder = egressBatchDecoder.messages();
+        final int count = messagesDecoder.count();
+        while (messagesDecoder.hasNext())
+        {
+            messagesDecoder.next().wrapMessage(message);
+            handler.onMessage(message, 0, message.capacity());
+        }
+        return count;
+    }
+}
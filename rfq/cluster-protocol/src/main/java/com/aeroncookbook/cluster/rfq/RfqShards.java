@@ -0,0 +1,155 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.cluster.rfq;
+
+import java.util.Arrays;
+
+/**
+ * Partitioning of the instrument universe across shards, each shard being a separate RFQ cluster. Shards own
+ * contiguous CUSIP ranges, given by the lower bound of every shard after the first; shard 0 owns everything below
+ * the first bound. An RFQ is held by the shard owning its instrument, and RFQ ids are issued so that the shard can be
+ * found from the id alone: shard {@code s} of {@code n} issues {@code s + n}, {@code s + 2n}, and so on.
+ * <p>
+ * Both the clusters and their clients route with the same map, so it must be configured identically everywhere and
+ * must not change once RFQs have been issued. A single shard owns every CUSIP and issues ids 1, 2, 3 as before.
+ */
+public final class RfqShards
+{
+    /**
+     * A single shard owning every instrument
+     */
+    public static final RfqShards SINGLE = new RfqShards(new String[0]);
+
+    private static final int MAX_BOUND_LENGTH = 9;
+    private final String[] lowerBounds;
+
+    private RfqShards(final String[] lowerBounds)
+    {
+        this.lowerBounds = lowerBounds;
+    }
+
+    /**
+     * Parses the lower bounds of shards 1 onwards, such as {@code "3,6"} for three shards splitting on the first
+     * character of the CUSIP. Bounds are CUSIP prefixes and compare as the CUSIP characters do.
+     *
+     * @param bounds the comma separated lower bounds in ascending order, or empty for a single shard
+     * @return the shard map
+     * @throws IllegalArgumentException if a bound is empty, too long, or not above the bound before it
+     */
+    public static RfqShards parse(final String bounds)
+    {
+        if (bounds == null || bounds.isBlank())
+        {
+            return SINGLE;
+        }
+
+        final String[] lowerBounds = bounds.split(",");
+        for (int i = 0; i < lowerBounds.length; i++)
+        {
+            lowerBounds[i] = lowerBounds[i].trim();
+            if (lowerBounds[i].isEmpty() || lowerBounds[i].length() > MAX_BOUND_LENGTH)
+            {
+                throw new IllegalArgumentException("invalid shard bound '" + lowerBounds[i] + "' in " + bounds);
+            }
+            if (i > 0 && lowerBounds[i].compareTo(lowerBounds[i - 1]) <= 0)
+            {
+                throw new IllegalArgumentException("shard bounds must be ascending: " + bounds);
+            }
+        }
+        return new RfqShards(lowerBounds);
+    }
+
+    /**
+     * Gets the number of shards
+     *
+     * @return the number of shards
+     */
+    public int shardCount()
+    {
+        return lowerBounds.length + 1;
+    }
+
+    /**
+     * Gets the shard owning an instrument
+     *
+     * @param cusip the CUSIP of the instrument
+     * @return the shard id, from zero to {@link #shardCount()} exclusive
+     */
+    public int shardForCusip(final CharSequence cusip)
+    {
+        int shardId = 0;
+        while (shardId < lowerBounds.length && compare(cusip, lowerBounds[shardId]) >= 0)
+        {
+            shardId++;
+        }
+        return shardId;
+    }
+
+    /**
+     * Gets the shard holding an RFQ
+     *
+     * @param rfqId the RFQ id
+     * @return the shard id, from zero to {@link #shardCount()} exclusive
+     */
+    public int shardForRfqId(final int rfqId)
+    {
+        return Math.floorMod(rfqId, shardCount());
+    }
+
+    /**
+     * Gets the next RFQ id a shard issues
+     *
+     * @param shardId   the shard issuing the id
+     * @param lastRfqId the last id the shard issued, or zero if none
+     * @return the next RFQ id
+     */
+    public int nextRfqId(final int shardId, final int lastRfqId)
+    {
+        return (lastRfqId == 0 ? shardId : lastRfqId) + shardCount();
+    }
+
+    /**
+     * Gets the lowest CUSIP prefix a shard owns
+     *
+     * @param shardId the shard id
+     * @return the lower bound, or empty for shard 0
+     */
+    public String lowerBound(final int shardId)
+    {
+        return shardId == 0 ? "" : lowerBounds[shardId - 1];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RfqShards" + Arrays.toString(lowerBounds);
+    }
+
+    private static int compare(final CharSequence cusip, final String bound)
+    {
+        final int length = Math.min(cusip.length(), bound.length());
+        for (int i = 0; i < length; i++)
+        {
+            final int diff = cusip.charAt(i) - bound.charAt(i);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return cusip.length() - bound.length();
+    }
+}
@@ -0,0 +1,123 @@
+package com.aeroncookbook.cluster.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandBatcherTests
+{
+    private static final int CANCEL_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + CancelRfqCommandEncoder.BLOCK_LENGTH;
+    private final ExpandableArrayBuffer command = new ExpandableArrayBuffer(64);
+    private final List<byte[]> sent = new ArrayList<>();
+    private boolean accepting = true;
+
+    @Test
+    void sendsCommandsInOrderOnceWindowHasPassed()
+    {
+        final var batcher = new CommandBatcher(1024, 100, this::send);
+        assertTrue(batcher.offer(command, 0, encodeCancel(1), 1000));
+        assertTrue(batcher.offer(command, 0, encodeCancel(2), 1050));
+        assertTrue(batcher.offer(command, 0, encodeCancel(3), 1090));
+
+        assertEquals(0, batcher.poll(1099));
+        assertTrue(sent.isEmpty());
+
+        assertEquals(3, batcher.poll(1100));
+        assertEquals(0, batcher.commandCount());
+        assertEquals(1, sent.size());
+        assertEquals(List.of(1L, 2L, 3L), correlations(sent.get(0)));
+    }
+
+    @Test
+    void sendsFullBatchBeforeAddingCommand()
+    {
+        final int batchLength = MessageHeaderEncoder.ENCODED_LENGTH + 4 + 2 * (4 + CANCEL_LENGTH);
+        final var batcher = new CommandBatcher(batchLength, 1_000_000, this::send);
+        assertTrue(batcher.offer(command, 0, encodeCancel(1), 0));
+        assertTrue(batcher.offer(command, 0, encodeCancel(2), 0));
+        assertTrue(sent.isEmpty());
+
+        assertTrue(batcher.offer(command, 0, encodeCancel(3), 0));
+        assertEquals(1, sent.size());
+        assertEquals(List.of(1L, 2L), correlations(sent.get(0)));
+        assertEquals(1, batcher.commandCount());
+    }
+
+    @Test
+    void keepsBatchWhenSenderIsBackPressured()
+    {
+        final var batcher = new CommandBatcher(1024, 0, this::send);
+        assertTrue(batcher.offer(command, 0, encodeCancel(1), 0));
+
+        accepting = false;
+        assertEquals(0, batcher.poll(0));
+        assertFalse(batcher.flush());
+        assertEquals(1, batcher.commandCount());
+
+        accepting = true;
+        assertEquals(1, batcher.poll(0));
+        assertEquals(List.of(1L), correlations(sent.get(0)));
+    }
+
+    @Test
+    void rejectsBatchLengthTooSmallForACommand()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new CommandBatcher(16, 0, this::send));
+    }
+
+    private boolean send(final DirectBuffer buffer, final int offset, final int length)
+    {
+        if (!accepting)
+        {
+            return false;
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.getBytes(offset, bytes);
+        sent.add(bytes);
+        return true;
+    }
+
+    private int encodeCancel(final long correlation)
+    {
+        new CancelRfqCommandEncoder()
+            .wrapAndApplyHeader(command, 0, new MessageHeaderEncoder())
+            .correlation(correlation)
+            .rfqId(7)
+            .cancelUserId(500);
+        return CANCEL_LENGTH;
+    }
+
+    private static List<Long> correlations(final byte[] batch)
+    {
+        final var headerDecoder = new MessageHeaderDecoder();
+        final var batchDecoder = new CommandBatchDecoder();
+        final var cancelDecoder = new CancelRfqCommandDecoder();
+        final var commandBuffer = new UnsafeBuffer(0, 0);
+        final var correlations = new ArrayList<Long>();
+
+        batchDecoder.wrapAndApplyHeader(new UnsafeBuffer(batch), 0, headerDecoder);
+        final CommandBatchDecoder.CommandsDecoder commands = batchDecoder.commands();
+        while (commands.hasNext())
+        {
+            commands.next().wrapCommand(commandBuffer);
+            cancelDecoder.wrapAndApplyHeader(commandBuffer, 0, new MessageHeaderDecoder());
+            correlations.add(cancelDecoder.correlation());
+        }
+        return correlations;
+    }
+}
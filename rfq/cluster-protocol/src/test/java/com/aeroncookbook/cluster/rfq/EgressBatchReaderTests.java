@@ -0,0 +1,73 @@
+package com.aeroncookbook.cluster.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EgressBatchReaderTests
+{
+    private static final int CANCEL_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + CancelRfqCommandEncoder.BLOCK_LENGTH;
+    private final ExpandableArrayBuffer message = new ExpandableArrayBuffer(64);
+    private final ExpandableArrayBuffer batch = new ExpandableArrayBuffer(256);
+    private final List<Long> received = new ArrayList<>();
+
+    @Test
+    void unpacksBatchedMessagesInOrder()
+    {
+        final var batchEncoder = new EgressBatchEncoder();
+        final var messagesEncoder = batchEncoder.wrapAndApplyHeader(batch, 0, new MessageHeaderEncoder())
+            .messagesCount(3);
+        for (long correlation = 1; correlation <= 3; correlation++)
+        {
+            messagesEncoder.next().putMessage(message, 0, encodeCancel(correlation));
+        }
+        final int batchLength = MessageHeaderEncoder.ENCODED_LENGTH + batchEncoder.encodedLength();
+
+        final var reader = new EgressBatchReader();
+        assertEquals(3, reader.read(batch, 0, batchLength, this::onMessage));
+        assertEquals(List.of(1L, 2L, 3L), received);
+    }
+
+    @Test
+    void passesThroughMessagesWhichAreNotBatches()
+    {
+        final var reader = new EgressBatchReader();
+        assertEquals(1, reader.read(message, 0, encodeCancel(7), this::onMessage));
+        assertEquals(List.of(7L), received);
+    }
+
+    @Test
+    void ignoresMessagesTooShortForHeader()
+    {
+        final var reader = new EgressBatchReader();
+        assertEquals(0, reader.read(message, 0, MessageHeaderEncoder.ENCODED_LENGTH - 1, this::onMessage));
+        assertTrue(received.isEmpty());
+    }
+
+    private void onMessage(final DirectBuffer buffer, final int offset, final int length)
+    {
+        assertEquals(CANCEL_LENGTH, length);
+        final var decoder = new CancelRfqCommandDecoder();
+        decoder.wrapAndApplyHeader(buffer, offset, new MessageHeaderDecoder());
+        received.add(decoder.correlation());
+    }
+
+    private int encodeCancel(final long correlation)
+    {
+        new CancelRfqCommandEncoder()
+            .wrapAndApplyHeader(message, 0, new MessageHeaderEncoder())
+            .correlation(correlation);
+        return CANCEL_LENGTH;
+    }
+}
@@ -23,14 +23,24 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath
+    }
+}
+
 dependencies {
     checkstyle(libs.checkstyle)
     implementation(libs.agrona)
     implementation(libs.aeron)
     implementation(libs.slf4j)
     implementation(libs.logback)
+    implementation(libs.hdrHistogram)
     implementation(project(":rfq:cluster-protocol"))
     testImplementation(libs.bundles.testing)
+    "jmhImplementation"(libs.jmhcore)
+    "jmhAnnotationProcessor"(libs.jmhannprocess)
 }
 
 testing {
@@ -51,6 +61,26 @@ tasks {
         jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
     }
 
+    task("runViewNode", JavaExec::class) {
+        group = "run"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("com.aeroncookbook.rfq.ViewNodeApp")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+    }
+
+    task("dumpJournal", JavaExec::class) {
+        group = "run"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("com.aeroncookbook.rfq.JournalDump")
+    }
+
+
+    task("runJmh", JavaExec::class) {
+        group = "benchmark"
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+    }
 
     task ("uberJar", Jar::class) {
         group = "uber"
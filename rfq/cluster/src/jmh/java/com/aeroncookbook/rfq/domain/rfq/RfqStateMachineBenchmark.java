@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqTransitions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures validating and applying the transitions of the common negotiated RFQ flow, CREATED to QUOTED to
+ * COUNTERED to ACCEPTED, through the {@link RfqTransitions} table. Each operation resets the RFQ to CREATED and
+ * checks each transition before applying it, as {@link Rfqs} does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RfqStateMachineBenchmark
+{
+    private static final int REQUESTER = 1;
+    private static final int RESPONDER = 2;
+    private final Rfq rfq =
+        new RfqRepository().add(1, 1, Long.MAX_VALUE, 100, Side.BUY, "037833100", REQUESTER, new Rfq());
+
+    @Benchmark
+    public short quoteCounterAccept()
+    {
+        rfq.restoreState(RfqStates.CREATED.getStateId(), Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE,
+            Integer.MIN_VALUE, Long.MIN_VALUE);
+
+        if (rfq.canQuote())
+        {
+            rfq.quote(RESPONDER, 100);
+        }
+        if (rfq.canCounter())
+        {
+            rfq.counter(REQUESTER, 99);
+        }
+        if (rfq.canAccept())
+        {
+            rfq.accept(RESPONDER);
+        }
+        return rfq.getStateId();
+    }
+
+    @Benchmark
+    public short tableLookups()
+    {
+        short stateId = RfqStates.CREATED.getStateId();
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.QUOTE);
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.COUNTER);
+        return RfqTransitions.nextState(stateId, RfqTransitions.ACCEPT);
+    }
+}
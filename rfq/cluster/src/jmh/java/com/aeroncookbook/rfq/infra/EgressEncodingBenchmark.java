@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqCreatedEventEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.Subscription;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.CloseHelper;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding egress into a shared buffer and copying it into each publication, as the copy path of
+ * {@link ClusterClientResponderImpl} does, against encoding directly into a publication claim.
+ * <p>
+ * A {@link io.aeron.cluster.service.ClientSession} can only exist inside a running cluster, so each session is
+ * modelled by an IPC publication which is prefixed with a cluster session header exactly as the cluster does:
+ * offers are gathered from the header and the message, claims have the header copied in before the message is
+ * encoded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+@State(Scope.Thread)
+public class EgressEncodingBenchmark
+{
+    private static final int STREAM_ID = 1001;
+    private static final int CONFIRM_LENGTH =
+        MessageHeaderEncoder.ENCODED_LENGTH + CreateRfqConfirmEventEncoder.BLOCK_LENGTH;
+    private static final int CREATED_LENGTH =
+        MessageHeaderEncoder.ENCODED_LENGTH + RfqCreatedEventEncoder.BLOCK_LENGTH;
+
+    @Param({"1", "8", "32"})
+    public int sessionCount;
+
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final CreateRfqConfirmEventEncoder confirmEncoder = new CreateRfqConfirmEventEncoder();
+    private final RfqCreatedEventEncoder createdEncoder = new RfqCreatedEventEncoder();
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(1024);
+    private final UnsafeBuffer sessionHeader = new UnsafeBuffer(new byte[AeronCluster.SESSION_HEADER_LENGTH]);
+    private final BufferClaim bufferClaim = new BufferClaim();
+    private final FragmentHandler discardHandler = (termBuffer, offset, length, header) -> {};
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private ExclusivePublication[] publications;
+    private Subscription[] subscriptions;
+    private long correlation;
+
+    /**
+     * Starts an embedded media driver and connects one IPC publication per modelled session
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+            .threadingMode(ThreadingMode.SHARED)
+            .dirDeleteOnStart(true)
+            .dirDeleteOnShutdown(true));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+
+        publications = new ExclusivePublication[sessionCount];
+        subscriptions = new Subscription[sessionCount];
+        for (int i = 0; i < sessionCount; i++)
+        {
+            publications[i] = aeron.addExclusivePublication("aeron:ipc", STREAM_ID + i);
+            subscriptions[i] = aeron.addSubscription("aeron:ipc", STREAM_ID + i);
+            while (!publications[i].isConnected())
+            {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Stops the media driver
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        CloseHelper.closeAll(aeron, mediaDriver);
+    }
+
+    /**
+     * Encodes a confirm into the shared buffer and copies it into the publication
+     * @return the publication position
+     */
+    @Benchmark
+    public long replyCopy()
+    {
+        confirmEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        encodeConfirm();
+        final long position = offer(publications[0]);
+        drain();
+        return position;
+    }
+
+    /**
+     * Encodes a confirm directly into a claim on the publication
+     * @return the publication position
+     */
+    @Benchmark
+    public long replyClaim()
+    {
+        final ExclusivePublication publication = publications[0];
+        long position;
+        while ((position = publication.tryClaim(AeronCluster.SESSION_HEADER_LENGTH + CONFIRM_LENGTH, bufferClaim)) < 0)
+        {
+            drain();
+        }
+        bufferClaim.putBytes(sessionHeader, 0, AeronCluster.SESSION_HEADER_LENGTH);
+        confirmEncoder.wrapAndApplyHeader(
+            bufferClaim.buffer(), bufferClaim.offset() + AeronCluster.SESSION_HEADER_LENGTH, messageHeaderEncoder);
+        encodeConfirm();
+        bufferClaim.commit();
+        drain();
+        return position;
+    }
+
+    /**
+     * Encodes an event once into the shared buffer and copies it into every publication
+     * @return the last publication position
+     */
+    @Benchmark
+    public long broadcastEncodeOnce()
+    {
+        createdEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        encodeCreated();
+        long position = 0;
+        for (final ExclusivePublication publication : publications)
+        {
+            position = offer(publication, CREATED_LENGTH);
+        }
+        drain();
+        return position;
+    }
+
+    /**
+     * Encodes an event separately into a claim on every publication
+     * @return the last publication position
+     */
+    @Benchmark
+    public long broadcastClaimPerSession()
+    {
+        long position = 0;
+        for (final ExclusivePublication publication : publications)
+        {
+            while ((position = publication.tryClaim(
+                AeronCluster.SESSION_HEADER_LENGTH + CREATED_LENGTH, bufferClaim)) < 0)
+            {
+                drain();
+            }
+            bufferClaim.putBytes(sessionHeader, 0, AeronCluster.SESSION_HEADER_LENGTH);
+            createdEncoder.wrapAndApplyHeader(
+                bufferClaim.buffer(), bufferClaim.offset() + AeronCluster.SESSION_HEADER_LENGTH, messageHeaderEncoder);
+            encodeCreated();
+            bufferClaim.commit();
+        }
+        drain();
+        return position;
+    }
+
+    private void encodeConfirm()
+    {
+        confirmEncoder.correlation(++correlation);
+        confirmEncoder.rfqId(1);
+        confirmEncoder.result(CreateRfqResult.SUCCESS);
+    }
+
+    private void encodeCreated()
+    {
+        createdEncoder.cusip("037833100");
+        createdEncoder.expireTimeMs(1_000L);
+        createdEncoder.quantity(100L);
+        createdEncoder.requesterSide(Side.BUY);
+        createdEncoder.rfqId(1);
+    }
+
+    private long offer(final ExclusivePublication publication)
+    {
+        return offer(publication, CONFIRM_LENGTH);
+    }
+
+    private long offer(final ExclusivePublication publication, final int length)
+    {
+        long position;
+        while ((position = publication.offer(
+            sessionHeader, 0, AeronCluster.SESSION_HEADER_LENGTH, buffer, 0, length, null)) < 0)
+        {
+            drain();
+        }
+        return position;
+    }
+
+    private void drain()
+    {
+        for (final Subscription subscription : subscriptions)
+        {
+            subscription.poll(discardHandler, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -16,7 +16,9 @@
 
 package com.aeroncookbook.rfq;
 
+import com.aeroncookbook.cluster.rfq.RfqShards;
 import com.aeroncookbook.rfq.infra.AppClusteredService;
+import com.aeroncookbook.rfq.infra.RfqShard;
 import io.aeron.cluster.ClusteredMediaDriver;
 import io.aeron.cluster.service.ClusteredServiceContainer;
 import io.aeron.samples.cluster.ClusterConfig;
@@ -38,6 +40,7 @@ import static java.lang.Integer.parseInt;
 public class ClusterApp
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterApp.class);
+    private static final String SHARD_PORT_STRIDE_DEFAULT = "1000";
 
     /**
      * The main method.
@@ -46,13 +49,16 @@ public class ClusterApp
     public static void main(final String[] args)
     {
         final ShutdownSignalBarrier barrier = new ShutdownSignalBarrier();
-        final int portBase = getBasePort();
+        final RfqShard shard = getShard();
+        final int portBase = getBasePort() + shard.shardId() * getShardPortStride();
         final int nodeId = getClusterNode();
         final String hosts = getClusterAddresses();
+        LOGGER.info("Shard {} of {}, from cusip '{}', port base {}", shard.shardId(), shard.shards().shardCount(),
+            shard.shards().lowerBound(shard.shardId()), portBase);
 
         final List<String> hostAddresses = List.of(hosts.split(","));
         final ClusterConfig clusterConfig = ClusterConfig.create(nodeId, hostAddresses, hostAddresses, portBase,
-            new AppClusteredService());
+            new AppClusteredService(shard));
         clusterConfig.consensusModuleContext().ingressChannel("aeron:udp");
 
         //this may need tuning for your environment.
@@ -80,7 +86,7 @@ public class ClusterApp
      * system property cluster.addresses
      * @return cluster addresses
      */
-    private static String getClusterAddresses()
+    static String getClusterAddresses()
     {
         String clusterAddresses = System.getenv("CLUSTER_ADDRESSES");
         if (null == clusterAddresses || clusterAddresses.isEmpty())
@@ -108,7 +114,7 @@ public class ClusterApp
      * Get the base port for the cluster configuration
      * @return base port, default 9000
      */
-    private static int getBasePort()
+    static int getBasePort()
     {
         String portBaseString = System.getenv("CLUSTER_PORT_BASE");
         if (null == portBaseString || portBaseString.isEmpty())
@@ -118,6 +124,41 @@ public class ClusterApp
         return parseInt(portBaseString);
     }
 
+    /**
+     * Get the shard this node's cluster is, from the environment variables SHARD_ID and SHARD_BOUNDS or the system
+     * properties shard.id and shard.bounds. Bounds are the comma separated lowest cusips of shards 1 onwards, and
+     * must match on every shard and client.
+     * @return the shard, default the only shard of an unsharded deployment
+     */
+    static RfqShard getShard()
+    {
+        String shardId = System.getenv("SHARD_ID");
+        if (null == shardId || shardId.isEmpty())
+        {
+            shardId = System.getProperty("shard.id", "0");
+        }
+        String shardBounds = System.getenv("SHARD_BOUNDS");
+        if (null == shardBounds || shardBounds.isEmpty())
+        {
+            shardBounds = System.getProperty("shard.bounds", "");
+        }
+        return new RfqShard(parseInt(shardId), RfqShards.parse(shardBounds));
+    }
+
+    /**
+     * Get the port offset between shards, so that each shard's cluster listens on its own ports
+     * @return shard port stride, default 1000
+     */
+    static int getShardPortStride()
+    {
+        String portStride = System.getenv("SHARD_PORT_STRIDE");
+        if (null == portStride || portStride.isEmpty())
+        {
+            portStride = System.getProperty("shard.port.stride", SHARD_PORT_STRIDE_DEFAULT);
+        }
+        return parseInt(portStride);
+    }
+
     /**
      * Await DNS resolution of self. Under Kubernetes, this can take a while.
      * @param hostArray host array
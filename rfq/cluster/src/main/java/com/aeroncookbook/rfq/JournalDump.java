@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentJournalEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalRefusalDecoder;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.infra.JournalWriterAgent;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Offline tool which renders the binary journal written by the cluster as text, one line per entry, oldest first.
+ * Run it with the journal directory, found under the cluster directory of a node, or with segment files.
+ */
+public class JournalDump
+{
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final RfqJournalEventDecoder rfqJournalEventDecoder = new RfqJournalEventDecoder();
+    private final RfqJournalRefusalDecoder rfqJournalRefusalDecoder = new RfqJournalRefusalDecoder();
+    private final InstrumentJournalEventDecoder instrumentJournalEventDecoder = new InstrumentJournalEventDecoder();
+    private final UnsafeBuffer rfqBuffer = new UnsafeBuffer(new byte[Rfq.RECORD_LENGTH]);
+    private final Rfq rfq = new Rfq().wrap(rfqBuffer, 0);
+    private final PrintStream out;
+
+    /**
+     * Constructor
+     * @param out the stream to which entries are rendered
+     */
+    public JournalDump(final PrintStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * The main method.
+     * @param args the journal directory, or one or more segment files
+     */
+    public static void main(final String[] args)
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: JournalDump <journal dir> | <segment file>...");
+            System.exit(-1);
+        }
+
+        final JournalDump journalDump = new JournalDump(System.out);
+        for (final String arg : args)
+        {
+            final File file = new File(arg);
+            if (file.isDirectory())
+            {
+                final File[] segments = file.listFiles((dir, name) -> JournalWriterAgent.isSegmentFile(name));
+                if (segments != null)
+                {
+                    Arrays.sort(segments);
+                    for (final File segment : segments)
+                    {
+                        journalDump.dumpSegment(segment);
+                    }
+                }
+            }
+            else
+            {
+                journalDump.dumpSegment(file);
+            }
+        }
+    }
+
+    /**
+     * Renders every entry in a segment file
+     * @param segmentFile the segment file
+     */
+    public void dumpSegment(final File segmentFile)
+    {
+        final MappedByteBuffer mappedSegment = IoUtil.mapExistingFile(segmentFile, "journal segment");
+        try
+        {
+            final UnsafeBuffer segment = new UnsafeBuffer(mappedSegment);
+            int position = 0;
+            while (position + JournalWriterAgent.FRAME_HEADER_LENGTH <= segment.capacity())
+            {
+                final int length = segment.getIntVolatile(position);
+                if (length <= 0)
+                {
+                    break;
+                }
+                dumpEntry(segment, position + JournalWriterAgent.FRAME_HEADER_LENGTH);
+                position += BitUtil.align(
+                    JournalWriterAgent.FRAME_HEADER_LENGTH + length, JournalWriterAgent.FRAME_ALIGNMENT);
+            }
+        }
+        finally
+        {
+            IoUtil.unmap(mappedSegment);
+        }
+    }
+
+    private void dumpEntry(final DirectBuffer buffer, final int offset)
+    {
+        headerDecoder.wrap(buffer, offset);
+        switch (headerDecoder.templateId())
+        {
+            case RfqJournalEventDecoder.TEMPLATE_ID ->
+            {
+                rfqJournalEventDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                final long timestamp = rfqJournalEventDecoder.timestamp();
+                final RfqJournalAction action = rfqJournalEventDecoder.action();
+                final int userId = rfqJournalEventDecoder.userId();
+                rfqJournalEventDecoder.getRfq(rfqBuffer, 0, Rfq.RECORD_LENGTH);
+                out.println(Instant.ofEpochMilli(timestamp) + " " + action + " user=" + userId + " " + rfq);
+            }
+            case RfqJournalRefusalDecoder.TEMPLATE_ID ->
+            {
+                rfqJournalRefusalDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                final RfqJournalAction action = rfqJournalRefusalDecoder.action();
+                out.println(Instant.ofEpochMilli(rfqJournalRefusalDecoder.timestamp()) + " " + action +
+                    " REFUSED correlation=" + rfqJournalRefusalDecoder.correlation() +
+                    " rfqId=" + rfqJournalRefusalDecoder.rfqId() +
+                    " user=" + rfqJournalRefusalDecoder.userId() +
+                    " result=" + resultName(action, rfqJournalRefusalDecoder.result()));
+            }
+            case InstrumentJournalEventDecoder.TEMPLATE_ID ->
+            {
+                instrumentJournalEventDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                out.println(Instant.ofEpochMilli(instrumentJournalEventDecoder.timestamp()) + " " +
+                    instrumentJournalEventDecoder.action() +
+                    " correlation=" + instrumentJournalEventDecoder.correlation() +
+                    " cusip=" + instrumentJournalEventDecoder.cusip() +
+                    " enabled=" + instrumentJournalEventDecoder.enabled() +
+                    " minSize=" + instrumentJournalEventDecoder.minSize() +
+                    " added=" + instrumentJournalEventDecoder.added() +
+                    " replaced=" + instrumentJournalEventDecoder.replaced());
+            }
+            default -> out.println("Unknown journal entry template id: " + headerDecoder.templateId());
+        }
+    }
+
+    private static String resultName(final RfqJournalAction action, final int result)
+    {
+        return switch (action)
+        {
+            case CREATE -> CreateRfqResult.get(result).name();
+            case QUOTE -> QuoteRfqResult.get(result).name();
+            case COUNTER -> CounterRfqResult.get(result).name();
+            case ACCEPT -> AcceptRfqResult.get(result).name();
+            case REJECT -> RejectRfqResult.get(result).name();
+            case CANCEL -> CancelRfqResult.get(result).name();
+            default -> Integer.toString(result);
+        };
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq;
+
+import com.aeroncookbook.rfq.infra.RfqShard;
+import com.aeroncookbook.rfq.view.ViewNode;
+import io.aeron.Aeron;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.cluster.ConsensusModule;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.samples.cluster.ClusterConfig;
+import org.agrona.IoUtil;
+import org.agrona.collections.MutableLong;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.AgentTerminationException;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+
+import static java.lang.Integer.parseInt;
+
+/**
+ * Runs a view node, a read only replica of an RFQ cluster which serves queries off the consensus path. The view node
+ * replays the log from the archive of one cluster node, and can be pointed at a follower so the leader does no work
+ * for it. Any number of view nodes can follow the same cluster.
+ */
+public class ViewNodeApp
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ViewNodeApp.class);
+    private static final int REPLAY_STREAM_ID = 3002;
+
+    /**
+     * The main method.
+     * @param args command line args
+     */
+    public static void main(final String[] args)
+    {
+        final ShutdownSignalBarrier barrier = new ShutdownSignalBarrier();
+        final RfqShard shard = ClusterApp.getShard();
+        final int portBase = ClusterApp.getBasePort() + shard.shardId() * ClusterApp.getShardPortStride();
+        final List<String> hostAddresses = List.of(ClusterApp.getClusterAddresses().split(","));
+        final int sourceNode = getSourceNode();
+        final String viewHost = getViewHost();
+        final int viewPort = getViewPort();
+        final File viewDir = getViewDir();
+        IoUtil.delete(viewDir, true);
+
+        final String archiveControlChannel = "aeron:udp?endpoint=" + hostAddresses.get(sourceNode) + ":" +
+            ClusterConfig.calculatePort(sourceNode, portBase, ClusterConfig.ARCHIVE_CONTROL_PORT_OFFSET);
+        LOGGER.info("Shard {} of {}, following the log of node {} through {}", shard.shardId(),
+            shard.shards().shardCount(), sourceNode, archiveControlChannel);
+
+        try (
+            MediaDriver mediaDriver = MediaDriver.launch(new MediaDriver.Context()
+                .threadingMode(ThreadingMode.SHARED)
+                .dirDeleteOnStart(true)
+                .dirDeleteOnShutdown(true));
+            Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+            AeronArchive archive = AeronArchive.connect(new AeronArchive.Context()
+                .aeron(aeron)
+                .controlRequestChannel(archiveControlChannel)
+                .controlResponseChannel("aeron:udp?endpoint=" + viewHost + ":0")))
+        {
+            final ViewNode viewNode = new ViewNode(
+                aeron,
+                archive,
+                findLogRecordingId(archive),
+                "aeron:udp?endpoint=" + viewHost + ":" + (viewPort + 1),
+                REPLAY_STREAM_ID,
+                "aeron:udp?endpoint=" + viewHost + ":" + viewPort,
+                Integer.getInteger(ViewNode.STREAM_ID_PROP_NAME, ViewNode.STREAM_ID_DEFAULT),
+                shard,
+                viewDir);
+
+            try (AgentRunner runner = new AgentRunner(
+                new BackoffIdleStrategy(), throwable -> onError(throwable, barrier), null, viewNode))
+            {
+                AgentRunner.startOnThread(runner);
+                LOGGER.info("Started View Node...");
+                barrier.await();
+                LOGGER.info("Exiting");
+            }
+        }
+    }
+
+    /**
+     * Finds the recording of the cluster log in the archive of a cluster node, being the most recent recording on
+     * the log stream
+     * @param archive the archive of the cluster node
+     * @return the recording id of the log
+     */
+    private static long findLogRecordingId(final AeronArchive archive)
+    {
+        final MutableLong logRecordingId = new MutableLong(Aeron.NULL_VALUE);
+        archive.listRecordingsForUri(0, Integer.MAX_VALUE, "", ConsensusModule.Configuration.logStreamId(),
+            (controlSessionId, correlationId, recordingId, startTimestamp, stopTimestamp, startPosition,
+            stopPosition, initialTermId, segmentFileLength, termBufferLength, mtuLength, sessionId, streamId,
+            strippedChannel, originalChannel, sourceIdentity) -> logRecordingId.set(recordingId));
+
+        if (logRecordingId.get() == Aeron.NULL_VALUE)
+        {
+            throw new IllegalStateException("No cluster log recording found in the archive");
+        }
+        return logRecordingId.get();
+    }
+
+    /**
+     * Logs an error, and shuts down if it ended the view node
+     * @param throwable the error
+     * @param barrier the barrier the main thread waits on
+     */
+    private static void onError(final Throwable throwable, final ShutdownSignalBarrier barrier)
+    {
+        LOGGER.error("View node error", throwable);
+        if (throwable instanceof AgentTerminationException)
+        {
+            barrier.signal();
+        }
+    }
+
+    /**
+     * Get the node whose archive the log is replayed from, from the environment variable VIEW_SOURCE_NODE or the
+     * system property view.source.node. A follower is best, so that the leader does no work for the view node.
+     * @return source node id, default 0
+     */
+    private static int getSourceNode()
+    {
+        String sourceNode = System.getenv("VIEW_SOURCE_NODE");
+        if (null == sourceNode || sourceNode.isEmpty())
+        {
+            sourceNode = System.getProperty("view.source.node", "0");
+        }
+        return parseInt(sourceNode);
+    }
+
+    /**
+     * Get the host the view node receives the log and queries on, from the environment variable VIEW_HOST or the
+     * system property view.host
+     * @return view host, default localhost
+     */
+    private static String getViewHost()
+    {
+        String viewHost = System.getenv("VIEW_HOST");
+        if (null == viewHost || viewHost.isEmpty())
+        {
+            viewHost = System.getProperty("view.host", "localhost");
+        }
+        return viewHost;
+    }
+
+    /**
+     * Get the port queries are received on, from the environment variable VIEW_PORT or the system property view.port.
+     * The log is replayed to the port after it.
+     * @return view port, default 8000
+     */
+    private static int getViewPort()
+    {
+        String viewPort = System.getenv("VIEW_PORT");
+        if (null == viewPort || viewPort.isEmpty())
+        {
+            viewPort = System.getProperty("view.port", "8000");
+        }
+        return parseInt(viewPort);
+    }
+
+    /**
+     * Get the directory the view node's journal and latency log are written to, from the environment variable
+     * VIEW_DIR or the system property view.dir. It is cleared on start, as the view is rebuilt from the log.
+     * @return view directory, default rfq-view
+     */
+    private static File getViewDir()
+    {
+        String viewDir = System.getenv("VIEW_DIR");
+        if (null == viewDir || viewDir.isEmpty())
+        {
+            viewDir = System.getProperty("view.dir", "rfq-view");
+        }
+        return new File(viewDir);
+    }
+}
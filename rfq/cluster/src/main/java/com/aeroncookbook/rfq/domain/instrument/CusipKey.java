@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.instrument;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Packs a 9 character ASCII CUSIP into a single long, 7 bits per character, so that instruments can be keyed and
+ * looked up without allocating a String. Unused trailing characters are packed as zero, matching the null padding
+ * of the SBE fixed length field.
+ */
+public final class CusipKey
+{
+    /**
+     * Length of a CUSIP in characters
+     */
+    public static final int CUSIP_LENGTH = 9;
+
+    private static final int BITS_PER_CHAR = 7;
+    private static final int CHAR_MASK = 0x7F;
+
+    private CusipKey()
+    {
+        // no instances
+    }
+
+    /**
+     * Packs the CUSIP held at the given offset of an SBE encoded buffer
+     *
+     * @param buffer the buffer holding the fixed length CUSIP field
+     * @param offset the offset of the CUSIP field in the buffer
+     * @return the packed key
+     */
+    public static long pack(final DirectBuffer buffer, final int offset)
+    {
+        long key = 0;
+        for (int i = 0; i < CUSIP_LENGTH; i++)
+        {
+            key = (key << BITS_PER_CHAR) | (buffer.getByte(offset + i) & CHAR_MASK);
+        }
+        return key;
+    }
+
+    /**
+     * Packs a CUSIP held as a character sequence
+     *
+     * @param cusip the CUSIP
+     * @return the packed key
+     */
+    public static long pack(final CharSequence cusip)
+    {
+        final int length = cusip.length();
+        long key = 0;
+        for (int i = 0; i < CUSIP_LENGTH; i++)
+        {
+            final char c = i < length ? cusip.charAt(i) : 0;
+            key = (key << BITS_PER_CHAR) | (c & CHAR_MASK);
+        }
+        return key;
+    }
+
+    /**
+     * Unpacks a key back to a CUSIP string, for logging and diagnostics only
+     *
+     * @param key the packed key
+     * @return the CUSIP, without any trailing padding
+     */
+    public static String unpack(final long key)
+    {
+        final StringBuilder builder = new StringBuilder(CUSIP_LENGTH);
+        for (int i = CUSIP_LENGTH - 1; i >= 0; i--)
+        {
+            final char c = (char)((key >>> (i * BITS_PER_CHAR)) & CHAR_MASK);
+            if (c == 0)
+            {
+                break;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -18,22 +18,42 @@ package com.aeroncookbook.rfq.domain.instrument;
 
 public class Instrument
 {
+    private final int instrumentId;
     private final String cusip;
+    private final long cusipKey;
     private final int minSize;
     private boolean enabled;
 
-    public Instrument(final String cusip, final boolean enabled, final int minSize)
+    public Instrument(final int instrumentId, final String cusip, final boolean enabled, final int minSize)
     {
+        this.instrumentId = instrumentId;
         this.cusip = cusip;
+        this.cusipKey = CusipKey.pack(cusip);
         this.enabled = enabled;
         this.minSize = minSize;
     }
 
+    /**
+     * Gets the dense id of the instrument, issued in the order instruments are first added and kept when an
+     * instrument is replaced, so that per instrument state such as entitlements can be held in bitsets.
+     *
+     * @return the instrument id
+     */
+    public int getInstrumentId()
+    {
+        return instrumentId;
+    }
+
     public String getCusip()
     {
         return cusip;
     }
 
+    public long getCusipKey()
+    {
+        return cusipKey;
+    }
+
     public int getMinSize()
     {
         return minSize;
@@ -16,30 +16,68 @@
 
 package com.aeroncookbook.rfq.domain.instrument;
 
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentJournalAction;
 import com.aeroncookbook.rfq.infra.ClusterClientResponder;
-import org.agrona.collections.Object2ObjectHashMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.aeroncookbook.rfq.infra.EventJournal;
+import com.aeroncookbook.rfq.infra.RfqShard;
+import com.aeroncookbook.rfq.infra.SortedLongSet;
+import org.agrona.collections.Long2ObjectHashMap;
+
+import java.util.function.Consumer;
 
 /**
  * The instrument domain model.
+ * <p>
+ * Alongside the lookup by packed cusip, the packed cusips are held in ascending order. Packing preserves the order
+ * of the CUSIP characters, so this is CUSIP order, and listings page through it with a resume after CUSIP cursor.
+ * <p>
+ * When sharded, only the instruments in this shard's CUSIP range are held; see {@link #isOwned(CharSequence)}.
+ * <p>
+ * Each instrument is given a dense id when first added, which it keeps when replaced, and which is held in the
+ * snapshot so that bitsets over instrument ids survive a restart.
  */
 public class Instruments
 {
-    private static final int DEFAULT_MIN_VALUE = 0;
-    private static final Logger LOGGER = LoggerFactory.getLogger(Instruments.class);
+    /**
+     * Maximum number of instruments returned by one list request
+     */
+    public static final int MAX_LIST_INSTRUMENTS = 1_000;
+
     private final ClusterClientResponder clusterClientResponder;
+    private final EventJournal eventJournal;
+    private final RfqShard shard;
 
-    private final Object2ObjectHashMap<String, Instrument> instrumentByCusip = new Object2ObjectHashMap<>();
+    private final Long2ObjectHashMap<Instrument> instrumentByCusipKey = new Long2ObjectHashMap<>();
+    private final SortedLongSet cusipKeys = new SortedLongSet();
+    private int nextInstrumentId = 0;
 
     /**
      * Constructor for instrument domain model object.
      *
      * @param clusterClientResponder the responder to which events are sent
+     * @param eventJournal           the journal to which changes are written
+     * @param shard                  the shard whose instruments are held
      */
-    public Instruments(final ClusterClientResponder clusterClientResponder)
+    public Instruments(
+        final ClusterClientResponder clusterClientResponder,
+        final EventJournal eventJournal,
+        final RfqShard shard)
     {
         this.clusterClientResponder = clusterClientResponder;
+        this.eventJournal = eventJournal;
+        this.shard = shard;
+    }
+
+    /**
+     * Checks if an instrument belongs to this shard, and so may be added. Instruments of other shards are refused,
+     * as their RFQs would be routed elsewhere.
+     *
+     * @param cusip the cusip of the instrument
+     * @return true if the instrument may be added
+     */
+    public boolean isOwned(final CharSequence cusip)
+    {
+        return shard.ownsCusip(cusip);
     }
 
     /**
@@ -50,38 +88,74 @@ public class Instruments
      * @param cusip   the cusip of the instrument
      * @param enabled the enabled flag of the instrument
      * @param minSize the minimum size of the instrument
+     * @return true if the instrument is new, false if it replaced an instrument with the same cusip
      */
-    public void addInstrument(
+    public boolean addInstrument(
         final InstrumentAddType addType,
-        final String correlation,
+        final long correlation,
         final String cusip,
         final boolean enabled,
         final int minSize)
     {
-        final Instrument instrument = new Instrument(cusip, enabled, minSize);
-        instrumentByCusip.put(cusip, instrument);
+        final Instrument existing = instrumentByCusipKey.get(CusipKey.pack(cusip));
+        final int instrumentId = existing != null ? existing.getInstrumentId() : nextInstrumentId++;
+        final boolean added = putInstrument(new Instrument(instrumentId, cusip, enabled, minSize));
 
+        if (addType != InstrumentAddType.SNAPSHOT_LOAD)
+        {
+            eventJournal.instrumentEvent(InstrumentJournalAction.ADD, correlation, cusip, enabled, minSize);
+        }
         if (addType == InstrumentAddType.INTERACTIVE)
         {
-            LOGGER.info("Added instrument {} to domain model", cusip);
-            clusterClientResponder.sendInstrumentAdded(correlation);
+            clusterClientResponder.sendInstrumentAdded(correlation, true);
         }
+        return added;
+    }
+
+    /**
+     * Restores an instrument from a snapshot along with its id.
+     *
+     * @param instrumentId the id of the instrument
+     * @param cusip        the cusip of the instrument
+     * @param enabled      the enabled flag of the instrument
+     * @param minSize      the minimum size of the instrument
+     */
+    public void restoreInstrument(final int instrumentId, final String cusip, final boolean enabled, final int minSize)
+    {
+        putInstrument(new Instrument(instrumentId, cusip, enabled, minSize));
+        nextInstrumentId = Math.max(nextInstrumentId, instrumentId + 1);
+    }
+
+    /**
+     * Completes a batch of instruments added with {@link InstrumentAddType#BATCH}, sending one result for the batch.
+     * The batch fails if any of its instruments belonged to another shard, though the rest are still added.
+     *
+     * @param correlation the correlation id of the request
+     * @param added       the number of new instruments
+     * @param replaced    the number of instruments that replaced one with the same cusip
+     * @param refused     the number of instruments refused as they belong to another shard
+     */
+    public void completeBatch(final long correlation, final int added, final int replaced, final int refused)
+    {
+        eventJournal.instrumentBatchCompleted(correlation, added, replaced);
+        clusterClientResponder.sendInstrumentsBatchAdded(correlation, refused == 0, added, replaced);
     }
 
     /**
      * Sets the enabled flag for an instrument.
      *
      * @param correlation the correlation id of the request
-     * @param cusip   the cusip of the instrument
+     * @param cusipKey the packed cusip of the instrument
      * @param enabled the enabled flag of the instrument
      */
-    public void setEnabledFlagForCusip(final String correlation, final String cusip, final boolean enabled)
+    public void setEnabledFlagForCusip(final long correlation, final long cusipKey, final boolean enabled)
     {
-        final Instrument instrument = instrumentByCusip.get(cusip);
+        final Instrument instrument = instrumentByCusipKey.get(cusipKey);
         if (instrument != null)
         {
             instrument.setEnabled(enabled);
-            LOGGER.info("Set enabled flag for instrument {} to {}", cusip, enabled);
+            eventJournal.instrumentEvent(InstrumentJournalAction.SET_ENABLED, correlation, instrument.getCusip(),
+                enabled, instrument.getMinSize());
             clusterClientResponder.sendInstrumentEnabledFlagSet(correlation, true);
         }
         else
@@ -91,65 +165,69 @@ public class Instruments
     }
 
     /**
-     * Returns the enabled flag for an instrument.
+     * Returns the instrument for a packed cusip, so that callers resolve the instrument once per command.
      *
-     * @param cusip the cusip of the instrument
-     * @return the enabled flag for the instrument
+     * @param cusipKey the packed cusip of the instrument, see {@link CusipKey}
+     * @return the instrument, or null if the cusip is unknown
      */
-    public boolean isInstrumentEnabled(final String cusip)
+    public Instrument getInstrument(final long cusipKey)
     {
-        final Instrument instrument = instrumentByCusip.get(cusip);
-        if (instrument == null)
-        {
-            return false;
-        }
-        return instrument.isEnabled();
+        return instrumentByCusipKey.get(cusipKey);
     }
 
     /**
-     * Returns true if the instrument is valid.
+     * Returns the instrument at a position in CUSIP order.
      *
-     * @param cusip the cusip of the instrument
-     * @return true if the instrument is valid
+     * @param index the position, from zero to {@link #instrumentCount()} exclusive
+     * @return the instrument
      */
-    public boolean isValidCusip(final String cusip)
+    public Instrument instrumentAt(final int index)
     {
-        return instrumentByCusip.containsKey(cusip);
+        return instrumentByCusipKey.get(cusipKeys.get(index));
     }
 
     /**
-     * Returns the minimum size for an instrument.
+     * Returns the number of instruments in the domain model.
      *
-     * @param cusip the cusip of the instrument
-     * @return the minimum size for the instrument
+     * @return the number of instruments in the domain model
      */
-    public int getMinSize(final String cusip)
+    public int instrumentCount()
     {
-        final Instrument instrument = instrumentByCusip.get(cusip);
-        if (instrument == null)
-        {
-            return DEFAULT_MIN_VALUE;
-        }
-        return instrument.getMinSize();
+        return instrumentByCusipKey.size();
     }
 
     /**
-     * Returns the number of instruments in the domain model.
+     * Visits each instrument in the domain model.
      *
-     * @return the number of instruments in the domain model
+     * @param consumer the consumer to call for each instrument
      */
-    public int instrumentCount()
+    public void forEachInstrument(final Consumer<Instrument> consumer)
     {
-        return instrumentByCusip.size();
+        instrumentByCusipKey.values().forEach(consumer);
     }
 
     /**
-     * Emits a list of instruments to the session.
+     * Emits instruments to the session in CUSIP order, starting after a cursor. The responder streams them straight
+     * from this model in bounded pages, so no list of the instruments is built.
      *
-     * @param correlation the correlation id of the request
+     * @param correlation   the correlation id of the request
+     * @param afterCusipKey the packed cusip to list after, or zero to list from the start
+     * @param limit         the maximum number of instruments to list, capped at {@link #MAX_LIST_INSTRUMENTS}
      */
-    public void listInstruments(final String correlation)
+    public void listInstruments(final long correlation, final long afterCusipKey, final int limit)
+    {
+        final int maxCount = limit <= 0 ? MAX_LIST_INSTRUMENTS : Math.min(limit, MAX_LIST_INSTRUMENTS);
+        final int fromIndex = cusipKeys.indexAfter(afterCusipKey);
+        final int count = Math.min(maxCount, cusipKeys.size() - fromIndex);
+        final int endIndex = fromIndex + count;
+        final String nextAfterCusip = endIndex < cusipKeys.size() ? instrumentAt(endIndex - 1).getCusip() : "";
+
+        clusterClientResponder.sendInstruments(correlation, this, fromIndex, count, nextAfterCusip);
+    }
+
+    private boolean putInstrument(final Instrument instrument)
     {
-        clusterClientResponder.sendInstruments(correlation, instrumentByCusip.values().stream().toList());
+        instrumentByCusipKey.put(instrument.getCusipKey(), instrument);
+        return cusipKeys.add(instrument.getCusipKey());
     }
 }
@@ -17,52 +17,117 @@
 package com.aeroncookbook.rfq.domain.rfq;
 
 import com.aeroncookbook.cluster.rfq.sbe.Side;
-import com.aeroncookbook.rfq.domain.rfq.states.RfqState;
-import com.aeroncookbook.rfq.domain.rfq.states.RfqStateHelper;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
 import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqTransitions;
+import org.agrona.MutableDirectBuffer;
 
+/**
+ * Flyweight over a fixed length RFQ record held off heap, see {@link RfqRepository}. The record layout is the same
+ * in memory and in a snapshot, so RFQs are snapshot and restored by copying the records as they are. An instance
+ * holds no RFQ state of its own; it reads and writes whichever record it was last wrapped over.
+ */
 public class Rfq
 {
-    private final String correlation;
-    private final long expireTimeMs;
-    private final int rfqId;
-    private final long quantity;
-    private final Side requesterSide;
-    private final String cusip;
-    private final int requesterUserId;
-    private RfqState currentState;
-    private int responderUserId = Integer.MIN_VALUE;
-    private int lastCounterUser = Integer.MIN_VALUE;
-    private int acceptUser = Integer.MIN_VALUE;
-    private int rejectUser = Integer.MIN_VALUE;
-    private long price = Long.MIN_VALUE;
-
-    public Rfq(
+    /**
+     * Length of a record, padded so that records placed end to end keep the longs aligned
+     */
+    public static final int RECORD_LENGTH = 80;
+
+    static final int RFQ_ID_OFFSET = 0;
+    private static final int REQUESTER_USER_ID_OFFSET = 4;
+    private static final int CORRELATION_OFFSET = 8;
+    private static final int EXPIRE_TIME_MS_OFFSET = 16;
+    private static final int QUANTITY_OFFSET = 24;
+    private static final int CUSIP_KEY_OFFSET = 32;
+    private static final int PRICE_OFFSET = 40;
+    private static final int RESPONDER_USER_ID_OFFSET = 48;
+    private static final int LAST_COUNTER_USER_OFFSET = 52;
+    private static final int ACCEPT_USER_OFFSET = 56;
+    private static final int REJECT_USER_OFFSET = 60;
+    private static final int STATE_ID_OFFSET = 64;
+    private static final int REQUESTER_SIDE_OFFSET = 66;
+    private static final int CUSIP_OFFSET = 67;
+    private MutableDirectBuffer buffer;
+    private int offset;
+
+    /**
+     * Wraps the flyweight over a record.
+     * @param buffer the buffer holding the record
+     * @param offset the offset of the record in the buffer
+     * @return this for a fluent API
+     */
+    public Rfq wrap(final MutableDirectBuffer buffer, final int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Gets the buffer holding the wrapped record, so that the record can be copied as it is.
+     * @return the buffer
+     */
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Gets the offset of the wrapped record in its buffer.
+     * @return the offset
+     */
+    public int offset()
+    {
+        return offset;
+    }
+
+    /**
+     * Writes a newly created RFQ into the wrapped record, in the CREATED state with no responder or price.
+     * @param rfqId the RFQ id
+     * @param correlation the correlation id from the creation
+     * @param expireTimeMs the time at which the RFQ expires
+     * @param quantity the quantity of the RFQ
+     * @param requesterSide the side of the RFQ as defined by the requester
+     * @param cusip the cusip of the instrument
+     * @param requesterUserId the user id of the requester
+     */
+    public void init(
         final int rfqId,
-        final String correlation,
+        final long correlation,
         final long expireTimeMs,
         final long quantity,
         final Side requesterSide,
         final String cusip,
         final int requesterUserId)
     {
-        this.rfqId = rfqId;
-        this.correlation = correlation;
-        this.expireTimeMs = expireTimeMs;
-        this.quantity = quantity;
-        this.requesterSide = requesterSide;
-        this.cusip = cusip;
-        this.requesterUserId = requesterUserId;
-        this.currentState = RfqStateHelper.getState(RfqStates.CREATED.getStateId());
+        buffer.putInt(offset + RFQ_ID_OFFSET, rfqId);
+        buffer.putInt(offset + REQUESTER_USER_ID_OFFSET, requesterUserId);
+        buffer.putLong(offset + CORRELATION_OFFSET, correlation);
+        buffer.putLong(offset + EXPIRE_TIME_MS_OFFSET, expireTimeMs);
+        buffer.putLong(offset + QUANTITY_OFFSET, quantity);
+        buffer.putLong(offset + CUSIP_KEY_OFFSET, CusipKey.pack(cusip));
+        buffer.putByte(offset + REQUESTER_SIDE_OFFSET, (byte)requesterSide.value());
+        for (int i = 0; i < CusipKey.CUSIP_LENGTH; i++)
+        {
+            buffer.putByte(offset + CUSIP_OFFSET + i, i < cusip.length() ? (byte)cusip.charAt(i) : 0);
+        }
+        restoreState(
+            RfqStates.CREATED.getStateId(),
+            Integer.MIN_VALUE,
+            Integer.MIN_VALUE,
+            Integer.MIN_VALUE,
+            Integer.MIN_VALUE,
+            Long.MIN_VALUE);
     }
 
     /**
      * Get the correlation id of the RFQ.
      * @return the correlation id from the creation
      */
-    public String getCorrelation()
+    public long getCorrelation()
     {
-        return correlation;
+        return buffer.getLong(offset + CORRELATION_OFFSET);
     }
 
     /**
@@ -71,7 +136,7 @@ public class Rfq
      */
     public long getExpireTimeMs()
     {
-        return expireTimeMs;
+        return buffer.getLong(offset + EXPIRE_TIME_MS_OFFSET);
     }
 
     /**
@@ -80,7 +145,7 @@ public class Rfq
      */
     public int getRfqId()
     {
-        return rfqId;
+        return buffer.getInt(offset + RFQ_ID_OFFSET);
     }
 
     /**
@@ -89,7 +154,7 @@ public class Rfq
      */
     public long getQuantity()
     {
-        return quantity;
+        return buffer.getLong(offset + QUANTITY_OFFSET);
     }
 
     /**
@@ -98,16 +163,26 @@ public class Rfq
      */
     public Side getRequesterSide()
     {
-        return requesterSide;
+        return Side.get(buffer.getByte(offset + REQUESTER_SIDE_OFFSET));
     }
 
     /**
-     * Get the current state of the RFQ.
-     * @return the current state of the RFQ
+     * Get the id of the current state of the RFQ.
+     * @return the id of the current state, see {@link RfqStates}
      */
-    public RfqState getCurrentState()
+    public short getStateId()
     {
-        return currentState;
+        return buffer.getShort(offset + STATE_ID_OFFSET);
+    }
+
+    /**
+     * Check if the RFQ is in a given state.
+     * @param state the state to check for
+     * @return true if the RFQ is in the state
+     */
+    public boolean isInState(final RfqStates state)
+    {
+        return getStateId() == state.getStateId();
     }
 
     /**
@@ -116,7 +191,25 @@ public class Rfq
      */
     public String getCusip()
     {
-        return cusip;
+        return buffer.getStringWithoutLengthAscii(offset + CUSIP_OFFSET, CusipKey.CUSIP_LENGTH);
+    }
+
+    /**
+     * Copy the cusip of the instrument as ASCII bytes, avoiding the allocation of a string.
+     * @param dst the array to copy into, of at least {@link CusipKey#CUSIP_LENGTH} bytes
+     */
+    public void getCusip(final byte[] dst)
+    {
+        buffer.getBytes(offset + CUSIP_OFFSET, dst, 0, CusipKey.CUSIP_LENGTH);
+    }
+
+    /**
+     * Get the packed cusip of the instrument.
+     * @return the packed cusip, see {@link CusipKey}
+     */
+    public long getCusipKey()
+    {
+        return buffer.getLong(offset + CUSIP_KEY_OFFSET);
     }
 
     /**
@@ -125,7 +218,7 @@ public class Rfq
      */
     public int getRequesterUserId()
     {
-        return requesterUserId;
+        return buffer.getInt(offset + REQUESTER_USER_ID_OFFSET);
     }
 
     /**
@@ -134,7 +227,7 @@ public class Rfq
      */
     public int getResponderUserId()
     {
-        return responderUserId;
+        return buffer.getInt(offset + RESPONDER_USER_ID_OFFSET);
     }
 
     /**
@@ -143,7 +236,7 @@ public class Rfq
      */
     public boolean hasResponder()
     {
-        return responderUserId != Integer.MIN_VALUE;
+        return getResponderUserId() != Integer.MIN_VALUE;
     }
 
     /**
@@ -152,7 +245,7 @@ public class Rfq
      */
     public void setResponderUserId(final int responderUserId)
     {
-        this.responderUserId = responderUserId;
+        buffer.putInt(offset + RESPONDER_USER_ID_OFFSET, responderUserId);
     }
 
     /**
@@ -161,7 +254,7 @@ public class Rfq
      */
     public long getPrice()
     {
-        return price;
+        return buffer.getLong(offset + PRICE_OFFSET);
     }
 
     /**
@@ -170,7 +263,7 @@ public class Rfq
      */
     public int getLastCounterUser()
     {
-        return lastCounterUser;
+        return buffer.getInt(offset + LAST_COUNTER_USER_OFFSET);
     }
 
     /**
@@ -179,32 +272,84 @@ public class Rfq
      */
     public void setLastCounterUser(final int lastCounterUser)
     {
-        this.lastCounterUser = lastCounterUser;
+        buffer.putInt(offset + LAST_COUNTER_USER_OFFSET, lastCounterUser);
+    }
+
+    /**
+     * Returns the user which accepted the RFQ
+     * @return the user which accepted the RFQ
+     */
+    public int getAcceptUser()
+    {
+        return buffer.getInt(offset + ACCEPT_USER_OFFSET);
+    }
+
+    /**
+     * Returns the user which rejected the RFQ
+     * @return the user which rejected the RFQ
+     */
+    public int getRejectUser()
+    {
+        return buffer.getInt(offset + REJECT_USER_OFFSET);
+    }
+
+    /**
+     * Sets the mutable state of the RFQ, as when restoring from a snapshot.
+     * @param stateId the id of the current state
+     * @param responderUserId the responder user id
+     * @param lastCounterUser the last user to counter
+     * @param acceptUser the user which accepted the RFQ
+     * @param rejectUser the user which rejected the RFQ
+     * @param price the current price
+     */
+    public void restoreState(
+        final short stateId,
+        final int responderUserId,
+        final int lastCounterUser,
+        final int acceptUser,
+        final int rejectUser,
+        final long price)
+    {
+        buffer.putShort(offset + STATE_ID_OFFSET, stateId);
+        buffer.putInt(offset + RESPONDER_USER_ID_OFFSET, responderUserId);
+        buffer.putInt(offset + LAST_COUNTER_USER_OFFSET, lastCounterUser);
+        buffer.putInt(offset + ACCEPT_USER_OFFSET, acceptUser);
+        buffer.putInt(offset + REJECT_USER_OFFSET, rejectUser);
+        buffer.putLong(offset + PRICE_OFFSET, price);
     }
 
     @Override
     public String toString()
     {
         return "Rfq{" +
-            "correlation='" + correlation + '\'' +
-            ", expireTimeMs=" + expireTimeMs +
-            ", rfqId=" + rfqId +
-            ", quantity=" + quantity +
-            ", requesterSide='" + requesterSide + '\'' +
-            ", currentState='" + currentState.getCurrentState().name() + '\'' +
-            ", cusip='" + cusip + '\'' +
-            ", price=" + price +
-            ", requesterUserId=" + requesterUserId +
+            "correlation=" + getCorrelation() +
+            ", expireTimeMs=" + getExpireTimeMs() +
+            ", rfqId=" + getRfqId() +
+            ", quantity=" + getQuantity() +
+            ", requesterSide='" + getRequesterSide() + '\'' +
+            ", currentState='" + RfqStates.fromId(getStateId()).name() + '\'' +
+            ", cusip='" + getCusip() + '\'' +
+            ", price=" + getPrice() +
+            ", requesterUserId=" + getRequesterUserId() +
             '}';
     }
 
+    /**
+     * Check if the RFQ is in a terminal state.
+     * @return true if no further transitions are possible
+     */
+    public boolean isTerminal()
+    {
+        return RfqTransitions.isTerminal(getStateId());
+    }
+
     /**
      * Check if the RFQ can be expired.
      * @return true if the RFQ can be expired
      */
     public boolean canExpire()
     {
-        return currentState.canTransitionTo(RfqStates.EXPIRED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.EXPIRE);
     }
 
     /**
@@ -212,9 +357,10 @@ public class Rfq
      */
     public void expire()
     {
-        if (currentState.canTransitionTo(RfqStates.EXPIRED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.EXPIRE);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.EXPIRED);
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
         }
     }
 
@@ -224,7 +370,7 @@ public class Rfq
      */
     public boolean canCancel()
     {
-        return currentState.canTransitionTo(RfqStates.CANCELED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.CANCEL);
     }
 
     /**
@@ -232,9 +378,10 @@ public class Rfq
      */
     public void cancel()
     {
-        if (currentState.canTransitionTo(RfqStates.CANCELED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.CANCEL);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.CANCELED);
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
         }
     }
 
@@ -244,7 +391,7 @@ public class Rfq
      */
     public boolean canQuote()
     {
-        return currentState.canTransitionTo(RfqStates.QUOTED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.QUOTE);
     }
 
     /**
@@ -254,11 +401,12 @@ public class Rfq
      */
     public void quote(final int responderUserId, final long price)
     {
-        if (currentState.canTransitionTo(RfqStates.QUOTED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.QUOTE);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.QUOTED);
-            this.responderUserId = responderUserId;
-            this.price = price;
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
+            buffer.putInt(offset + RESPONDER_USER_ID_OFFSET, responderUserId);
+            buffer.putLong(offset + PRICE_OFFSET, price);
         }
     }
 
@@ -268,7 +416,7 @@ public class Rfq
      */
     public boolean canCounter()
     {
-        return currentState.canTransitionTo(RfqStates.COUNTERED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.COUNTER);
     }
 
     /**
@@ -278,11 +426,12 @@ public class Rfq
      */
     public void counter(final int counterUserId, final long price)
     {
-        if (currentState.canTransitionTo(RfqStates.COUNTERED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.COUNTER);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.COUNTERED);
-            this.lastCounterUser = counterUserId;
-            this.price = price;
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
+            buffer.putInt(offset + LAST_COUNTER_USER_OFFSET, counterUserId);
+            buffer.putLong(offset + PRICE_OFFSET, price);
         }
     }
 
@@ -292,7 +441,7 @@ public class Rfq
      */
     public boolean canAccept()
     {
-        return currentState.canTransitionTo(RfqStates.ACCEPTED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.ACCEPT);
     }
 
     /**
@@ -301,10 +450,11 @@ public class Rfq
      */
     public void accept(final int acceptUserId)
     {
-        if (currentState.canTransitionTo(RfqStates.ACCEPTED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.ACCEPT);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.ACCEPTED);
-            this.acceptUser = acceptUserId;
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
+            buffer.putInt(offset + ACCEPT_USER_OFFSET, acceptUserId);
         }
     }
 
@@ -314,7 +464,7 @@ public class Rfq
      */
     public boolean canReject()
     {
-        return currentState.canTransitionTo(RfqStates.REJECTED);
+        return RfqTransitions.canApply(getStateId(), RfqTransitions.REJECT);
     }
 
     /**
@@ -323,10 +473,11 @@ public class Rfq
      */
     public void reject(final int rejectUserId)
     {
-        if (currentState.canTransitionTo(RfqStates.REJECTED))
+        final short nextStateId = RfqTransitions.nextState(getStateId(), RfqTransitions.REJECT);
+        if (nextStateId != RfqTransitions.INVALID_TRANSITION)
         {
-            currentState = currentState.transitionTo(RfqStates.REJECTED);
-            this.rejectUser = rejectUserId;
+            buffer.putShort(offset + STATE_ID_OFFSET, nextStateId);
+            buffer.putInt(offset + REJECT_USER_OFFSET, rejectUserId);
         }
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Bounded history of the ids of RFQs which have reached a terminal state. Once full, the oldest id is evicted as a
+ * new one is added, and its RFQ is then removed from the store, so memory use is flat no matter how many RFQs the
+ * cluster has processed.
+ */
+public class RfqHistory
+{
+    /**
+     * Returned by {@link #add(int)} when nothing was evicted
+     */
+    public static final int NONE_EVICTED = RfqRepository.FREE_RFQ_ID;
+
+    private final int[] ring;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of RFQs retained
+     */
+    public RfqHistory(final int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.ring = new int[capacity];
+    }
+
+    /**
+     * Adds an RFQ to the history, evicting the oldest retained RFQ if the history is full.
+     * @param rfqId the id of the RFQ to add
+     * @return the id of the evicted RFQ, or {@link #NONE_EVICTED}
+     */
+    public int add(final int rfqId)
+    {
+        if (size == ring.length)
+        {
+            final int evicted = ring[head];
+            ring[head] = rfqId;
+            head = next(head);
+            return evicted;
+        }
+
+        ring[index(size)] = rfqId;
+        size++;
+        return NONE_EVICTED;
+    }
+
+    /**
+     * Gets the number of retained RFQs
+     * @return the number of retained RFQs
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of RFQs retained
+     * @return the capacity
+     */
+    public int capacity()
+    {
+        return ring.length;
+    }
+
+    /**
+     * Visits the id of each retained RFQ, oldest first
+     * @param consumer the consumer to call for each RFQ id
+     */
+    public void forEach(final IntConsumer consumer)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            consumer.accept(ring[index(i)]);
+        }
+    }
+
+    private int index(final int position)
+    {
+        final int index = head + position;
+        return index >= ring.length ? index - ring.length : index;
+    }
+
+    private int next(final int index)
+    {
+        return index + 1 == ring.length ? 0 : index + 1;
+    }
+}
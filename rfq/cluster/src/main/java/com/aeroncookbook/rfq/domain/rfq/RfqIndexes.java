@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.rfq.infra.SortedIntSet;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+
+/**
+ * Secondary indexes over the live RFQs, by instrument, requester, responder and state. Each index maps a key to the
+ * ids of the RFQs with that key, in ascending order so that queries can page with an RFQ id cursor.
+ * <p>
+ * Indexes are maintained incrementally: an RFQ is removed under its old keys before a transition and added under
+ * its new keys after it. They are derived entirely from the live RFQs, so they are rebuilt as RFQs are restored from
+ * a snapshot and are never written to one.
+ */
+public class RfqIndexes
+{
+    private static final SortedIntSet EMPTY = new SortedIntSet();
+    private final Long2ObjectHashMap<SortedIntSet> byCusipKey = new Long2ObjectHashMap<>();
+    private final Int2ObjectHashMap<SortedIntSet> byRequester = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<SortedIntSet> byResponder = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<SortedIntSet> byState = new Int2ObjectHashMap<>();
+
+    /**
+     * Adds an RFQ under its current keys
+     *
+     * @param rfq the RFQ to add
+     */
+    public void add(final Rfq rfq)
+    {
+        final int rfqId = rfq.getRfqId();
+        byCusipKey.computeIfAbsent(rfq.getCusipKey(), k -> new SortedIntSet()).add(rfqId);
+        byRequester.computeIfAbsent(rfq.getRequesterUserId(), k -> new SortedIntSet()).add(rfqId);
+        if (rfq.hasResponder())
+        {
+            byResponder.computeIfAbsent(rfq.getResponderUserId(), k -> new SortedIntSet()).add(rfqId);
+        }
+        byState.computeIfAbsent(rfq.getStateId(), k -> new SortedIntSet()).add(rfqId);
+    }
+
+    /**
+     * Removes an RFQ from under its current keys
+     *
+     * @param rfq the RFQ to remove
+     */
+    public void remove(final Rfq rfq)
+    {
+        final int rfqId = rfq.getRfqId();
+        byCusipKey(rfq.getCusipKey()).remove(rfqId);
+        byRequester(rfq.getRequesterUserId()).remove(rfqId);
+        if (rfq.hasResponder())
+        {
+            byResponder(rfq.getResponderUserId()).remove(rfqId);
+        }
+        byState(rfq.getStateId()).remove(rfqId);
+    }
+
+    /**
+     * Gets the ids of the live RFQs for an instrument
+     *
+     * @param cusipKey the packed cusip of the instrument
+     * @return the RFQ ids, which must not be modified
+     */
+    public SortedIntSet byCusipKey(final long cusipKey)
+    {
+        final SortedIntSet rfqIds = byCusipKey.get(cusipKey);
+        return rfqIds != null ? rfqIds : EMPTY;
+    }
+
+    /**
+     * Gets the ids of the live RFQs a user requested
+     *
+     * @param userId the requester user id
+     * @return the RFQ ids, which must not be modified
+     */
+    public SortedIntSet byRequester(final int userId)
+    {
+        final SortedIntSet rfqIds = byRequester.get(userId);
+        return rfqIds != null ? rfqIds : EMPTY;
+    }
+
+    /**
+     * Gets the ids of the live RFQs a user is the responder on
+     *
+     * @param userId the responder user id
+     * @return the RFQ ids, which must not be modified
+     */
+    public SortedIntSet byResponder(final int userId)
+    {
+        final SortedIntSet rfqIds = byResponder.get(userId);
+        return rfqIds != null ? rfqIds : EMPTY;
+    }
+
+    /**
+     * Gets the ids of the live RFQs in a state
+     *
+     * @param stateId the state id, see {@link com.aeroncookbook.rfq.domain.rfq.states.RfqStates}
+     * @return the RFQ ids, which must not be modified
+     */
+    public SortedIntSet byState(final int stateId)
+    {
+        final SortedIntSet rfqIds = byState.get(stateId);
+        return rfqIds != null ? rfqIds : EMPTY;
+    }
+}
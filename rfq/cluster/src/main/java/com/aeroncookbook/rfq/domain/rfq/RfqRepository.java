@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Off heap store of RFQ records, see {@link Rfq}, addressed by RFQ id through an open addressing index of id to
+ * slot. Records live in pages of direct memory which are never moved or released, so a flyweight stays valid over
+ * its record until the RFQ is removed. Removed slots are zeroed, which marks them with the unused RFQ id 0, and are
+ * reused before new slots are taken.
+ * <p>
+ * The pages are handed out as they are in blocks of whole records, so that a snapshot is a copy of memory rather
+ * than an encoding of each RFQ.
+ */
+public class RfqRepository
+{
+    /**
+     * RFQ id held by a free slot
+     */
+    public static final int FREE_RFQ_ID = 0;
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int RECORDS_PER_PAGE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = RECORDS_PER_PAGE - 1;
+    private static final int PAGE_LENGTH = RECORDS_PER_PAGE * Rfq.RECORD_LENGTH;
+    private static final int MISSING_SLOT = -1;
+    private final Int2IntHashMap slotByRfqId = new Int2IntHashMap(MISSING_SLOT);
+    private final IntArrayList freeSlots = new IntArrayList();
+    private UnsafeBuffer[] pages = new UnsafeBuffer[1];
+    private int pageCount;
+    private int slotCount;
+
+    /**
+     * Adds a newly created RFQ
+     *
+     * @param rfqId           the RFQ id, which must not already be held
+     * @param correlation     the correlation id from the creation
+     * @param expireTimeMs    the time at which the RFQ expires
+     * @param quantity        the quantity of the RFQ
+     * @param requesterSide   the side of the RFQ as defined by the requester
+     * @param cusip           the cusip of the instrument
+     * @param requesterUserId the user id of the requester
+     * @param rfq             the flyweight to wrap over the new record
+     * @return the flyweight
+     */
+    public Rfq add(
+        final int rfqId,
+        final long correlation,
+        final long expireTimeMs,
+        final long quantity,
+        final Side requesterSide,
+        final String cusip,
+        final int requesterUserId,
+        final Rfq rfq)
+    {
+        wrap(allocate(rfqId), rfq).init(
+            rfqId, correlation, expireTimeMs, quantity, requesterSide, cusip, requesterUserId);
+        return rfq;
+    }
+
+    /**
+     * Restores an RFQ by copying its record as it is, such as from a snapshot
+     *
+     * @param buffer the buffer holding the record
+     * @param offset the offset of the record in the buffer
+     * @param rfq    the flyweight to wrap over the restored record
+     * @return the flyweight, or null if the record is a free slot and so was skipped
+     */
+    public Rfq restore(final DirectBuffer buffer, final int offset, final Rfq rfq)
+    {
+        final int rfqId = buffer.getInt(offset + Rfq.RFQ_ID_OFFSET);
+        if (rfqId == FREE_RFQ_ID)
+        {
+            return null;
+        }
+
+        final int slot = allocate(rfqId);
+        pages[slot >>> PAGE_SHIFT].putBytes(recordOffset(slot), buffer, offset, Rfq.RECORD_LENGTH);
+        return wrap(slot, rfq);
+    }
+
+    /**
+     * Gets an RFQ by id
+     *
+     * @param rfqId the RFQ id
+     * @param rfq   the flyweight to wrap over the record
+     * @return the flyweight, or null if the RFQ is not held
+     */
+    public Rfq get(final int rfqId, final Rfq rfq)
+    {
+        final int slot = slotByRfqId.get(rfqId);
+        return slot == MISSING_SLOT ? null : wrap(slot, rfq);
+    }
+
+    /**
+     * Removes an RFQ, freeing its slot. Any flyweight over the record must no longer be used.
+     *
+     * @param rfqId the RFQ id
+     * @return true if the RFQ was held
+     */
+    public boolean remove(final int rfqId)
+    {
+        final int slot = slotByRfqId.remove(rfqId);
+        if (slot == MISSING_SLOT)
+        {
+            return false;
+        }
+
+        pages[slot >>> PAGE_SHIFT].setMemory(recordOffset(slot), Rfq.RECORD_LENGTH, (byte)0);
+        freeSlots.pushInt(slot);
+        return true;
+    }
+
+    /**
+     * Gets the number of RFQs held
+     *
+     * @return the number of RFQs
+     */
+    public int size()
+    {
+        return slotByRfqId.size();
+    }
+
+    /**
+     * Hands out every slot in use or freed, as blocks of records which lie end to end in memory. Free slots are
+     * included, so blocks are plain copies; they hold {@link #FREE_RFQ_ID} and are skipped by
+     * {@link #restore(DirectBuffer, int, Rfq)}.
+     *
+     * @param maxRecords the maximum number of records in a block
+     * @param consumer   the consumer of each block
+     */
+    public void forEachBlock(final int maxRecords, final RecordBlockConsumer consumer)
+    {
+        for (int page = 0; page < pageCount; page++)
+        {
+            final int pageSlots = Math.min(RECORDS_PER_PAGE, slotCount - (page << PAGE_SHIFT));
+            for (int first = 0; first < pageSlots; first += maxRecords)
+            {
+                consumer.onBlock(
+                    pages[page], first * Rfq.RECORD_LENGTH, Math.min(maxRecords, pageSlots - first));
+            }
+        }
+    }
+
+    private int allocate(final int rfqId)
+    {
+        if (rfqId == FREE_RFQ_ID || slotByRfqId.containsKey(rfqId))
+        {
+            throw new IllegalArgumentException("invalid or duplicate RFQ id: " + rfqId);
+        }
+
+        final int slot;
+        if (!freeSlots.isEmpty())
+        {
+            slot = freeSlots.popInt();
+        }
+        else
+        {
+            if ((slotCount >>> PAGE_SHIFT) == pageCount)
+            {
+                addPage();
+            }
+            slot = slotCount++;
+        }
+        slotByRfqId.put(rfqId, slot);
+        return slot;
+    }
+
+    private void addPage()
+    {
+        if (pageCount == pages.length)
+        {
+            pages = Arrays.copyOf(pages, pageCount * 2);
+        }
+        pages[pageCount++] = new UnsafeBuffer(
+            BufferUtil.allocateDirectAligned(PAGE_LENGTH, BitUtil.CACHE_LINE_LENGTH));
+    }
+
+    private Rfq wrap(final int slot, final Rfq rfq)
+    {
+        return rfq.wrap(pages[slot >>> PAGE_SHIFT], recordOffset(slot));
+    }
+
+    private static int recordOffset(final int slot)
+    {
+        return (slot & PAGE_MASK) * Rfq.RECORD_LENGTH;
+    }
+
+    /**
+     * Receives blocks of records
+     */
+    @FunctionalInterface
+    public interface RecordBlockConsumer
+    {
+        /**
+         * Handles a block of records lying end to end
+         *
+         * @param buffer      the buffer holding the records
+         * @param offset      the offset of the first record
+         * @param recordCount the number of records
+         */
+        void onBlock(DirectBuffer buffer, int offset, int recordCount);
+    }
+}
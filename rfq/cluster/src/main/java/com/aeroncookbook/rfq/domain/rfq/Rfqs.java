@@ -22,28 +22,49 @@ import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.RfqQueryType;
 import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
 import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.domain.users.User;
 import com.aeroncookbook.rfq.domain.users.Users;
 import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import com.aeroncookbook.rfq.infra.EventJournal;
+import com.aeroncookbook.rfq.infra.RfqShard;
 import com.aeroncookbook.rfq.infra.SessionMessageContextImpl;
+import com.aeroncookbook.rfq.infra.SortedIntSet;
 import com.aeroncookbook.rfq.infra.TimerManager;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.IntConsumer;
 
 public class Rfqs
 {
+    /**
+     * Maximum number of RFQs returned by a single query; larger results are paged with the returned cursor
+     */
+    public static final int MAX_QUERY_RESULTS = 1_000;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(Rfqs.class);
+    private static final int RFQ_HISTORY_CAPACITY = 10_000;
     private final SessionMessageContextImpl context;
     private final Instruments instruments;
     private final Users users;
     private final ClusterClientResponder clusterClientResponder;
     private final TimerManager timerManager;
-    private final List<Rfq> rfqs = new ArrayList<>();
+    private final EventJournal eventJournal;
+    private final RfqShard shard;
+    private final RfqRepository rfqRepository = new RfqRepository();
+    private final Rfq rfqFlyweight = new Rfq();
+    private final RfqHistory rfqHistory = new RfqHistory(RFQ_HISTORY_CAPACITY);
+    private final RfqIndexes rfqIndexes = new RfqIndexes();
+    private final IntArrayList queryResults = new IntArrayList();
     private int rfqId = 0;
 
     public Rfqs(
@@ -51,13 +72,18 @@ public class Rfqs
         final Instruments instruments,
         final Users users,
         final ClusterClientResponder clusterClientResponder,
-        final TimerManager timerManager)
+        final TimerManager timerManager,
+        final EventJournal eventJournal,
+        final RfqShard shard)
     {
         this.context = context;
         this.instruments = instruments;
         this.users = users;
         this.clusterClientResponder = clusterClientResponder;
         this.timerManager = timerManager;
+        this.eventJournal = eventJournal;
+        this.shard = shard;
+        this.timerManager.setExpiryHandler(this::expireRfq);
     }
 
     /**
@@ -67,55 +93,80 @@ public class Rfqs
      * @param expireTimeMs the time at which the RFQ expires
      * @param quantity the quantity of the RFQ
      * @param side the side of the RFQ
-     * @param cusip the cusip of the instrument
+     * @param cusipKey the packed cusip of the instrument, see {@link CusipKey}
      * @param userId the user id of the user creating the RFQ
      */
     public void createRfq(
-        final String correlation,
+        final long correlation,
         final long expireTimeMs,
         final long quantity,
         final Side side,
-        final String cusip,
+        final long cusipKey,
         final int userId)
     {
-        if (!users.isValidUser(userId))
+        final User user = users.getEnabledUser(userId);
+        if (user == null)
         {
-            LOGGER.info("Cannot create RFQ: Invalid user id {} for RFQ", userId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.UNKNOWN_USER.value());
             clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.UNKNOWN_USER);
             return;
         }
 
-        if (!instruments.isValidCusip(cusip))
+        final Instrument instrument = instruments.getInstrument(cusipKey);
+        if (instrument == null)
         {
-            LOGGER.info("Cannot create RFQ: Invalid cusip {} for RFQ", cusip);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.UNKNOWN_CUSIP.value());
             clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.UNKNOWN_CUSIP);
             return;
         }
 
+        if (!user.isEntitled(instrument.getInstrumentId()))
+        {
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.NOT_ENTITLED.value());
+            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.NOT_ENTITLED);
+            return;
+        }
+
         if (expireTimeMs <= context.getClusterTime())
         {
-            LOGGER.info("Cannot create RFQ: RFQ expires in the past");
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.RFQ_EXPIRES_IN_PAST.value());
             clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.RFQ_EXPIRES_IN_PAST);
             return;
         }
 
-        if (!instruments.isInstrumentEnabled(cusip))
+        if (!instrument.isEnabled())
         {
-            LOGGER.info("Cannot create RFQ: Instrument {} is not enabled", cusip);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.INSTRUMENT_NOT_ENABLED.value());
             clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.INSTRUMENT_NOT_ENABLED);
             return;
         }
 
-        if (quantity < instruments.getMinSize(cusip))
+        if (quantity < instrument.getMinSize())
         {
-            LOGGER.info("Cannot create RFQ: Instrument {} min size not met", cusip);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.INSTRUMENT_MIN_SIZE_NOT_MET.value());
             clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.INSTRUMENT_MIN_SIZE_NOT_MET);
             return;
         }
 
-        final Rfq rfq = new Rfq(++rfqId, correlation, expireTimeMs, quantity, side, cusip, userId);
-        rfqs.add(rfq);
-        LOGGER.info("Created RFQ {}", rfq);
+        if (!user.canOpenRfq(rfqIndexes.byRequester(userId).size()))
+        {
+            eventJournal.rfqRefused(
+                RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.OPEN_RFQ_LIMIT_REACHED.value());
+            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.OPEN_RFQ_LIMIT_REACHED);
+            return;
+        }
+
+        rfqId = shard.nextRfqId(rfqId);
+        final Rfq rfq = rfqRepository.add(
+            rfqId, correlation, expireTimeMs, quantity, side, instrument.getCusip(), userId, rfqFlyweight);
+        rfqIndexes.add(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.CREATE, userId, rfq);
 
         //send a confirmation to the client that created the RFQ
         clusterClientResponder.createRfqConfirm(correlation, rfq, CreateRfqResult.SUCCESS);
@@ -124,15 +175,15 @@ public class Rfqs
         clusterClientResponder.broadcastNewRfq(rfq);
 
         //schedule the RFQ to expire
-        timerManager.scheduleTimer(rfq.getExpireTimeMs(), () -> expireRfq(rfq.getRfqId()));
+        scheduleExpiry(rfq);
     }
 
     private void expireRfq(final int rfqId)
     {
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
-        if (rfq == null)
+        final Rfq rfq = findRfq(rfqId);
+        if (rfq == null || isClosed(rfq))
         {
-            LOGGER.info("Cannot expire RFQ: RFQ {} not found", rfqId);
+            LOGGER.info("Cannot expire RFQ: RFQ {} is no longer live", rfqId);
             return;
         }
 
@@ -142,8 +193,10 @@ public class Rfqs
             return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.expire();
-        LOGGER.info("Expired RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.EXPIRE, EventJournal.NO_USER, rfq);
         clusterClientResponder.broadcastRfqExpired(rfq);
     }
 
@@ -154,109 +207,140 @@ public class Rfqs
      * @param rfqId the id of the RFQ to cancel
      * @param cancelUserId the user id of the user cancelling the RFQ
      */
-    public void cancelRfq(final String correlation, final int rfqId, final int cancelUserId)
+    public void cancelRfq(final long correlation, final int rfqId, final int cancelUserId)
     {
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = findRfq(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not found", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CANCEL, correlation, rfqId, cancelUserId, CancelRfqResult.UNKNOWN_RFQ.value());
             clusterClientResponder.cancelRfqConfirm(correlation, null, CancelRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canCancel())
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} invalid transition", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CANCEL, correlation, rfqId, cancelUserId, CancelRfqResult.INVALID_TRANSITION.value());
             clusterClientResponder.cancelRfqConfirm(correlation, null, CancelRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != cancelUserId)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not created by user {}", rfqId, cancelUserId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.CANCEL, correlation, rfqId, cancelUserId,
+                CancelRfqResult.CANNOT_CANCEL_USER_NOT_REQUESTER.value());
             clusterClientResponder.cancelRfqConfirm(correlation, null,
                 CancelRfqResult.CANNOT_CANCEL_USER_NOT_REQUESTER);
             return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.cancel();
-        LOGGER.info("Cancelled RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.CANCEL, cancelUserId, rfq);
         clusterClientResponder.cancelRfqConfirm(correlation, rfq, CancelRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqCanceled(rfq);
     }
 
-    public void quoteRfq(final String correlation, final int rfqId, final int responderUserId, final long price)
+    public void quoteRfq(final long correlation, final int rfqId, final int responderUserId, final long price)
     {
-        if (!users.isValidUser(responderUserId))
+        final User responder = users.getEnabledUser(responderUserId);
+        if (responder == null)
         {
-            LOGGER.info("Cannot quote RFQ: Invalid user id {} for RFQ", responderUserId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId, QuoteRfqResult.UNKNOWN_USER.value());
             clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = findRfq(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not found", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId, QuoteRfqResult.UNKNOWN_RFQ.value());
             clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.UNKNOWN_RFQ);
             return;
         }
 
+        final Instrument instrument = instruments.getInstrument(rfq.getCusipKey());
+        if (instrument == null || !responder.isEntitled(instrument.getInstrumentId()))
+        {
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId, QuoteRfqResult.NOT_ENTITLED.value());
+            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.NOT_ENTITLED);
+            return;
+        }
+
         if (rfq.hasResponder())
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} already has a responder", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId,
+                QuoteRfqResult.ANOTHER_USER_RESPONDED.value());
             clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.ANOTHER_USER_RESPONDED);
             return;
         }
 
         if (rfq.getRequesterUserId() == responderUserId)
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} cannot quote own RFQ", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId,
+                QuoteRfqResult.CANNOT_QUOTE_OWN_RFQ.value());
             clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.CANNOT_QUOTE_OWN_RFQ);
             return;
         }
 
         if (!rfq.canQuote())
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} invalid transition", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.QUOTE, correlation, rfqId, responderUserId, QuoteRfqResult.INVALID_TRANSITION.value());
             clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.INVALID_TRANSITION);
             return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.quote(responderUserId, price);
-        LOGGER.info("Quoted RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.QUOTE, responderUserId, rfq);
         clusterClientResponder.quoteRfqConfirm(correlation, rfq, QuoteRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqQuoted(rfq);
     }
 
-    public void counterRfq(final String correlation, final int rfqId, final int counterUserId, final long price)
+    public void counterRfq(final long correlation, final int rfqId, final int counterUserId, final long price)
     {
 
         if (!users.isValidUser(counterUserId))
         {
-            LOGGER.info("Cannot counter RFQ: Invalid user id {} for RFQ", counterUserId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId, CounterRfqResult.UNKNOWN_USER.value());
             clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = findRfq(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} not found", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId, CounterRfqResult.UNKNOWN_RFQ.value());
             clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canCounter())
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} invalid transition", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId,
+                CounterRfqResult.INVALID_TRANSITION.value());
             clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != counterUserId && rfq.getResponderUserId() != counterUserId)
         {
-            LOGGER.info("Cannot counter RFQ: not involved with RFQ {}", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId,
+                CounterRfqResult.CANNOT_COUNTER_RFQ_NOT_INVOLVED_WITH.value());
             clusterClientResponder.counterRfqConfirm(correlation, null,
                 CounterRfqResult.CANNOT_COUNTER_RFQ_NOT_INVOLVED_WITH);
             return;
@@ -264,51 +348,62 @@ public class Rfqs
 
         if (rfq.getLastCounterUser() == Long.MIN_VALUE && counterUserId != rfq.getRequesterUserId())
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} cannot counter first quote", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId,
+                CounterRfqResult.CANNOT_COUNTER_OWN_PRICE.value());
             clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
             return;
         }
 
-        if (rfq.getLastCounterUser() != counterUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
+        if (rfq.getLastCounterUser() != counterUserId && rfq.isInState(RfqStates.COUNTERED))
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} cannot counter own quote", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.COUNTER, correlation, rfqId, counterUserId,
+                CounterRfqResult.CANNOT_COUNTER_OWN_PRICE.value());
             clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
             return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.counter(counterUserId, price);
-        LOGGER.info("Countered RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.COUNTER, counterUserId, rfq);
         clusterClientResponder.counterRfqConfirm(correlation, rfq, CounterRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqCountered(rfq);
     }
 
-    public void acceptRfq(final String correlation, final int rfqId, final int acceptUserId)
+    public void acceptRfq(final long correlation, final int rfqId, final int acceptUserId)
     {
         if (!users.isValidUser(acceptUserId))
         {
-            LOGGER.info("Cannot accept RFQ: Invalid user id {} for RFQ", acceptUserId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.ACCEPT, correlation, rfqId, acceptUserId, AcceptRfqResult.UNKNOWN_USER.value());
             clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = findRfq(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} not found", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.ACCEPT, correlation, rfqId, acceptUserId, AcceptRfqResult.UNKNOWN_RFQ.value());
             clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canAccept())
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} invalid transition", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.ACCEPT, correlation, rfqId, acceptUserId, AcceptRfqResult.INVALID_TRANSITION.value());
             clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != acceptUserId && rfq.getResponderUserId() != acceptUserId)
         {
-            LOGGER.info("Cannot accept RFQ: not involved with RFQ {}", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.ACCEPT, correlation, rfqId, acceptUserId,
+                AcceptRfqResult.CANNOT_ACCEPT_RFQ_NOT_INVOLVED_WITH.value());
             clusterClientResponder.acceptRfqConfirm(correlation, null,
                 AcceptRfqResult.CANNOT_ACCEPT_RFQ_NOT_INVOLVED_WITH);
             return;
@@ -316,44 +411,53 @@ public class Rfqs
 
         if (rfq.getLastCounterUser() == Long.MIN_VALUE && acceptUserId != rfq.getRequesterUserId())
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} cannot accept first quote", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.ACCEPT, correlation, rfqId, acceptUserId,
+                AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE.value());
             clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
             return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.accept(acceptUserId);
-        LOGGER.info("Accepted RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.ACCEPT, acceptUserId, rfq);
         clusterClientResponder.acceptRfqConfirm(correlation, rfq, AcceptRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqAccepted(rfq);
     }
 
-    public void rejectRfq(final String correlation, final int rfqId, final int rejectUserId)
+    public void rejectRfq(final long correlation, final int rfqId, final int rejectUserId)
     {
         if (!users.isValidUser(rejectUserId))
         {
-            LOGGER.info("Cannot reject RFQ: Invalid user id {} for RFQ", rejectUserId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId, RejectRfqResult.UNKNOWN_USER.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = findRfq(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} not found", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId, RejectRfqResult.UNKNOWN_RFQ.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canReject())
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} invalid transition", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId, RejectRfqResult.INVALID_TRANSITION.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != rejectUserId && rfq.getResponderUserId() != rejectUserId)
         {
-            LOGGER.info("Cannot reject RFQ: not involved with RFQ {}", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId,
+                RejectRfqResult.CANNOT_REJECT_RFQ_NOT_INVOLVED_WITH.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null,
                 RejectRfqResult.CANNOT_REJECT_RFQ_NOT_INVOLVED_WITH);
             return;
@@ -361,20 +465,210 @@ public class Rfqs
 
         if (rfq.getLastCounterUser() == Long.MIN_VALUE && rejectUserId != rfq.getRequesterUserId())
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} cannot reject first quote", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId,
+                RejectRfqResult.CANNOT_REJECT_OWN_PRICE.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
             return;
         }
 
-        if (rfq.getLastCounterUser() != rejectUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
+        if (rfq.getLastCounterUser() != rejectUserId && rfq.isInState(RfqStates.COUNTERED))
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} cannot reject own quote", rfqId);
+            eventJournal.rfqRefused(
+                RfqJournalAction.REJECT, correlation, rfqId, rejectUserId,
+                RejectRfqResult.CANNOT_REJECT_OWN_PRICE.value());
             clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+            return;
         }
 
+        rfqIndexes.remove(rfq);
         rfq.reject(rejectUserId);
-        LOGGER.info("Rejected RFQ {}", rfq);
+        afterTransition(rfq);
+        eventJournal.rfqEvent(RfqJournalAction.REJECT, rejectUserId, rfq);
         clusterClientResponder.rejectRfqConfirm(correlation, rfq, RejectRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqRejected(rfq);
     }
+
+    /**
+     * Queries the live RFQs through the secondary indexes, replying with the RFQs after the cursor in RFQ id order.
+     * If there are more than the limit, the reply carries the cursor for the next page.
+     *
+     * @param correlation the correlation id
+     * @param queryType   the index to query
+     * @param cusipKey    the packed cusip, for queries by instrument
+     * @param userId      the user id, for queries by requester or responder
+     * @param stateId     the state id, for queries by state
+     * @param afterRfqId  the cursor; only RFQs with a greater id are returned
+     * @param limit       the maximum number of RFQs to return, capped at {@link #MAX_QUERY_RESULTS}
+     */
+    public void queryRfqs(
+        final long correlation,
+        final RfqQueryType queryType,
+        final long cusipKey,
+        final int userId,
+        final short stateId,
+        final int afterRfqId,
+        final int limit)
+    {
+        queryResults.clear();
+        final SortedIntSet rfqIds = queryIndex(queryType, cusipKey, userId, stateId);
+
+        if (rfqIds == null)
+        {
+            LOGGER.info("Cannot query RFQs: unknown query type {}", queryType);
+            clusterClientResponder.sendRfqs(correlation, false, queryResults, rfqRepository, 0);
+            return;
+        }
+
+        final int maxResults = limit <= 0 ? MAX_QUERY_RESULTS : Math.min(limit, MAX_QUERY_RESULTS);
+        int index = rfqIds.indexAfter(afterRfqId);
+        while (index < rfqIds.size() && queryResults.size() < maxResults)
+        {
+            queryResults.addInt(rfqIds.get(index++));
+        }
+
+        final int nextAfterRfqId = index < rfqIds.size() ? rfqIds.get(index - 1) : 0;
+        clusterClientResponder.sendRfqs(correlation, true, queryResults, rfqRepository, nextAfterRfqId);
+        queryResults.clear();
+    }
+
+    private SortedIntSet queryIndex(
+        final RfqQueryType queryType,
+        final long cusipKey,
+        final int userId,
+        final short stateId)
+    {
+        return switch (queryType)
+        {
+            case BY_CUSIP -> rfqIndexes.byCusipKey(cusipKey);
+            case BY_REQUESTER -> rfqIndexes.byRequester(userId);
+            case BY_RESPONDER -> rfqIndexes.byResponder(userId);
+            case BY_STATE -> rfqIndexes.byState(stateId);
+            default -> null;
+        };
+    }
+
+    /**
+     * Gets the store holding every RFQ, live and retained in the history, so that it can be written to a snapshot.
+     *
+     * @return the RFQ store
+     */
+    public RfqRepository getRfqRepository()
+    {
+        return rfqRepository;
+    }
+
+    /**
+     * Visits the ids of the RFQs in the history from oldest to newest, so that their order can be written to a
+     * snapshot.
+     *
+     * @param consumer the consumer to call for each RFQ id
+     */
+    public void forEachHistoryRfqId(final IntConsumer consumer)
+    {
+        rfqHistory.forEach(consumer);
+    }
+
+    /**
+     * Gets the last RFQ id issued, so that it can be written to a snapshot.
+     *
+     * @return the last RFQ id
+     */
+    public int getLastRfqId()
+    {
+        return rfqId;
+    }
+
+    /**
+     * Restores the last RFQ id issued from a snapshot.
+     *
+     * @param lastRfqId the last RFQ id
+     */
+    public void restoreLastRfqId(final int lastRfqId)
+    {
+        this.rfqId = lastRfqId;
+    }
+
+    /**
+     * Restores an RFQ from a snapshot by copying its record, see {@link Rfq}. Live RFQs are indexed and have their
+     * expiry restored to the timer manager. Closed RFQs are left to {@link #restoreHistory(int)}, since the history
+     * order is written separately.
+     *
+     * @param buffer the buffer holding the record
+     * @param offset the offset of the record
+     */
+    public void restoreRfq(final DirectBuffer buffer, final int offset)
+    {
+        final Rfq rfq = rfqRepository.restore(buffer, offset, rfqFlyweight);
+        if (rfq == null)
+        {
+            return;
+        }
+
+        if (!isClosed(rfq))
+        {
+            rfqIndexes.add(rfq);
+            timerManager.restoreExpiry(rfq.getRfqId(), rfq.getExpireTimeMs());
+        }
+    }
+
+    /**
+     * Restores the next RFQ in the history, oldest first. The RFQ must already have been restored.
+     *
+     * @param rfqId the id of the RFQ
+     */
+    public void restoreHistory(final int rfqId)
+    {
+        addToHistory(rfqId);
+    }
+
+    /**
+     * Finds an RFQ by id, whether live or retained in the bounded history of terminal RFQs.
+     *
+     * @param rfqId the id of the RFQ
+     * @return the shared flyweight over the RFQ, or null if it is neither live nor retained in the history
+     */
+    private Rfq findRfq(final int rfqId)
+    {
+        return rfqRepository.get(rfqId, rfqFlyweight);
+    }
+
+    /**
+     * Re-indexes an RFQ after a transition, or moves it to the history once it can no longer transition.
+     * ACCEPTED is treated as closed too, since nothing in the cluster currently moves an accepted RFQ on to
+     * COMPLETED. The RFQ must have been removed from the indexes before the transition.
+     *
+     * @param rfq the RFQ which has just transitioned
+     */
+    private void afterTransition(final Rfq rfq)
+    {
+        if (isClosed(rfq))
+        {
+            addToHistory(rfq.getRfqId());
+            timerManager.cancelExpiry(rfq.getRfqId());
+        }
+        else
+        {
+            rfqIndexes.add(rfq);
+        }
+    }
+
+    private void addToHistory(final int rfqId)
+    {
+        final int evictedRfqId = rfqHistory.add(rfqId);
+        if (evictedRfqId != RfqHistory.NONE_EVICTED)
+        {
+            rfqRepository.remove(evictedRfqId);
+        }
+    }
+
+    private static boolean isClosed(final Rfq rfq)
+    {
+        return rfq.isTerminal() || rfq.isInState(RfqStates.ACCEPTED);
+    }
+
+    private void scheduleExpiry(final Rfq rfq)
+    {
+        timerManager.scheduleExpiry(rfq.getRfqId(), rfq.getExpireTimeMs());
+    }
 }
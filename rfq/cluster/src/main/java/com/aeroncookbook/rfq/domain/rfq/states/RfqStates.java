@@ -18,20 +18,22 @@ package com.aeroncookbook.rfq.domain.rfq.states;
 
 public enum RfqStates
 {
-    CREATED((short)0),
-    QUOTED((short)1),
-    COUNTERED((short)2),
-    ACCEPTED((short)3),
-    REJECTED((short)4),
-    EXPIRED((short)5),
-    CANCELED((short)6),
-    COMPLETED((short)7);
+    CREATED((short)0, false),
+    QUOTED((short)1, false),
+    COUNTERED((short)2, false),
+    ACCEPTED((short)3, false),
+    REJECTED((short)4, true),
+    EXPIRED((short)5, true),
+    CANCELED((short)6, true),
+    COMPLETED((short)7, true);
 
     private final short stateId;
+    private final boolean terminal;
 
-    RfqStates(final short stateId)
+    RfqStates(final short stateId, final boolean terminal)
     {
         this.stateId = stateId;
+        this.terminal = terminal;
     }
 
     public static RfqStates fromId(final short stateId)
@@ -63,4 +65,9 @@ public enum RfqStates
     {
         return this.stateId;
     }
+
+    public boolean isTerminal()
+    {
+        return this.terminal;
+    }
 }
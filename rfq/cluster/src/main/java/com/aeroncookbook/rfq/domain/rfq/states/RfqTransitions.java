@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq.states;
+
+import java.util.Arrays;
+
+/**
+ * The RFQ state machine as a state by action table of bytes. Each entry is the id of the state the action moves an
+ * RFQ to, or {@link #INVALID_TRANSITION} if the action is not allowed in that state, so that validating and applying
+ * a transition is an array read on the RFQ's primitive state id.
+ * <p>
+ * State ids are those of {@link RfqStates}; the allowed transitions follow rfq-states.puml, except that nothing yet
+ * moves an RFQ from ACCEPTED to COMPLETED.
+ */
+public final class RfqTransitions
+{
+    /**
+     * Quote a created RFQ
+     */
+    public static final int QUOTE = 0;
+
+    /**
+     * Counter a quoted or countered RFQ
+     */
+    public static final int COUNTER = 1;
+
+    /**
+     * Accept the current price
+     */
+    public static final int ACCEPT = 2;
+
+    /**
+     * Reject the current price, ending the RFQ
+     */
+    public static final int REJECT = 3;
+
+    /**
+     * Cancel the RFQ, by the requester
+     */
+    public static final int CANCEL = 4;
+
+    /**
+     * Expire the RFQ, by the cluster timer
+     */
+    public static final int EXPIRE = 5;
+
+    /**
+     * Table entry for an action that is not allowed in a state
+     */
+    public static final short INVALID_TRANSITION = -1;
+
+    private static final int ACTION_COUNT = 6;
+    private static final int STATE_COUNT = RfqStates.values().length;
+    private static final byte[] NEXT_STATE = new byte[STATE_COUNT * ACTION_COUNT];
+    private static final boolean[] TERMINAL = new boolean[STATE_COUNT];
+
+    static
+    {
+        Arrays.fill(NEXT_STATE, (byte)INVALID_TRANSITION);
+
+        allow(RfqStates.CREATED, QUOTE, RfqStates.QUOTED);
+        allow(RfqStates.CREATED, CANCEL, RfqStates.CANCELED);
+        allow(RfqStates.CREATED, EXPIRE, RfqStates.EXPIRED);
+
+        allow(RfqStates.QUOTED, COUNTER, RfqStates.COUNTERED);
+        allow(RfqStates.QUOTED, ACCEPT, RfqStates.ACCEPTED);
+        allow(RfqStates.QUOTED, REJECT, RfqStates.REJECTED);
+        allow(RfqStates.QUOTED, CANCEL, RfqStates.CANCELED);
+        allow(RfqStates.QUOTED, EXPIRE, RfqStates.EXPIRED);
+
+        allow(RfqStates.COUNTERED, COUNTER, RfqStates.COUNTERED);
+        allow(RfqStates.COUNTERED, ACCEPT, RfqStates.ACCEPTED);
+        allow(RfqStates.COUNTERED, REJECT, RfqStates.REJECTED);
+        allow(RfqStates.COUNTERED, CANCEL, RfqStates.CANCELED);
+        allow(RfqStates.COUNTERED, EXPIRE, RfqStates.EXPIRED);
+
+        for (final RfqStates state : RfqStates.values())
+        {
+            TERMINAL[state.getStateId()] = state.isTerminal();
+        }
+    }
+
+    private RfqTransitions()
+    {
+        // no instances
+    }
+
+    /**
+     * Looks up the state an action moves an RFQ to
+     *
+     * @param stateId the id of the RFQ's current state
+     * @param action  the action, such as {@link #QUOTE}
+     * @return the id of the next state, or {@link #INVALID_TRANSITION} if the action is not allowed
+     */
+    public static short nextState(final short stateId, final int action)
+    {
+        return NEXT_STATE[stateId * ACTION_COUNT + action];
+    }
+
+    /**
+     * Checks if an action is allowed in a state
+     *
+     * @param stateId the id of the RFQ's current state
+     * @param action  the action, such as {@link #QUOTE}
+     * @return true if the action is allowed
+     */
+    public static boolean canApply(final short stateId, final int action)
+    {
+        return NEXT_STATE[stateId * ACTION_COUNT + action] != INVALID_TRANSITION;
+    }
+
+    /**
+     * Checks if a state is terminal
+     *
+     * @param stateId the id of the state
+     * @return true if no further transitions are possible
+     */
+    public static boolean isTerminal(final short stateId)
+    {
+        return TERMINAL[stateId];
+    }
+
+    private static void allow(final RfqStates from, final int action, final RfqStates to)
+    {
+        NEXT_STATE[from.getStateId() * ACTION_COUNT + action] = (byte)to.getStateId();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.users;
+
+import java.util.Arrays;
+
+/**
+ * A registered user: whether it may trade, the instruments it is entitled to, and how many RFQs it may have open
+ * as requester.
+ * <p>
+ * Entitlements are a bitset over instrument ids, one bit per instrument, so checking one is a word lookup and a mask
+ * with no allocation. A user can instead be entitled to every instrument, including those added later.
+ */
+public class User
+{
+    /**
+     * Value of {@link #getMaxOpenRfqs()} for a user with no limit on open RFQs
+     */
+    public static final int NO_OPEN_RFQ_LIMIT = 0;
+
+    private static final long[] NO_WORDS = new long[0];
+    private final int userId;
+    private boolean enabled;
+    private int maxOpenRfqs;
+    private boolean allInstruments;
+    private long[] entitlementWords = NO_WORDS;
+
+    /**
+     * Constructor, for a user with no entitlements
+     *
+     * @param userId      the user id
+     * @param enabled     true if the user may trade
+     * @param maxOpenRfqs the maximum number of RFQs the user may have open, or {@link #NO_OPEN_RFQ_LIMIT}
+     */
+    public User(final int userId, final boolean enabled, final int maxOpenRfqs)
+    {
+        this.userId = userId;
+        this.enabled = enabled;
+        this.maxOpenRfqs = maxOpenRfqs;
+    }
+
+    public int getUserId()
+    {
+        return userId;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public int getMaxOpenRfqs()
+    {
+        return maxOpenRfqs;
+    }
+
+    public void setMaxOpenRfqs(final int maxOpenRfqs)
+    {
+        this.maxOpenRfqs = maxOpenRfqs;
+    }
+
+    /**
+     * Checks if the user may open another RFQ
+     *
+     * @param openRfqs the number of RFQs the user has open as requester
+     * @return true if below the user's limit, or the user has no limit
+     */
+    public boolean canOpenRfq(final int openRfqs)
+    {
+        return maxOpenRfqs == NO_OPEN_RFQ_LIMIT || openRfqs < maxOpenRfqs;
+    }
+
+    /**
+     * Checks if the user is entitled to an instrument
+     *
+     * @param instrumentId the id of the instrument
+     * @return true if entitled
+     */
+    public boolean isEntitled(final int instrumentId)
+    {
+        if (allInstruments)
+        {
+            return true;
+        }
+
+        final int wordIndex = instrumentId >>> 6;
+        return wordIndex < entitlementWords.length && (entitlementWords[wordIndex] & (1L << instrumentId)) != 0;
+    }
+
+    public boolean isEntitledToAll()
+    {
+        return allInstruments;
+    }
+
+    /**
+     * Entitles the user to every instrument, or to only those granted individually
+     *
+     * @param allInstruments true to entitle the user to every instrument
+     */
+    public void setEntitledToAll(final boolean allInstruments)
+    {
+        this.allInstruments = allInstruments;
+    }
+
+    /**
+     * Entitles the user to an instrument
+     *
+     * @param instrumentId the id of the instrument
+     */
+    public void grant(final int instrumentId)
+    {
+        final int wordIndex = instrumentId >>> 6;
+        if (wordIndex >= entitlementWords.length)
+        {
+            entitlementWords = Arrays.copyOf(entitlementWords, wordIndex + 1);
+        }
+        entitlementWords[wordIndex] |= 1L << instrumentId;
+    }
+
+    /**
+     * Removes the user's entitlement to an instrument. This has no effect while the user is entitled to every
+     * instrument.
+     *
+     * @param instrumentId the id of the instrument
+     */
+    public void revoke(final int instrumentId)
+    {
+        final int wordIndex = instrumentId >>> 6;
+        if (wordIndex < entitlementWords.length)
+        {
+            entitlementWords[wordIndex] &= ~(1L << instrumentId);
+        }
+    }
+
+    /**
+     * Removes every entitlement, including to every instrument
+     */
+    public void revokeAll()
+    {
+        allInstruments = false;
+        entitlementWords = NO_WORDS;
+    }
+
+    /**
+     * Gets the number of words in the entitlement bitset, so that it can be written to a snapshot
+     *
+     * @return the number of words
+     */
+    public int entitlementWordCount()
+    {
+        return entitlementWords.length;
+    }
+
+    /**
+     * Gets a word of the entitlement bitset, holding the bits of instrument ids {@code 64 * index} onwards
+     *
+     * @param index the index of the word
+     * @return the word
+     */
+    public long entitlementWord(final int index)
+    {
+        return entitlementWords[index];
+    }
+
+    /**
+     * Restores a word of the entitlement bitset from a snapshot
+     *
+     * @param index the index of the word
+     * @param word  the word
+     */
+    public void restoreEntitlementWord(final int index, final long word)
+    {
+        if (index >= entitlementWords.length)
+        {
+            entitlementWords = Arrays.copyOf(entitlementWords, index + 1);
+        }
+        entitlementWords[index] = word;
+    }
+}
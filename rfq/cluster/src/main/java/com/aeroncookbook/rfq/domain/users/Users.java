@@ -1,26 +1,211 @@
 package com.aeroncookbook.rfq.domain.users;
 
-import org.agrona.collections.IntHashSet;
+import com.aeroncookbook.cluster.rfq.sbe.UserEntitlementAction;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.LongArrayList;
+
+import java.util.function.Consumer;
 
 /**
- * A collection of hardcoded users.
+ * The registry of users, replicated through the cluster log with commands to add and disable users and to set the
+ * instruments each is entitled to. Users are held in the snapshot along with their entitlements.
+ * <p>
+ * A disabled user is treated as unknown. The demo users are registered on start, entitled to every instrument and
+ * with no open RFQ limit, so that a new cluster can be used straight away; a snapshot replaces them with their last
+ * state.
  */
 public class Users
 {
-    private final IntHashSet users = new IntHashSet();
+    /**
+     * Users registered on start
+     */
+    public static final int[] DEMO_USER_IDS = {500, 501, 502};
+
+    private final ClusterClientResponder clusterClientResponder;
+    private final Instruments instruments;
+    private final Int2ObjectHashMap<User> userById = new Int2ObjectHashMap<>();
 
     /**
-     * Create a new collection of users.
+     * Constructor
+     *
+     * @param clusterClientResponder the responder to which command results are sent
+     * @param instruments            the instruments, to resolve the instrument ids of entitlements
      */
-    public Users()
+    public Users(final ClusterClientResponder clusterClientResponder, final Instruments instruments)
     {
-        users.add(500);
-        users.add(501);
-        users.add(502);
+        this.clusterClientResponder = clusterClientResponder;
+        this.instruments = instruments;
+        for (final int userId : DEMO_USER_IDS)
+        {
+            restoreUser(userId, true, User.NO_OPEN_RFQ_LIMIT, true);
+        }
     }
 
     public boolean isValidUser(final int userId)
     {
-        return users.contains(userId);
+        return getEnabledUser(userId) != null;
+    }
+
+    /**
+     * Gets a user which may trade.
+     *
+     * @param userId the user id
+     * @return the user, or null if unknown or disabled
+     */
+    public User getEnabledUser(final int userId)
+    {
+        final User user = userById.get(userId);
+        return user != null && user.isEnabled() ? user : null;
+    }
+
+    /**
+     * Adds a user with no entitlements, or re-enables an existing user and updates its open RFQ limit.
+     *
+     * @param correlation the correlation id of the request
+     * @param userId      the user id
+     * @param maxOpenRfqs the maximum number of RFQs the user may have open, or {@link User#NO_OPEN_RFQ_LIMIT}
+     */
+    public void addUser(final long correlation, final int userId, final int maxOpenRfqs)
+    {
+        if (maxOpenRfqs < 0)
+        {
+            clusterClientResponder.sendUserUpdated(correlation, false, 0);
+            return;
+        }
+
+        final User user = userById.get(userId);
+        if (user == null)
+        {
+            userById.put(userId, new User(userId, true, maxOpenRfqs));
+        }
+        else
+        {
+            user.setEnabled(true);
+            user.setMaxOpenRfqs(maxOpenRfqs);
+        }
+        clusterClientResponder.sendUserUpdated(correlation, true, 0);
+    }
+
+    /**
+     * Enables or disables a user. A disabled user's commands are refused as from an unknown user, while its open
+     * RFQs run on until they close.
+     *
+     * @param correlation the correlation id of the request
+     * @param userId      the user id
+     * @param enabled     the enabled flag of the user
+     */
+    public void setEnabledFlag(final long correlation, final int userId, final boolean enabled)
+    {
+        final User user = userById.get(userId);
+        if (user != null)
+        {
+            user.setEnabled(enabled);
+        }
+        clusterClientResponder.sendUserUpdated(correlation, user != null, 0);
+    }
+
+    /**
+     * Grants or revokes a user's entitlements. Instruments not held, such as those of another shard, are skipped,
+     * so the result counts the instruments the change was applied to.
+     *
+     * @param correlation the correlation id of the request
+     * @param userId      the user id
+     * @param action      the change to make
+     * @param cusipKeys   the packed cusips of the instruments to grant or revoke, unused for all instruments
+     */
+    public void setEntitlements(
+        final long correlation,
+        final int userId,
+        final UserEntitlementAction action,
+        final LongArrayList cusipKeys)
+    {
+        final User user = userById.get(userId);
+        if (user == null)
+        {
+            clusterClientResponder.sendUserUpdated(correlation, false, 0);
+            return;
+        }
+
+        int applied = 0;
+        switch (action)
+        {
+            case GRANT_ALL -> user.setEntitledToAll(true);
+            case REVOKE_ALL -> user.revokeAll();
+            case GRANT, REVOKE ->
+            {
+                for (int i = 0; i < cusipKeys.size(); i++)
+                {
+                    final Instrument instrument = instruments.getInstrument(cusipKeys.getLong(i));
+                    if (instrument == null)
+                    {
+                        continue;
+                    }
+
+                    if (action == UserEntitlementAction.GRANT)
+                    {
+                        user.grant(instrument.getInstrumentId());
+                    }
+                    else
+                    {
+                        user.revoke(instrument.getInstrumentId());
+                    }
+                    applied++;
+                }
+            }
+            default ->
+            {
+                clusterClientResponder.sendUserUpdated(correlation, false, 0);
+                return;
+            }
+        }
+        clusterClientResponder.sendUserUpdated(correlation, true, applied);
+    }
+
+    /**
+     * Restores a user from a snapshot, replacing any user with the same id. Its entitlement bitset is restored
+     * separately.
+     *
+     * @param userId         the user id
+     * @param enabled        the enabled flag of the user
+     * @param maxOpenRfqs    the maximum number of RFQs the user may have open, or {@link User#NO_OPEN_RFQ_LIMIT}
+     * @param allInstruments true if the user is entitled to every instrument
+     */
+    public void restoreUser(
+        final int userId,
+        final boolean enabled,
+        final int maxOpenRfqs,
+        final boolean allInstruments)
+    {
+        final User user = new User(userId, enabled, maxOpenRfqs);
+        user.setEntitledToAll(allInstruments);
+        userById.put(userId, user);
+    }
+
+    /**
+     * Restores a word of a user's entitlement bitset from a snapshot. The user must already have been restored.
+     *
+     * @param userId the user id
+     * @param index  the index of the word
+     * @param word   the word
+     */
+    public void restoreEntitlementWord(final int userId, final int index, final long word)
+    {
+        final User user = userById.get(userId);
+        if (user != null)
+        {
+            user.restoreEntitlementWord(index, word);
+        }
+    }
+
+    /**
+     * Visits each registered user.
+     * @param consumer the consumer to call for each user
+     */
+    public void forEachUser(final Consumer<User> consumer)
+    {
+        userById.values().forEach(consumer);
     }
 }
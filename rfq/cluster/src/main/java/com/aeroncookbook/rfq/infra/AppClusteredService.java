@@ -27,36 +27,90 @@ import io.aeron.cluster.service.ClientSession;
 import io.aeron.cluster.service.Cluster;
 import io.aeron.cluster.service.ClusteredService;
 import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.CompositeAgent;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
+import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.SystemNanoClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+
 /**
  * The clustered service for the auction application.
  */
 public class AppClusteredService implements ClusteredService
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(AppClusteredService.class);
+    private static final String JOURNAL_DIR_NAME = "journal";
+    private static final long LOCAL_WRITER_IDLE_MS = 1;
+    private static final LongArrayList NO_INSTRUMENTS = new LongArrayList();
     private final ClientSessions clientSessions = new ClientSessions();
-    private final SessionMessageContextImpl context = new SessionMessageContextImpl(clientSessions);
-    private final ClusterClientResponder clusterClientResponder = new ClusterClientResponderImpl(context);
+    private final NanoClock nanoClock = SystemNanoClock.INSTANCE;
+    private final ServiceCounters serviceCounters = new ServiceCounters();
+    private final ServiceLatency serviceLatency = new ServiceLatency();
+    private final EgressManager egressManager = new EgressManager(serviceCounters, serviceLatency, nanoClock);
+    private final SessionMessageContextImpl context = new SessionMessageContextImpl(egressManager, clientSessions);
     private final TimerManager timerManager = new TimerManager(context);
-    private final Instruments instruments = new Instruments(clusterClientResponder);
-    private final Users users = new Users();
-    private final Rfqs rfqs = new Rfqs(context, instruments, users, clusterClientResponder, timerManager);
-    private final SnapshotManager snapshotManager = new SnapshotManager(context);
-    private final SbeDemuxer sbeDemuxer = new SbeDemuxer(instruments, rfqs, clusterClientResponder);
+    private final EventJournal eventJournal = new EventJournal(context, serviceCounters);
+    private final Users users;
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final MarketDataPublisher marketDataPublisher;
+    private final Instruments instruments;
+    private final Rfqs rfqs;
+    private final SnapshotManager snapshotManager;
+    private final SbeDemuxer sbeDemuxer;
+    private Cluster cluster;
+    private AgentRunner localWriterRunner;
+
+    /**
+     * Constructor for an unsharded deployment, holding every instrument
+     */
+    public AppClusteredService()
+    {
+        this(RfqShard.SINGLE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param shard the shard this cluster is, which decides the instruments it holds and the RFQ ids it issues
+     */
+    public AppClusteredService(final RfqShard shard)
+    {
+        marketDataPublisher = new MarketDataPublisher(serviceCounters, shard.shardId());
+        final ClusterClientResponder clusterClientResponder =
+            new ClusterClientResponderImpl(context, marketDataPublisher);
+        instruments = new Instruments(clusterClientResponder, eventJournal, shard);
+        users = new Users(clusterClientResponder, instruments);
+        rfqs = new Rfqs(context, instruments, users, clusterClientResponder, timerManager, eventJournal, shard);
+        snapshotManager = new SnapshotManager(
+            context, instruments, users, rfqs, timerManager, clientSessions, marketDataPublisher, rateLimiter,
+            serviceCounters);
+        sbeDemuxer = new SbeDemuxer(instruments, rfqs, users, clusterClientResponder, context, clientSessions,
+            marketDataPublisher, serviceCounters, eventJournal, rateLimiter);
+    }
 
     @Override
     public void onStart(final Cluster cluster, final Image snapshotImage)
     {
+        this.cluster = cluster;
         snapshotManager.setIdleStrategy(cluster.idleStrategy());
-        context.setIdleStrategy(cluster.idleStrategy());
+        clientSessions.setClientSessionListener(egressManager);
         timerManager.setCluster(cluster);
+        serviceCounters.init(cluster.aeron());
+        startLocalWriters(cluster.context().clusterDir());
+        marketDataPublisher.onRoleChange(cluster.aeron(), cluster.role());
         if (snapshotImage != null)
         {
-            LOGGER.info("Snapshotting not supported");
+            snapshotManager.loadSnapshot(snapshotImage);
         }
+        cluster.forEachClientSession(session -> clientSessions.addSession(session, cluster.time()));
     }
 
     @Override
@@ -67,6 +121,21 @@ public class AppClusteredService implements ClusteredService
         clientSessions.addSession(session, timestamp);
     }
 
+    /**
+     * Opens a session which is local to this node rather than opened on the log, such as a query session on a view
+     * node. The session is sent replies to the commands it sends, but no RFQ events.
+     *
+     * @param session   the local session
+     * @param timestamp the cluster time at which it opened
+     */
+    public void onLocalSessionOpen(final ClientSession session, final long timestamp)
+    {
+        LOGGER.info("Local session with id {} opened", session.id());
+        context.setClusterTime(timestamp);
+        clientSessions.addSession(session, timestamp);
+        clientSessions.subscribe(session.id(), SessionInterest.NO_USER, true, NO_INSTRUMENTS);
+    }
+
     @Override
     public void onSessionClose(final ClientSession session, final long timestamp, final CloseReason closeReason)
     {
@@ -84,32 +153,61 @@ public class AppClusteredService implements ClusteredService
         final int length,
         final Header header)
     {
+        final long startNs = nanoClock.nanoTime();
         context.setSessionContext(session, timestamp);
         sbeDemuxer.dispatch(buffer, offset, length);
+        serviceLatency.onSessionMessage(nanoClock.nanoTime() - startNs);
     }
 
     @Override
     public void onTimerEvent(final long correlationId, final long timestamp)
     {
+        final long startNs = nanoClock.nanoTime();
         context.setClusterTime(timestamp);
         timerManager.onTimerEvent(correlationId, timestamp);
+        serviceLatency.onTimerEvent(nanoClock.nanoTime() - startNs);
     }
 
     @Override
     public void onTakeSnapshot(final ExclusivePublication snapshotPublication)
     {
-        LOGGER.info("Snapshottting not implemented");
+        snapshotManager.takeSnapshot(snapshotPublication);
+    }
+
+    @Override
+    public int doBackgroundWork(final long nowNs)
+    {
+        return egressManager.doWork(nowNs);
     }
 
     @Override
     public void onRoleChange(final Cluster.Role newRole)
     {
         LOGGER.info("Role change: {}", newRole);
+        marketDataPublisher.onRoleChange(cluster.aeron(), newRole);
     }
 
     @Override
     public void onTerminate(final Cluster cluster)
     {
         LOGGER.info("Terminating");
+        marketDataPublisher.close();
+        CloseHelper.close(localWriterRunner);
+        serviceCounters.close();
+    }
+
+    private void startLocalWriters(final File clusterDir)
+    {
+        final File journalDir = new File(clusterDir, JOURNAL_DIR_NAME);
+        final JournalWriterAgent journalWriterAgent = new JournalWriterAgent(eventJournal.ringBuffer(), journalDir);
+        final LatencyLogAgent latencyLogAgent =
+            new LatencyLogAgent(serviceLatency, clusterDir, SystemEpochClock.INSTANCE, nanoClock);
+        localWriterRunner = new AgentRunner(
+            new SleepingMillisIdleStrategy(LOCAL_WRITER_IDLE_MS),
+            throwable -> LOGGER.error("Local writer error", throwable),
+            null,
+            new CompositeAgent(journalWriterAgent, latencyLogAgent));
+        AgentRunner.startOnThread(localWriterRunner);
+        LOGGER.info("Journal writing to {}, service latency to {}", journalDir, clusterDir);
     }
 }
@@ -19,17 +19,26 @@ package com.aeroncookbook.rfq.infra;
 
 import io.aeron.cluster.service.ClientSession;
 import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.LongArrayList;
+import org.agrona.collections.LongHashSet;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Manages client sessions within the cluster
+ * Manages client sessions within the cluster, along with an inverted index from instrument to the sessions
+ * interested in it so that RFQ events are only sent to the sessions which asked for them.
+ * <p>
+ * Interest is set by commands on the log, so it is the same on every node and is held in snapshots.
  */
 public class ClientSessions
 {
     private final List<ClientSession> allSessions = new ArrayList<>();
     private final Long2ObjectHashMap<ClientSession> sessionsById = new Long2ObjectHashMap<>();
+    private final Long2ObjectHashMap<SessionInterest> interestBySessionId = new Long2ObjectHashMap<>();
+    private final Long2ObjectHashMap<List<SessionInterest>> interestByCusipKey = new Long2ObjectHashMap<>();
+    private final List<SessionInterest> allInstrumentInterest = new ArrayList<>();
 
     private ClientSessionListener clientSessionListener;
 
@@ -51,6 +60,12 @@ public class ClientSessions
     {
         allSessions.add(session);
         sessionsById.put(session.id(), session);
+        if (!interestBySessionId.containsKey(session.id()))
+        {
+            final SessionInterest interest = new SessionInterest(session.id());
+            interestBySessionId.put(session.id(), interest);
+            index(interest);
+        }
         if (clientSessionListener != null)
         {
             clientSessionListener.onSessionOpen(session, timestamp);
@@ -67,6 +82,11 @@ public class ClientSessions
     {
         allSessions.remove(session);
         sessionsById.remove(session.id());
+        final SessionInterest interest = interestBySessionId.remove(session.id());
+        if (interest != null)
+        {
+            unindex(interest);
+        }
         if (clientSessionListener != null)
         {
             clientSessionListener.onSessionClose(session, timestamp);
@@ -95,4 +115,157 @@ public class ClientSessions
         }
         return null;
     }
+
+    /**
+     * Replaces the interest of a session
+     *
+     * @param sessionId   the id of the session
+     * @param userId      the user the session acts for
+     * @param partiesOnly true to only send events for RFQs the user is a party to
+     * @param cusipKeys   the packed cusips of the instruments of interest; empty for every instrument
+     */
+    public void subscribe(
+        final long sessionId,
+        final int userId,
+        final boolean partiesOnly,
+        final LongArrayList cusipKeys)
+    {
+        final SessionInterest interest = getOrCreateInterest(sessionId);
+        unindex(interest);
+        interest.getCusipKeys().clear();
+        addInterest(interest, userId, partiesOnly, cusipKeys);
+    }
+
+    /**
+     * Restores the interest of a session from a snapshot, adding to any instruments already restored for it, as a
+     * session with many instruments is held over several records
+     *
+     * @param sessionId   the id of the session
+     * @param userId      the user the session acts for
+     * @param partiesOnly true to only send events for RFQs the user is a party to
+     * @param cusipKeys   the packed cusips of the instruments of interest
+     */
+    public void restoreInterest(
+        final long sessionId,
+        final int userId,
+        final boolean partiesOnly,
+        final LongArrayList cusipKeys)
+    {
+        final SessionInterest interest = getOrCreateInterest(sessionId);
+        unindex(interest);
+        addInterest(interest, userId, partiesOnly, cusipKeys);
+    }
+
+    /**
+     * Collects the ids of the sessions which should be sent an event for an RFQ
+     *
+     * @param cusipKey        the packed cusip of the RFQ instrument
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder to the RFQ, if any
+     * @param sessionIds      the list to add the session ids to
+     */
+    public void collectInterestedSessions(
+        final long cusipKey,
+        final int requesterUserId,
+        final int responderUserId,
+        final LongArrayList sessionIds)
+    {
+        collect(allInstrumentInterest, requesterUserId, responderUserId, sessionIds);
+        final List<SessionInterest> instrumentInterest = interestByCusipKey.get(cusipKey);
+        if (instrumentInterest != null)
+        {
+            collect(instrumentInterest, requesterUserId, responderUserId, sessionIds);
+        }
+    }
+
+    /**
+     * Visits the interest of every session, for snapshotting
+     *
+     * @param consumer the consumer of each session's interest
+     */
+    public void forEachInterest(final Consumer<SessionInterest> consumer)
+    {
+        interestBySessionId.values().forEach(consumer);
+    }
+
+    private static void collect(
+        final List<SessionInterest> interests,
+        final int requesterUserId,
+        final int responderUserId,
+        final LongArrayList sessionIds)
+    {
+        for (int i = 0, size = interests.size(); i < size; i++)
+        {
+            final SessionInterest interest = interests.get(i);
+            if (interest.acceptsParties(requesterUserId, responderUserId))
+            {
+                sessionIds.addLong(interest.getSessionId());
+            }
+        }
+    }
+
+    private SessionInterest getOrCreateInterest(final long sessionId)
+    {
+        SessionInterest interest = interestBySessionId.get(sessionId);
+        if (interest == null)
+        {
+            interest = new SessionInterest(sessionId);
+            interestBySessionId.put(sessionId, interest);
+            index(interest);
+        }
+        return interest;
+    }
+
+    private void addInterest(
+        final SessionInterest interest,
+        final int userId,
+        final boolean partiesOnly,
+        final LongArrayList cusipKeys)
+    {
+        interest.set(userId, partiesOnly);
+        for (int i = 0, size = cusipKeys.size(); i < size; i++)
+        {
+            interest.getCusipKeys().add(cusipKeys.getLong(i));
+        }
+        index(interest);
+    }
+
+    private void index(final SessionInterest interest)
+    {
+        if (interest.isAllInstruments())
+        {
+            allInstrumentInterest.add(interest);
+            return;
+        }
+
+        final LongHashSet.LongIterator iterator = interest.getCusipKeys().iterator();
+        while (iterator.hasNext())
+        {
+            interestByCusipKey.computeIfAbsent(iterator.nextValue(), key -> new ArrayList<>()).add(interest);
+        }
+    }
+
+    private void unindex(final SessionInterest interest)
+    {
+        if (interest.isAllInstruments())
+        {
+            allInstrumentInterest.remove(interest);
+            return;
+        }
+
+        final LongHashSet.LongIterator iterator = interest.getCusipKeys().iterator();
+        while (iterator.hasNext())
+        {
+            final long cusipKey = iterator.nextValue();
+            final List<SessionInterest> interests = interestByCusipKey.get(cusipKey);
+            if (interests != null)
+            {
+                interests.remove(interest);
+                if (interests.isEmpty())
+                {
+                    interestByCusipKey.remove(cusipKey);
+                }
+            }
+        }
+    }
 }
@@ -23,10 +23,10 @@ import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
-import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.Rfq;
-
-import java.util.List;
+import com.aeroncookbook.rfq.domain.rfq.RfqRepository;
+import org.agrona.collections.IntArrayList;
 
 /**
  * Interface for responding to auction requests, encapsulating the SBE encoding and Aeron interactions
@@ -34,35 +34,46 @@ import java.util.List;
 public interface ClusterClientResponder
 {
 
-    void sendInstrumentAdded(String correlation);
+    void sendInstrumentAdded(long correlation, boolean success);
+
+    void sendInstrumentsBatchAdded(long correlation, boolean success, int added, int replaced);
+
+    void sendInstrumentEnabledFlagSet(long correlation, boolean success);
+
+    void sendInstruments(long correlation, Instruments instruments, int fromIndex, int count, String nextAfterCusip);
+
+    void sendSubscribed(long correlation, boolean success);
+
+    void sendUserUpdated(long correlation, boolean success, int instruments);
 
-    void sendInstrumentEnabledFlagSet(String correlation, boolean success);
+    void sendMarketDataRetransmitted(long correlation, boolean complete, long firstSequence, long lastSequence);
 
-    void sendInstruments(String correlation, List<Instrument> values);
+    void sendRfqs(
+        long correlation, boolean success, IntArrayList rfqIds, RfqRepository rfqRepository, int nextAfterRfqId);
 
     void broadcastNewRfq(Rfq rfq);
 
-    void createRfqConfirm(String correlation, Rfq rfq, CreateRfqResult result);
+    void createRfqConfirm(long correlation, Rfq rfq, CreateRfqResult result);
 
     void broadcastRfqExpired(Rfq rfq);
 
-    void cancelRfqConfirm(String correlation, Rfq rfq, CancelRfqResult result);
+    void cancelRfqConfirm(long correlation, Rfq rfq, CancelRfqResult result);
 
     void broadcastRfqCanceled(Rfq rfq);
 
-    void quoteRfqConfirm(String correlation, Rfq rfq, QuoteRfqResult result);
+    void quoteRfqConfirm(long correlation, Rfq rfq, QuoteRfqResult result);
 
     void broadcastRfqQuoted(Rfq rfq);
 
-    void counterRfqConfirm(String correlation, Rfq rfq, CounterRfqResult result);
+    void counterRfqConfirm(long correlation, Rfq rfq, CounterRfqResult result);
 
     void broadcastRfqCountered(Rfq rfq);
 
-    void acceptRfqConfirm(String correlation, Rfq rfq, AcceptRfqResult result);
+    void acceptRfqConfirm(long correlation, Rfq rfq, AcceptRfqResult result);
 
     void broadcastRfqAccepted(Rfq rfq);
 
-    void rejectRfqConfirm(String correlation, Rfq rfq, RejectRfqResult result);
+    void rejectRfqConfirm(long correlation, Rfq rfq, RejectRfqResult result);
 
     void broadcastRfqRejected(Rfq rfq);
 }
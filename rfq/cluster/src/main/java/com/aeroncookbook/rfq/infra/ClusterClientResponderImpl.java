@@ -20,6 +20,7 @@ package com.aeroncookbook.rfq.infra;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentsBatchResultEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
@@ -28,7 +29,10 @@ import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentsListEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRetransmitResultEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsResultEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqConfirmEventEncoder;
@@ -41,30 +45,50 @@ import com.aeroncookbook.cluster.rfq.sbe.RfqCreatedEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqExpiredEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqQuotedEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqRejectedEventEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqsPageEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserResultEncoder;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
 import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.RfqRepository;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.logbuffer.BufferClaim;
 import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
 /**
- * Implementation of the {@link ClusterClientResponder} interface which returns SBE encoded results to the client
+ * Implementation of the {@link ClusterClientResponder} interface which returns SBE encoded results to the client.
+ * <p>
+ * Fixed length replies are encoded straight into a claim on the sender's publication where possible, falling back
+ * to the shared buffer and a copy when the sender is back pressured. RFQ events are encoded once into the shared
+ * buffer and copied to each session interested in them. Public events (created, quoted, expired and canceled) are
+ * sequenced by the {@link MarketDataPublisher}, and only go to sessions if no market data channel is configured.
  */
 public class ClusterClientResponderImpl implements ClusterClientResponder
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterClientResponderImpl.class);
+    private static final int RFQS_PER_PAGE = 64;
+    private static final int INSTRUMENTS_PER_PAGE = 64;
     private final SessionMessageContextImpl context;
+    private final MarketDataPublisher marketDataPublisher;
     private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
     private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(1024);
+    private final BufferClaim bufferClaim = new BufferClaim();
     private final RfqExpiredEventEncoder rfqExpiredEventEncoder = new RfqExpiredEventEncoder();
     private final RfqCanceledEventEncoder rfqCanceledEventEncoder = new RfqCanceledEventEncoder();
     private final AddInstrumentResultEncoder addInstrumentResultEncoder = new AddInstrumentResultEncoder();
+    private final AddInstrumentsBatchResultEncoder addInstrumentsBatchResultEncoder =
+        new AddInstrumentsBatchResultEncoder();
     private final SetInstrumentEnabledFlagResultEncoder setInstrumentEnabledFlagResultEncoder =
         new SetInstrumentEnabledFlagResultEncoder();
     private final InstrumentsListEncoder instrumentsListEncoder = new InstrumentsListEncoder();
+    private final ListInstrumentsResultEncoder listInstrumentsResultEncoder = new ListInstrumentsResultEncoder();
     private final CreateRfqConfirmEventEncoder createRfqConfirmEventEncoder = new CreateRfqConfirmEventEncoder();
     private final RfqCreatedEventEncoder rfqCreatedEventEncoder = new RfqCreatedEventEncoder();
     private final CancelRfqConfirmEventEncoder cancelRfqConfirmEventEncoder = new CancelRfqConfirmEventEncoder();
@@ -76,70 +100,117 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
     private final RfqRejectedEventEncoder rfqRejectedEventEncoder = new RfqRejectedEventEncoder();
     private final AcceptRfqConfirmEventEncoder acceptRfqConfirmEventEncoder = new AcceptRfqConfirmEventEncoder();
     private final RejectRfqConfirmEventEncoder rejectRfqConfirmEventEncoder = new RejectRfqConfirmEventEncoder();
+    private final SubscribeResultEncoder subscribeResultEncoder = new SubscribeResultEncoder();
+    private final UserResultEncoder userResultEncoder = new UserResultEncoder();
+    private final MarketDataRetransmitResultEncoder marketDataRetransmitResultEncoder =
+        new MarketDataRetransmitResultEncoder();
+    private final RfqsPageEncoder rfqsPageEncoder = new RfqsPageEncoder();
+    private final QueryRfqsResultEncoder queryRfqsResultEncoder = new QueryRfqsResultEncoder();
+    private final Rfq rfqFlyweight = new Rfq();
+    private final byte[] cusipBytes = new byte[CusipKey.CUSIP_LENGTH];
+    private boolean replyClaimed;
 
-    public ClusterClientResponderImpl(final SessionMessageContextImpl context)
+    public ClusterClientResponderImpl(
+        final SessionMessageContextImpl context,
+        final MarketDataPublisher marketDataPublisher)
     {
         this.context = context;
+        this.marketDataPublisher = marketDataPublisher;
     }
 
     @Override
-    public void sendInstrumentAdded(final String correlation)
+    public void sendInstrumentAdded(final long correlation, final boolean success)
     {
-        addInstrumentResultEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + AddInstrumentResultEncoder.BLOCK_LENGTH;
+        addInstrumentResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         addInstrumentResultEncoder.correlation(correlation);
-        addInstrumentResultEncoder.result(RequestResult.SUCCESS);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            addInstrumentResultEncoder.encodedLength());
+        addInstrumentResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        commitReply(length);
+    }
+
+    @Override
+    public void sendInstrumentsBatchAdded(
+        final long correlation,
+        final boolean success,
+        final int added,
+        final int replaced)
+    {
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + AddInstrumentsBatchResultEncoder.BLOCK_LENGTH;
+        addInstrumentsBatchResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        addInstrumentsBatchResultEncoder.correlation(correlation);
+        addInstrumentsBatchResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        addInstrumentsBatchResultEncoder.added(added);
+        addInstrumentsBatchResultEncoder.replaced(replaced);
+        commitReply(length);
     }
 
     @Override
-    public void sendInstrumentEnabledFlagSet(final String correlation, final boolean success)
+    public void sendInstrumentEnabledFlagSet(final long correlation, final boolean success)
     {
-        setInstrumentEnabledFlagResultEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + SetInstrumentEnabledFlagResultEncoder.BLOCK_LENGTH;
+        setInstrumentEnabledFlagResultEncoder
+            .wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         setInstrumentEnabledFlagResultEncoder.correlation(correlation);
         setInstrumentEnabledFlagResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            setInstrumentEnabledFlagResultEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
-    public void sendInstruments(final String correlation, final List<Instrument> values)
+    public void sendInstruments(
+        final long correlation,
+        final Instruments instruments,
+        final int fromIndex,
+        final int count,
+        final String nextAfterCusip)
     {
-        instrumentsListEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        instrumentsListEncoder.correlation(correlation);
-        final InstrumentsListEncoder.ValuesEncoder valuesEncoder = instrumentsListEncoder.valuesCount(values.size());
-
-        for (final Instrument instrument : values)
+        final int endIndex = fromIndex + count;
+        for (int pageStart = fromIndex; pageStart < endIndex; pageStart += INSTRUMENTS_PER_PAGE)
         {
-            valuesEncoder
-                .next()
-                .cusip(instrument.getCusip())
-                .enabled(instrument.isEnabled() ? BooleanType.TRUE : BooleanType.FALSE)
-                .minSize(instrument.getMinSize());
+            final int pageEnd = Math.min(pageStart + INSTRUMENTS_PER_PAGE, endIndex);
+            instrumentsListEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+            instrumentsListEncoder.correlation(correlation);
+            final InstrumentsListEncoder.ValuesEncoder valuesEncoder =
+                instrumentsListEncoder.valuesCount(pageEnd - pageStart);
+            for (int i = pageStart; i < pageEnd; i++)
+            {
+                final Instrument instrument = instruments.instrumentAt(i);
+                valuesEncoder
+                    .next()
+                    .cusip(instrument.getCusip())
+                    .enabled(instrument.isEnabled() ? BooleanType.TRUE : BooleanType.FALSE)
+                    .minSize(instrument.getMinSize());
+            }
+            context.reply(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + instrumentsListEncoder.encodedLength());
         }
 
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            instrumentsListEncoder.encodedLength());
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + ListInstrumentsResultEncoder.BLOCK_LENGTH;
+        listInstrumentsResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        listInstrumentsResultEncoder.correlation(correlation);
+        listInstrumentsResultEncoder.result(RequestResult.SUCCESS);
+        listInstrumentsResultEncoder.count(count);
+        listInstrumentsResultEncoder.nextAfterCusip(nextAfterCusip);
+        commitReply(length);
     }
 
     @Override
     public void broadcastNewRfq(final Rfq rfq)
     {
         rfqCreatedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        rfqCreatedEventEncoder.cusip(rfq.getCusip());
+        rfq.getCusip(cusipBytes);
+        rfqCreatedEventEncoder.putCusip(cusipBytes, 0);
         rfqCreatedEventEncoder.expireTimeMs(rfq.getExpireTimeMs());
         rfqCreatedEventEncoder.quantity(rfq.getQuantity());
         rfqCreatedEventEncoder.requesterSide(rfq.getRequesterSide());
         rfqCreatedEventEncoder.rfqId(rfq.getRfqId());
 
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqCreatedEventEncoder.encodedLength());
+        publishPublicEvent(rfq, messageHeaderEncoder.encodedLength() + rfqCreatedEventEncoder.encodedLength());
     }
 
     @Override
-    public void createRfqConfirm(final String correlation, final Rfq rfq, final CreateRfqResult result)
+    public void createRfqConfirm(final long correlation, final Rfq rfq, final CreateRfqResult result)
     {
-        createRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + CreateRfqConfirmEventEncoder.BLOCK_LENGTH;
+        createRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         createRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -151,8 +222,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
         }
         createRfqConfirmEventEncoder.result(result);
 
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            createRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -160,16 +230,16 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
     {
         rfqExpiredEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqExpiredEventEncoder.rfqId(rfq.getRfqId());
-        rfqExpiredEventEncoder.requesterUserId(rfq.getRfqId());
-        rfqExpiredEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqExpiredEventEncoder.encodedLength());
+        rfqExpiredEventEncoder.requesterUserId(rfq.getRequesterUserId());
+        rfqExpiredEventEncoder.responderUserId(rfq.getResponderUserId());
+        publishPublicEvent(rfq, messageHeaderEncoder.encodedLength() + rfqExpiredEventEncoder.encodedLength());
     }
 
     @Override
-    public void cancelRfqConfirm(final String correlation, final Rfq rfq, final CancelRfqResult result)
+    public void cancelRfqConfirm(final long correlation, final Rfq rfq, final CancelRfqResult result)
     {
-        cancelRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + CancelRfqConfirmEventEncoder.BLOCK_LENGTH;
+        cancelRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         cancelRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -180,8 +250,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
             cancelRfqConfirmEventEncoder.rfqId(-1);
         }
         cancelRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            cancelRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -189,16 +258,16 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
     {
         rfqCanceledEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqCanceledEventEncoder.rfqId(rfq.getRfqId());
-        rfqCanceledEventEncoder.requesterUserId(rfq.getRfqId());
-        rfqCanceledEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqCanceledEventEncoder.encodedLength());
+        rfqCanceledEventEncoder.requesterUserId(rfq.getRequesterUserId());
+        rfqCanceledEventEncoder.responderUserId(rfq.getResponderUserId());
+        publishPublicEvent(rfq, messageHeaderEncoder.encodedLength() + rfqCanceledEventEncoder.encodedLength());
     }
 
     @Override
-    public void quoteRfqConfirm(final String correlation, final Rfq rfq, final QuoteRfqResult result)
+    public void quoteRfqConfirm(final long correlation, final Rfq rfq, final QuoteRfqResult result)
     {
-        quoteRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + QuoteRfqConfirmEventEncoder.BLOCK_LENGTH;
+        quoteRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         quoteRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -209,8 +278,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
             quoteRfqConfirmEventEncoder.rfqId(-1);
         }
         quoteRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            quoteRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -219,16 +287,16 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
         rfqQuotedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqQuotedEventEncoder.rfqId(rfq.getRfqId());
         rfqQuotedEventEncoder.price(rfq.getPrice());
-        rfqQuotedEventEncoder.requesterUserId(rfq.getRfqId());
-        rfqQuotedEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqQuotedEventEncoder.encodedLength());
+        rfqQuotedEventEncoder.requesterUserId(rfq.getRequesterUserId());
+        rfqQuotedEventEncoder.responderUserId(rfq.getResponderUserId());
+        publishPublicEvent(rfq, messageHeaderEncoder.encodedLength() + rfqQuotedEventEncoder.encodedLength());
     }
 
     @Override
-    public void counterRfqConfirm(final String correlation, final Rfq rfq, final CounterRfqResult result)
+    public void counterRfqConfirm(final long correlation, final Rfq rfq, final CounterRfqResult result)
     {
-        counterRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + CounterRfqConfirmEventEncoder.BLOCK_LENGTH;
+        counterRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         counterRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -239,8 +307,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
             counterRfqConfirmEventEncoder.rfqId(-1);
         }
         counterRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            counterRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -249,14 +316,14 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
         rfqCounteredEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqCounteredEventEncoder.rfqId(rfq.getRfqId());
         rfqCounteredEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqCounteredEventEncoder.encodedLength());
+        broadcastRfqEvent(rfq, messageHeaderEncoder.encodedLength() + rfqCounteredEventEncoder.encodedLength());
     }
 
     @Override
-    public void acceptRfqConfirm(final String correlation, final Rfq rfq, final AcceptRfqResult result)
+    public void acceptRfqConfirm(final long correlation, final Rfq rfq, final AcceptRfqResult result)
     {
-        acceptRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + AcceptRfqConfirmEventEncoder.BLOCK_LENGTH;
+        acceptRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         acceptRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -267,8 +334,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
             acceptRfqConfirmEventEncoder.rfqId(-1);
         }
         acceptRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            acceptRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -277,14 +343,14 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
         rfqAcceptedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqAcceptedEventEncoder.rfqId(rfq.getRfqId());
         rfqAcceptedEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqAcceptedEventEncoder.encodedLength());
+        broadcastRfqEvent(rfq, messageHeaderEncoder.encodedLength() + rfqAcceptedEventEncoder.encodedLength());
     }
 
     @Override
-    public void rejectRfqConfirm(final String correlation, final Rfq rfq, final RejectRfqResult result)
+    public void rejectRfqConfirm(final long correlation, final Rfq rfq, final RejectRfqResult result)
     {
-        rejectRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + RejectRfqConfirmEventEncoder.BLOCK_LENGTH;
+        rejectRfqConfirmEventEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
         rejectRfqConfirmEventEncoder.correlation(correlation);
         if (rfq != null)
         {
@@ -295,8 +361,7 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
             rejectRfqConfirmEventEncoder.rfqId(-1);
         }
         rejectRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rejectRfqConfirmEventEncoder.encodedLength());
+        commitReply(length);
     }
 
     @Override
@@ -305,7 +370,124 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
         rfqRejectedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
         rfqRejectedEventEncoder.rfqId(rfq.getRfqId());
         rfqRejectedEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rfqRejectedEventEncoder.encodedLength());
+        broadcastRfqEvent(rfq, messageHeaderEncoder.encodedLength() + rfqRejectedEventEncoder.encodedLength());
+    }
+
+    @Override
+    public void sendSubscribed(final long correlation, final boolean success)
+    {
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + SubscribeResultEncoder.BLOCK_LENGTH;
+        subscribeResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        subscribeResultEncoder.correlation(correlation);
+        subscribeResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        commitReply(length);
+    }
+
+    @Override
+    public void sendUserUpdated(final long correlation, final boolean success, final int instruments)
+    {
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + UserResultEncoder.BLOCK_LENGTH;
+        userResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        userResultEncoder.correlation(correlation);
+        userResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        userResultEncoder.instruments(instruments);
+        commitReply(length);
+    }
+
+    @Override
+    public void sendMarketDataRetransmitted(
+        final long correlation,
+        final boolean complete,
+        final long firstSequence,
+        final long lastSequence)
+    {
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + MarketDataRetransmitResultEncoder.BLOCK_LENGTH;
+        marketDataRetransmitResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        marketDataRetransmitResultEncoder.correlation(correlation);
+        marketDataRetransmitResultEncoder.result(complete ? RequestResult.SUCCESS : RequestResult.ERROR);
+        marketDataRetransmitResultEncoder.firstSequence(firstSequence);
+        marketDataRetransmitResultEncoder.lastSequence(lastSequence);
+        commitReply(length);
+    }
+
+    @Override
+    public void sendRfqs(
+        final long correlation,
+        final boolean success,
+        final IntArrayList rfqIds,
+        final RfqRepository rfqRepository,
+        final int nextAfterRfqId)
+    {
+        final int count = rfqIds.size();
+        for (int pageStart = 0; pageStart < count; pageStart += RFQS_PER_PAGE)
+        {
+            final int pageEnd = Math.min(pageStart + RFQS_PER_PAGE, count);
+            rfqsPageEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+            rfqsPageEncoder.correlation(correlation);
+            final RfqsPageEncoder.RfqsEncoder rfqsEncoder = rfqsPageEncoder.rfqsCount(pageEnd - pageStart);
+            for (int i = pageStart; i < pageEnd; i++)
+            {
+                final Rfq rfq = rfqRepository.get(rfqIds.getInt(i), rfqFlyweight);
+                rfq.getCusip(cusipBytes);
+                rfqsEncoder.next()
+                    .rfqId(rfq.getRfqId())
+                    .putCusip(cusipBytes, 0)
+                    .expireTimeMs(rfq.getExpireTimeMs())
+                    .quantity(rfq.getQuantity())
+                    .requesterSide(rfq.getRequesterSide())
+                    .requesterUserId(rfq.getRequesterUserId())
+                    .responderUserId(rfq.getResponderUserId())
+                    .state(rfq.getStateId())
+                    .price(rfq.getPrice());
+            }
+            context.reply(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + rfqsPageEncoder.encodedLength());
+        }
+
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + QueryRfqsResultEncoder.BLOCK_LENGTH;
+        queryRfqsResultEncoder.wrapAndApplyHeader(claimReply(length), replyOffset(), messageHeaderEncoder);
+        queryRfqsResultEncoder.correlation(correlation);
+        queryRfqsResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        queryRfqsResultEncoder.count(count);
+        queryRfqsResultEncoder.nextAfterRfqId(nextAfterRfqId);
+        commitReply(length);
+    }
+
+    private void publishPublicEvent(final Rfq rfq, final int length)
+    {
+        marketDataPublisher.publish(buffer, 0, length, context.getClusterTime());
+        if (!marketDataPublisher.isEnabled())
+        {
+            broadcastRfqEvent(rfq, length);
+        }
+    }
+
+    private void broadcastRfqEvent(final Rfq rfq, final int length)
+    {
+        context.broadcastRfqEvent(
+            rfq.getCusipKey(), rfq.getRequesterUserId(), rfq.getResponderUserId(), buffer, 0, length);
+    }
+
+    private MutableDirectBuffer claimReply(final int length)
+    {
+        replyClaimed = context.tryClaimReply(length, bufferClaim);
+        return replyClaimed ? bufferClaim.buffer() : buffer;
+    }
+
+    private int replyOffset()
+    {
+        return replyClaimed ? bufferClaim.offset() + AeronCluster.SESSION_HEADER_LENGTH : 0;
+    }
+
+    private void commitReply(final int length)
+    {
+        if (replyClaimed)
+        {
+            bufferClaim.commit();
+            replyClaimed = false;
+        }
+        else
+        {
+            context.reply(buffer, 0, length);
+        }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.Int2IntHashMap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary min-heap of deadlines keyed by an int id, held in primitive arrays so that scheduling and cancelling do not
+ * allocate. Entries are ordered by deadline and then by id, so the order in which due entries are polled depends
+ * only on their contents and not on the order they were added; a queue rebuilt from a snapshot behaves exactly as
+ * the original.
+ */
+public class DeadlineQueue
+{
+    /**
+     * Deadline returned when the queue is empty
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final int MISSING_INDEX = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private final Int2IntHashMap indexById = new Int2IntHashMap(MISSING_INDEX);
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a deadline, replacing any existing deadline for the same id
+     *
+     * @param id       the id the deadline belongs to
+     * @param deadline the deadline
+     */
+    public void add(final int id, final long deadline)
+    {
+        final int existing = indexById.get(id);
+        if (existing != MISSING_INDEX)
+        {
+            deadlines[existing] = deadline;
+            siftDown(siftUp(existing));
+            return;
+        }
+
+        if (size == deadlines.length)
+        {
+            deadlines = Arrays.copyOf(deadlines, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+
+        deadlines[size] = deadline;
+        ids[size] = id;
+        indexById.put(id, size);
+        siftUp(size++);
+    }
+
+    /**
+     * Removes the deadline for an id
+     *
+     * @param id the id the deadline belongs to
+     * @return true if a deadline was removed
+     */
+    public boolean remove(final int id)
+    {
+        final int index = indexById.remove(id);
+        if (index == MISSING_INDEX)
+        {
+            return false;
+        }
+
+        final int last = --size;
+        if (index != last)
+        {
+            move(last, index);
+            siftDown(siftUp(index));
+        }
+        return true;
+    }
+
+    /**
+     * Removes every deadline at or before the given time, earliest first, and hands its id to the consumer
+     *
+     * @param now      the current time
+     * @param consumer the consumer of due ids; it may add or remove deadlines
+     * @return the number of ids polled
+     */
+    public int poll(final long now, final IntConsumer consumer)
+    {
+        int count = 0;
+        while (size > 0 && deadlines[0] <= now)
+        {
+            final int id = ids[0];
+            remove(id);
+            consumer.accept(id);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the earliest deadline
+     *
+     * @return the earliest deadline, or {@link #NO_DEADLINE} if empty
+     */
+    public long peekDeadline()
+    {
+        return size == 0 ? NO_DEADLINE : deadlines[0];
+    }
+
+    /**
+     * Gets the number of deadlines held
+     *
+     * @return the number of deadlines
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Checks if the queue is empty
+     *
+     * @return true if no deadlines are held
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    private int siftUp(final int index)
+    {
+        int child = index;
+        while (child > 0)
+        {
+            final int parent = (child - 1) >>> 1;
+            if (!isBefore(child, parent))
+            {
+                break;
+            }
+            swap(child, parent);
+            child = parent;
+        }
+        return child;
+    }
+
+    private void siftDown(final int index)
+    {
+        int parent = index;
+        while (true)
+        {
+            final int left = (parent << 1) + 1;
+            if (left >= size)
+            {
+                return;
+            }
+
+            final int right = left + 1;
+            final int child = right < size && isBefore(right, left) ? right : left;
+            if (!isBefore(child, parent))
+            {
+                return;
+            }
+            swap(child, parent);
+            parent = child;
+        }
+    }
+
+    private boolean isBefore(final int a, final int b)
+    {
+        return deadlines[a] < deadlines[b] || (deadlines[a] == deadlines[b] && ids[a] < ids[b]);
+    }
+
+    private void swap(final int a, final int b)
+    {
+        final long deadline = deadlines[a];
+        final int id = ids[a];
+        deadlines[a] = deadlines[b];
+        ids[a] = ids[b];
+        deadlines[b] = deadline;
+        ids[b] = id;
+        indexById.put(ids[a], a);
+        indexById.put(ids[b], b);
+    }
+
+    private void move(final int from, final int to)
+    {
+        deadlines[to] = deadlines[from];
+        ids[to] = ids[from];
+        indexById.put(ids[to], to);
+    }
+}
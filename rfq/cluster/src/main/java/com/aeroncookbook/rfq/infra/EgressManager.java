@@ -0,0 +1,321 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.SystemUtil;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.NanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends egress to client sessions without ever blocking the service thread. Each session has a bounded queue which
+ * takes messages while the session is back pressured; queues are drained on every duty cycle. A session whose
+ * queue fills, or which accepts nothing for longer than the maximum lag, is evicted.
+ * <p>
+ * Egress may be coalesced, if a maximum batch length is set: messages to a session are then collected into a batch
+ * as commands are processed, and each session's batch is sent once per duty cycle as a single {@code EgressBatch}
+ * message, so a command which fans out many events costs each session one offer rather than one per event. A batch is
+ * also sent early if the next message does not fit in it, or before a message is claimed in place, and messages too
+ * long to batch are sent alone, keeping order. Coalescing is off by default, as clients must unpack the batches.
+ * <p>
+ * Egress is node local: followers do not send egress, so eviction only ever happens on the leader and does not
+ * affect replicated state.
+ */
+public class EgressManager implements ClientSessionListener
+{
+    /**
+     * System property for the maximum bytes queued per session before it is evicted
+     */
+    public static final String MAX_QUEUED_BYTES_PROP_NAME = "rfq.egress.max.queued.bytes";
+
+    /**
+     * Default maximum bytes queued per session
+     */
+    public static final int MAX_QUEUED_BYTES_DEFAULT = 1024 * 1024;
+
+    /**
+     * System property for the longest a session may go without accepting queued egress before it is evicted
+     */
+    public static final String MAX_LAG_PROP_NAME = "rfq.egress.max.lag";
+
+    /**
+     * Default maximum lag
+     */
+    public static final long MAX_LAG_NS_DEFAULT = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * System property for the most bytes a coalesced egress batch may take, or zero to send every message alone
+     */
+    public static final String MAX_BATCH_LENGTH_PROP_NAME = "rfq.egress.batch.length";
+
+    /**
+     * Default maximum batch length, zero so that every message is sent alone. When enabling coalescing, 1344 bytes is
+     * what fits in one frame of a 1408 byte MTU after the frame and cluster session headers.
+     */
+    public static final int MAX_BATCH_LENGTH_DEFAULT = 0;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EgressManager.class);
+    private final Long2ObjectHashMap<SessionEgressQueue> queueBySessionId = new Long2ObjectHashMap<>();
+    private final List<SessionEgressQueue> queues = new ArrayList<>();
+    private final ServiceCounters serviceCounters;
+    private final ServiceLatency serviceLatency;
+    private final NanoClock nanoClock;
+    private final int maxQueuedBytes;
+    private final long maxLagNs;
+    private final int maxBatchLength;
+
+    /**
+     * Constructor, reading the eviction and coalescing policy from system properties
+     *
+     * @param serviceCounters the counters to which dropped messages, back pressure and evictions are reported
+     * @param serviceLatency  the histograms to which the time taken by each offer is recorded
+     * @param nanoClock       the clock used to measure session lag and offer time
+     */
+    public EgressManager(
+        final ServiceCounters serviceCounters,
+        final ServiceLatency serviceLatency,
+        final NanoClock nanoClock)
+    {
+        this(
+            serviceCounters,
+            serviceLatency,
+            nanoClock,
+            SystemUtil.getSizeAsInt(MAX_QUEUED_BYTES_PROP_NAME, MAX_QUEUED_BYTES_DEFAULT),
+            SystemUtil.getDurationInNanos(MAX_LAG_PROP_NAME, MAX_LAG_NS_DEFAULT),
+            SystemUtil.getSizeAsInt(MAX_BATCH_LENGTH_PROP_NAME, MAX_BATCH_LENGTH_DEFAULT));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param serviceCounters the counters to which dropped messages, back pressure and evictions are reported
+     * @param serviceLatency  the histograms to which the time taken by each offer is recorded
+     * @param nanoClock       the clock used to measure session lag and offer time
+     * @param maxQueuedBytes  the maximum bytes queued per session, rounded up to a power of two
+     * @param maxLagNs        the longest a session may go without accepting queued egress
+     * @param maxBatchLength  the most bytes a coalesced batch may take, or zero to send every message alone
+     */
+    public EgressManager(
+        final ServiceCounters serviceCounters,
+        final ServiceLatency serviceLatency,
+        final NanoClock nanoClock,
+        final int maxQueuedBytes,
+        final long maxLagNs,
+        final int maxBatchLength)
+    {
+        this.serviceCounters = serviceCounters;
+        this.serviceLatency = serviceLatency;
+        this.nanoClock = nanoClock;
+        this.maxQueuedBytes = BitUtil.findNextPositivePowerOfTwo(maxQueuedBytes);
+        this.maxLagNs = maxLagNs;
+        this.maxBatchLength = maxBatchLength;
+    }
+
+    /**
+     * Sends a message to a single session
+     *
+     * @param sessionId the id of the session to send to
+     * @param buffer    the buffer to read data from
+     * @param offset    the offset to read from
+     * @param length    the length to read
+     */
+    public void send(final long sessionId, final DirectBuffer buffer, final int offset, final int length)
+    {
+        final SessionEgressQueue queue = queueBySessionId.get(sessionId);
+        if (queue == null)
+        {
+            serviceCounters.onEgressDropped(1);
+            return;
+        }
+        send(queue, buffer, offset, length);
+    }
+
+    /**
+     * Claims space to encode a message directly into a session's publication. Any batch waiting for the session is
+     * sent first, so that the claimed message stays behind it. Fails if the session is unknown, back pressured or has
+     * queued messages, in which case the caller should encode and {@link #send} instead.
+     *
+     * @param sessionId   the id of the session to send to
+     * @param length      the length of the message to be encoded
+     * @param bufferClaim the claim to be filled
+     * @return true if claimed, in which case the message must be encoded after the cluster session header and the
+     * claim committed
+     */
+    public boolean tryClaim(final long sessionId, final int length, final BufferClaim bufferClaim)
+    {
+        final SessionEgressQueue queue = queueBySessionId.get(sessionId);
+        if (queue == null)
+        {
+            return false;
+        }
+
+        flush(queue);
+        return queue.tryClaim(length, bufferClaim);
+    }
+
+    /**
+     * Sends a message to every session. The message is encoded once by the caller and copied straight into each
+     * session's batch, publication, or queue if back pressured.
+     *
+     * @param buffer the buffer to read data from
+     * @param offset the offset to read from
+     * @param length the length to read
+     */
+    public void broadcast(final DirectBuffer buffer, final int offset, final int length)
+    {
+        for (int i = 0, size = queues.size(); i < size; i++)
+        {
+            send(queues.get(i), buffer, offset, length);
+        }
+    }
+
+    /**
+     * Sends each session's batch, drains queued egress and evicts sessions which have fallen too far behind. Called
+     * on each duty cycle.
+     *
+     * @param nowNs the current time
+     * @return the number of messages sent in batches and taken from queues
+     */
+    public int doWork(final long nowNs)
+    {
+        int workCount = 0;
+        for (int i = 0, size = queues.size(); i < size; i++)
+        {
+            final SessionEgressQueue queue = queues.get(i);
+            workCount += flush(queue);
+            workCount += queue.drain(nowNs);
+
+            final int dropped = queue.takeDroppedMessages();
+            if (dropped > 0)
+            {
+                serviceCounters.onEgressDropped(dropped);
+            }
+
+            final int retried = queue.takeRetriedOffers();
+            if (retried > 0)
+            {
+                serviceCounters.onEgressRetries(retried);
+            }
+
+            if (!queue.isEvicted() && queue.lagNs(nowNs) > maxLagNs)
+            {
+                evict(queue, "lag exceeded");
+            }
+        }
+        return workCount;
+    }
+
+    @Override
+    public void onSessionOpen(final ClientSession session, final long timestampMs)
+    {
+        final SessionEgressQueue queue = new SessionEgressQueue(session, maxQueuedBytes, maxBatchLength);
+        queueBySessionId.put(session.id(), queue);
+        queues.add(queue);
+    }
+
+    @Override
+    public void onSessionClose(final ClientSession session, final long timestampMs)
+    {
+        final SessionEgressQueue queue = queueBySessionId.remove(session.id());
+        if (queue != null)
+        {
+            queues.remove(queue);
+        }
+    }
+
+    private void send(
+        final SessionEgressQueue queue,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        if (queue.isBatching())
+        {
+            if (queue.batch(buffer, offset, length))
+            {
+                return;
+            }
+
+            flush(queue);
+            if (queue.batch(buffer, offset, length))
+            {
+                return;
+            }
+        }
+
+        final long startNs = nanoClock.nanoTime();
+        final SessionEgressQueue.SendResult result = queue.send(buffer, offset, length, startNs);
+        serviceLatency.onEgressOffer(nanoClock.nanoTime() - startNs);
+        onSendResult(queue, result, 1);
+    }
+
+    private int flush(final SessionEgressQueue queue)
+    {
+        final int messageCount = queue.batchedMessages();
+        if (messageCount == 0)
+        {
+            return 0;
+        }
+
+        final long startNs = nanoClock.nanoTime();
+        final SessionEgressQueue.SendResult result = queue.flushBatch(startNs);
+        serviceLatency.onEgressOffer(nanoClock.nanoTime() - startNs);
+        if (messageCount > 1)
+        {
+            serviceCounters.onEgressBatch(messageCount);
+        }
+        onSendResult(queue, result, messageCount);
+        return messageCount;
+    }
+
+    private void onSendResult(
+        final SessionEgressQueue queue,
+        final SessionEgressQueue.SendResult result,
+        final int messageCount)
+    {
+        if (result == SessionEgressQueue.SendResult.QUEUED)
+        {
+            serviceCounters.onEgressBackPressured();
+        }
+        else if (result == SessionEgressQueue.SendResult.DROPPED)
+        {
+            serviceCounters.onEgressDropped(messageCount);
+        }
+        else if (result == SessionEgressQueue.SendResult.QUEUE_FULL)
+        {
+            serviceCounters.onEgressDropped(messageCount);
+            evict(queue, "queue full");
+        }
+    }
+
+    private void evict(final SessionEgressQueue queue, final String reason)
+    {
+        LOGGER.warn("Evicting slow client session {}: {}, {} bytes queued",
+            queue.session().id(), reason, queue.queuedBytes());
+        serviceCounters.onEgressDropped(queue.evict());
+        serviceCounters.onSessionEvicted();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentJournalEventEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalEventEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalRefusalEncoder;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary journal of domain events, written in place of text logging on the service thread. Each event is encoded as
+ * a small SBE record directly into a ring buffer; a {@link JournalWriterAgent} on its own thread drains the ring
+ * buffer to memory mapped files, and {@link com.aeroncookbook.rfq.JournalDump} renders them as text offline.
+ * <p>
+ * Writing never blocks or formats text. If the ring buffer is full the entry is dropped and counted, so journal
+ * volume cannot hold up commands. The journal is local to each node and is never part of replicated state.
+ */
+public class EventJournal
+{
+    /**
+     * User id journaled for actions no user took, such as expiry
+     */
+    public static final int NO_USER = Integer.MIN_VALUE;
+
+    private static final int RING_BUFFER_LENGTH = 4 * 1024 * 1024;
+    private static final int RFQ_EVENT_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH +
+        RfqJournalEventEncoder.BLOCK_LENGTH + RfqJournalEventEncoder.rfqHeaderLength() + Rfq.RECORD_LENGTH;
+    private static final int RFQ_REFUSAL_LENGTH =
+        MessageHeaderEncoder.ENCODED_LENGTH + RfqJournalRefusalEncoder.BLOCK_LENGTH;
+    private static final int INSTRUMENT_EVENT_LENGTH =
+        MessageHeaderEncoder.ENCODED_LENGTH + InstrumentJournalEventEncoder.BLOCK_LENGTH;
+    private final SessionMessageContext context;
+    private final ServiceCounters serviceCounters;
+    private final RingBuffer ringBuffer = new OneToOneRingBuffer(new UnsafeBuffer(
+        ByteBuffer.allocateDirect(RING_BUFFER_LENGTH + RingBufferDescriptor.TRAILER_LENGTH)));
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final RfqJournalEventEncoder rfqJournalEventEncoder = new RfqJournalEventEncoder();
+    private final RfqJournalRefusalEncoder rfqJournalRefusalEncoder = new RfqJournalRefusalEncoder();
+    private final InstrumentJournalEventEncoder instrumentJournalEventEncoder = new InstrumentJournalEventEncoder();
+
+    /**
+     * Constructor
+     *
+     * @param context         the context providing the cluster time with which entries are stamped
+     * @param serviceCounters the counters to which refusals and dropped entries are reported
+     */
+    public EventJournal(final SessionMessageContext context, final ServiceCounters serviceCounters)
+    {
+        this.context = context;
+        this.serviceCounters = serviceCounters;
+    }
+
+    /**
+     * Gets the ring buffer the entries are written to, for the writer agent to drain
+     *
+     * @return the ring buffer
+     */
+    public RingBuffer ringBuffer()
+    {
+        return ringBuffer;
+    }
+
+    /**
+     * Journals an action applied to an RFQ, along with a copy of the RFQ record after the action
+     *
+     * @param action the action
+     * @param userId the user which took the action, or {@link #NO_USER}
+     * @param rfq    the RFQ after the action
+     */
+    public void rfqEvent(final RfqJournalAction action, final int userId, final Rfq rfq)
+    {
+        final int index = ringBuffer.tryClaim(RfqJournalEventEncoder.TEMPLATE_ID, RFQ_EVENT_LENGTH);
+        if (index < 0)
+        {
+            serviceCounters.onJournalDropped();
+            return;
+        }
+
+        rfqJournalEventEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, headerEncoder)
+            .timestamp(context.getClusterTime())
+            .action(action)
+            .userId(userId)
+            .putRfq(rfq.buffer(), rfq.offset(), Rfq.RECORD_LENGTH);
+        ringBuffer.commit(index);
+    }
+
+    /**
+     * Journals an RFQ command which was refused, and counts it by action and result
+     *
+     * @param action      the action the command requested
+     * @param correlation the correlation id of the command
+     * @param rfqId       the RFQ id, or 0 if the command did not name an RFQ
+     * @param userId      the user which sent the command
+     * @param result      the value of the result sent back, of the result type for the action
+     */
+    public void rfqRefused(
+        final RfqJournalAction action,
+        final long correlation,
+        final int rfqId,
+        final int userId,
+        final int result)
+    {
+        serviceCounters.onRfqRefused(action, result);
+        final int index = ringBuffer.tryClaim(RfqJournalRefusalEncoder.TEMPLATE_ID, RFQ_REFUSAL_LENGTH);
+        if (index < 0)
+        {
+            serviceCounters.onJournalDropped();
+            return;
+        }
+
+        rfqJournalRefusalEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, headerEncoder)
+            .timestamp(context.getClusterTime())
+            .action(action)
+            .correlation(correlation)
+            .rfqId(rfqId)
+            .userId(userId)
+            .result(result);
+        ringBuffer.commit(index);
+    }
+
+    /**
+     * Journals an instrument being added or replaced, or having its enabled flag set
+     *
+     * @param action      the action
+     * @param correlation the correlation id of the command
+     * @param cusip       the cusip of the instrument
+     * @param enabled     the enabled flag after the action
+     * @param minSize     the minimum size after the action
+     */
+    public void instrumentEvent(
+        final InstrumentJournalAction action,
+        final long correlation,
+        final String cusip,
+        final boolean enabled,
+        final int minSize)
+    {
+        final int index = ringBuffer.tryClaim(InstrumentJournalEventEncoder.TEMPLATE_ID, INSTRUMENT_EVENT_LENGTH);
+        if (index < 0)
+        {
+            serviceCounters.onJournalDropped();
+            return;
+        }
+
+        instrumentJournalEventEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, headerEncoder)
+            .timestamp(context.getClusterTime())
+            .action(action)
+            .correlation(correlation)
+            .cusip(cusip)
+            .enabled(enabled ? BooleanType.TRUE : BooleanType.FALSE)
+            .minSize(minSize)
+            .added(0)
+            .replaced(0);
+        ringBuffer.commit(index);
+    }
+
+    /**
+     * Journals the completion of a batch of instruments
+     *
+     * @param correlation the correlation id of the batch
+     * @param added       the number of new instruments
+     * @param replaced    the number of instruments that replaced one with the same cusip
+     */
+    public void instrumentBatchCompleted(final long correlation, final int added, final int replaced)
+    {
+        final int index = ringBuffer.tryClaim(InstrumentJournalEventEncoder.TEMPLATE_ID, INSTRUMENT_EVENT_LENGTH);
+        if (index < 0)
+        {
+            serviceCounters.onJournalDropped();
+            return;
+        }
+
+        instrumentJournalEventEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, headerEncoder)
+            .timestamp(context.getClusterTime())
+            .action(InstrumentJournalAction.COMPLETE_BATCH)
+            .correlation(correlation)
+            .cusip("")
+            .enabled(BooleanType.FALSE)
+            .minSize(0)
+            .added(added)
+            .replaced(replaced);
+        ringBuffer.commit(index);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Drains the {@link EventJournal} ring buffer into memory mapped segment files, off the service thread.
+ * <p>
+ * A segment is a file of {@link #SEGMENT_LENGTH} bytes named by {@link #segmentFileName(int)}, holding frames of an
+ * int length followed by an SBE message, each frame aligned to {@link #FRAME_ALIGNMENT}. The frame length is written
+ * after the message, and a zero length marks the end of the data, so a reader stops cleanly at a partly written
+ * frame. A frame which does not fit in what is left of a segment starts the next one. Segment numbering continues
+ * after the highest segment already in the directory, so restarts do not overwrite earlier journals even when older
+ * segments have been archived or deleted.
+ */
+public class JournalWriterAgent implements Agent, MessageHandler
+{
+    /**
+     * Length of a segment file
+     */
+    public static final int SEGMENT_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Length of the header before each message in a segment
+     */
+    public static final int FRAME_HEADER_LENGTH = BitUtil.SIZE_OF_INT;
+
+    /**
+     * Alignment of the frames in a segment
+     */
+    public static final int FRAME_ALIGNMENT = 8;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int READ_LIMIT = 256;
+    private final RingBuffer ringBuffer;
+    private final File journalDir;
+    private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int position;
+
+    /**
+     * Constructor
+     *
+     * @param ringBuffer the journal ring buffer to drain
+     * @param journalDir the directory in which segments are written
+     */
+    public JournalWriterAgent(final RingBuffer ringBuffer, final File journalDir)
+    {
+        this.ringBuffer = ringBuffer;
+        this.journalDir = journalDir;
+    }
+
+    /**
+     * Gets the name of a segment file
+     *
+     * @param segmentIndex the index of the segment
+     * @return the file name
+     */
+    public static String segmentFileName(final int segmentIndex)
+    {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Checks if a file name is that of a segment
+     *
+     * @param fileName the file name
+     * @return true if the file is a segment
+     */
+    public static boolean isSegmentFile(final String fileName)
+    {
+        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Gets the index of a segment from its file name
+     *
+     * @param fileName the file name of the segment
+     * @return the index of the segment, or -1 if the name does not hold one
+     */
+    public static int segmentIndex(final String fileName)
+    {
+        try
+        {
+            return Integer.parseInt(
+                fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        }
+        catch (final NumberFormatException ex)
+        {
+            return -1;
+        }
+    }
+
+    @Override
+    public void onStart()
+    {
+        IoUtil.ensureDirectoryExists(journalDir, "journal");
+        final String[] existing = journalDir.list((dir, name) -> isSegmentFile(name));
+        int lastSegmentIndex = -1;
+        if (existing != null)
+        {
+            for (final String fileName : existing)
+            {
+                lastSegmentIndex = Math.max(lastSegmentIndex, segmentIndex(fileName));
+            }
+        }
+        segmentIndex = lastSegmentIndex + 1;
+        openSegment();
+    }
+
+    @Override
+    public int doWork()
+    {
+        return ringBuffer.read(this, READ_LIMIT);
+    }
+
+    @Override
+    public void onMessage(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        final int frameLength = BitUtil.align(FRAME_HEADER_LENGTH + length, FRAME_ALIGNMENT);
+        if (position + frameLength > SEGMENT_LENGTH)
+        {
+            closeSegment();
+            segmentIndex++;
+            openSegment();
+        }
+
+        segmentBuffer.putBytes(position + FRAME_HEADER_LENGTH, buffer, index, length);
+        segmentBuffer.putIntOrdered(position, length);
+        position += frameLength;
+    }
+
+    @Override
+    public void onClose()
+    {
+        int drained;
+        do
+        {
+            drained = ringBuffer.read(this);
+        }
+        while (drained > 0);
+        closeSegment();
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "rfq-journal-writer";
+    }
+
+    private void openSegment()
+    {
+        segment = IoUtil.mapNewFile(new File(journalDir, segmentFileName(segmentIndex)), SEGMENT_LENGTH);
+        segmentBuffer.wrap(segment);
+        position = 0;
+    }
+
+    private void closeSegment()
+    {
+        if (segment != null)
+        {
+            segment.force();
+            IoUtil.unmap(segment);
+            segmentBuffer.wrap(0, 0);
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.HdrHistogram.HistogramLogWriter;
+import org.agrona.LangUtil;
+import org.agrona.SystemUtil;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.NanoClock;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the {@link ServiceLatency} interval histograms to an HdrHistogram log, off the service thread.
+ * Each run of the node writes a new log file named by its start time, which can be read with the HdrHistogram
+ * log processing tools, filtering by histogram tag.
+ */
+public class LatencyLogAgent implements Agent
+{
+    /**
+     * System property for the interval between histogram dumps
+     */
+    public static final String INTERVAL_PROP_NAME = "rfq.latency.log.interval";
+
+    /**
+     * Default interval between histogram dumps
+     */
+    public static final long INTERVAL_NS_DEFAULT = TimeUnit.SECONDS.toNanos(10);
+
+    private static final String LOG_FILE_PREFIX = "service-latency-";
+    private static final String LOG_FILE_SUFFIX = ".hlog";
+    private final ServiceLatency serviceLatency;
+    private final File logDir;
+    private final EpochClock epochClock;
+    private final NanoClock nanoClock;
+    private final long intervalNs;
+    private HistogramLogWriter logWriter;
+    private long nextDumpNs;
+
+    /**
+     * Constructor, reading the dump interval from a system property
+     *
+     * @param serviceLatency the histograms to dump
+     * @param logDir         the directory in which the log is written
+     * @param epochClock     the clock used to stamp the start of the log
+     * @param nanoClock      the clock used to time dumps
+     */
+    public LatencyLogAgent(
+        final ServiceLatency serviceLatency,
+        final File logDir,
+        final EpochClock epochClock,
+        final NanoClock nanoClock)
+    {
+        this.serviceLatency = serviceLatency;
+        this.logDir = logDir;
+        this.epochClock = epochClock;
+        this.nanoClock = nanoClock;
+        this.intervalNs = SystemUtil.getDurationInNanos(INTERVAL_PROP_NAME, INTERVAL_NS_DEFAULT);
+    }
+
+    @Override
+    public void onStart()
+    {
+        final long startTimeMs = epochClock.time();
+        try
+        {
+            logWriter = new HistogramLogWriter(new File(logDir, LOG_FILE_PREFIX + startTimeMs + LOG_FILE_SUFFIX));
+        }
+        catch (final FileNotFoundException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(startTimeMs);
+        logWriter.setBaseTime(startTimeMs);
+        logWriter.outputLegend();
+        nextDumpNs = nanoClock.nanoTime() + intervalNs;
+    }
+
+    @Override
+    public int doWork()
+    {
+        final long nowNs = nanoClock.nanoTime();
+        if (nowNs < nextDumpNs)
+        {
+            return 0;
+        }
+
+        nextDumpNs = nowNs + intervalNs;
+        serviceLatency.writeIntervals(logWriter);
+        return 1;
+    }
+
+    @Override
+    public void onClose()
+    {
+        if (logWriter != null)
+        {
+            serviceLatency.writeIntervals(logWriter);
+            logWriter.close();
+        }
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "rfq-latency-log";
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.DirectBufferVector;
+import io.aeron.Publication;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.MutableLong;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Client session opened by a cluster log applied outside of a clustered service container, see {@link LogCluster}.
+ * Egress is never sent: every offer and claim succeeds at once without the message going anywhere. If egress counters
+ * are given, the number of messages and bytes is counted, so that replays can be compared for the same output.
+ */
+public final class LogClientSession implements ClientSession
+{
+    private static final int CLAIM_HEADER_LENGTH =
+        DataHeaderFlyweight.HEADER_LENGTH + AeronCluster.SESSION_HEADER_LENGTH;
+    private static final int MAX_CLAIM_LENGTH = 64 * 1024;
+    private static final byte[] NO_PRINCIPAL = new byte[0];
+    private final UnsafeBuffer claimBuffer = new UnsafeBuffer(new byte[CLAIM_HEADER_LENGTH + MAX_CLAIM_LENGTH]);
+    private final long id;
+    private final MutableLong egressMessages;
+    private final MutableLong egressBytes;
+    private long position;
+    private boolean closing;
+
+    /**
+     * Constructor
+     *
+     * @param id             the cluster session id
+     * @param egressMessages counter of egress messages shared by all sessions of a log, or null to not count
+     * @param egressBytes    counter of egress bytes shared by all sessions of a log, or null to not count
+     */
+    public LogClientSession(final long id, final MutableLong egressMessages, final MutableLong egressBytes)
+    {
+        this.id = id;
+        this.egressMessages = egressMessages;
+        this.egressBytes = egressBytes;
+    }
+
+    @Override
+    public long id()
+    {
+        return id;
+    }
+
+    @Override
+    public int responseStreamId()
+    {
+        return 0;
+    }
+
+    @Override
+    public String responseChannel()
+    {
+        return "";
+    }
+
+    @Override
+    public byte[] encodedPrincipal()
+    {
+        return NO_PRINCIPAL;
+    }
+
+    @Override
+    public void close()
+    {
+        closing = true;
+    }
+
+    @Override
+    public boolean isClosing()
+    {
+        return closing;
+    }
+
+    @Override
+    public long offer(final DirectBuffer buffer, final int offset, final int length)
+    {
+        return onEgress(length);
+    }
+
+    @Override
+    public long offer(final DirectBufferVector[] vectors)
+    {
+        int length = 0;
+        for (final DirectBufferVector vector : vectors)
+        {
+            length += vector.length();
+        }
+        return onEgress(length);
+    }
+
+    @Override
+    public long tryClaim(final int length, final BufferClaim bufferClaim)
+    {
+        if (length > MAX_CLAIM_LENGTH)
+        {
+            return Publication.MAX_POSITION_EXCEEDED;
+        }
+        bufferClaim.wrap(claimBuffer, 0, CLAIM_HEADER_LENGTH + length);
+        return onEgress(length);
+    }
+
+    private long onEgress(final int length)
+    {
+        if (egressMessages != null)
+        {
+            egressMessages.increment();
+            egressBytes.set(egressBytes.get() + length);
+        }
+        position += length;
+        return position;
+    }
+}
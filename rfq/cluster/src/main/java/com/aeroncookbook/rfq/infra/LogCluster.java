@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.Aeron;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.cluster.service.Cluster;
+import io.aeron.cluster.service.ClusteredServiceContainer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.MutableLong;
+import org.agrona.concurrent.NoOpIdleStrategy;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Stands in for the cluster when the cluster log is applied to the RFQ service outside of a clustered service
+ * container, as by a view node or a log replay. The {@link Cluster} interface is implemented with a dynamic proxy, so
+ * only the calls the RFQ service makes need handling: the current time is the timestamp of the last log entry applied,
+ * the role is fixed when constructed, timers are accepted but only fire as timer events on the log, and sessions are
+ * those opened by the log, see {@link LogClientSession}. Any other call returns the default value for its type.
+ */
+public final class LogCluster implements InvocationHandler
+{
+    private final Long2ObjectHashMap<ClientSession> sessions = new Long2ObjectHashMap<>();
+    private final MutableLong egressMessages;
+    private final MutableLong egressBytes;
+    private final Aeron aeron;
+    private final ClusteredServiceContainer.Context context;
+    private final Cluster.Role role;
+    private final Cluster cluster;
+    private long time;
+
+    /**
+     * Constructor
+     *
+     * @param aeron       the Aeron client for the service's counters and publications
+     * @param clusterDir  the directory the service writes its journal and latency log to
+     * @param role        the role reported to the service; only a leader publishes market data
+     * @param countEgress true if the egress messages and bytes sent to sessions are to be counted
+     */
+    public LogCluster(final Aeron aeron, final File clusterDir, final Cluster.Role role, final boolean countEgress)
+    {
+        this.aeron = aeron;
+        this.context = new ClusteredServiceContainer.Context().clusterDir(clusterDir);
+        this.role = role;
+        this.egressMessages = countEgress ? new MutableLong() : null;
+        this.egressBytes = countEgress ? new MutableLong() : null;
+        this.cluster = (Cluster)Proxy.newProxyInstance(
+            Cluster.class.getClassLoader(), new Class<?>[]{Cluster.class}, this);
+    }
+
+    /**
+     * Gets the cluster to hand to the service
+     *
+     * @return the cluster
+     */
+    public Cluster cluster()
+    {
+        return cluster;
+    }
+
+    /**
+     * Gets the cluster time of the last log entry applied
+     *
+     * @return the cluster time
+     */
+    public long time()
+    {
+        return time;
+    }
+
+    /**
+     * Sets the cluster time to that of the log entry being applied
+     *
+     * @param time the cluster time
+     */
+    public void time(final long time)
+    {
+        this.time = time;
+    }
+
+    /**
+     * Opens a session of the log, or gets it if already open
+     *
+     * @param sessionId the cluster session id
+     * @return the session
+     */
+    public ClientSession openSession(final long sessionId)
+    {
+        ClientSession session = sessions.get(sessionId);
+        if (session == null)
+        {
+            session = new LogClientSession(sessionId, egressMessages, egressBytes);
+            sessions.put(sessionId, session);
+        }
+        return session;
+    }
+
+    /**
+     * Removes a session of the log
+     *
+     * @param sessionId the cluster session id
+     * @return the session, or null if not open
+     */
+    public ClientSession closeSession(final long sessionId)
+    {
+        return sessions.remove(sessionId);
+    }
+
+    /**
+     * Gets the number of egress messages sent to every session
+     *
+     * @return the number of messages, or 0 if egress is not counted
+     */
+    public long egressMessages()
+    {
+        return egressMessages == null ? 0 : egressMessages.get();
+    }
+
+    /**
+     * Gets the number of egress bytes sent to every session
+     *
+     * @return the number of bytes, or 0 if egress is not counted
+     */
+    public long egressBytes()
+    {
+        return egressBytes == null ? 0 : egressBytes.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+    {
+        return switch (method.getName())
+        {
+            case "aeron" -> aeron;
+            case "context" -> context;
+            case "role" -> role;
+            case "time" -> time;
+            case "timeUnit" -> TimeUnit.MILLISECONDS;
+            case "idleStrategy" -> NoOpIdleStrategy.INSTANCE;
+            case "scheduleTimer", "cancelTimer", "closeClientSession" -> true;
+            case "getClientSession" -> sessions.get((long)args[0]);
+            case "clientSessions" -> sessions.values();
+            case "forEachClientSession" ->
+            {
+                sessions.values().forEach((Consumer<? super ClientSession>)args[0]);
+                yield null;
+            }
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "LogCluster{role=" + role + "}";
+            default -> defaultValue(method.getReturnType());
+        };
+    }
+
+    private static Object defaultValue(final Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+        if (type == int.class)
+        {
+            return 0;
+        }
+        if (type == long.class)
+        {
+            return 0L;
+        }
+        return null;
+    }
+}
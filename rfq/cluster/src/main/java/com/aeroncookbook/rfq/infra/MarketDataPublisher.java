@@ -0,0 +1,283 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.cluster.service.Cluster;
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.SystemUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes public RFQ events once to a market data channel, such as a UDP multicast or MDC publication, so that the
+ * leader's fan-out cost does not grow with the number of viewers.
+ * <p>
+ * Every public event is given a sequence number and retained in a bounded ring on every node, as sequencing happens
+ * while processing the log. Only the leader holds the publication. Subscribers detect gaps from the sequence and
+ * recover the missed events with a retransmit request to the cluster, which is answered on their session egress.
+ * The channel is best effort: an event the publication cannot accept is dropped and left to retransmission rather
+ * than blocking the service thread. Without a channel, events go out on session egress and there is nothing to
+ * retransmit, so the sequence still advances but no ring is allocated and nothing is retained.
+ */
+public class MarketDataPublisher implements AutoCloseable
+{
+    /**
+     * System property for the market data channel; public events are sent on session egress if not set
+     */
+    public static final String CHANNEL_PROP_NAME = "rfq.market.data.channel";
+
+    /**
+     * System property for the market data stream id
+     */
+    public static final String STREAM_ID_PROP_NAME = "rfq.market.data.stream.id";
+
+    /**
+     * Default market data stream id
+     */
+    public static final int STREAM_ID_DEFAULT = 2001;
+
+    /**
+     * System property for the number of events retained for retransmission, rounded up to a power of two
+     */
+    public static final String RETAINED_EVENTS_PROP_NAME = "rfq.market.data.retained.events";
+
+    /**
+     * Default number of events retained for retransmission
+     */
+    public static final int RETAINED_EVENTS_DEFAULT = 64 * 1024;
+
+    /**
+     * Maximum number of events retransmitted for a single request
+     */
+    public static final int MAX_RETRANSMIT_EVENTS = 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarketDataPublisher.class);
+    private static final int SLOT_LENGTH = 128;
+    private static final int ENVELOPE_LENGTH =
+        MessageHeaderEncoder.ENCODED_LENGTH + MarketDataHeaderEncoder.BLOCK_LENGTH;
+    private static final int MAX_EVENT_LENGTH = SLOT_LENGTH - BitUtil.SIZE_OF_INT - ENVELOPE_LENGTH;
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final MarketDataHeaderEncoder marketDataHeaderEncoder = new MarketDataHeaderEncoder();
+    private final ServiceCounters serviceCounters;
+    private final String channel;
+    private final int streamId;
+    private final UnsafeBuffer retained;
+    private final int retainedMask;
+    private ExclusivePublication publication;
+    private long lastSequence;
+    private long firstRetainedSequence = 1;
+
+    /**
+     * Constructor, reading the channel and retention from system properties. Each shard publishes on the configured
+     * stream id plus its shard id, so that clients can tell the shards' sequences apart on a shared channel.
+     *
+     * @param serviceCounters the counters to which dropped events are reported
+     * @param shardId         the id of the shard publishing
+     */
+    public MarketDataPublisher(final ServiceCounters serviceCounters, final int shardId)
+    {
+        this(
+            serviceCounters,
+            System.getProperty(CHANNEL_PROP_NAME, ""),
+            Integer.getInteger(STREAM_ID_PROP_NAME, STREAM_ID_DEFAULT) + shardId,
+            SystemUtil.getSizeAsInt(RETAINED_EVENTS_PROP_NAME, RETAINED_EVENTS_DEFAULT));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param serviceCounters the counters to which dropped events are reported
+     * @param channel         the market data channel, or empty to send public events on session egress
+     * @param streamId        the market data stream id
+     * @param retainedEvents  the number of events retained for retransmission, rounded up to a power of two
+     */
+    public MarketDataPublisher(
+        final ServiceCounters serviceCounters,
+        final String channel,
+        final int streamId,
+        final int retainedEvents)
+    {
+        this.serviceCounters = serviceCounters;
+        this.channel = channel;
+        this.streamId = streamId;
+        if (isEnabled())
+        {
+            final int slots = BitUtil.findNextPositivePowerOfTwo(retainedEvents);
+            this.retained =
+                new UnsafeBuffer(BufferUtil.allocateDirectAligned(slots * SLOT_LENGTH, BitUtil.CACHE_LINE_LENGTH));
+            this.retainedMask = slots - 1;
+        }
+        else
+        {
+            this.retained = null;
+            this.retainedMask = 0;
+        }
+    }
+
+    /**
+     * Checks if public events go to the market data channel rather than session egress. This is configuration, so
+     * it must be the same on every node.
+     *
+     * @return true if a market data channel is configured
+     */
+    public boolean isEnabled()
+    {
+        return !channel.isEmpty();
+    }
+
+    /**
+     * Opens the market data publication when this node becomes leader, and closes it otherwise
+     *
+     * @param aeron the Aeron client of the clustered service
+     * @param role  the new role of this node
+     */
+    public void onRoleChange(final Aeron aeron, final Cluster.Role role)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        if (role == Cluster.Role.LEADER && publication == null)
+        {
+            LOGGER.info("Publishing market data on {} stream {}", channel, streamId);
+            publication = aeron.addExclusivePublication(channel, streamId);
+        }
+        else if (role != Cluster.Role.LEADER && publication != null)
+        {
+            CloseHelper.quietClose(publication);
+            publication = null;
+        }
+    }
+
+    /**
+     * Sequences a public event, retains it for retransmission and, on the leader, publishes it to the market data
+     * channel. Called on every node while processing the log. If no channel is configured, the event is only
+     * sequenced.
+     *
+     * @param buffer    the buffer holding the encoded event, including its message header
+     * @param offset    the offset of the event
+     * @param length    the length of the event
+     * @param timestamp the cluster time of the event
+     * @return the sequence assigned to the event
+     */
+    public long publish(final DirectBuffer buffer, final int offset, final int length, final long timestamp)
+    {
+        if (length > MAX_EVENT_LENGTH)
+        {
+            throw new IllegalArgumentException("market data event too long: " + length);
+        }
+
+        final long sequence = ++lastSequence;
+        if (!isEnabled())
+        {
+            firstRetainedSequence = sequence + 1;
+            return sequence;
+        }
+
+        final int slotOffset = slotOffset(sequence);
+        final int envelopeOffset = slotOffset + BitUtil.SIZE_OF_INT;
+        marketDataHeaderEncoder.wrapAndApplyHeader(retained, envelopeOffset, messageHeaderEncoder)
+            .sequence(sequence)
+            .timestamp(timestamp);
+        retained.putBytes(envelopeOffset + ENVELOPE_LENGTH, buffer, offset, length);
+        retained.putInt(slotOffset, ENVELOPE_LENGTH + length);
+
+        if (sequence - firstRetainedSequence > retainedMask)
+        {
+            firstRetainedSequence = sequence - retainedMask;
+        }
+
+        if (publication != null && publication.offer(retained, envelopeOffset, ENVELOPE_LENGTH + length) < 0)
+        {
+            serviceCounters.onMarketDataDropped();
+        }
+        return sequence;
+    }
+
+    /**
+     * Replies with the retained events in the requested range, each with its market data header, up to
+     * {@link #MAX_RETRANSMIT_EVENTS} per request.
+     *
+     * @param fromSequence the first sequence requested
+     * @param toSequence   the last sequence requested
+     * @param context      the context used to reply to the requesting session
+     * @return the last sequence sent, which is less than the first sequence sent if nothing could be sent
+     */
+    public long retransmit(final long fromSequence, final long toSequence, final SessionMessageContext context)
+    {
+        final long first = Math.max(fromSequence, firstRetainedSequence);
+        final long last = Math.min(Math.min(toSequence, lastSequence), first + MAX_RETRANSMIT_EVENTS - 1);
+        for (long sequence = first; sequence <= last; sequence++)
+        {
+            final int slotOffset = slotOffset(sequence);
+            context.reply(retained, slotOffset + BitUtil.SIZE_OF_INT, retained.getInt(slotOffset));
+        }
+        return last;
+    }
+
+    /**
+     * Gets the first sequence still retained for retransmission
+     *
+     * @return the first retained sequence
+     */
+    public long getFirstRetainedSequence()
+    {
+        return firstRetainedSequence;
+    }
+
+    /**
+     * Gets the last sequence issued
+     *
+     * @return the last sequence
+     */
+    public long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    /**
+     * Restores the last sequence issued from a snapshot. Events before the snapshot are not retained.
+     *
+     * @param lastSequence the last sequence issued
+     */
+    public void restoreLastSequence(final long lastSequence)
+    {
+        this.lastSequence = lastSequence;
+        this.firstRetainedSequence = lastSequence + 1;
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.quietClose(publication);
+        publication = null;
+    }
+
+    private int slotOffset(final long sequence)
+    {
+        return (int)(sequence & retainedMask) * SLOT_LENGTH;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.Object2ObjectHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Per user token buckets limiting the rate of RFQ commands, so that one user flooding quotes or counters cannot
+ * monopolise the service thread. Users are assigned to named classes, each with a rate per second and a burst; users
+ * not assigned to a class are limited by the class named {@value #DEFAULT_CLASS}, if configured, and otherwise not at
+ * all. With no classes configured the limiter allows everything.
+ * <p>
+ * Each bucket is held as a single time: the cluster time at which it will be full again. A command is allowed if
+ * taking a token leaves the bucket no more than a burst behind, and then moves that time on by one emission interval.
+ * This is equivalent to a token bucket refilled at the rate, but needs no refill step. Buckets are driven only by
+ * cluster time, so every node and every replay of the log makes the same decisions, and they are held in the
+ * snapshot. The configuration must therefore be the same on every node. A bucket is created for every user passed to
+ * {@link #tryAcquire(int, long)} and never removed, so callers must only pass registered users.
+ */
+public class RateLimiter
+{
+    /**
+     * System property for the user classes, as comma separated {@code name:ratePerSecond:burst} entries
+     */
+    public static final String CLASSES_PROP_NAME = "rfq.rate.limit.classes";
+
+    /**
+     * System property assigning users to classes, as comma separated {@code userId:className} entries
+     */
+    public static final String USERS_PROP_NAME = "rfq.rate.limit.users";
+
+    /**
+     * Name of the class limiting users not assigned to any other
+     */
+    public static final String DEFAULT_CLASS = "default";
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final int MISSING_INDEX = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private final Int2ObjectHashMap<Limit> limitByUserId = new Int2ObjectHashMap<>();
+    private final Limit defaultLimit;
+    private final Int2IntHashMap indexByUserId = new Int2IntHashMap(MISSING_INDEX);
+    private int[] userIds = new int[INITIAL_CAPACITY];
+    private long[] fullAtNs = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Constructor, reading the classes and user assignments from system properties
+     */
+    public RateLimiter()
+    {
+        this(System.getProperty(CLASSES_PROP_NAME, ""), System.getProperty(USERS_PROP_NAME, ""));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param classes the user classes, such as {@code "maker:200:50,default:1000:100"}, or empty for no limits
+     * @param users   the user assignments, such as {@code "501:maker,502:maker"}
+     * @throws IllegalArgumentException if an entry is malformed, a rate or burst is not positive, or a user is
+     *                                  assigned to a class which is not configured
+     */
+    public RateLimiter(final String classes, final String users)
+    {
+        final Object2ObjectHashMap<String, Limit> limitByClass = parseClasses(classes);
+        for (final String entry : split(users))
+        {
+            final String[] parts = entry.split(":");
+            if (parts.length != 2)
+            {
+                throw new IllegalArgumentException("invalid rate limit user '" + entry + "' in " + users);
+            }
+
+            final Limit limit = limitByClass.get(parts[1].trim());
+            if (limit == null)
+            {
+                throw new IllegalArgumentException("unknown rate limit class '" + parts[1].trim() + "' in " + users);
+            }
+            limitByUserId.put(parseInt(parts[0], users), limit);
+        }
+        defaultLimit = limitByClass.get(DEFAULT_CLASS);
+    }
+
+    /**
+     * Takes a token from a user's bucket, if one is available
+     *
+     * @param userId        the user sending the command
+     * @param clusterTimeMs the cluster time of the command
+     * @return true if the command is allowed, false if it is over the user's limit
+     */
+    public boolean tryAcquire(final int userId, final long clusterTimeMs)
+    {
+        final Limit limit = limitFor(userId);
+        if (limit == null)
+        {
+            return true;
+        }
+
+        final long nowNs = clusterTimeMs * NANOS_PER_MILLI;
+        final int index = indexByUserId.get(userId);
+        final long bucketFullAtNs = index == MISSING_INDEX ? nowNs : Math.max(fullAtNs[index], nowNs);
+        if (bucketFullAtNs - nowNs > limit.toleranceNs)
+        {
+            return false;
+        }
+
+        put(index, userId, bucketFullAtNs + limit.intervalNs);
+        return true;
+    }
+
+    /**
+     * Visits every bucket, for snapshotting
+     *
+     * @param consumer the consumer of each user id and the time in nanoseconds at which its bucket is full again
+     */
+    public void forEachBucket(final BucketConsumer consumer)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            consumer.accept(userIds[i], fullAtNs[i]);
+        }
+    }
+
+    /**
+     * Restores a bucket from a snapshot
+     *
+     * @param userId         the user id
+     * @param bucketFullAtNs the time in nanoseconds at which the bucket is full again
+     */
+    public void restoreBucket(final int userId, final long bucketFullAtNs)
+    {
+        put(indexByUserId.get(userId), userId, bucketFullAtNs);
+    }
+
+    private Limit limitFor(final int userId)
+    {
+        final Limit limit = limitByUserId.get(userId);
+        return limit != null ? limit : defaultLimit;
+    }
+
+    private void put(final int index, final int userId, final long bucketFullAtNs)
+    {
+        if (index != MISSING_INDEX)
+        {
+            fullAtNs[index] = bucketFullAtNs;
+            return;
+        }
+
+        if (size == userIds.length)
+        {
+            userIds = Arrays.copyOf(userIds, size * 2);
+            fullAtNs = Arrays.copyOf(fullAtNs, size * 2);
+        }
+        userIds[size] = userId;
+        fullAtNs[size] = bucketFullAtNs;
+        indexByUserId.put(userId, size++);
+    }
+
+    private static Object2ObjectHashMap<String, Limit> parseClasses(final String classes)
+    {
+        final Object2ObjectHashMap<String, Limit> limitByClass = new Object2ObjectHashMap<>();
+        for (final String entry : split(classes))
+        {
+            final String[] parts = entry.split(":");
+            if (parts.length != 3 || parts[0].isBlank())
+            {
+                throw new IllegalArgumentException("invalid rate limit class '" + entry + "' in " + classes);
+            }
+
+            final int ratePerSecond = parseInt(parts[1], classes);
+            final int burst = parseInt(parts[2], classes);
+            if (ratePerSecond <= 0 || burst <= 0)
+            {
+                throw new IllegalArgumentException("rate and burst must be positive: '" + entry + "' in " + classes);
+            }
+            limitByClass.put(parts[0].trim(), new Limit(ratePerSecond, burst));
+        }
+        return limitByClass;
+    }
+
+    private static String[] split(final String entries)
+    {
+        if (entries == null || entries.isBlank())
+        {
+            return new String[0];
+        }
+
+        final String[] split = entries.split(",");
+        for (int i = 0; i < split.length; i++)
+        {
+            split[i] = split[i].trim();
+        }
+        return split;
+    }
+
+    private static int parseInt(final String value, final String entries)
+    {
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (final NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid number '" + value + "' in " + entries, ex);
+        }
+    }
+
+    /**
+     * Consumer of a user's bucket
+     */
+    @FunctionalInterface
+    public interface BucketConsumer
+    {
+        /**
+         * Accepts a bucket
+         *
+         * @param userId         the user id
+         * @param bucketFullAtNs the time in nanoseconds at which the bucket is full again
+         */
+        void accept(int userId, long bucketFullAtNs);
+    }
+
+    private static final class Limit
+    {
+        private final long intervalNs;
+        private final long toleranceNs;
+
+        private Limit(final int ratePerSecond, final int burst)
+        {
+            intervalNs = NANOS_PER_SECOND / ratePerSecond;
+            toleranceNs = (burst - 1) * intervalNs;
+        }
+    }
+}
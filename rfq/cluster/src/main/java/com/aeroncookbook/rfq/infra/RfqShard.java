@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.RfqShards;
+
+/**
+ * The shard this cluster is, within the shard map shared with clients. The shard only accepts instruments in its
+ * CUSIP range, and issues RFQ ids which route back to it.
+ *
+ * @param shardId the id of this shard
+ * @param shards  the shard map
+ */
+public record RfqShard(int shardId, RfqShards shards)
+{
+    /**
+     * The only shard of an unsharded deployment
+     */
+    public static final RfqShard SINGLE = new RfqShard(0, RfqShards.SINGLE);
+
+    /**
+     * Constructor
+     *
+     * @param shardId the id of this shard
+     * @param shards  the shard map
+     * @throws IllegalArgumentException if the shard id is not in the shard map
+     */
+    public RfqShard
+    {
+        if (shardId < 0 || shardId >= shards.shardCount())
+        {
+            throw new IllegalArgumentException("shard " + shardId + " is not in " + shards);
+        }
+    }
+
+    /**
+     * Checks if an instrument belongs to this shard
+     *
+     * @param cusip the CUSIP of the instrument
+     * @return true if this shard owns the instrument
+     */
+    public boolean ownsCusip(final CharSequence cusip)
+    {
+        return shards.shardForCusip(cusip) == shardId;
+    }
+
+    /**
+     * Gets the next RFQ id to issue
+     *
+     * @param lastRfqId the last id issued, or zero if none
+     * @return the next RFQ id
+     */
+    public int nextRfqId(final int lastRfqId)
+    {
+        return shards.nextRfqId(shardId, lastRfqId);
+    }
+}
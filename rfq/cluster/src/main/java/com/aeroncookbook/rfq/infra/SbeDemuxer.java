@@ -18,39 +18,70 @@
 package com.aeroncookbook.rfq.infra;
 
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentsBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddUserDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRetransmitRequestDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEnabledFlagDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEntitlementsDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeCommandDecoder;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
 import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
 import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
 import org.agrona.DirectBuffer;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Demultiplexes messages from the ingress stream to the appropriate domain handler.
+ * Demultiplexes messages from the ingress stream to the appropriate domain handler. RFQ commands are first checked
+ * against the sending user's rate limit, and refused with a RATE_LIMITED result without reaching the domain if over.
+ * <p>
+ * A command batch is unpacked and each command in it dispatched in order, exactly as if it had arrived alone, so
+ * that a client sending many commands pays for one log entry rather than one per command.
  */
 public class SbeDemuxer
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(SbeDemuxer.class);
     private final Instruments instruments;
     private final Rfqs rfqs;
+    private final Users users;
     private final ClusterClientResponder responder;
+    private final SessionMessageContext context;
+    private final ClientSessions clientSessions;
+    private final MarketDataPublisher marketDataPublisher;
+    private final ServiceCounters serviceCounters;
+    private final EventJournal eventJournal;
+    private final RateLimiter rateLimiter;
 
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
     private final InstrumentRecordDecoder instrumentRecordDecoder = new InstrumentRecordDecoder();
     private final ListInstrumentsCommandDecoder listInstrumentsCommandDecoder = new ListInstrumentsCommandDecoder();
     private final AddInstrumentDecoder addInstrumentDecoder = new AddInstrumentDecoder();
+    private final AddInstrumentsBatchDecoder addInstrumentsBatchDecoder = new AddInstrumentsBatchDecoder();
     private final CreateRfqCommandDecoder createRfqCommandDecoder = new CreateRfqCommandDecoder();
     private final SetInstrumentEnabledFlagDecoder setInstrumentEnabledDecoder = new SetInstrumentEnabledFlagDecoder();
     private final CancelRfqCommandDecoder cancelRfqCommandDecoder = new CancelRfqCommandDecoder();
@@ -58,22 +89,57 @@ public class SbeDemuxer
     private final CounterRfqCommandDecoder counterRfqCommandDecoder = new CounterRfqCommandDecoder();
     private final AcceptRfqCommandDecoder acceptRfqCommandDecoder = new AcceptRfqCommandDecoder();
     private final RejectRfqCommandDecoder rejectRfqCommandDecoder = new RejectRfqCommandDecoder();
+    private final SubscribeCommandDecoder subscribeCommandDecoder = new SubscribeCommandDecoder();
+    private final MarketDataRetransmitRequestDecoder marketDataRetransmitRequestDecoder =
+        new MarketDataRetransmitRequestDecoder();
+    private final QueryRfqsCommandDecoder queryRfqsCommandDecoder = new QueryRfqsCommandDecoder();
+    private final AddUserDecoder addUserDecoder = new AddUserDecoder();
+    private final SetUserEnabledFlagDecoder setUserEnabledFlagDecoder = new SetUserEnabledFlagDecoder();
+    private final SetUserEntitlementsDecoder setUserEntitlementsDecoder = new SetUserEntitlementsDecoder();
+    private final CommandBatchDecoder commandBatchDecoder = new CommandBatchDecoder();
+    private final UnsafeBuffer batchedCommand = new UnsafeBuffer(0, 0);
+    private final LongArrayList subscribeCusipKeys = new LongArrayList();
+    private final LongArrayList entitlementCusipKeys = new LongArrayList();
+    private final byte[] cusipBytes = new byte[CusipKey.CUSIP_LENGTH];
+    private final UnsafeBuffer cusipBuffer = new UnsafeBuffer(cusipBytes);
+    private boolean inBatch;
 
     /**
      * Dispatches ingress messages to domain logic.
      *
-     * @param instruments the instrument domain model to which commands are dispatched
-     * @param rfqs        the RFQ domain model to which commands are dispatched
-     * @param responder   the responder to which responses are sent
+     * @param instruments         the instrument domain model to which commands are dispatched
+     * @param rfqs                the RFQ domain model to which commands are dispatched
+     * @param users               the user registry to which user commands are dispatched
+     * @param responder           the responder to which responses are sent
+     * @param context             the context of the current message, identifying the sending session
+     * @param clientSessions      the client sessions to which subscriptions are applied
+     * @param marketDataPublisher the market data publisher which answers retransmit requests
+     * @param serviceCounters     the counters to which each command received is reported
+     * @param eventJournal        the journal to which rate limited commands are written
+     * @param rateLimiter         the per user limits applied to RFQ commands
      */
     public SbeDemuxer(
         final Instruments instruments,
         final Rfqs rfqs,
-        final ClusterClientResponder responder)
+        final Users users,
+        final ClusterClientResponder responder,
+        final SessionMessageContext context,
+        final ClientSessions clientSessions,
+        final MarketDataPublisher marketDataPublisher,
+        final ServiceCounters serviceCounters,
+        final EventJournal eventJournal,
+        final RateLimiter rateLimiter)
     {
         this.instruments = instruments;
         this.rfqs = rfqs;
+        this.users = users;
         this.responder = responder;
+        this.context = context;
+        this.clientSessions = clientSessions;
+        this.marketDataPublisher = marketDataPublisher;
+        this.serviceCounters = serviceCounters;
+        this.eventJournal = eventJournal;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
@@ -91,10 +157,12 @@ public class SbeDemuxer
             return;
         }
         headerDecoder.wrap(buffer, offset);
+        serviceCounters.onCommand(headerDecoder.templateId());
 
         switch (headerDecoder.templateId())
         {
             case AddInstrumentDecoder.TEMPLATE_ID -> addInstrument(buffer, offset);
+            case AddInstrumentsBatchDecoder.TEMPLATE_ID -> addInstrumentsBatch(buffer, offset);
             case SetInstrumentEnabledFlagDecoder.TEMPLATE_ID -> setInstrumentEnabledFlag(buffer, offset);
             case InstrumentRecordEncoder.TEMPLATE_ID -> initializeInstrument(buffer, offset);
             case ListInstrumentsCommandDecoder.TEMPLATE_ID -> listInstruments(buffer, offset);
@@ -104,83 +172,271 @@ public class SbeDemuxer
             case CounterRfqCommandDecoder.TEMPLATE_ID -> counterRfq(buffer, offset);
             case AcceptRfqCommandDecoder.TEMPLATE_ID -> acceptRfq(buffer, offset);
             case RejectRfqCommandDecoder.TEMPLATE_ID -> rejectRfq(buffer, offset);
+            case SubscribeCommandDecoder.TEMPLATE_ID -> subscribe(buffer, offset);
+            case MarketDataRetransmitRequestDecoder.TEMPLATE_ID -> retransmitMarketData(buffer, offset);
+            case QueryRfqsCommandDecoder.TEMPLATE_ID -> queryRfqs(buffer, offset);
+            case AddUserDecoder.TEMPLATE_ID -> addUser(buffer, offset);
+            case SetUserEnabledFlagDecoder.TEMPLATE_ID -> setUserEnabledFlag(buffer, offset);
+            case SetUserEntitlementsDecoder.TEMPLATE_ID -> setUserEntitlements(buffer, offset);
+            case CommandBatchDecoder.TEMPLATE_ID -> dispatchBatch(buffer, offset);
             default -> LOGGER.error("Unknown message template {}, ignored.", headerDecoder.templateId());
         }
     }
 
+    private void dispatchBatch(final DirectBuffer buffer, final int offset)
+    {
+        if (inBatch)
+        {
+            LOGGER.error("Command batch nested in a command batch, ignored.");
+            return;
+        }
+
+        commandBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final CommandBatchDecoder.CommandsDecoder commandsDecoder = commandBatchDecoder.commands();
+        inBatch = true;
+        try
+        {
+            while (commandsDecoder.hasNext())
+            {
+                commandsDecoder.next().wrapCommand(batchedCommand);
+                dispatch(batchedCommand, 0, batchedCommand.capacity());
+            }
+        }
+        finally
+        {
+            inBatch = false;
+        }
+    }
+
+    private void subscribe(final DirectBuffer buffer, final int offset)
+    {
+        subscribeCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long correlation = subscribeCommandDecoder.correlation();
+        final int userId = subscribeCommandDecoder.userId();
+        final boolean partiesOnly = subscribeCommandDecoder.partiesOnly() == BooleanType.TRUE;
+
+        subscribeCusipKeys.clear();
+        final SubscribeCommandDecoder.InstrumentsDecoder instrumentsDecoder = subscribeCommandDecoder.instruments();
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsDecoder.next().getCusip(cusipBytes, 0);
+            subscribeCusipKeys.addLong(CusipKey.pack(cusipBuffer, 0));
+        }
+
+        clientSessions.subscribe(context.getSessionId(), userId, partiesOnly, subscribeCusipKeys);
+        responder.sendSubscribed(correlation, true);
+    }
+
+    private void addUser(final DirectBuffer buffer, final int offset)
+    {
+        addUserDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        users.addUser(addUserDecoder.correlation(), addUserDecoder.userId(), addUserDecoder.maxOpenRfqs());
+    }
+
+    private void setUserEnabledFlag(final DirectBuffer buffer, final int offset)
+    {
+        setUserEnabledFlagDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        users.setEnabledFlag(
+            setUserEnabledFlagDecoder.correlation(),
+            setUserEnabledFlagDecoder.userId(),
+            setUserEnabledFlagDecoder.enabled() == BooleanType.TRUE);
+    }
+
+    private void setUserEntitlements(final DirectBuffer buffer, final int offset)
+    {
+        setUserEntitlementsDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long correlation = setUserEntitlementsDecoder.correlation();
+        final int userId = setUserEntitlementsDecoder.userId();
+
+        entitlementCusipKeys.clear();
+        final SetUserEntitlementsDecoder.InstrumentsDecoder instrumentsDecoder =
+            setUserEntitlementsDecoder.instruments();
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsDecoder.next().getCusip(cusipBytes, 0);
+            entitlementCusipKeys.addLong(CusipKey.pack(cusipBuffer, 0));
+        }
+
+        users.setEntitlements(correlation, userId, setUserEntitlementsDecoder.action(), entitlementCusipKeys);
+    }
+
+    private void retransmitMarketData(final DirectBuffer buffer, final int offset)
+    {
+        marketDataRetransmitRequestDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long fromSequence = marketDataRetransmitRequestDecoder.fromSequence();
+        final long toSequence = marketDataRetransmitRequestDecoder.toSequence();
+
+        final long firstSequence = Math.max(fromSequence, marketDataPublisher.getFirstRetainedSequence());
+        final long lastSequence = marketDataPublisher.retransmit(fromSequence, toSequence, context);
+        final boolean complete = firstSequence == fromSequence &&
+            lastSequence >= Math.min(toSequence, marketDataPublisher.getLastSequence());
+        responder.sendMarketDataRetransmitted(
+            marketDataRetransmitRequestDecoder.correlation(), complete, firstSequence, lastSequence);
+    }
+
+    private void queryRfqs(final DirectBuffer buffer, final int offset)
+    {
+        queryRfqsCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.queryRfqs(
+            queryRfqsCommandDecoder.correlation(),
+            queryRfqsCommandDecoder.queryType(),
+            CusipKey.pack(buffer, queryRfqsCommandDecoder.offset() + QueryRfqsCommandDecoder.cusipEncodingOffset()),
+            queryRfqsCommandDecoder.userId(),
+            queryRfqsCommandDecoder.state(),
+            queryRfqsCommandDecoder.afterRfqId(),
+            queryRfqsCommandDecoder.maxResults());
+    }
+
     private void rejectRfq(final DirectBuffer buffer, final int offset)
     {
         rejectRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        rfqs.rejectRfq(
-            rejectRfqCommandDecoder.correlation(),
-            rejectRfqCommandDecoder.rfqId(),
-            rejectRfqCommandDecoder.responderUserId());
+        final long correlation = rejectRfqCommandDecoder.correlation();
+        final int rfqId = rejectRfqCommandDecoder.rfqId();
+        final int userId = rejectRfqCommandDecoder.responderUserId();
+        if (isRateLimited(RfqJournalAction.REJECT, correlation, rfqId, userId, RejectRfqResult.RATE_LIMITED.value()))
+        {
+            responder.rejectRfqConfirm(correlation, null, RejectRfqResult.RATE_LIMITED);
+            return;
+        }
+
+        rfqs.rejectRfq(correlation, rfqId, userId);
     }
 
     private void acceptRfq(final DirectBuffer buffer, final int offset)
     {
         acceptRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        rfqs.acceptRfq(
-            acceptRfqCommandDecoder.correlation(),
-            acceptRfqCommandDecoder.rfqId(),
-            acceptRfqCommandDecoder.acceptUserId());
+        final long correlation = acceptRfqCommandDecoder.correlation();
+        final int rfqId = acceptRfqCommandDecoder.rfqId();
+        final int userId = acceptRfqCommandDecoder.acceptUserId();
+        if (isRateLimited(RfqJournalAction.ACCEPT, correlation, rfqId, userId, AcceptRfqResult.RATE_LIMITED.value()))
+        {
+            responder.acceptRfqConfirm(correlation, null, AcceptRfqResult.RATE_LIMITED);
+            return;
+        }
+
+        rfqs.acceptRfq(correlation, rfqId, userId);
     }
 
     private void counterRfq(final DirectBuffer buffer, final int offset)
     {
         counterRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        rfqs.counterRfq(
-            counterRfqCommandDecoder.correlation(),
-            counterRfqCommandDecoder.rfqId(),
-            counterRfqCommandDecoder.counterUserId(),
-            counterRfqCommandDecoder.price());
+        final long correlation = counterRfqCommandDecoder.correlation();
+        final int rfqId = counterRfqCommandDecoder.rfqId();
+        final int userId = counterRfqCommandDecoder.counterUserId();
+        if (isRateLimited(
+            RfqJournalAction.COUNTER, correlation, rfqId, userId, CounterRfqResult.RATE_LIMITED.value()))
+        {
+            responder.counterRfqConfirm(correlation, null, CounterRfqResult.RATE_LIMITED);
+            return;
+        }
+
+        rfqs.counterRfq(correlation, rfqId, userId, counterRfqCommandDecoder.price());
     }
 
     private void quoteRfq(final DirectBuffer buffer, final int offset)
     {
         quoteRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        rfqs.quoteRfq(
-            quoteRfqCommandDecoder.correlation(),
-            quoteRfqCommandDecoder.rfqId(),
-            quoteRfqCommandDecoder.responderUserId(),
-            quoteRfqCommandDecoder.price());
+        final long correlation = quoteRfqCommandDecoder.correlation();
+        final int rfqId = quoteRfqCommandDecoder.rfqId();
+        final int userId = quoteRfqCommandDecoder.responderUserId();
+        if (isRateLimited(RfqJournalAction.QUOTE, correlation, rfqId, userId, QuoteRfqResult.RATE_LIMITED.value()))
+        {
+            responder.quoteRfqConfirm(correlation, null, QuoteRfqResult.RATE_LIMITED);
+            return;
+        }
+
+        rfqs.quoteRfq(correlation, rfqId, userId, quoteRfqCommandDecoder.price());
     }
 
     private void cancelRfq(final DirectBuffer buffer, final int offset)
     {
         cancelRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        rfqs.cancelRfq(
-            cancelRfqCommandDecoder.correlation(),
-            cancelRfqCommandDecoder.rfqId(),
-            cancelRfqCommandDecoder.cancelUserId());
+        final long correlation = cancelRfqCommandDecoder.correlation();
+        final int rfqId = cancelRfqCommandDecoder.rfqId();
+        final int userId = cancelRfqCommandDecoder.cancelUserId();
+        if (isRateLimited(RfqJournalAction.CANCEL, correlation, rfqId, userId, CancelRfqResult.RATE_LIMITED.value()))
+        {
+            responder.cancelRfqConfirm(correlation, null, CancelRfqResult.RATE_LIMITED);
+            return;
+        }
+
+        rfqs.cancelRfq(correlation, rfqId, userId);
     }
 
     private void createRfq(final DirectBuffer buffer, final int offset)
     {
         createRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long correlation = createRfqCommandDecoder.correlation();
+        final int userId = createRfqCommandDecoder.requesterUserId();
+        if (isRateLimited(RfqJournalAction.CREATE, correlation, 0, userId, CreateRfqResult.RATE_LIMITED.value()))
+        {
+            responder.createRfqConfirm(correlation, null, CreateRfqResult.RATE_LIMITED);
+            return;
+        }
+
         rfqs.createRfq(
-            createRfqCommandDecoder.correlation(),
+            correlation,
             createRfqCommandDecoder.expireTimeMs(),
             createRfqCommandDecoder.quantity(),
             createRfqCommandDecoder.requesterSide(),
-            createRfqCommandDecoder.cusip(),
-            createRfqCommandDecoder.requesterUserId());
+            CusipKey.pack(buffer, createRfqCommandDecoder.offset() + CreateRfqCommandDecoder.cusipEncodingOffset()),
+            userId);
+    }
+
+    /**
+     * Takes a token from the user's bucket, or if none is available journals and counts the command as rate limited,
+     * leaving the caller to send the refusal. Commands from users which are unknown or disabled are not limited, so
+     * that no bucket is held for them; the RFQ domain refuses them instead.
+     *
+     * @param action      the action the command requested
+     * @param correlation the correlation id of the command
+     * @param rfqId       the RFQ id, or 0 if the command did not name an RFQ
+     * @param userId      the user which sent the command
+     * @param result      the value of the RATE_LIMITED result for the action
+     * @return true if the command is over the user's limit and must be refused
+     */
+    private boolean isRateLimited(
+        final RfqJournalAction action,
+        final long correlation,
+        final int rfqId,
+        final int userId,
+        final int result)
+    {
+        if (users.getEnabledUser(userId) == null || rateLimiter.tryAcquire(userId, context.getClusterTime()))
+        {
+            return false;
+        }
+
+        serviceCounters.onRateLimited();
+        eventJournal.rfqRefused(action, correlation, rfqId, userId, result);
+        return true;
     }
 
     private void listInstruments(final DirectBuffer buffer, final int offset)
     {
         listInstrumentsCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        instruments.listInstruments(listInstrumentsCommandDecoder.correlation());
+        final int afterCusipOffset =
+            listInstrumentsCommandDecoder.offset() + ListInstrumentsCommandDecoder.afterCusipEncodingOffset();
+        instruments.listInstruments(
+            listInstrumentsCommandDecoder.correlation(),
+            CusipKey.pack(buffer, afterCusipOffset),
+            listInstrumentsCommandDecoder.maxResults());
     }
 
     private void initializeInstrument(final DirectBuffer buffer, final int offset)
     {
         instrumentRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final String cusip = instrumentRecordDecoder.cusip();
+        if (!instruments.isOwned(cusip))
+        {
+            LOGGER.warn("Instrument {} belongs to another shard, ignored.", cusip);
+            return;
+        }
 
         instruments.addInstrument(
             InstrumentAddType.SNAPSHOT_LOAD,
-            "",
-            instrumentRecordDecoder.cusip(),
+            0L,
+            cusip,
             instrumentRecordDecoder.enabled().equals(BooleanType.TRUE),
             instrumentRecordDecoder.minSize());
     }
@@ -188,22 +444,75 @@ public class SbeDemuxer
     private void setInstrumentEnabledFlag(final DirectBuffer buffer, final int offset)
     {
         setInstrumentEnabledDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final int cusipOffset =
+            setInstrumentEnabledDecoder.offset() + SetInstrumentEnabledFlagDecoder.cusipEncodingOffset();
 
         instruments.setEnabledFlagForCusip(
             setInstrumentEnabledDecoder.correlation(),
-            setInstrumentEnabledDecoder.cusip(),
+            CusipKey.pack(buffer, cusipOffset),
             setInstrumentEnabledDecoder.enabled().equals(BooleanType.TRUE));
     }
 
     private void addInstrument(final DirectBuffer buffer, final int offset)
     {
         addInstrumentDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long correlation = addInstrumentDecoder.correlation();
+        final String cusip = addInstrumentDecoder.cusip();
+        if (!instruments.isOwned(cusip))
+        {
+            LOGGER.warn("Instrument {} belongs to another shard, refused.", cusip);
+            responder.sendInstrumentAdded(correlation, false);
+            return;
+        }
 
         instruments.addInstrument(
             InstrumentAddType.INTERACTIVE,
-            addInstrumentDecoder.correlation(),
-            addInstrumentDecoder.cusip(),
+            correlation,
+            cusip,
             addInstrumentDecoder.enabled().equals(BooleanType.TRUE),
             addInstrumentDecoder.minSize());
     }
+
+    private void addInstrumentsBatch(final DirectBuffer buffer, final int offset)
+    {
+        addInstrumentsBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long correlation = addInstrumentsBatchDecoder.correlation();
+
+        int added = 0;
+        int replaced = 0;
+        int refused = 0;
+        final AddInstrumentsBatchDecoder.InstrumentsDecoder instrumentsDecoder =
+            addInstrumentsBatchDecoder.instruments();
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsDecoder.next();
+            final String cusip = instrumentsDecoder.cusip();
+            if (!instruments.isOwned(cusip))
+            {
+                refused++;
+                continue;
+            }
+
+            final boolean isNew = instruments.addInstrument(
+                InstrumentAddType.BATCH,
+                correlation,
+                cusip,
+                instrumentsDecoder.enabled().equals(BooleanType.TRUE),
+                instrumentsDecoder.minSize());
+            if (isNew)
+            {
+                added++;
+            }
+            else
+            {
+                replaced++;
+            }
+        }
+
+        if (refused > 0)
+        {
+            LOGGER.warn("{} instruments of batch {} belong to another shard, refused.", refused, correlation);
+        }
+        instruments.completeBatch(correlation, added, replaced, refused);
+    }
 }
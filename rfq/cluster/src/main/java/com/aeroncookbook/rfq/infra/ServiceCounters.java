@@ -0,0 +1,419 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentsBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddUserDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRetransmitRequestDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEnabledFlagDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetUserEntitlementsDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeCommandDecoder;
+import io.aeron.Aeron;
+import io.aeron.Counter;
+import org.agrona.CloseHelper;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Aeron counters exposed by the clustered service, visible with AeronStat alongside the cluster's own counters.
+ * Counters are local to each node and are never part of replicated state.
+ */
+public class ServiceCounters implements AutoCloseable
+{
+    /**
+     * Counter type id for the duration of the last snapshot in nanoseconds
+     */
+    public static final int SNAPSHOT_DURATION_NS_TYPE_ID = 1001;
+
+    /**
+     * Counter type id for the number of bytes written by the last snapshot
+     */
+    public static final int SNAPSHOT_BYTES_TYPE_ID = 1002;
+
+    /**
+     * Counter type id for egress messages dropped because a session could not accept them
+     */
+    public static final int EGRESS_DROPPED_MESSAGES_TYPE_ID = 1003;
+
+    /**
+     * Counter type id for client sessions evicted for falling too far behind on egress
+     */
+    public static final int EGRESS_EVICTED_SESSIONS_TYPE_ID = 1004;
+
+    /**
+     * Counter type id for market data events the publication could not accept, left to retransmission
+     */
+    public static final int MARKET_DATA_DROPPED_TYPE_ID = 1005;
+
+    /**
+     * Counter type id for journal entries dropped because the journal ring buffer was full
+     */
+    public static final int JOURNAL_DROPPED_TYPE_ID = 1006;
+
+    /**
+     * Counter type id for the number of ingress commands received, with one counter per command template
+     */
+    public static final int COMMANDS_TYPE_ID = 1007;
+
+    /**
+     * Counter type id for the number of RFQ commands refused, with one counter per action and result code
+     */
+    public static final int RFQ_REFUSED_TYPE_ID = 1008;
+
+    /**
+     * Counter type id for egress messages queued because the session was back pressured
+     */
+    public static final int EGRESS_BACK_PRESSURED_TYPE_ID = 1009;
+
+    /**
+     * Counter type id for offers of queued egress which were back pressured again and left for a later retry
+     */
+    public static final int EGRESS_RETRIES_TYPE_ID = 1010;
+
+    /**
+     * Counter type id for RFQ commands refused because the user was over its rate limit
+     */
+    public static final int RATE_LIMITED_TYPE_ID = 1011;
+
+    /**
+     * Counter type id for coalesced egress batches sent, of more than one message
+     */
+    public static final int EGRESS_BATCHES_TYPE_ID = 1012;
+
+    /**
+     * Counter type id for egress messages sent in coalesced batches
+     */
+    public static final int EGRESS_BATCHED_MESSAGES_TYPE_ID = 1013;
+
+    private static final int[] COMMAND_TEMPLATE_IDS = {
+        AddInstrumentDecoder.TEMPLATE_ID,
+        AddInstrumentsBatchDecoder.TEMPLATE_ID,
+        SetInstrumentEnabledFlagDecoder.TEMPLATE_ID,
+        InstrumentRecordDecoder.TEMPLATE_ID,
+        ListInstrumentsCommandDecoder.TEMPLATE_ID,
+        CreateRfqCommandDecoder.TEMPLATE_ID,
+        CancelRfqCommandDecoder.TEMPLATE_ID,
+        QuoteRfqCommandDecoder.TEMPLATE_ID,
+        CounterRfqCommandDecoder.TEMPLATE_ID,
+        AcceptRfqCommandDecoder.TEMPLATE_ID,
+        RejectRfqCommandDecoder.TEMPLATE_ID,
+        SubscribeCommandDecoder.TEMPLATE_ID,
+        MarketDataRetransmitRequestDecoder.TEMPLATE_ID,
+        QueryRfqsCommandDecoder.TEMPLATE_ID,
+        AddUserDecoder.TEMPLATE_ID,
+        SetUserEnabledFlagDecoder.TEMPLATE_ID,
+        SetUserEntitlementsDecoder.TEMPLATE_ID,
+        CommandBatchDecoder.TEMPLATE_ID};
+
+    private final Int2ObjectHashMap<Counter> commandCounters = new Int2ObjectHashMap<>();
+    private final Counter[][] rfqRefusedCounters = new Counter[RfqJournalAction.values().length][];
+    private final List<Counter> breakdownCounters = new ArrayList<>();
+    private Counter unknownCommands;
+    private Counter egressBackPressured;
+    private Counter egressRetries;
+    private Counter snapshotDurationNs;
+    private Counter snapshotBytes;
+    private Counter egressDroppedMessages;
+    private Counter egressEvictedSessions;
+    private Counter marketDataDropped;
+    private Counter journalDropped;
+    private Counter rateLimited;
+    private Counter egressBatches;
+    private Counter egressBatchedMessages;
+
+    /**
+     * Gets the name of an ingress command, as used in counter labels
+     *
+     * @param templateId the template id of the command
+     * @return the name, or "unknown" if the template is not a command the service handles
+     */
+    public static String commandName(final int templateId)
+    {
+        return switch (templateId)
+        {
+            case AddInstrumentDecoder.TEMPLATE_ID -> "AddInstrument";
+            case AddInstrumentsBatchDecoder.TEMPLATE_ID -> "AddInstrumentsBatch";
+            case SetInstrumentEnabledFlagDecoder.TEMPLATE_ID -> "SetInstrumentEnabledFlag";
+            case InstrumentRecordDecoder.TEMPLATE_ID -> "InstrumentRecord";
+            case ListInstrumentsCommandDecoder.TEMPLATE_ID -> "ListInstruments";
+            case CreateRfqCommandDecoder.TEMPLATE_ID -> "CreateRfq";
+            case CancelRfqCommandDecoder.TEMPLATE_ID -> "CancelRfq";
+            case QuoteRfqCommandDecoder.TEMPLATE_ID -> "QuoteRfq";
+            case CounterRfqCommandDecoder.TEMPLATE_ID -> "CounterRfq";
+            case AcceptRfqCommandDecoder.TEMPLATE_ID -> "AcceptRfq";
+            case RejectRfqCommandDecoder.TEMPLATE_ID -> "RejectRfq";
+            case SubscribeCommandDecoder.TEMPLATE_ID -> "Subscribe";
+            case MarketDataRetransmitRequestDecoder.TEMPLATE_ID -> "MarketDataRetransmitRequest";
+            case QueryRfqsCommandDecoder.TEMPLATE_ID -> "QueryRfqs";
+            case AddUserDecoder.TEMPLATE_ID -> "AddUser";
+            case SetUserEnabledFlagDecoder.TEMPLATE_ID -> "SetUserEnabledFlag";
+            case SetUserEntitlementsDecoder.TEMPLATE_ID -> "SetUserEntitlements";
+            case CommandBatchDecoder.TEMPLATE_ID -> "CommandBatch";
+            default -> "unknown";
+        };
+    }
+
+    /**
+     * Allocates the counters from the given Aeron client
+     * @param aeron the Aeron client of the clustered service
+     */
+    public void init(final Aeron aeron)
+    {
+        snapshotDurationNs = aeron.addCounter(SNAPSHOT_DURATION_NS_TYPE_ID, "RFQ snapshot duration ns");
+        snapshotBytes = aeron.addCounter(SNAPSHOT_BYTES_TYPE_ID, "RFQ snapshot bytes");
+        egressDroppedMessages = aeron.addCounter(EGRESS_DROPPED_MESSAGES_TYPE_ID, "RFQ egress dropped messages");
+        egressEvictedSessions = aeron.addCounter(EGRESS_EVICTED_SESSIONS_TYPE_ID, "RFQ egress evicted sessions");
+        marketDataDropped = aeron.addCounter(MARKET_DATA_DROPPED_TYPE_ID, "RFQ market data dropped events");
+        journalDropped = aeron.addCounter(JOURNAL_DROPPED_TYPE_ID, "RFQ journal dropped entries");
+        egressBackPressured = aeron.addCounter(EGRESS_BACK_PRESSURED_TYPE_ID, "RFQ egress back pressured sends");
+        egressRetries = aeron.addCounter(EGRESS_RETRIES_TYPE_ID, "RFQ egress back pressured retries");
+        rateLimited = aeron.addCounter(RATE_LIMITED_TYPE_ID, "RFQ rate limited commands");
+        egressBatches = aeron.addCounter(EGRESS_BATCHES_TYPE_ID, "RFQ egress batches");
+        egressBatchedMessages = aeron.addCounter(EGRESS_BATCHED_MESSAGES_TYPE_ID, "RFQ egress batched messages");
+        initCommandCounters(aeron);
+        initRfqRefusedCounters(aeron);
+    }
+
+    /**
+     * Records the outcome of the last snapshot
+     * @param durationNs the time taken to write the snapshot
+     * @param bytes      the number of bytes written
+     */
+    public void onSnapshotTaken(final long durationNs, final long bytes)
+    {
+        if (snapshotDurationNs != null)
+        {
+            snapshotDurationNs.setOrdered(durationNs);
+            snapshotBytes.setOrdered(bytes);
+        }
+    }
+
+    /**
+     * Records egress messages dropped
+     * @param count the number of messages dropped
+     */
+    public void onEgressDropped(final int count)
+    {
+        if (egressDroppedMessages != null)
+        {
+            egressDroppedMessages.getAndAddOrdered(count);
+        }
+    }
+
+    /**
+     * Records a client session evicted for falling behind on egress
+     */
+    public void onSessionEvicted()
+    {
+        if (egressEvictedSessions != null)
+        {
+            egressEvictedSessions.incrementOrdered();
+        }
+    }
+
+    /**
+     * Records a market data event the publication could not accept
+     */
+    public void onMarketDataDropped()
+    {
+        if (marketDataDropped != null)
+        {
+            marketDataDropped.incrementOrdered();
+        }
+    }
+
+    /**
+     * Records a journal entry dropped because the journal ring buffer was full
+     */
+    public void onJournalDropped()
+    {
+        if (journalDropped != null)
+        {
+            journalDropped.incrementOrdered();
+        }
+    }
+
+    /**
+     * Records an ingress command received
+     * @param templateId the template id of the command
+     */
+    public void onCommand(final int templateId)
+    {
+        if (unknownCommands != null)
+        {
+            final Counter counter = commandCounters.get(templateId);
+            (counter != null ? counter : unknownCommands).incrementOrdered();
+        }
+    }
+
+    /**
+     * Records an RFQ command refused
+     * @param action the action the command requested
+     * @param result the value of the result sent back, of the result type for the action
+     */
+    public void onRfqRefused(final RfqJournalAction action, final int result)
+    {
+        final Counter[] counters = rfqRefusedCounters[action.ordinal()];
+        if (counters != null && result >= 0 && result < counters.length && counters[result] != null)
+        {
+            counters[result].incrementOrdered();
+        }
+    }
+
+    /**
+     * Records an egress message queued because the session was back pressured
+     */
+    public void onEgressBackPressured()
+    {
+        if (egressBackPressured != null)
+        {
+            egressBackPressured.incrementOrdered();
+        }
+    }
+
+    /**
+     * Records offers of queued egress which were back pressured and left for a later retry
+     * @param count the number of back pressured retries
+     */
+    public void onEgressRetries(final int count)
+    {
+        if (egressRetries != null)
+        {
+            egressRetries.getAndAddOrdered(count);
+        }
+    }
+
+    /**
+     * Records an RFQ command refused because the user was over its rate limit
+     */
+    public void onRateLimited()
+    {
+        if (rateLimited != null)
+        {
+            rateLimited.incrementOrdered();
+        }
+    }
+
+    /**
+     * Records a coalesced batch of egress sent to a session
+     * @param messageCount the number of messages in the batch
+     */
+    public void onEgressBatch(final int messageCount)
+    {
+        if (egressBatches != null)
+        {
+            egressBatches.incrementOrdered();
+            egressBatchedMessages.getAndAddOrdered(messageCount);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(
+            snapshotDurationNs,
+            snapshotBytes,
+            egressDroppedMessages,
+            egressEvictedSessions,
+            marketDataDropped,
+            journalDropped,
+            egressBackPressured,
+            egressRetries,
+            rateLimited,
+            egressBatches,
+            egressBatchedMessages,
+            unknownCommands);
+        CloseHelper.closeAll(breakdownCounters);
+    }
+
+    private void initCommandCounters(final Aeron aeron)
+    {
+        for (final int templateId : COMMAND_TEMPLATE_IDS)
+        {
+            final Counter counter = aeron.addCounter(COMMANDS_TYPE_ID, "RFQ commands " + commandName(templateId));
+            commandCounters.put(templateId, counter);
+            breakdownCounters.add(counter);
+        }
+        unknownCommands = aeron.addCounter(COMMANDS_TYPE_ID, "RFQ commands unknown");
+    }
+
+    private void initRfqRefusedCounters(final Aeron aeron)
+    {
+        addRfqRefusedCounters(aeron, RfqJournalAction.CREATE, CreateRfqResult.values(), CreateRfqResult::value);
+        addRfqRefusedCounters(aeron, RfqJournalAction.QUOTE, QuoteRfqResult.values(), QuoteRfqResult::value);
+        addRfqRefusedCounters(aeron, RfqJournalAction.COUNTER, CounterRfqResult.values(), CounterRfqResult::value);
+        addRfqRefusedCounters(aeron, RfqJournalAction.ACCEPT, AcceptRfqResult.values(), AcceptRfqResult::value);
+        addRfqRefusedCounters(aeron, RfqJournalAction.REJECT, RejectRfqResult.values(), RejectRfqResult::value);
+        addRfqRefusedCounters(aeron, RfqJournalAction.CANCEL, CancelRfqResult.values(), CancelRfqResult::value);
+    }
+
+    private <E extends Enum<E>> void addRfqRefusedCounters(
+        final Aeron aeron,
+        final RfqJournalAction action,
+        final E[] results,
+        final ToIntFunction<E> resultValue)
+    {
+        int maxValue = 0;
+        for (final E result : results)
+        {
+            if (isRefusal(result))
+            {
+                maxValue = Math.max(maxValue, resultValue.applyAsInt(result));
+            }
+        }
+
+        final Counter[] counters = new Counter[maxValue + 1];
+        for (final E result : results)
+        {
+            if (isRefusal(result))
+            {
+                final Counter counter = aeron.addCounter(
+                    RFQ_REFUSED_TYPE_ID, "RFQ refused " + action.name() + " " + result.name());
+                counters[resultValue.applyAsInt(result)] = counter;
+                breakdownCounters.add(counter);
+            }
+        }
+        rfqRefusedCounters[action.ordinal()] = counters;
+    }
+
+    private static boolean isRefusal(final Enum<?> result)
+    {
+        return !"SUCCESS".equals(result.name()) && !"NULL_VAL".equals(result.name());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HDR histograms of time spent on the service thread handling session messages and timer events, and offering
+ * egress. Values are recorded without allocation on the service thread, and interval histograms are taken and
+ * written out by a {@link LatencyLogAgent} on another thread. Latencies are local to each node and are never part
+ * of replicated state.
+ */
+public class ServiceLatency
+{
+    /**
+     * Highest value recorded; longer durations are recorded as this value
+     */
+    public static final long HIGHEST_TRACKABLE_NS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Tag of the session message histogram in the latency log
+     */
+    public static final String SESSION_MESSAGE_TAG = "session-message";
+
+    /**
+     * Tag of the timer event histogram in the latency log
+     */
+    public static final String TIMER_EVENT_TAG = "timer-event";
+
+    /**
+     * Tag of the egress offer histogram in the latency log
+     */
+    public static final String EGRESS_OFFER_TAG = "egress-offer";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final SingleWriterRecorder sessionMessageNs = new SingleWriterRecorder(HIGHEST_TRACKABLE_NS,
+        SIGNIFICANT_DIGITS);
+    private final SingleWriterRecorder timerEventNs = new SingleWriterRecorder(HIGHEST_TRACKABLE_NS,
+        SIGNIFICANT_DIGITS);
+    private final SingleWriterRecorder egressOfferNs = new SingleWriterRecorder(HIGHEST_TRACKABLE_NS,
+        SIGNIFICANT_DIGITS);
+    private Histogram sessionMessageInterval;
+    private Histogram timerEventInterval;
+    private Histogram egressOfferInterval;
+
+    /**
+     * Records the time taken to handle a session message
+     *
+     * @param durationNs the time taken
+     */
+    public void onSessionMessage(final long durationNs)
+    {
+        sessionMessageNs.recordValue(clamp(durationNs));
+    }
+
+    /**
+     * Records the time taken to handle a timer event
+     *
+     * @param durationNs the time taken
+     */
+    public void onTimerEvent(final long durationNs)
+    {
+        timerEventNs.recordValue(clamp(durationNs));
+    }
+
+    /**
+     * Records the time taken to offer, or queue, a message to a session
+     *
+     * @param durationNs the time taken
+     */
+    public void onEgressOffer(final long durationNs)
+    {
+        egressOfferNs.recordValue(clamp(durationNs));
+    }
+
+    /**
+     * Takes the values recorded since the last call and writes them to a log as tagged interval histograms. Must
+     * only be called from a single thread.
+     *
+     * @param logWriter the log to write to
+     */
+    public void writeIntervals(final HistogramLogWriter logWriter)
+    {
+        sessionMessageInterval = sessionMessageNs.getIntervalHistogram(sessionMessageInterval);
+        sessionMessageInterval.setTag(SESSION_MESSAGE_TAG);
+        logWriter.outputIntervalHistogram(sessionMessageInterval);
+
+        timerEventInterval = timerEventNs.getIntervalHistogram(timerEventInterval);
+        timerEventInterval.setTag(TIMER_EVENT_TAG);
+        logWriter.outputIntervalHistogram(timerEventInterval);
+
+        egressOfferInterval = egressOfferNs.getIntervalHistogram(egressOfferInterval);
+        egressOfferInterval.setTag(EGRESS_OFFER_TAG);
+        logWriter.outputIntervalHistogram(egressOfferInterval);
+    }
+
+    private static long clamp(final long durationNs)
+    {
+        return Math.min(Math.max(durationNs, 0), HIGHEST_TRACKABLE_NS);
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import io.aeron.Publication;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableRingBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Bounded outbound queue for a single client session. Messages are offered directly while the queue is empty, and
+ * queued in order once the session is back pressured, to be drained on later duty cycles.
+ * <p>
+ * When coalescing is enabled, messages are first collected in a per-session batch during the duty cycle and the
+ * batch is sent once with {@link #flushBatch(long)}, as a single {@code EgressBatch} message, through the same
+ * direct-or-queued path. Messages are encoded straight into the batch envelope as they arrive, so each is copied once
+ * before the batch is offered. A batch holding only one message is sent as that message, unwrapped.
+ */
+public class SessionEgressQueue implements ExpandableRingBuffer.MessageConsumer
+{
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int BATCH_FIXED_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH +
+        EgressBatchEncoder.BLOCK_LENGTH + EgressBatchEncoder.MessagesEncoder.HEADER_SIZE;
+    private static final int BATCH_MESSAGE_HEADER_LENGTH = EgressBatchEncoder.MessagesEncoder.messageHeaderLength();
+    private static final int FIRST_MESSAGE_OFFSET = BATCH_FIXED_LENGTH + BATCH_MESSAGE_HEADER_LENGTH;
+    private final ClientSession session;
+    private final ExpandableRingBuffer queue;
+    private final int maxBatchLength;
+    private final UnsafeBuffer batchBuffer;
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final EgressBatchEncoder egressBatchEncoder = new EgressBatchEncoder();
+    private EgressBatchEncoder.MessagesEncoder messagesEncoder;
+    private int batchedMessages;
+    private int queuedMessages;
+    private int droppedMessages;
+    private int retriedOffers;
+    private long stalledSinceNs;
+    private boolean evicted;
+
+    /**
+     * Constructor
+     *
+     * @param session        the session to send to
+     * @param maxQueuedBytes the maximum capacity of the queue, a power of two
+     * @param maxBatchLength the most bytes a coalesced batch may take, including its header, or zero to send every
+     *                       message alone
+     */
+    public SessionEgressQueue(final ClientSession session, final int maxQueuedBytes, final int maxBatchLength)
+    {
+        this.session = session;
+        this.queue = new ExpandableRingBuffer(Math.min(INITIAL_CAPACITY, maxQueuedBytes), maxQueuedBytes, true);
+        this.maxBatchLength = Math.max(0, maxBatchLength);
+        this.batchBuffer = this.maxBatchLength > 0 ? new UnsafeBuffer(new byte[this.maxBatchLength]) : null;
+    }
+
+    /**
+     * Sends a message to the session, offering it directly if nothing is queued ahead of it.
+     *
+     * @param buffer the buffer to read data from
+     * @param offset the offset to read from
+     * @param length the length to read
+     * @param nowNs  the current time, used to measure how long the session has been stalled
+     * @return the outcome of the send
+     */
+    public SendResult send(final DirectBuffer buffer, final int offset, final int length, final long nowNs)
+    {
+        if (evicted)
+        {
+            return SendResult.DROPPED;
+        }
+
+        if (queue.isEmpty())
+        {
+            final long result = session.offer(buffer, offset, length);
+            if (result > 0L)
+            {
+                return SendResult.SENT;
+            }
+            else if (result != Publication.BACK_PRESSURED && result != Publication.ADMIN_ACTION)
+            {
+                return SendResult.DROPPED;
+            }
+            stalledSinceNs = nowNs;
+        }
+
+        if (!queue.append(buffer, offset, length))
+        {
+            return SendResult.QUEUE_FULL;
+        }
+        queuedMessages++;
+        return SendResult.QUEUED;
+    }
+
+    /**
+     * Adds a message to the session's batch, to be sent with the rest of the batch on the next flush.
+     *
+     * @param buffer the buffer to read data from
+     * @param offset the offset to read from
+     * @param length the length to read
+     * @return true if added, false if coalescing is off, the session has been evicted or the message does not fit;
+     * the batch should then be flushed and the message batched again, or sent alone if it still does not fit
+     */
+    public boolean batch(final DirectBuffer buffer, final int offset, final int length)
+    {
+        if (evicted || !fits(length))
+        {
+            return false;
+        }
+
+        if (batchedMessages == 0)
+        {
+            messagesEncoder = egressBatchEncoder.wrapAndApplyHeader(batchBuffer, 0, headerEncoder)
+                .messagesCount(EgressBatchEncoder.MessagesEncoder.countMaxValue());
+        }
+        messagesEncoder.next().putMessage(buffer, offset, length);
+        batchedMessages++;
+        return true;
+    }
+
+    /**
+     * Sends the batch to the session and empties it. The batch goes through {@link #send}, so it is queued behind
+     * anything already queued and counts as one message there. The message count is written into the envelope now,
+     * as it is only known once the batch is complete.
+     *
+     * @param nowNs the current time
+     * @return the outcome of the send, which applies to every message in the batch
+     */
+    public SendResult flushBatch(final long nowNs)
+    {
+        if (batchedMessages == 0)
+        {
+            return SendResult.SENT;
+        }
+
+        final int batchLength = egressBatchEncoder.limit();
+        final SendResult result;
+        if (batchedMessages == 1)
+        {
+            result = send(batchBuffer, FIRST_MESSAGE_OFFSET, batchLength - FIRST_MESSAGE_OFFSET, nowNs);
+        }
+        else
+        {
+            messagesEncoder.resetCountToIndex();
+            result = send(batchBuffer, 0, batchLength, nowNs);
+        }
+
+        batchedMessages = 0;
+        return result;
+    }
+
+    /**
+     * Gets the number of messages waiting in the batch
+     *
+     * @return the number of batched messages
+     */
+    public int batchedMessages()
+    {
+        return batchedMessages;
+    }
+
+    /**
+     * Checks if messages to the session are coalesced into batches
+     *
+     * @return true if coalescing
+     */
+    public boolean isBatching()
+    {
+        return maxBatchLength > 0;
+    }
+
+    /**
+     * Claims space in the session's publication so a message can be encoded in place, avoiding a copy. Only succeeds
+     * if nothing is queued or batched ahead of the message, so any batch must be flushed first; otherwise the caller
+     * must fall back to {@link #send}.
+     *
+     * @param length      the length of the message to be encoded
+     * @param bufferClaim the claim to be filled, with the cluster session header already written
+     * @return true if claimed, in which case the claim must be committed
+     */
+    public boolean tryClaim(final int length, final BufferClaim bufferClaim)
+    {
+        return !evicted && batchedMessages == 0 && queue.isEmpty() && session.tryClaim(length, bufferClaim) > 0L;
+    }
+
+    /**
+     * Offers as many queued messages as the session will accept.
+     *
+     * @param nowNs the current time
+     * @return the number of messages taken from the queue
+     */
+    public int drain(final long nowNs)
+    {
+        if (evicted || queue.isEmpty())
+        {
+            return 0;
+        }
+
+        final int before = queuedMessages;
+        queue.consume(this, Integer.MAX_VALUE);
+        final int sent = before - queuedMessages;
+        if (sent > 0)
+        {
+            stalledSinceNs = nowNs;
+        }
+        return sent;
+    }
+
+    /**
+     * Gets how long the session has gone without accepting a queued message.
+     *
+     * @param nowNs the current time
+     * @return the lag in nanoseconds, or zero if nothing is queued
+     */
+    public long lagNs(final long nowNs)
+    {
+        return queue.isEmpty() ? 0 : nowNs - stalledSinceNs;
+    }
+
+    /**
+     * Evicts the session, asking the cluster to close it and discarding anything queued or batched.
+     *
+     * @return the number of queued and batched messages discarded
+     */
+    public int evict()
+    {
+        evicted = true;
+        final int discarded = queuedMessages + batchedMessages;
+        queue.reset(Math.min(INITIAL_CAPACITY, queue.maxCapacity()));
+        queuedMessages = 0;
+        batchedMessages = 0;
+        if (!session.isClosing())
+        {
+            session.close();
+        }
+        return discarded;
+    }
+
+    /**
+     * Gets the number of queued messages dropped during drains since the last call, as the session could no longer
+     * accept them.
+     *
+     * @return the number of dropped messages
+     */
+    public int takeDroppedMessages()
+    {
+        final int dropped = droppedMessages;
+        droppedMessages = 0;
+        return dropped;
+    }
+
+    /**
+     * Gets the number of queued messages offered during drains since the last call which were back pressured again,
+     * and so left queued for a later retry.
+     *
+     * @return the number of back pressured retries
+     */
+    public int takeRetriedOffers()
+    {
+        final int retried = retriedOffers;
+        retriedOffers = 0;
+        return retried;
+    }
+
+    /**
+     * Gets the session this queue sends to
+     *
+     * @return the session
+     */
+    public ClientSession session()
+    {
+        return session;
+    }
+
+    /**
+     * Gets the number of bytes currently queued
+     *
+     * @return the queued bytes
+     */
+    public int queuedBytes()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Checks if the session has been evicted
+     *
+     * @return true if evicted
+     */
+    public boolean isEvicted()
+    {
+        return evicted;
+    }
+
+    @Override
+    public boolean onMessage(
+        final MutableDirectBuffer buffer,
+        final int offset,
+        final int length,
+        final int headOffset)
+    {
+        final long result = session.offer(buffer, offset, length);
+        if (result == Publication.BACK_PRESSURED || result == Publication.ADMIN_ACTION)
+        {
+            retriedOffers++;
+            return false;
+        }
+
+        if (result < 0L)
+        {
+            droppedMessages++;
+        }
+        queuedMessages--;
+        return true;
+    }
+
+    private boolean fits(final int nextMessageLength)
+    {
+        if (batchedMessages == 0)
+        {
+            return FIRST_MESSAGE_OFFSET + nextMessageLength <= maxBatchLength;
+        }
+
+        return batchedMessages < EgressBatchEncoder.MessagesEncoder.countMaxValue() &&
+            egressBatchEncoder.limit() + BATCH_MESSAGE_HEADER_LENGTH + nextMessageLength <= maxBatchLength;
+    }
+
+    /**
+     * Outcome of sending a message to a session
+     */
+    public enum SendResult
+    {
+        SENT,
+        QUEUED,
+        QUEUE_FULL,
+        DROPPED
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.LongHashSet;
+
+/**
+ * The RFQ events a client session has asked to be sent. A session with no instruments is sent events for every
+ * instrument; a session limited to parties is only sent events for RFQs its user requested or responded to.
+ */
+public class SessionInterest
+{
+    /**
+     * User id of a session which has not identified its user
+     */
+    public static final int NO_USER = Integer.MIN_VALUE;
+
+    private final long sessionId;
+    private final LongHashSet cusipKeys = new LongHashSet();
+    private int userId = NO_USER;
+    private boolean partiesOnly;
+
+    /**
+     * Constructor, with interest in every instrument
+     *
+     * @param sessionId the id of the session
+     */
+    public SessionInterest(final long sessionId)
+    {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Gets the id of the session
+     *
+     * @return the session id
+     */
+    public long getSessionId()
+    {
+        return sessionId;
+    }
+
+    /**
+     * Gets the user the session acts for
+     *
+     * @return the user id, or {@link #NO_USER}
+     */
+    public int getUserId()
+    {
+        return userId;
+    }
+
+    /**
+     * Checks if the session is limited to RFQs its user is a party to
+     *
+     * @return true if limited to parties
+     */
+    public boolean isPartiesOnly()
+    {
+        return partiesOnly;
+    }
+
+    /**
+     * Checks if the session is interested in every instrument
+     *
+     * @return true if no instruments were given
+     */
+    public boolean isAllInstruments()
+    {
+        return cusipKeys.isEmpty();
+    }
+
+    /**
+     * Gets the packed cusips of the instruments the session is interested in
+     *
+     * @return the packed cusips, empty if interested in every instrument
+     */
+    public LongHashSet getCusipKeys()
+    {
+        return cusipKeys;
+    }
+
+    /**
+     * Checks if the session should be sent an event for an RFQ between the given users
+     *
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder to the RFQ, if any
+     * @return true if the session is not limited to parties, or its user is a party to the RFQ
+     */
+    public boolean acceptsParties(final int requesterUserId, final int responderUserId)
+    {
+        return !partiesOnly || (userId != NO_USER && (userId == requesterUserId || userId == responderUserId));
+    }
+
+    void set(final int userId, final boolean partiesOnly)
+    {
+        this.userId = userId;
+        this.partiesOnly = partiesOnly;
+    }
+}
@@ -29,6 +29,12 @@ public interface SessionMessageContext
      */
     long getClusterTime();
 
+    /**
+     * Gets the id of the session which sent the current message
+     * @return the session id
+     */
+    long getSessionId();
+
     /**
      * Replies to the caller
      * @param buffer the buffer to read data from
@@ -44,5 +50,22 @@ public interface SessionMessageContext
      * @param length the length to read
      */
     void broadcast(DirectBuffer buffer, int offset, int length);
+
+    /**
+     * Broadcast an RFQ event to the sessions interested in it
+     * @param cusipKey        the packed cusip of the RFQ instrument
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder to the RFQ, if any
+     * @param buffer          the buffer to read data from
+     * @param offset          the offset to read from
+     * @param length          the length to read
+     */
+    void broadcastRfqEvent(
+        long cusipKey,
+        int requesterUserId,
+        int responderUserId,
+        DirectBuffer buffer,
+        int offset,
+        int length);
 }
 
@@ -16,33 +16,30 @@
 
 package com.aeroncookbook.rfq.infra;
 
-import io.aeron.Publication;
 import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
 import org.agrona.DirectBuffer;
-import org.agrona.concurrent.IdleStrategy;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.Objects;
+import org.agrona.collections.LongArrayList;
 
 /**
  * The context for a single cluster session message
  */
 public class SessionMessageContextImpl implements SessionMessageContext
 {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SessionMessageContextImpl.class);
-    private static final long RETRY_COUNT = 3;
-    private IdleStrategy idleStrategy;
+    private final EgressManager egressManager;
     private final ClientSessions clientSessions;
+    private final LongArrayList interestedSessionIds = new LongArrayList();
     private long timestamp;
     private ClientSession session;
 
     /**
      * Constructor
-     * @param clientSessions the client session store
+     * @param egressManager  the egress manager through which replies and broadcasts are sent
+     * @param clientSessions the client sessions, used to find the sessions interested in an RFQ event
      */
-    public SessionMessageContextImpl(final ClientSessions clientSessions)
+    public SessionMessageContextImpl(final EgressManager egressManager, final ClientSessions clientSessions)
     {
+        this.egressManager = egressManager;
         this.clientSessions = clientSessions;
     }
 
@@ -78,17 +75,15 @@ public class SessionMessageContextImpl implements SessionMessageContext
         return timestamp;
     }
 
-    /**
-     * Sets the idle strategy to be used during offers
-     * @param idleStrategy the idle strategy to be used
-     */
-    public void setIdleStrategy(final IdleStrategy idleStrategy)
+    @Override
+    public long getSessionId()
     {
-        this.idleStrategy = idleStrategy;
+        return session.id();
     }
 
     /**
-     * Replies to the sender of the current session message, with retry. Disconnects a client that failed to offer
+     * Replies to the sender of the current session message. Never blocks; a back pressured session has the reply
+     * queued, and is evicted if it falls too far behind.
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
      * @param length the length to read
@@ -96,12 +91,24 @@ public class SessionMessageContextImpl implements SessionMessageContext
     @Override
     public void reply(final DirectBuffer buffer, final int offset, final int length)
     {
-        offerToSession(session, buffer, offset, length);
+        egressManager.send(session.id(), buffer, offset, length);
+    }
+
+    /**
+     * Claims space to encode a reply directly into the sender's publication, avoiding a copy.
+     * @param length      the length of the reply
+     * @param bufferClaim the claim to be filled
+     * @return true if claimed, in which case the reply must be encoded after the cluster session header and the
+     * claim committed; false if the caller should encode the reply and use {@link #reply} instead
+     */
+    public boolean tryClaimReply(final int length, final BufferClaim bufferClaim)
+    {
+        return egressManager.tryClaim(session.id(), length, bufferClaim);
     }
 
     /**
-     * Broadcasts a message to all connected sessions. If the offer fails to any session after a number of retries,
-     * then that session is disconnected.
+     * Broadcasts a message to all connected sessions. Never blocks; back pressured sessions have the message
+     * queued, and are evicted if they fall too far behind.
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
      * @param length the length to read
@@ -109,65 +116,46 @@ public class SessionMessageContextImpl implements SessionMessageContext
     @Override
     public void broadcast(final DirectBuffer buffer, final int offset, final int length)
     {
-        clientSessions.getAllSessions().forEach(clientSession -> offerToSession(clientSession, buffer, offset, length));
+        egressManager.broadcast(buffer, offset, length);
     }
 
-
     /**
-     * Sends a message to a specific session, with retry.
-     * Disconnects a client that failed to offer after RETRY_COUNT retries
-     * @param sessionId the session to send to
-     * @param buffer the buffer to read data from
-     * @param offset the offset to read from
-     * @param length the length to read
+     * Broadcasts an RFQ event to the sessions interested in its instrument and, for sessions limited to parties,
+     * to those whose user is a party to the RFQ. Work is proportional to the interested sessions rather than to
+     * all connected sessions.
+     * @param cusipKey        the packed cusip of the RFQ instrument
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder to the RFQ, if any
+     * @param buffer          the buffer to read data from
+     * @param offset          the offset to read from
+     * @param length          the length to read
      */
-    public void offerToSessionById(final long sessionId, final DirectBuffer buffer, final int offset, final int length)
+    @Override
+    public void broadcastRfqEvent(
+        final long cusipKey,
+        final int requesterUserId,
+        final int responderUserId,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
     {
-        final ClientSession clientSession = clientSessions.getById(sessionId);
-        if (clientSession != null)
+        interestedSessionIds.clear();
+        clientSessions.collectInterestedSessions(cusipKey, requesterUserId, responderUserId, interestedSessionIds);
+        for (int i = 0, size = interestedSessionIds.size(); i < size; i++)
         {
-            offerToSession(clientSession, buffer, offset, length);
+            egressManager.send(interestedSessionIds.getLong(i), buffer, offset, length);
         }
     }
 
     /**
-     * Offers a message to a session, with retry. Disconnects a client that failed to offer after RETRY_COUNT retries
-     * @param targetSession the session to offer to
+     * Sends a message to a specific session.
+     * @param sessionId the session to send to
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
      * @param length the length to read
      */
-    private void offerToSession(
-        final ClientSession targetSession,
-        final DirectBuffer buffer,
-        final int offset,
-        final int length)
+    public void offerToSessionById(final long sessionId, final DirectBuffer buffer, final int offset, final int length)
     {
-        Objects.requireNonNull(idleStrategy, "idleStrategy must be set");
-        int retries = 0;
-        do
-        {
-            final long result = targetSession.offer(buffer, offset, length);
-            if (result > 0L)
-            {
-                return;
-            }
-            else if (result == Publication.ADMIN_ACTION || result == Publication.BACK_PRESSURED)
-            {
-                LOGGER.warn("backpressure or admin action on session offer");
-            }
-            else if (result == Publication.NOT_CONNECTED || result == Publication.MAX_POSITION_EXCEEDED)
-            {
-                LOGGER.error("unexpected state on session offer: {}", result);
-                return;
-            }
-
-            idleStrategy.idle();
-            retries += 1;
-        }
-        while (retries < RETRY_COUNT);
-
-        LOGGER.error("failed to offer snapshot within {} retries. Closing client session.", RETRY_COUNT);
-        session.close();
+        egressManager.send(sessionId, buffer, offset, length);
     }
 }
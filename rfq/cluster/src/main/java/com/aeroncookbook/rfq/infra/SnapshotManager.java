@@ -16,16 +16,33 @@
 
 package com.aeroncookbook.rfq.infra;
 
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.EndOfSnapshotDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRecordDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
-import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RateLimitRecordBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqHistoryRecordBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqRecordBlockDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqSequenceRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionInterestRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerManagerRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserEntitlementRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserRegistryRecordBatchDecoder;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
 import io.aeron.ExclusivePublication;
 import io.aeron.Image;
-import io.aeron.Publication;
+import io.aeron.cluster.client.ClusterException;
 import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
 import org.agrona.DirectBuffer;
-import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.LongArrayList;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,23 +54,68 @@ import java.util.Objects;
 public class SnapshotManager implements FragmentHandler
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotManager.class);
-    private static final int RETRY_COUNT = 3;
     private final SessionMessageContext context;
-    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(1024);
+    private final Instruments instruments;
+    private final Users users;
+    private final Rfqs rfqs;
+    private final TimerManager timerManager;
+    private final ClientSessions clientSessions;
+    private final MarketDataPublisher marketDataPublisher;
+    private final RateLimiter rateLimiter;
+    private final SnapshotWriter snapshotWriter;
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
-    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final InstrumentRecordBatchDecoder instrumentRecordBatchDecoder = new InstrumentRecordBatchDecoder();
+    private final UserRegistryRecordBatchDecoder userRegistryRecordBatchDecoder =
+        new UserRegistryRecordBatchDecoder();
+    private final UserEntitlementRecordDecoder userEntitlementRecordDecoder = new UserEntitlementRecordDecoder();
+    private final RfqRecordBlockDecoder rfqRecordBlockDecoder = new RfqRecordBlockDecoder();
+    private final RfqHistoryRecordBatchDecoder rfqHistoryRecordBatchDecoder = new RfqHistoryRecordBatchDecoder();
+    private final RfqSequenceRecordDecoder rfqSequenceRecordDecoder = new RfqSequenceRecordDecoder();
+    private final TimerManagerRecordDecoder timerManagerRecordDecoder = new TimerManagerRecordDecoder();
+    private final SessionInterestRecordDecoder sessionInterestRecordDecoder = new SessionInterestRecordDecoder();
+    private final MarketDataRecordDecoder marketDataRecordDecoder = new MarketDataRecordDecoder();
+    private final RateLimitRecordBatchDecoder rateLimitRecordBatchDecoder = new RateLimitRecordBatchDecoder();
+    private final LongArrayList interestCusipKeys = new LongArrayList();
+    private final byte[] cusipBytes = new byte[CusipKey.CUSIP_LENGTH];
+    private final UnsafeBuffer cusipBuffer = new UnsafeBuffer(cusipBytes);
+    private final UnsafeBuffer rfqRecordBlock = new UnsafeBuffer(0, 0);
     private boolean snapshotFullyLoaded = false;
     private IdleStrategy idleStrategy;
 
     /**
      * Constructor
      *
-     * @param context the session message context to use for snapshot interactions
+     * @param context             the session message context to use for snapshot interactions
+     * @param instruments         the instrument domain model to snapshot and restore
+     * @param users               the users to snapshot and restore
+     * @param rfqs                the RFQ domain model to snapshot and restore
+     * @param timerManager        the timer manager to snapshot and restore
+     * @param clientSessions      the client sessions whose interest is snapshot and restored
+     * @param marketDataPublisher the market data publisher whose sequence is snapshot and restored
+     * @param rateLimiter         the rate limiter whose buckets are snapshot and restored
+     * @param serviceCounters     the counters to which snapshot duration and size are reported
      */
     public SnapshotManager(
-        final SessionMessageContext context)
+        final SessionMessageContext context,
+        final Instruments instruments,
+        final Users users,
+        final Rfqs rfqs,
+        final TimerManager timerManager,
+        final ClientSessions clientSessions,
+        final MarketDataPublisher marketDataPublisher,
+        final RateLimiter rateLimiter,
+        final ServiceCounters serviceCounters)
     {
         this.context = context;
+        this.instruments = instruments;
+        this.users = users;
+        this.rfqs = rfqs;
+        this.timerManager = timerManager;
+        this.clientSessions = clientSessions;
+        this.marketDataPublisher = marketDataPublisher;
+        this.rateLimiter = rateLimiter;
+        this.snapshotWriter = new SnapshotWriter(
+            instruments, users, rfqs, timerManager, clientSessions, marketDataPublisher, rateLimiter, serviceCounters);
     }
 
     /**
@@ -64,6 +126,8 @@ public class SnapshotManager implements FragmentHandler
     public void takeSnapshot(final ExclusivePublication snapshotPublication)
     {
         LOGGER.info("Starting snapshot...");
+        Objects.requireNonNull(idleStrategy, "Idle strategy must be set before taking snapshot");
+        snapshotWriter.write(snapshotPublication, idleStrategy);
         LOGGER.info("Snapshot complete");
     }
 
@@ -71,6 +135,7 @@ public class SnapshotManager implements FragmentHandler
      * Called by the clustered service once a snapshot has been provided by the cluster
      *
      * @param snapshotImage the image to read snapshot data from
+     * @throws ClusterException if the snapshot ends without an end of snapshot marker
      */
     public void loadSnapshot(final Image snapshotImage)
     {
@@ -85,7 +150,7 @@ public class SnapshotManager implements FragmentHandler
 
         if (!snapshotFullyLoaded)
         {
-            LOGGER.warn("Snapshot load not completed; no end of snapshot marker found");
+            throw new ClusterException("snapshot load not completed; no end of snapshot marker found");
         }
         LOGGER.info("Snapshot load complete.");
     }
@@ -116,42 +181,127 @@ public class SnapshotManager implements FragmentHandler
 
         headerDecoder.wrap(buffer, offset);
 
-        LOGGER.warn("Unknown snapshot message template id: {}", headerDecoder.templateId());
-    }
-
-    /**
-     * Retries the offer to the publication if it fails on back pressure or admin action.
-     * Buffer is assumed to always start at offset 0
-     *
-     * @param publication the publication to offer data to
-     * @param buffer      the buffer holding the source data
-     * @param length      the length to write
-     */
-    private void retryingOffer(final ExclusivePublication publication, final DirectBuffer buffer, final int length)
-    {
-        final int offset = 0;
-        int retries = 0;
-        do
+        switch (headerDecoder.templateId())
         {
-            final long result = publication.offer(buffer, offset, length);
-            if (result > 0L)
+            case TimerManagerRecordDecoder.TEMPLATE_ID ->
             {
-                return;
+                timerManagerRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                timerManager.restoreArmedDeadline(timerManagerRecordDecoder.armedDeadline());
             }
-            else if (result == Publication.ADMIN_ACTION || result == Publication.BACK_PRESSURED)
+            case RfqSequenceRecordDecoder.TEMPLATE_ID ->
             {
-                LOGGER.warn("backpressure or admin action on snapshot");
+                rfqSequenceRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                rfqs.restoreLastRfqId(rfqSequenceRecordDecoder.lastRfqId());
             }
-            else if (result == Publication.NOT_CONNECTED || result == Publication.MAX_POSITION_EXCEEDED)
+            case MarketDataRecordDecoder.TEMPLATE_ID ->
             {
-                LOGGER.error("unexpected publication state on snapshot: {}", result);
-                return;
+                marketDataRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                marketDataPublisher.restoreLastSequence(marketDataRecordDecoder.lastSequence());
             }
-            idleStrategy.idle();
-            retries += 1;
+            case UserRegistryRecordBatchDecoder.TEMPLATE_ID -> loadUserRegistryBatch(buffer, offset);
+            case UserEntitlementRecordDecoder.TEMPLATE_ID -> loadUserEntitlements(buffer, offset);
+            case InstrumentRecordBatchDecoder.TEMPLATE_ID -> loadInstrumentBatch(buffer, offset);
+            case RfqRecordBlockDecoder.TEMPLATE_ID -> loadRfqBlock(buffer, offset);
+            case RfqHistoryRecordBatchDecoder.TEMPLATE_ID -> loadRfqHistory(buffer, offset);
+            case SessionInterestRecordDecoder.TEMPLATE_ID -> loadSessionInterest(buffer, offset);
+            case RateLimitRecordBatchDecoder.TEMPLATE_ID -> loadRateLimitBuckets(buffer, offset);
+            case EndOfSnapshotDecoder.TEMPLATE_ID -> snapshotFullyLoaded = true;
+            default -> LOGGER.warn("Unknown snapshot message template id: {}", headerDecoder.templateId());
+        }
+    }
+
+    private void loadUserRegistryBatch(final DirectBuffer buffer, final int offset)
+    {
+        userRegistryRecordBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final UserRegistryRecordBatchDecoder.RecordsDecoder records = userRegistryRecordBatchDecoder.records();
+        while (records.hasNext())
+        {
+            records.next();
+            users.restoreUser(
+                records.userId(),
+                records.enabled() == BooleanType.TRUE,
+                records.maxOpenRfqs(),
+                records.allInstruments() == BooleanType.TRUE);
+        }
+    }
+
+    private void loadUserEntitlements(final DirectBuffer buffer, final int offset)
+    {
+        userEntitlementRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final int userId = userEntitlementRecordDecoder.userId();
+        int index = userEntitlementRecordDecoder.fromWord();
+        final UserEntitlementRecordDecoder.WordsDecoder words = userEntitlementRecordDecoder.words();
+        while (words.hasNext())
+        {
+            users.restoreEntitlementWord(userId, index++, words.next().word());
+        }
+    }
+
+    private void loadInstrumentBatch(final DirectBuffer buffer, final int offset)
+    {
+        instrumentRecordBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final InstrumentRecordBatchDecoder.RecordsDecoder records = instrumentRecordBatchDecoder.records();
+        while (records.hasNext())
+        {
+            records.next();
+            instruments.restoreInstrument(
+                records.instrumentId(), records.cusip(), records.enabled() == BooleanType.TRUE, records.minSize());
+        }
+    }
+
+    private void loadRfqBlock(final DirectBuffer buffer, final int offset)
+    {
+        rfqRecordBlockDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        if (rfqRecordBlockDecoder.recordLength() != Rfq.RECORD_LENGTH)
+        {
+            throw new IllegalStateException("Snapshot RFQ record length " + rfqRecordBlockDecoder.recordLength() +
+                " does not match " + Rfq.RECORD_LENGTH);
+        }
+
+        final int recordCount = rfqRecordBlockDecoder.recordCount();
+        rfqRecordBlockDecoder.wrapRecords(rfqRecordBlock);
+        for (int i = 0; i < recordCount; i++)
+        {
+            rfqs.restoreRfq(rfqRecordBlock, i * Rfq.RECORD_LENGTH);
+        }
+    }
+
+    private void loadRfqHistory(final DirectBuffer buffer, final int offset)
+    {
+        rfqHistoryRecordBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final RfqHistoryRecordBatchDecoder.RecordsDecoder records = rfqHistoryRecordBatchDecoder.records();
+        while (records.hasNext())
+        {
+            rfqs.restoreHistory(records.next().rfqId());
         }
-        while (retries < RETRY_COUNT);
+    }
+
+    private void loadSessionInterest(final DirectBuffer buffer, final int offset)
+    {
+        sessionInterestRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final long sessionId = sessionInterestRecordDecoder.sessionId();
+        final int userId = sessionInterestRecordDecoder.userId();
+        final boolean partiesOnly = sessionInterestRecordDecoder.partiesOnly() == BooleanType.TRUE;
 
-        LOGGER.error("failed to offer snapshot within {} retries", RETRY_COUNT);
+        interestCusipKeys.clear();
+        final SessionInterestRecordDecoder.InstrumentsDecoder instrumentsDecoder =
+            sessionInterestRecordDecoder.instruments();
+        while (instrumentsDecoder.hasNext())
+        {
+            instrumentsDecoder.next().getCusip(cusipBytes, 0);
+            interestCusipKeys.addLong(CusipKey.pack(cusipBuffer, 0));
+        }
+        clientSessions.restoreInterest(sessionId, userId, partiesOnly, interestCusipKeys);
+    }
+
+    private void loadRateLimitBuckets(final DirectBuffer buffer, final int offset)
+    {
+        rateLimitRecordBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final RateLimitRecordBatchDecoder.RecordsDecoder records = rateLimitRecordBatchDecoder.records();
+        while (records.hasNext())
+        {
+            records.next();
+            rateLimiter.restoreBucket(records.userId(), records.fullAtNs());
+        }
     }
 }
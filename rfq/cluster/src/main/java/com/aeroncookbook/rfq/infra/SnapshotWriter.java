@@ -0,0 +1,535 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.EndOfSnapshotEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MarketDataRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RateLimitRecordBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqHistoryRecordBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqRecordBlockEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqSequenceRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionInterestRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerManagerRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserEntitlementRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserRegistryRecordBatchEncoder;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.User;
+import com.aeroncookbook.rfq.domain.users.Users;
+import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
+import org.agrona.collections.LongHashSet;
+import org.agrona.concurrent.IdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the domain state into a snapshot publication. Records are packed into SBE repeating groups, with each
+ * batch sized to fit the publication's max payload, and written in place with tryClaim. Back pressure is retried
+ * until the write succeeds, as a snapshot with a missing record cannot be used. A publication that is not connected,
+ * closed or at its max position fails the snapshot instead. RFQs are the exception to the batching: their store
+ * records are copied into the snapshot as they lie in memory, followed by the order of the RFQ history.
+ */
+public class SnapshotWriter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotWriter.class);
+    private static final long PROGRESS_INTERVAL = 100_000;
+    private final Instruments instruments;
+    private final Users users;
+    private final Rfqs rfqs;
+    private final TimerManager timerManager;
+    private final ClientSessions clientSessions;
+    private final MarketDataPublisher marketDataPublisher;
+    private final RateLimiter rateLimiter;
+    private final ServiceCounters serviceCounters;
+    private final BufferClaim bufferClaim = new BufferClaim();
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final TimerManagerRecordEncoder timerManagerRecordEncoder = new TimerManagerRecordEncoder();
+    private final RfqSequenceRecordEncoder rfqSequenceRecordEncoder = new RfqSequenceRecordEncoder();
+    private final MarketDataRecordEncoder marketDataRecordEncoder = new MarketDataRecordEncoder();
+    private final UserRegistryRecordBatchEncoder userRegistryRecordBatchEncoder =
+        new UserRegistryRecordBatchEncoder();
+    private final UserEntitlementRecordEncoder userEntitlementRecordEncoder = new UserEntitlementRecordEncoder();
+    private final InstrumentRecordBatchEncoder instrumentRecordBatchEncoder = new InstrumentRecordBatchEncoder();
+    private final RfqRecordBlockEncoder rfqRecordBlockEncoder = new RfqRecordBlockEncoder();
+    private final RfqHistoryRecordBatchEncoder rfqHistoryRecordBatchEncoder = new RfqHistoryRecordBatchEncoder();
+    private final SessionInterestRecordEncoder sessionInterestRecordEncoder = new SessionInterestRecordEncoder();
+    private final RateLimitRecordBatchEncoder rateLimitRecordBatchEncoder = new RateLimitRecordBatchEncoder();
+    private final EndOfSnapshotEncoder endOfSnapshotEncoder = new EndOfSnapshotEncoder();
+    private final List<User> userBatch = new ArrayList<>();
+    private final List<Instrument> instrumentBatch = new ArrayList<>();
+    private final IntArrayList historyBatch = new IntArrayList();
+    private final LongArrayList interestBatch = new LongArrayList();
+    private final IntArrayList bucketUserIdBatch = new IntArrayList();
+    private final LongArrayList bucketFullAtNsBatch = new LongArrayList();
+    private ExclusivePublication publication;
+    private IdleStrategy idleStrategy;
+    private int usersPerBatch;
+    private int wordsPerEntitlementRecord;
+    private int instrumentsPerBatch;
+    private int rfqsPerBlock;
+    private int historyRfqsPerBatch;
+    private int instrumentsPerInterestRecord;
+    private int bucketsPerBatch;
+    private long bytesWritten;
+    private long recordsWritten;
+    private long lastProgressRecords;
+
+    /**
+     * Constructor
+     *
+     * @param instruments         the instrument domain model to snapshot
+     * @param users               the users to snapshot
+     * @param rfqs                the RFQ domain model to snapshot
+     * @param timerManager        the timer manager to snapshot
+     * @param clientSessions      the client sessions whose interest is snapshot
+     * @param marketDataPublisher the market data publisher whose sequence is snapshot
+     * @param rateLimiter         the rate limiter whose buckets are snapshot
+     * @param serviceCounters     the counters to which snapshot duration and size are reported
+     */
+    public SnapshotWriter(
+        final Instruments instruments,
+        final Users users,
+        final Rfqs rfqs,
+        final TimerManager timerManager,
+        final ClientSessions clientSessions,
+        final MarketDataPublisher marketDataPublisher,
+        final RateLimiter rateLimiter,
+        final ServiceCounters serviceCounters)
+    {
+        this.instruments = instruments;
+        this.users = users;
+        this.rfqs = rfqs;
+        this.timerManager = timerManager;
+        this.clientSessions = clientSessions;
+        this.marketDataPublisher = marketDataPublisher;
+        this.rateLimiter = rateLimiter;
+        this.serviceCounters = serviceCounters;
+    }
+
+    /**
+     * Writes a complete snapshot, ending with the end of snapshot marker.
+     *
+     * @param snapshotPublication the publication to write snapshot data to
+     * @param idleStrategy        the idle strategy to use while back pressured
+     */
+    public void write(final ExclusivePublication snapshotPublication, final IdleStrategy idleStrategy)
+    {
+        final long startNs = System.nanoTime();
+        this.publication = snapshotPublication;
+        this.idleStrategy = idleStrategy;
+        bytesWritten = 0;
+        recordsWritten = 0;
+        lastProgressRecords = 0;
+
+        final int maxPayloadLength = snapshotPublication.maxPayloadLength();
+        usersPerBatch = recordsPerBatch(
+            maxPayloadLength,
+            UserRegistryRecordBatchEncoder.BLOCK_LENGTH,
+            UserRegistryRecordBatchEncoder.RecordsEncoder.sbeHeaderSize(),
+            UserRegistryRecordBatchEncoder.RecordsEncoder.sbeBlockLength(),
+            UserRegistryRecordBatchEncoder.RecordsEncoder.countMaxValue());
+        wordsPerEntitlementRecord = recordsPerBatch(
+            maxPayloadLength,
+            UserEntitlementRecordEncoder.BLOCK_LENGTH,
+            UserEntitlementRecordEncoder.WordsEncoder.sbeHeaderSize(),
+            UserEntitlementRecordEncoder.WordsEncoder.sbeBlockLength(),
+            UserEntitlementRecordEncoder.WordsEncoder.countMaxValue());
+        instrumentsPerBatch = recordsPerBatch(
+            maxPayloadLength,
+            InstrumentRecordBatchEncoder.BLOCK_LENGTH,
+            InstrumentRecordBatchEncoder.RecordsEncoder.sbeHeaderSize(),
+            InstrumentRecordBatchEncoder.RecordsEncoder.sbeBlockLength(),
+            InstrumentRecordBatchEncoder.RecordsEncoder.countMaxValue());
+        rfqsPerBlock = recordsPerBatch(
+            maxPayloadLength,
+            RfqRecordBlockEncoder.BLOCK_LENGTH,
+            RfqRecordBlockEncoder.recordsHeaderLength(),
+            Rfq.RECORD_LENGTH,
+            Integer.MAX_VALUE);
+        historyRfqsPerBatch = recordsPerBatch(
+            maxPayloadLength,
+            RfqHistoryRecordBatchEncoder.BLOCK_LENGTH,
+            RfqHistoryRecordBatchEncoder.RecordsEncoder.sbeHeaderSize(),
+            RfqHistoryRecordBatchEncoder.RecordsEncoder.sbeBlockLength(),
+            RfqHistoryRecordBatchEncoder.RecordsEncoder.countMaxValue());
+        instrumentsPerInterestRecord = recordsPerBatch(
+            maxPayloadLength,
+            SessionInterestRecordEncoder.BLOCK_LENGTH,
+            SessionInterestRecordEncoder.InstrumentsEncoder.sbeHeaderSize(),
+            SessionInterestRecordEncoder.InstrumentsEncoder.sbeBlockLength(),
+            SessionInterestRecordEncoder.InstrumentsEncoder.countMaxValue());
+        bucketsPerBatch = recordsPerBatch(
+            maxPayloadLength,
+            RateLimitRecordBatchEncoder.BLOCK_LENGTH,
+            RateLimitRecordBatchEncoder.RecordsEncoder.sbeHeaderSize(),
+            RateLimitRecordBatchEncoder.RecordsEncoder.sbeBlockLength(),
+            RateLimitRecordBatchEncoder.RecordsEncoder.countMaxValue());
+
+        writeTimerManager();
+        writeRfqSequence();
+        writeMarketDataSequence();
+        users.forEachUser(this::batchUser);
+        flushUsers();
+        users.forEachUser(this::writeUserEntitlements);
+        instruments.forEachInstrument(this::batchInstrument);
+        flushInstruments();
+        rfqs.getRfqRepository().forEachBlock(rfqsPerBlock, this::writeRfqBlock);
+        rfqs.forEachHistoryRfqId(this::batchHistoryRfq);
+        flushHistoryRfqs();
+        clientSessions.forEachInterest(this::writeSessionInterest);
+        rateLimiter.forEachBucket(this::batchBucket);
+        flushBuckets();
+        writeEndOfSnapshot();
+
+        final long durationNs = System.nanoTime() - startNs;
+        serviceCounters.onSnapshotTaken(durationNs, bytesWritten);
+        LOGGER.info("Snapshot wrote {} records, {} bytes in {} ms",
+            recordsWritten, bytesWritten, TimeUnit.NANOSECONDS.toMillis(durationNs));
+        this.publication = null;
+    }
+
+    private static int recordsPerBatch(
+        final int maxPayloadLength,
+        final int rootBlockLength,
+        final int groupHeaderLength,
+        final int recordLength,
+        final int maxCount)
+    {
+        final int available = maxPayloadLength - MessageHeaderEncoder.ENCODED_LENGTH - rootBlockLength -
+            groupHeaderLength;
+        return Math.min(available / recordLength, maxCount);
+    }
+
+    private void writeTimerManager()
+    {
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + TimerManagerRecordEncoder.BLOCK_LENGTH);
+        timerManagerRecordEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        timerManagerRecordEncoder.armedDeadline(timerManager.getArmedDeadline());
+        bufferClaim.commit();
+    }
+
+    private void writeRfqSequence()
+    {
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + RfqSequenceRecordEncoder.BLOCK_LENGTH);
+        rfqSequenceRecordEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        rfqSequenceRecordEncoder.lastRfqId(rfqs.getLastRfqId());
+        bufferClaim.commit();
+    }
+
+    private void writeMarketDataSequence()
+    {
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + MarketDataRecordEncoder.BLOCK_LENGTH);
+        marketDataRecordEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        marketDataRecordEncoder.lastSequence(marketDataPublisher.getLastSequence());
+        bufferClaim.commit();
+    }
+
+    private void writeEndOfSnapshot()
+    {
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + EndOfSnapshotEncoder.BLOCK_LENGTH);
+        endOfSnapshotEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        bufferClaim.commit();
+    }
+
+    private void batchUser(final User user)
+    {
+        userBatch.add(user);
+        if (userBatch.size() == usersPerBatch)
+        {
+            flushUsers();
+        }
+    }
+
+    private void flushUsers()
+    {
+        final int count = userBatch.size();
+        if (count == 0)
+        {
+            return;
+        }
+
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + UserRegistryRecordBatchEncoder.BLOCK_LENGTH +
+            UserRegistryRecordBatchEncoder.RecordsEncoder.sbeHeaderSize() +
+            count * UserRegistryRecordBatchEncoder.RecordsEncoder.sbeBlockLength());
+        userRegistryRecordBatchEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        final UserRegistryRecordBatchEncoder.RecordsEncoder records =
+            userRegistryRecordBatchEncoder.recordsCount(count);
+        for (int i = 0; i < count; i++)
+        {
+            final User user = userBatch.get(i);
+            records.next()
+                .userId(user.getUserId())
+                .enabled(user.isEnabled() ? BooleanType.TRUE : BooleanType.FALSE)
+                .maxOpenRfqs(user.getMaxOpenRfqs())
+                .allInstruments(user.isEntitledToAll() ? BooleanType.TRUE : BooleanType.FALSE);
+        }
+        bufferClaim.commit();
+
+        userBatch.clear();
+        onRecordsWritten(count);
+    }
+
+    /**
+     * Writes the entitlement bitset of a user, split over as many records as its words need. Users with no
+     * individual entitlements have no records.
+     *
+     * @param user the user whose entitlements to write
+     */
+    private void writeUserEntitlements(final User user)
+    {
+        final int wordCount = user.entitlementWordCount();
+        for (int fromWord = 0; fromWord < wordCount; fromWord += wordsPerEntitlementRecord)
+        {
+            final int count = Math.min(wordsPerEntitlementRecord, wordCount - fromWord);
+            claim(MessageHeaderEncoder.ENCODED_LENGTH + UserEntitlementRecordEncoder.BLOCK_LENGTH +
+                UserEntitlementRecordEncoder.WordsEncoder.sbeHeaderSize() +
+                count * UserEntitlementRecordEncoder.WordsEncoder.sbeBlockLength());
+            userEntitlementRecordEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder)
+                .userId(user.getUserId())
+                .fromWord(fromWord);
+            final UserEntitlementRecordEncoder.WordsEncoder words = userEntitlementRecordEncoder.wordsCount(count);
+            for (int i = 0; i < count; i++)
+            {
+                words.next().word(user.entitlementWord(fromWord + i));
+            }
+            bufferClaim.commit();
+
+            onRecordsWritten(1);
+        }
+    }
+
+    private void batchInstrument(final Instrument instrument)
+    {
+        instrumentBatch.add(instrument);
+        if (instrumentBatch.size() == instrumentsPerBatch)
+        {
+            flushInstruments();
+        }
+    }
+
+    private void flushInstruments()
+    {
+        final int count = instrumentBatch.size();
+        if (count == 0)
+        {
+            return;
+        }
+
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + InstrumentRecordBatchEncoder.BLOCK_LENGTH +
+            InstrumentRecordBatchEncoder.RecordsEncoder.sbeHeaderSize() +
+            count * InstrumentRecordBatchEncoder.RecordsEncoder.sbeBlockLength());
+        instrumentRecordBatchEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        final InstrumentRecordBatchEncoder.RecordsEncoder records = instrumentRecordBatchEncoder.recordsCount(count);
+        for (int i = 0; i < count; i++)
+        {
+            final Instrument instrument = instrumentBatch.get(i);
+            records.next()
+                .cusip(instrument.getCusip())
+                .enabled(instrument.isEnabled() ? BooleanType.TRUE : BooleanType.FALSE)
+                .minSize(instrument.getMinSize())
+                .instrumentId(instrument.getInstrumentId());
+        }
+        bufferClaim.commit();
+
+        instrumentBatch.clear();
+        onRecordsWritten(count);
+    }
+
+    /**
+     * Writes a block of RFQ store records as they lie in memory, free slots included, so that no RFQ is encoded
+     * field by field.
+     *
+     * @param buffer      the buffer holding the records
+     * @param offset      the offset of the first record
+     * @param recordCount the number of records
+     */
+    private void writeRfqBlock(final DirectBuffer buffer, final int offset, final int recordCount)
+    {
+        final int recordsLength = recordCount * Rfq.RECORD_LENGTH;
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + RfqRecordBlockEncoder.BLOCK_LENGTH +
+            RfqRecordBlockEncoder.recordsHeaderLength() + recordsLength);
+        rfqRecordBlockEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder)
+            .recordLength(Rfq.RECORD_LENGTH)
+            .recordCount(recordCount)
+            .putRecords(buffer, offset, recordsLength);
+        bufferClaim.commit();
+
+        onRecordsWritten(recordCount);
+    }
+
+    private void batchHistoryRfq(final int rfqId)
+    {
+        historyBatch.addInt(rfqId);
+        if (historyBatch.size() == historyRfqsPerBatch)
+        {
+            flushHistoryRfqs();
+        }
+    }
+
+    private void flushHistoryRfqs()
+    {
+        final int count = historyBatch.size();
+        if (count == 0)
+        {
+            return;
+        }
+
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + RfqHistoryRecordBatchEncoder.BLOCK_LENGTH +
+            RfqHistoryRecordBatchEncoder.RecordsEncoder.sbeHeaderSize() +
+            count * RfqHistoryRecordBatchEncoder.RecordsEncoder.sbeBlockLength());
+        rfqHistoryRecordBatchEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        final RfqHistoryRecordBatchEncoder.RecordsEncoder records = rfqHistoryRecordBatchEncoder.recordsCount(count);
+        for (int i = 0; i < count; i++)
+        {
+            records.next().rfqId(historyBatch.getInt(i));
+        }
+        bufferClaim.commit();
+
+        historyBatch.clear();
+        onRecordsWritten(count);
+    }
+
+    /**
+     * Writes the interest of a session, split over as many records as its instruments need. A session interested
+     * in every instrument is written as a single record with no instruments.
+     *
+     * @param interest the interest to write
+     */
+    private void writeSessionInterest(final SessionInterest interest)
+    {
+        final LongHashSet.LongIterator iterator = interest.getCusipKeys().iterator();
+        do
+        {
+            while (iterator.hasNext() && interestBatch.size() < instrumentsPerInterestRecord)
+            {
+                interestBatch.addLong(iterator.nextValue());
+            }
+            flushSessionInterest(interest);
+        }
+        while (iterator.hasNext());
+    }
+
+    private void flushSessionInterest(final SessionInterest interest)
+    {
+        final int count = interestBatch.size();
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + SessionInterestRecordEncoder.BLOCK_LENGTH +
+            SessionInterestRecordEncoder.InstrumentsEncoder.sbeHeaderSize() +
+            count * SessionInterestRecordEncoder.InstrumentsEncoder.sbeBlockLength());
+        sessionInterestRecordEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        sessionInterestRecordEncoder.sessionId(interest.getSessionId());
+        sessionInterestRecordEncoder.userId(interest.getUserId());
+        sessionInterestRecordEncoder.partiesOnly(interest.isPartiesOnly() ? BooleanType.TRUE : BooleanType.FALSE);
+        final SessionInterestRecordEncoder.InstrumentsEncoder instrumentsEncoder =
+            sessionInterestRecordEncoder.instrumentsCount(count);
+        for (int i = 0; i < count; i++)
+        {
+            instrumentsEncoder.next().cusip(CusipKey.unpack(interestBatch.getLong(i)));
+        }
+        bufferClaim.commit();
+
+        interestBatch.clear();
+        onRecordsWritten(1);
+    }
+
+    private void batchBucket(final int userId, final long bucketFullAtNs)
+    {
+        bucketUserIdBatch.addInt(userId);
+        bucketFullAtNsBatch.addLong(bucketFullAtNs);
+        if (bucketUserIdBatch.size() == bucketsPerBatch)
+        {
+            flushBuckets();
+        }
+    }
+
+    private void flushBuckets()
+    {
+        final int count = bucketUserIdBatch.size();
+        if (count == 0)
+        {
+            return;
+        }
+
+        claim(MessageHeaderEncoder.ENCODED_LENGTH + RateLimitRecordBatchEncoder.BLOCK_LENGTH +
+            RateLimitRecordBatchEncoder.RecordsEncoder.sbeHeaderSize() +
+            count * RateLimitRecordBatchEncoder.RecordsEncoder.sbeBlockLength());
+        rateLimitRecordBatchEncoder.wrapAndApplyHeader(bufferClaim.buffer(), bufferClaim.offset(), headerEncoder);
+        final RateLimitRecordBatchEncoder.RecordsEncoder records = rateLimitRecordBatchEncoder.recordsCount(count);
+        for (int i = 0; i < count; i++)
+        {
+            records.next()
+                .userId(bucketUserIdBatch.getInt(i))
+                .fullAtNs(bucketFullAtNsBatch.getLong(i));
+        }
+        bufferClaim.commit();
+
+        bucketUserIdBatch.clear();
+        bucketFullAtNsBatch.clear();
+        onRecordsWritten(count);
+    }
+
+    private void onRecordsWritten(final int count)
+    {
+        recordsWritten += count;
+        if (recordsWritten - lastProgressRecords >= PROGRESS_INTERVAL)
+        {
+            lastProgressRecords = recordsWritten;
+            LOGGER.info("Snapshot in progress: {} records, {} bytes written", recordsWritten, bytesWritten);
+        }
+    }
+
+    /**
+     * Claims space in the snapshot publication, retrying for as long as it is back pressured or awaiting an admin
+     * action. The claimed region is then available in the buffer claim.
+     *
+     * @param length the length to claim, which must not exceed the publication max payload
+     */
+    private void claim(final int length)
+    {
+        idleStrategy.reset();
+        while (true)
+        {
+            final long result = publication.tryClaim(length, bufferClaim);
+            if (result > 0L)
+            {
+                bytesWritten += length;
+                return;
+            }
+            else if (result == Publication.NOT_CONNECTED || result == Publication.CLOSED ||
+                result == Publication.MAX_POSITION_EXCEEDED)
+            {
+                throw new ClusterException("unable to write snapshot: " + Publication.errorString(result));
+            }
+            idleStrategy.idle();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import java.util.Arrays;
+
+/**
+ * Set of ints held in ascending order in a primitive array. Membership is found by binary search, and iteration in
+ * order from any value supports cursor based paging. Adding the largest value so far, as happens with increasing
+ * ids, only appends.
+ */
+public final class SortedIntSet
+{
+    private static final int INITIAL_CAPACITY = 8;
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a value
+     *
+     * @param value the value to add
+     * @return true if added, false if already present
+     */
+    public boolean add(final int value)
+    {
+        if (size > 0 && values[size - 1] < value)
+        {
+            ensureCapacity();
+            values[size++] = value;
+            return true;
+        }
+
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0)
+        {
+            return false;
+        }
+
+        final int insertAt = -(index + 1);
+        ensureCapacity();
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value
+     *
+     * @param value the value to remove
+     * @return true if removed, false if not present
+     */
+    public boolean remove(final int value)
+    {
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0)
+        {
+            return false;
+        }
+
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks if a value is present
+     *
+     * @param value the value to look for
+     * @return true if present
+     */
+    public boolean contains(final int value)
+    {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Gets the index of the first value greater than the given value, for iterating from a cursor
+     *
+     * @param value the value to start after
+     * @return the index of the first greater value, or {@link #size()} if there is none
+     */
+    public int indexAfter(final int value)
+    {
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    /**
+     * Gets the value at an index
+     *
+     * @param index the index, from zero to {@link #size()} exclusive
+     * @return the value
+     */
+    public int get(final int index)
+    {
+        if (index >= size)
+        {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Gets the number of values held
+     *
+     * @return the number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Checks if the set is empty
+     *
+     * @return true if no values are held
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    private void ensureCapacity()
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, size * 2);
+        }
+    }
+}
@@ -17,24 +17,34 @@
 package com.aeroncookbook.rfq.infra;
 
 import io.aeron.cluster.service.Cluster;
-import org.agrona.collections.Long2ObjectHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.function.IntConsumer;
 
 /**
- * Manages timers within the cluster
+ * Manages RFQ expiry within the cluster. Expiry deadlines are held in a {@link DeadlineQueue} keyed by RFQ id, and
+ * a single cluster timer is kept armed for the earliest deadline. When it fires, every expiry which has fallen due
+ * is run in one batch and the timer is re-armed for the next deadline, so consensus only sees a timer message when
+ * the earliest deadline changes rather than one per RFQ.
+ * <p>
+ * The queue is rebuilt from the live RFQs when a snapshot is loaded, and the deadline of the armed timer is
+ * snapshot, which is all that is needed for every node to make the same timer calls.
  */
 public class TimerManager
 {
+    /**
+     * Correlation id of the single cluster timer used for expiry; rescheduling it replaces the existing deadline
+     */
+    public static final long EXPIRY_TIMER_CORRELATION_ID = 1;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(TimerManager.class);
     private final SessionMessageContextImpl context;
+    private final DeadlineQueue expiryQueue = new DeadlineQueue();
+    private IntConsumer expiryHandler;
     private Cluster cluster;
-
-    private final Long2ObjectHashMap<Runnable> correlationIdToRunnable = new Long2ObjectHashMap<>();
-
-    private long correlationId = 0;
+    private long armedDeadline = DeadlineQueue.NO_DEADLINE;
 
     /**
      * Constructor, accepting the context to update the cluster timestamp
@@ -46,53 +56,85 @@ public class TimerManager
     }
 
     /**
-     * Schedules a timer
+     * Sets the handler run with the id of each RFQ as its expiry falls due
+     * @param expiryHandler the expiry handler
+     */
+    public void setExpiryHandler(final IntConsumer expiryHandler)
+    {
+        this.expiryHandler = expiryHandler;
+    }
+
+    /**
+     * Schedules the expiry of an RFQ, replacing any expiry already scheduled for it
      *
-     * @param deadline the deadline of the timer
-     * @param timerRunnable the timerRunnable to perform when the timer fires
-     * @return the correlation id of the timer
+     * @param rfqId    the id of the RFQ
+     * @param deadline the cluster time at which the RFQ expires
      */
-    public long scheduleTimer(final long deadline, final Runnable timerRunnable)
+    public void scheduleExpiry(final int rfqId, final long deadline)
     {
-        correlationId++;
-        Objects.requireNonNull(cluster, "Cluster must be set before scheduling timers");
-        correlationIdToRunnable.put(correlationId, timerRunnable);
+        expiryQueue.add(rfqId, deadline);
+        armTimer();
+    }
 
-        cluster.idleStrategy().reset();
-        while (!cluster.scheduleTimer(correlationId, deadline))
+    /**
+     * Restores the expiry of a live RFQ from a snapshot. The cluster already holds the armed timer, so nothing is
+     * scheduled with it.
+     *
+     * @param rfqId    the id of the RFQ
+     * @param deadline the cluster time at which the RFQ expires
+     */
+    public void restoreExpiry(final int rfqId, final long deadline)
+    {
+        expiryQueue.add(rfqId, deadline);
+    }
+
+    /**
+     * Cancels the expiry of an RFQ which has not yet expired
+     * @param rfqId the id of the RFQ
+     */
+    public void cancelExpiry(final int rfqId)
+    {
+        if (expiryQueue.remove(rfqId))
         {
-            cluster.idleStrategy().idle();
+            armTimer();
         }
-        return correlationId;
     }
 
     /**
-     * Restores a timer that the cluster has snapshotted the timer state, but not the timer manager internal state
-     * @param timerCorrelationId the correlation id of the timer
-     * @param task the task to perform when the timer fires
+     * Gets the deadline of the armed cluster timer, so that it can be written to a snapshot
+     * @return the armed deadline, or {@link DeadlineQueue#NO_DEADLINE} if no timer is armed
+     */
+    public long getArmedDeadline()
+    {
+        return armedDeadline;
+    }
+
+    /**
+     * Restores the deadline of the armed cluster timer from a snapshot
+     * @param armedDeadline the armed deadline
      */
-    public void restoreTimer(final long timerCorrelationId, final Runnable task)
+    public void restoreArmedDeadline(final long armedDeadline)
     {
-        correlationIdToRunnable.put(timerCorrelationId, task);
+        this.armedDeadline = armedDeadline;
     }
 
     /**
-     * Called when a timer cluster event occurs
+     * Called when a timer cluster event occurs, running every expiry which has fallen due
      * @param correlationId the cluster timer id
      * @param timestamp     the timestamp the timer was fired at
      */
     public void onTimerEvent(final long correlationId, final long timestamp)
     {
         context.setClusterTime(timestamp);
-        if (correlationIdToRunnable.containsKey(correlationId))
-        {
-            correlationIdToRunnable.get(correlationId).run();
-            correlationIdToRunnable.remove(correlationId);
-        }
-        else
+        if (correlationId != EXPIRY_TIMER_CORRELATION_ID)
         {
             LOGGER.warn("Timer fired for unknown correlation id {}", correlationId);
+            return;
         }
+
+        armedDeadline = DeadlineQueue.NO_DEADLINE;
+        expiryQueue.poll(timestamp, expiryHandler);
+        armTimer();
     }
 
     /***
@@ -104,5 +146,30 @@ public class TimerManager
         this.cluster = cluster;
     }
 
+    private void armTimer()
+    {
+        final long deadline = expiryQueue.peekDeadline();
+        if (deadline == armedDeadline)
+        {
+            return;
+        }
 
+        Objects.requireNonNull(cluster, "Cluster must be set before scheduling timers");
+        cluster.idleStrategy().reset();
+        if (deadline == DeadlineQueue.NO_DEADLINE)
+        {
+            while (!cluster.cancelTimer(EXPIRY_TIMER_CORRELATION_ID))
+            {
+                cluster.idleStrategy().idle();
+            }
+        }
+        else
+        {
+            while (!cluster.scheduleTimer(EXPIRY_TIMER_CORRELATION_ID, deadline))
+            {
+                cluster.idleStrategy().idle();
+            }
+        }
+        armedDeadline = deadline;
+    }
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.view;
+
+import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.ViewConnectRequestDecoder;
+import com.aeroncookbook.rfq.infra.AppClusteredService;
+import com.aeroncookbook.rfq.infra.LogCluster;
+import com.aeroncookbook.rfq.infra.RfqShard;
+import io.aeron.Aeron;
+import io.aeron.FragmentAssembler;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.codecs.CloseReason;
+import io.aeron.cluster.codecs.MessageHeaderDecoder;
+import io.aeron.cluster.codecs.SessionCloseEventDecoder;
+import io.aeron.cluster.codecs.SessionMessageHeaderDecoder;
+import io.aeron.cluster.codecs.SessionOpenEventDecoder;
+import io.aeron.cluster.codecs.TimerEventDecoder;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.cluster.service.Cluster;
+import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentTerminationException;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.SystemNanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read only replica of an RFQ cluster. The cluster log is replayed from a node's archive, following the recording
+ * as it grows, and applied to the same RFQ service the cluster runs, so instruments and RFQs are rebuilt exactly as
+ * they are on the cluster. Queries are served from that state to clients connected over the view node's own
+ * channel, without adding to the log or to the work of the leader.
+ * <p>
+ * Log entries and queries are handled on the one agent thread, so a query sees the state as of the last log entry
+ * applied. A view node follows what the archive has recorded, which on a follower may run ahead of the commit
+ * position; entries later truncated by an election are not undone, so a view node should be restarted after one.
+ */
+public class ViewNode implements Agent
+{
+    /**
+     * System property for the stream id queries are received on
+     */
+    public static final String STREAM_ID_PROP_NAME = "rfq.view.stream.id";
+
+    /**
+     * Default stream id queries are received on
+     */
+    public static final int STREAM_ID_DEFAULT = 3001;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ViewNode.class);
+    private static final int LOG_FRAGMENT_LIMIT = 100;
+    private static final int QUERY_FRAGMENT_LIMIT = 10;
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final SessionMessageHeaderDecoder sessionMessageHeaderDecoder = new SessionMessageHeaderDecoder();
+    private final TimerEventDecoder timerEventDecoder = new TimerEventDecoder();
+    private final SessionOpenEventDecoder sessionOpenEventDecoder = new SessionOpenEventDecoder();
+    private final SessionCloseEventDecoder sessionCloseEventDecoder = new SessionCloseEventDecoder();
+    private final com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder queryHeaderDecoder =
+        new com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder();
+    private final ViewConnectRequestDecoder viewConnectRequestDecoder = new ViewConnectRequestDecoder();
+    private final FragmentAssembler logAssembler = new FragmentAssembler(this::onLogMessage);
+    private final FragmentAssembler queryAssembler = new FragmentAssembler(this::onQuery);
+    private final Int2ObjectHashMap<ViewSession> sessionByImageSessionId = new Int2ObjectHashMap<>();
+    private final List<ViewSession> sessions = new ArrayList<>();
+    private final NanoClock nanoClock = SystemNanoClock.INSTANCE;
+    private final Aeron aeron;
+    private final AeronArchive archive;
+    private final long logRecordingId;
+    private final String replayChannel;
+    private final int replayStreamId;
+    private final String queryChannel;
+    private final int queryStreamId;
+    private final AppClusteredService service;
+    private final LogCluster viewCluster;
+    private Subscription logSubscription;
+    private Subscription querySubscription;
+    private Image logImage;
+    private long replaySessionId;
+    private long nextSessionId = -1;
+
+    /**
+     * Constructor
+     *
+     * @param aeron          the Aeron client of the view node
+     * @param archive        the archive of the cluster node the log is replayed from
+     * @param logRecordingId the recording id of the cluster log in that archive
+     * @param replayChannel  the channel the log is replayed to
+     * @param replayStreamId the stream id the log is replayed on
+     * @param queryChannel   the channel queries are received on
+     * @param queryStreamId  the stream id queries are received on
+     * @param shard          the shard of the cluster followed, which must match that cluster's
+     * @param viewDir        the directory the service writes its journal and latency log to
+     */
+    public ViewNode(
+        final Aeron aeron,
+        final AeronArchive archive,
+        final long logRecordingId,
+        final String replayChannel,
+        final int replayStreamId,
+        final String queryChannel,
+        final int queryStreamId,
+        final RfqShard shard,
+        final File viewDir)
+    {
+        this.aeron = aeron;
+        this.archive = archive;
+        this.logRecordingId = logRecordingId;
+        this.replayChannel = replayChannel;
+        this.replayStreamId = replayStreamId;
+        this.queryChannel = queryChannel;
+        this.queryStreamId = queryStreamId;
+        this.service = new AppClusteredService(shard);
+        this.viewCluster = new LogCluster(aeron, viewDir, Cluster.Role.FOLLOWER, false);
+    }
+
+    @Override
+    public void onStart()
+    {
+        service.onStart(viewCluster.cluster(), null);
+        logSubscription = aeron.addSubscription(replayChannel, replayStreamId);
+        replaySessionId = archive.startReplay(logRecordingId, archive.getStartPosition(logRecordingId),
+            AeronArchive.NULL_LENGTH, replayChannel, replayStreamId);
+        querySubscription = aeron.addSubscription(queryChannel, queryStreamId);
+        LOGGER.info("Following log recording {}, serving queries on {} stream {}",
+            logRecordingId, queryChannel, queryStreamId);
+    }
+
+    @Override
+    public int doWork()
+    {
+        int workCount = pollLog();
+        workCount += querySubscription.poll(queryAssembler, QUERY_FRAGMENT_LIMIT);
+        workCount += service.doBackgroundWork(nanoClock.nanoTime());
+        workCount += closeEndedSessions();
+        return workCount;
+    }
+
+    @Override
+    public void onClose()
+    {
+        sessions.forEach(ViewSession::closePublication);
+        CloseHelper.quietCloseAll(querySubscription, logSubscription);
+        service.onTerminate(viewCluster.cluster());
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "rfq-view-node";
+    }
+
+    private int pollLog()
+    {
+        if (logImage == null)
+        {
+            logImage = logSubscription.imageBySessionId((int)replaySessionId);
+            return logImage == null ? 0 : 1;
+        }
+
+        if (logImage.isClosed())
+        {
+            throw new AgentTerminationException("Replay of log recording " + logRecordingId + " ended");
+        }
+        return logImage.poll(logAssembler, LOG_FRAGMENT_LIMIT);
+    }
+
+    private void onLogMessage(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        messageHeaderDecoder.wrap(buffer, offset);
+        final int bodyOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH;
+        final int blockLength = messageHeaderDecoder.blockLength();
+        final int version = messageHeaderDecoder.version();
+        switch (messageHeaderDecoder.templateId())
+        {
+            case SessionMessageHeaderDecoder.TEMPLATE_ID ->
+            {
+                sessionMessageHeaderDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = sessionMessageHeaderDecoder.timestamp();
+                final ClientSession session = viewCluster.openSession(sessionMessageHeaderDecoder.clusterSessionId());
+                viewCluster.time(timestamp);
+                service.onSessionMessage(session, timestamp, buffer, offset + AeronCluster.SESSION_HEADER_LENGTH,
+                    length - AeronCluster.SESSION_HEADER_LENGTH, header);
+            }
+            case TimerEventDecoder.TEMPLATE_ID ->
+            {
+                timerEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = timerEventDecoder.timestamp();
+                viewCluster.time(timestamp);
+                service.onTimerEvent(timerEventDecoder.correlationId(), timestamp);
+            }
+            case SessionOpenEventDecoder.TEMPLATE_ID ->
+            {
+                sessionOpenEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = sessionOpenEventDecoder.timestamp();
+                viewCluster.time(timestamp);
+                service.onSessionOpen(viewCluster.openSession(sessionOpenEventDecoder.clusterSessionId()), timestamp);
+            }
+            case SessionCloseEventDecoder.TEMPLATE_ID ->
+            {
+                sessionCloseEventDecoder.wrap(buffer, bodyOffset, blockLength, version);
+                final long timestamp = sessionCloseEventDecoder.timestamp();
+                final ClientSession session = viewCluster.closeSession(sessionCloseEventDecoder.clusterSessionId());
+                if (session != null)
+                {
+                    viewCluster.time(timestamp);
+                    service.onSessionClose(session, timestamp, sessionCloseEventDecoder.closeReason());
+                }
+            }
+            default ->
+            {
+            }
+        }
+    }
+
+    private void onQuery(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (length < com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder.ENCODED_LENGTH)
+        {
+            LOGGER.warn("Query too short, ignored.");
+            return;
+        }
+
+        queryHeaderDecoder.wrap(buffer, offset);
+        final int templateId = queryHeaderDecoder.templateId();
+        if (templateId == ViewConnectRequestDecoder.TEMPLATE_ID)
+        {
+            connect(buffer, offset, header.sessionId());
+        }
+        else if (templateId == ListInstrumentsCommandDecoder.TEMPLATE_ID ||
+            templateId == QueryRfqsCommandDecoder.TEMPLATE_ID)
+        {
+            final ViewSession session = sessionByImageSessionId.get(header.sessionId());
+            if (session == null)
+            {
+                LOGGER.warn("Query from a client which has not connected, ignored.");
+                return;
+            }
+            service.onSessionMessage(session, viewCluster.time(), buffer, offset, length, header);
+        }
+        else
+        {
+            LOGGER.warn("Message template {} is not a query, ignored.", templateId);
+        }
+    }
+
+    private void connect(final DirectBuffer buffer, final int offset, final int imageSessionId)
+    {
+        viewConnectRequestDecoder.wrapAndApplyHeader(buffer, offset, queryHeaderDecoder);
+        final int responseStreamId = viewConnectRequestDecoder.responseStreamId();
+        final String responseChannel = viewConnectRequestDecoder.responseChannel();
+        if (sessionByImageSessionId.containsKey(imageSessionId))
+        {
+            LOGGER.warn("Client on {} stream {} is already connected, ignored.", responseChannel, responseStreamId);
+            return;
+        }
+
+        final ViewSession session = new ViewSession(
+            nextSessionId--,
+            querySubscription.imageBySessionId(imageSessionId),
+            aeron.addExclusivePublication(responseChannel, responseStreamId),
+            responseChannel,
+            responseStreamId,
+            viewCluster);
+        sessionByImageSessionId.put(imageSessionId, session);
+        sessions.add(session);
+        service.onLocalSessionOpen(session, viewCluster.time());
+        LOGGER.info("View session {} replying on {} stream {}", session.id(), responseChannel, responseStreamId);
+    }
+
+    private int closeEndedSessions()
+    {
+        int closed = 0;
+        for (int i = sessions.size() - 1; i >= 0; i--)
+        {
+            final ViewSession session = sessions.get(i);
+            if (session.isEnded())
+            {
+                sessions.remove(i);
+                sessionByImageSessionId.remove(session.imageSessionId());
+                service.onSessionClose(session, viewCluster.time(), CloseReason.CLIENT_ACTION);
+                session.closePublication();
+                closed++;
+            }
+        }
+        return closed;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.view;
+
+import com.aeroncookbook.rfq.infra.LogCluster;
+import io.aeron.DirectBufferVector;
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.codecs.MessageHeaderEncoder;
+import io.aeron.cluster.codecs.SessionMessageHeaderEncoder;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Query session of a client connected to a view node. Replies are framed with the same session header as cluster
+ * egress, so clients decode them as they would replies from the cluster. The session ends when the client's
+ * publication to the view node goes away, or when the service evicts it for falling behind.
+ */
+final class ViewSession implements ClientSession
+{
+    private static final byte[] NO_PRINCIPAL = new byte[0];
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final SessionMessageHeaderEncoder sessionMessageHeaderEncoder = new SessionMessageHeaderEncoder();
+    private final UnsafeBuffer headerBuffer = new UnsafeBuffer(new byte[AeronCluster.SESSION_HEADER_LENGTH]);
+    private final DirectBufferVector headerVector =
+        new DirectBufferVector(headerBuffer, 0, AeronCluster.SESSION_HEADER_LENGTH);
+    private final long id;
+    private final Image image;
+    private final ExclusivePublication publication;
+    private final String responseChannel;
+    private final int responseStreamId;
+    private final LogCluster viewCluster;
+    private boolean closing;
+
+    /**
+     * Constructor
+     *
+     * @param id               the session id, distinct from those of sessions opened by the log
+     * @param image            the image of the client's publication to the view node
+     * @param publication      the publication of replies to the client
+     * @param responseChannel  the channel of the publication
+     * @param responseStreamId the stream id of the publication
+     * @param viewCluster      the cluster, for the time at which replies are sent
+     */
+    ViewSession(
+        final long id,
+        final Image image,
+        final ExclusivePublication publication,
+        final String responseChannel,
+        final int responseStreamId,
+        final LogCluster viewCluster)
+    {
+        this.id = id;
+        this.image = image;
+        this.publication = publication;
+        this.responseChannel = responseChannel;
+        this.responseStreamId = responseStreamId;
+        this.viewCluster = viewCluster;
+        sessionMessageHeaderEncoder.wrapAndApplyHeader(headerBuffer, 0, messageHeaderEncoder)
+            .leadershipTermId(0)
+            .clusterSessionId(id);
+    }
+
+    /**
+     * Checks if the session has ended, either as the client has gone or as it has been closed
+     *
+     * @return true if ended
+     */
+    boolean isEnded()
+    {
+        return closing || image.isClosed();
+    }
+
+    /**
+     * Gets the session id of the image of the client's publication, which identifies the sender of each query
+     *
+     * @return the image session id
+     */
+    int imageSessionId()
+    {
+        return image.sessionId();
+    }
+
+    /**
+     * Closes the publication of replies
+     */
+    void closePublication()
+    {
+        CloseHelper.quietClose(publication);
+    }
+
+    @Override
+    public long id()
+    {
+        return id;
+    }
+
+    @Override
+    public int responseStreamId()
+    {
+        return responseStreamId;
+    }
+
+    @Override
+    public String responseChannel()
+    {
+        return responseChannel;
+    }
+
+    @Override
+    public byte[] encodedPrincipal()
+    {
+        return NO_PRINCIPAL;
+    }
+
+    @Override
+    public void close()
+    {
+        closing = true;
+    }
+
+    @Override
+    public boolean isClosing()
+    {
+        return closing;
+    }
+
+    @Override
+    public long offer(final DirectBuffer buffer, final int offset, final int length)
+    {
+        sessionMessageHeaderEncoder.timestamp(viewCluster.time());
+        return publication.offer(headerBuffer, 0, AeronCluster.SESSION_HEADER_LENGTH, buffer, offset, length);
+    }
+
+    /**
+     * Offers a message made up of several buffers. As with cluster sessions, the first vector is reserved for the
+     * session header and is replaced by it.
+     *
+     * @param vectors the buffers making up the message, the first being reserved
+     * @return the publication position, or a negative result as for {@link ExclusivePublication#offer}
+     */
+    @Override
+    public long offer(final DirectBufferVector[] vectors)
+    {
+        sessionMessageHeaderEncoder.timestamp(viewCluster.time());
+        vectors[0] = headerVector;
+        return publication.offer(vectors);
+    }
+
+    @Override
+    public long tryClaim(final int length, final BufferClaim bufferClaim)
+    {
+        final long result = publication.tryClaim(length + AeronCluster.SESSION_HEADER_LENGTH, bufferClaim);
+        if (result > 0)
+        {
+            sessionMessageHeaderEncoder.timestamp(viewCluster.time());
+            bufferClaim.putBytes(headerBuffer, 0, AeronCluster.SESSION_HEADER_LENGTH);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package com.aeroncookbook.rfq.domain.instrument;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CusipKeyTests
+{
+    @Test
+    void packsBufferAndStringToSameKey()
+    {
+        final var buffer = new UnsafeBuffer(new byte[32]);
+        buffer.putBytes(5, "037833100".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(CusipKey.pack("037833100"), CusipKey.pack(buffer, 5));
+    }
+
+    @Test
+    void roundTripsThroughUnpack()
+    {
+        assertEquals("38259P508", CusipKey.unpack(CusipKey.pack("38259P508")));
+        assertEquals("ABC", CusipKey.unpack(CusipKey.pack("ABC")));
+    }
+
+    @Test
+    void nullPaddingMatchesShortString()
+    {
+        final var buffer = new UnsafeBuffer(new byte[CusipKey.CUSIP_LENGTH]);
+        buffer.putBytes(0, "ABC".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(CusipKey.pack("ABC"), CusipKey.pack(buffer, 0));
+    }
+
+    @Test
+    void distinctCusipsHaveDistinctKeys()
+    {
+        assertNotEquals(CusipKey.pack("037833100"), CusipKey.pack("037833101"));
+        assertNotEquals(CusipKey.pack("A37833100"), CusipKey.pack("037833100"));
+    }
+
+    @Test
+    void keysOrderAsCusips()
+    {
+        assertTrue(CusipKey.pack("037833100") < CusipKey.pack("037833101"));
+        assertTrue(CusipKey.pack("38259P508") < CusipKey.pack("38259Q508"));
+        assertTrue(CusipKey.pack("ABC") < CusipKey.pack("ABCD"));
+        assertTrue(0 < CusipKey.pack("0"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RfqRepositoryTests
+{
+    private static final String CUSIP = "037833100";
+
+    @Test
+    void addsAndFindsRfqsById()
+    {
+        final var repository = new RfqRepository();
+        for (int rfqId = 1; rfqId <= 10_000; rfqId++)
+        {
+            repository.add(rfqId, rfqId * 10L, 1000 + rfqId, 100, Side.SELL, CUSIP, 7, new Rfq());
+        }
+
+        final var rfq = repository.get(5000, new Rfq());
+        assertEquals(5000, rfq.getRfqId());
+        assertEquals(50_000L, rfq.getCorrelation());
+        assertEquals(6000, rfq.getExpireTimeMs());
+        assertEquals(Side.SELL, rfq.getRequesterSide());
+        assertEquals(CUSIP, rfq.getCusip());
+        assertTrue(rfq.isInState(RfqStates.CREATED));
+        assertFalse(rfq.hasResponder());
+        assertEquals(10_000, repository.size());
+        assertNull(repository.get(10_001, new Rfq()));
+    }
+
+    @Test
+    void reusesRemovedSlots()
+    {
+        final var repository = new RfqRepository();
+        final var first = repository.add(1, 1, 1000, 100, Side.BUY, CUSIP, 7, new Rfq());
+        repository.add(2, 2, 1000, 100, Side.BUY, CUSIP, 7, new Rfq());
+
+        assertTrue(repository.remove(1));
+        assertFalse(repository.remove(1));
+        assertNull(repository.get(1, new Rfq()));
+
+        repository.add(3, 3, 1000, 100, Side.BUY, CUSIP, 7, new Rfq());
+        assertEquals(3, first.getRfqId());
+        assertEquals(2, repository.size());
+    }
+
+    @Test
+    void rejectsDuplicateIds()
+    {
+        final var repository = new RfqRepository();
+        repository.add(1, 1, 1000, 100, Side.BUY, CUSIP, 7, new Rfq());
+        assertThrows(IllegalArgumentException.class,
+            () -> repository.add(1, 1, 1000, 100, Side.BUY, CUSIP, 7, new Rfq()));
+    }
+
+    @Test
+    void restoresFromCopiedBlocks()
+    {
+        final var repository = new RfqRepository();
+        for (int rfqId = 1; rfqId <= 5000; rfqId++)
+        {
+            final var rfq = repository.add(rfqId, rfqId, 1000, 100, Side.BUY, CUSIP, 7, new Rfq());
+            rfq.quote(8, rfqId * 100L);
+        }
+        repository.remove(42);
+
+        final var copy = new UnsafeBuffer(new byte[5000 * Rfq.RECORD_LENGTH]);
+        final int[] copied = new int[1];
+        repository.forEachBlock(300, (buffer, offset, recordCount) ->
+        {
+            final int length = recordCount * Rfq.RECORD_LENGTH;
+            copy.putBytes(copied[0] * Rfq.RECORD_LENGTH, buffer, offset, length);
+            copied[0] += recordCount;
+        });
+        assertEquals(5000, copied[0]);
+
+        final var restored = new RfqRepository();
+        for (int i = 0; i < copied[0]; i++)
+        {
+            restored.restore(copy, i * Rfq.RECORD_LENGTH, new Rfq());
+        }
+
+        assertEquals(4999, restored.size());
+        assertNull(restored.get(42, new Rfq()));
+        final var rfq = restored.get(4321, new Rfq());
+        assertTrue(rfq.isInState(RfqStates.QUOTED));
+        assertEquals(8, rfq.getResponderUserId());
+        assertEquals(432_100L, rfq.getPrice());
+        assertEquals(CUSIP, rfq.getCusip());
+    }
+}
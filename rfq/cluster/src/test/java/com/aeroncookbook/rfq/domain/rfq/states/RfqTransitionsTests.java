@@ -0,0 +1,53 @@
+package com.aeroncookbook.rfq.domain.rfq.states;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RfqTransitionsTests
+{
+    @Test
+    void followsNegotiatedFlow()
+    {
+        short stateId = RfqStates.CREATED.getStateId();
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.QUOTE);
+        assertEquals(RfqStates.QUOTED.getStateId(), stateId);
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.COUNTER);
+        assertEquals(RfqStates.COUNTERED.getStateId(), stateId);
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.COUNTER);
+        assertEquals(RfqStates.COUNTERED.getStateId(), stateId);
+        stateId = RfqTransitions.nextState(stateId, RfqTransitions.ACCEPT);
+        assertEquals(RfqStates.ACCEPTED.getStateId(), stateId);
+    }
+
+    @Test
+    void rejectsInvalidTransitions()
+    {
+        final short created = RfqStates.CREATED.getStateId();
+        assertFalse(RfqTransitions.canApply(created, RfqTransitions.COUNTER));
+        assertFalse(RfqTransitions.canApply(created, RfqTransitions.ACCEPT));
+        assertFalse(RfqTransitions.canApply(created, RfqTransitions.REJECT));
+        assertEquals(RfqTransitions.INVALID_TRANSITION, RfqTransitions.nextState(created, RfqTransitions.ACCEPT));
+        assertFalse(RfqTransitions.canApply(RfqStates.QUOTED.getStateId(), RfqTransitions.QUOTE));
+        assertFalse(RfqTransitions.canApply(RfqStates.ACCEPTED.getStateId(), RfqTransitions.EXPIRE));
+    }
+
+    @Test
+    void terminalStatesAllowNoActions()
+    {
+        for (final RfqStates state : RfqStates.values())
+        {
+            assertEquals(state.isTerminal(), RfqTransitions.isTerminal(state.getStateId()));
+            if (state.isTerminal())
+            {
+                for (int action = RfqTransitions.QUOTE; action <= RfqTransitions.EXPIRE; action++)
+                {
+                    assertFalse(RfqTransitions.canApply(state.getStateId(), action));
+                }
+            }
+        }
+        assertTrue(RfqTransitions.canApply(RfqStates.COUNTERED.getStateId(), RfqTransitions.EXPIRE));
+    }
+}
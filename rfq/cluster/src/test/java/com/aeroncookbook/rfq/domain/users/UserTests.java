@@ -0,0 +1,90 @@
+package com.aeroncookbook.rfq.domain.users;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserTests
+{
+    @Test
+    void newUserIsEntitledToNothing()
+    {
+        final var user = new User(600, true, User.NO_OPEN_RFQ_LIMIT);
+        assertFalse(user.isEntitled(0));
+        assertFalse(user.isEntitled(1000));
+        assertEquals(0, user.entitlementWordCount());
+    }
+
+    @Test
+    void grantsAndRevokesAcrossWords()
+    {
+        final var user = new User(600, true, User.NO_OPEN_RFQ_LIMIT);
+        user.grant(3);
+        user.grant(64);
+        user.grant(200);
+
+        assertTrue(user.isEntitled(3));
+        assertTrue(user.isEntitled(64));
+        assertTrue(user.isEntitled(200));
+        assertFalse(user.isEntitled(4));
+        assertFalse(user.isEntitled(67));
+        assertFalse(user.isEntitled(264));
+        assertEquals(4, user.entitlementWordCount());
+
+        user.revoke(64);
+        user.revoke(5000);
+        assertFalse(user.isEntitled(64));
+        assertTrue(user.isEntitled(3));
+        assertTrue(user.isEntitled(200));
+    }
+
+    @Test
+    void entitledToAllUntilRevokeAll()
+    {
+        final var user = new User(600, true, User.NO_OPEN_RFQ_LIMIT);
+        user.grant(7);
+        user.setEntitledToAll(true);
+        assertTrue(user.isEntitled(7));
+        assertTrue(user.isEntitled(12345));
+
+        user.revoke(12345);
+        assertTrue(user.isEntitled(12345));
+
+        user.revokeAll();
+        assertFalse(user.isEntitledToAll());
+        assertFalse(user.isEntitled(7));
+        assertFalse(user.isEntitled(12345));
+    }
+
+    @Test
+    void restoresEntitlementWords()
+    {
+        final var user = new User(600, true, User.NO_OPEN_RFQ_LIMIT);
+        user.grant(1);
+        user.grant(130);
+
+        final var restored = new User(600, true, User.NO_OPEN_RFQ_LIMIT);
+        for (int i = 0; i < user.entitlementWordCount(); i++)
+        {
+            restored.restoreEntitlementWord(i, user.entitlementWord(i));
+        }
+
+        assertTrue(restored.isEntitled(1));
+        assertTrue(restored.isEntitled(130));
+        assertFalse(restored.isEntitled(2));
+    }
+
+    @Test
+    void limitsOpenRfqs()
+    {
+        final var limited = new User(600, true, 2);
+        assertTrue(limited.canOpenRfq(0));
+        assertTrue(limited.canOpenRfq(1));
+        assertFalse(limited.canOpenRfq(2));
+
+        final var unlimited = new User(601, true, User.NO_OPEN_RFQ_LIMIT);
+        assertTrue(unlimited.canOpenRfq(1_000_000));
+    }
+}
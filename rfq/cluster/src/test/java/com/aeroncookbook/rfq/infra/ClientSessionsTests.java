@@ -0,0 +1,117 @@
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
+import io.aeron.cluster.service.ClientSession;
+import org.agrona.collections.LongArrayList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClientSessionsTests
+{
+    private static final long APPLE = CusipKey.pack("037833100");
+    private static final long GOOGLE = CusipKey.pack("38259P508");
+
+    @Test
+    void unsubscribedSessionsAreInterestedInEverything()
+    {
+        final var clientSessions = new ClientSessions();
+        clientSessions.addSession(session(1), 0);
+        clientSessions.addSession(session(2), 0);
+
+        assertEquals(longs(1, 2), interested(clientSessions, APPLE, 10, 20));
+    }
+
+    @Test
+    void onlyInterestedSessionsAreCollected()
+    {
+        final var clientSessions = new ClientSessions();
+        clientSessions.addSession(session(1), 0);
+        clientSessions.addSession(session(2), 0);
+        clientSessions.subscribe(1, 10, false, longs(APPLE));
+        clientSessions.subscribe(2, 20, false, longs(GOOGLE));
+
+        assertEquals(longs(1), interested(clientSessions, APPLE, 30, 40));
+        assertEquals(longs(2), interested(clientSessions, GOOGLE, 30, 40));
+    }
+
+    @Test
+    void partiesOnlySessionsOnlyReceiveTheirOwnRfqs()
+    {
+        final var clientSessions = new ClientSessions();
+        clientSessions.addSession(session(1), 0);
+        clientSessions.subscribe(1, 10, true, longs());
+
+        assertTrue(interested(clientSessions, APPLE, 30, 40).isEmpty());
+        assertEquals(longs(1), interested(clientSessions, APPLE, 10, 40));
+        assertEquals(longs(1), interested(clientSessions, APPLE, 30, 10));
+    }
+
+    @Test
+    void resubscribingReplacesInterest()
+    {
+        final var clientSessions = new ClientSessions();
+        clientSessions.addSession(session(1), 0);
+        clientSessions.subscribe(1, 10, false, longs(APPLE));
+        clientSessions.subscribe(1, 10, false, longs(GOOGLE));
+
+        assertTrue(interested(clientSessions, APPLE, 30, 40).isEmpty());
+        assertEquals(longs(1), interested(clientSessions, GOOGLE, 30, 40));
+    }
+
+    @Test
+    void closedSessionsAreRemovedFromIndex()
+    {
+        final var clientSessions = new ClientSessions();
+        final var session = session(1);
+        clientSessions.addSession(session, 0);
+        clientSessions.subscribe(1, 10, false, longs(APPLE));
+        clientSessions.removeSession(session, 0);
+
+        assertTrue(interested(clientSessions, APPLE, 30, 40).isEmpty());
+    }
+
+    @Test
+    void restoredInterestIsKeptWhenSessionIsAdded()
+    {
+        final var clientSessions = new ClientSessions();
+        clientSessions.restoreInterest(1, 10, false, longs(APPLE));
+        clientSessions.restoreInterest(1, 10, false, longs(GOOGLE));
+        clientSessions.addSession(session(1), 0);
+
+        assertEquals(longs(1), interested(clientSessions, APPLE, 30, 40));
+        assertEquals(longs(1), interested(clientSessions, GOOGLE, 30, 40));
+        assertTrue(interested(clientSessions, CusipKey.pack("594918104"), 30, 40).isEmpty());
+    }
+
+    private static LongArrayList interested(
+        final ClientSessions clientSessions,
+        final long cusipKey,
+        final int requesterUserId,
+        final int responderUserId)
+    {
+        final var sessionIds = new LongArrayList();
+        clientSessions.collectInterestedSessions(cusipKey, requesterUserId, responderUserId, sessionIds);
+        return sessionIds;
+    }
+
+    private static LongArrayList longs(final long... values)
+    {
+        final var list = new LongArrayList();
+        for (final long value : values)
+        {
+            list.addLong(value);
+        }
+        return list;
+    }
+
+    private static ClientSession session(final long id)
+    {
+        final var session = mock(ClientSession.class);
+        when(session.id()).thenReturn(id);
+        return session;
+    }
+}
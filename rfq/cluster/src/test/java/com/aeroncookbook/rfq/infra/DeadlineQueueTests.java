@@ -0,0 +1,77 @@
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class DeadlineQueueTests
+{
+    @Test
+    void pollsDueDeadlinesInDeadlineThenIdOrder()
+    {
+        final var queue = new DeadlineQueue();
+        queue.add(5, 300);
+        queue.add(3, 100);
+        queue.add(9, 200);
+        queue.add(1, 200);
+        queue.add(7, 400);
+
+        final var polled = new IntArrayList();
+        assertEquals(4, queue.poll(300, polled::addInt));
+
+        assertEquals(3, polled.getInt(0));
+        assertEquals(1, polled.getInt(1));
+        assertEquals(9, polled.getInt(2));
+        assertEquals(5, polled.getInt(3));
+        assertEquals(400, queue.peekDeadline());
+    }
+
+    @Test
+    void removesFromMiddleOfHeap()
+    {
+        final var queue = new DeadlineQueue();
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(i, 1000 - i);
+        }
+
+        assertTrue(queue.remove(99));
+        assertTrue(queue.remove(50));
+        assertFalse(queue.remove(50));
+        assertEquals(98, queue.size());
+        assertEquals(902, queue.peekDeadline());
+
+        final var polled = new IntArrayList();
+        queue.poll(Long.MAX_VALUE - 1, polled::addInt);
+        assertEquals(98, polled.size());
+        for (int i = 1; i < polled.size(); i++)
+        {
+            assertTrue(polled.getInt(i) < polled.getInt(i - 1));
+        }
+    }
+
+    @Test
+    void addingExistingIdReplacesDeadline()
+    {
+        final var queue = new DeadlineQueue();
+        queue.add(1, 500);
+        queue.add(2, 600);
+        queue.add(1, 700);
+
+        assertEquals(2, queue.size());
+        assertEquals(600, queue.peekDeadline());
+    }
+
+    @Test
+    void emptyQueueHasNoDeadline()
+    {
+        final var queue = new DeadlineQueue();
+        assertTrue(queue.isEmpty());
+        assertEquals(DeadlineQueue.NO_DEADLINE, queue.peekDeadline());
+        assertEquals(0, queue.poll(Long.MAX_VALUE - 1, id -> fail("nothing is queued")));
+    }
+}
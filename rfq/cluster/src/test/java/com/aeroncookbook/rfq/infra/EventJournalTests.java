@@ -0,0 +1,75 @@
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqJournalAction;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.JournalDump;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.RfqRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventJournalTests
+{
+    @TempDir
+    File journalDir;
+
+    @Test
+    void writesEntriesWhichRenderAsText()
+    {
+        final var context = mock(SessionMessageContext.class);
+        when(context.getClusterTime()).thenReturn(1_000L);
+        final var journal = new EventJournal(context, new ServiceCounters());
+        final var rfq = new RfqRepository().add(7, 11, 5_000, 100, Side.BUY, "037833100", 1, new Rfq());
+
+        journal.rfqEvent(RfqJournalAction.CREATE, 1, rfq);
+        journal.rfqRefused(RfqJournalAction.QUOTE, 12, 7, 1, QuoteRfqResult.CANNOT_QUOTE_OWN_RFQ.value());
+
+        final var writer = new JournalWriterAgent(journal.ringBuffer(), journalDir);
+        writer.onStart();
+        assertEquals(2, writer.doWork());
+        writer.onClose();
+
+        final var text = new ByteArrayOutputStream();
+        new JournalDump(new PrintStream(text, true, StandardCharsets.US_ASCII))
+            .dumpSegment(new File(journalDir, JournalWriterAgent.segmentFileName(0)));
+        final String[] lines = text.toString(StandardCharsets.US_ASCII).split(System.lineSeparator());
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("CREATE user=1 Rfq{correlation=11"));
+        assertTrue(lines[1].contains("QUOTE REFUSED correlation=12 rfqId=7 user=1 result=CANNOT_QUOTE_OWN_RFQ"));
+    }
+
+    @Test
+    void startsAfterTheHighestExistingSegment() throws IOException
+    {
+        final byte[] earlier = {1, 2, 3};
+        final File segmentOne = new File(journalDir, JournalWriterAgent.segmentFileName(1));
+        final File segmentThree = new File(journalDir, JournalWriterAgent.segmentFileName(3));
+        Files.write(segmentOne.toPath(), earlier);
+        Files.write(segmentThree.toPath(), earlier);
+
+        final var context = mock(SessionMessageContext.class);
+        final var journal = new EventJournal(context, new ServiceCounters());
+        final var writer = new JournalWriterAgent(journal.ringBuffer(), journalDir);
+        writer.onStart();
+        writer.onClose();
+
+        assertTrue(new File(journalDir, JournalWriterAgent.segmentFileName(4)).exists());
+        assertArrayEquals(earlier, Files.readAllBytes(segmentOne.toPath()));
+        assertArrayEquals(earlier, Files.readAllBytes(segmentThree.toPath()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTests
+{
+    @Test
+    void allowsEverythingWithNoClasses()
+    {
+        final var limiter = new RateLimiter("", "");
+        for (int i = 0; i < 10_000; i++)
+        {
+            assertTrue(limiter.tryAcquire(500, 0));
+        }
+    }
+
+    @Test
+    void allowsBurstThenRefillsAtRate()
+    {
+        final var limiter = new RateLimiter("maker:10:3", "501:maker");
+        assertTrue(limiter.tryAcquire(501, 1000));
+        assertTrue(limiter.tryAcquire(501, 1000));
+        assertTrue(limiter.tryAcquire(501, 1000));
+        assertFalse(limiter.tryAcquire(501, 1000));
+        assertFalse(limiter.tryAcquire(501, 1099));
+        assertTrue(limiter.tryAcquire(501, 1100));
+        assertFalse(limiter.tryAcquire(501, 1100));
+
+        assertTrue(limiter.tryAcquire(501, 5000));
+        assertTrue(limiter.tryAcquire(501, 5000));
+        assertTrue(limiter.tryAcquire(501, 5000));
+        assertFalse(limiter.tryAcquire(501, 5000));
+    }
+
+    @Test
+    void limitsUnassignedUsersByDefaultClass()
+    {
+        final var limiter = new RateLimiter("maker:1000:100,default:1:1", "501:maker");
+        assertTrue(limiter.tryAcquire(500, 0));
+        assertFalse(limiter.tryAcquire(500, 999));
+        assertTrue(limiter.tryAcquire(500, 1000));
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(limiter.tryAcquire(501, 0));
+        }
+        assertFalse(limiter.tryAcquire(501, 0));
+    }
+
+    @Test
+    void restoredBucketsMakeTheSameDecisions()
+    {
+        final var limiter = new RateLimiter("maker:10:5", "501:maker,502:maker");
+        for (int i = 0; i < 4; i++)
+        {
+            limiter.tryAcquire(501, 0);
+        }
+        limiter.tryAcquire(502, 0);
+
+        final var restored = new RateLimiter("maker:10:5", "501:maker,502:maker");
+        final var bucketUserIds = new IntArrayList();
+        limiter.forEachBucket((userId, fullAtNs) ->
+        {
+            bucketUserIds.addInt(userId);
+            restored.restoreBucket(userId, fullAtNs);
+        });
+        assertEquals(2, bucketUserIds.size());
+
+        for (int timeMs = 0; timeMs < 1000; timeMs += 7)
+        {
+            assertEquals(limiter.tryAcquire(501, timeMs), restored.tryAcquire(501, timeMs));
+            assertEquals(limiter.tryAcquire(502, timeMs), restored.tryAcquire(502, timeMs));
+        }
+    }
+
+    @Test
+    void rejectsInvalidConfiguration()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("maker:10", ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("maker:0:5", ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("maker:ten:5", ""));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("maker:10:5", "501:taker"));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("maker:10:5", "501"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.RfqShards;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RfqShardTests
+{
+    @Test
+    void singleShardOwnsEverythingAndIssuesSequentialIds()
+    {
+        final var shard = RfqShard.SINGLE;
+        assertTrue(shard.ownsCusip("037833100"));
+        assertTrue(shard.ownsCusip("Z99999999"));
+        assertEquals(1, shard.nextRfqId(0));
+        assertEquals(2, shard.nextRfqId(1));
+        assertEquals(3, shard.nextRfqId(2));
+    }
+
+    @Test
+    void routesCusipsByLowerBound()
+    {
+        final var shards = RfqShards.parse("3, 6");
+        assertEquals(3, shards.shardCount());
+        assertEquals(0, shards.shardForCusip("037833100"));
+        assertEquals(0, shards.shardForCusip("2ZZZZZZZZ"));
+        assertEquals(1, shards.shardForCusip("3"));
+        assertEquals(1, shards.shardForCusip("459200101"));
+        assertEquals(2, shards.shardForCusip("6"));
+        assertEquals(2, shards.shardForCusip("912828YK0"));
+
+        final var shard = new RfqShard(1, shards);
+        assertTrue(shard.ownsCusip("459200101"));
+        assertFalse(shard.ownsCusip("912828YK0"));
+    }
+
+    @Test
+    void issuesRfqIdsWhichRouteBackToTheShard()
+    {
+        final var shards = RfqShards.parse("3,6");
+        for (int shardId = 0; shardId < shards.shardCount(); shardId++)
+        {
+            final var shard = new RfqShard(shardId, shards);
+            int rfqId = 0;
+            for (int i = 0; i < 10; i++)
+            {
+                final int nextRfqId = shard.nextRfqId(rfqId);
+                assertTrue(nextRfqId > rfqId);
+                assertEquals(shardId, shards.shardForRfqId(nextRfqId));
+                rfqId = nextRfqId;
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidBoundsAndShardIds()
+    {
+        assertThrows(IllegalArgumentException.class, () -> RfqShards.parse("6,3"));
+        assertThrows(IllegalArgumentException.class, () -> RfqShards.parse("3,,6"));
+        assertThrows(IllegalArgumentException.class, () -> RfqShards.parse("0123456789"));
+        assertThrows(IllegalArgumentException.class, () -> new RfqShard(3, RfqShards.parse("3,6")));
+        assertEquals(RfqShards.SINGLE, RfqShards.parse(""));
+    }
+}
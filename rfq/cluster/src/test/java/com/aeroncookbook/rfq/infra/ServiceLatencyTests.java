@@ -0,0 +1,47 @@
+package com.aeroncookbook.rfq.infra;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ServiceLatencyTests
+{
+    @Test
+    void writesTaggedIntervalsAndClampsLongDurations()
+    {
+        final long highest = ServiceLatency.HIGHEST_TRACKABLE_NS;
+        final var serviceLatency = new ServiceLatency();
+        serviceLatency.onSessionMessage(1_000);
+        serviceLatency.onSessionMessage(2_000);
+        serviceLatency.onTimerEvent(highest * 2);
+
+        final var log = new ByteArrayOutputStream();
+        final var logWriter = new HistogramLogWriter(new PrintStream(log, true, StandardCharsets.US_ASCII));
+        serviceLatency.writeIntervals(logWriter);
+        serviceLatency.writeIntervals(logWriter);
+        logWriter.close();
+
+        final var logReader = new HistogramLogReader(new ByteArrayInputStream(log.toByteArray()));
+        final var sessionMessages = (Histogram)logReader.nextIntervalHistogram();
+        final var timerEvents = (Histogram)logReader.nextIntervalHistogram();
+        final var egressOffers = (Histogram)logReader.nextIntervalHistogram();
+        final var nextSessionMessages = (Histogram)logReader.nextIntervalHistogram();
+
+        assertEquals(ServiceLatency.SESSION_MESSAGE_TAG, sessionMessages.getTag());
+        assertEquals(2, sessionMessages.getTotalCount());
+        assertEquals(ServiceLatency.TIMER_EVENT_TAG, timerEvents.getTag());
+        assertEquals(1, timerEvents.getTotalCount());
+        assertEquals(highest, timerEvents.getMaxValue(), highest / 1000.0);
+        assertEquals(ServiceLatency.EGRESS_OFFER_TAG, egressOffers.getTag());
+        assertEquals(0, egressOffers.getTotalCount());
+        assertEquals(0, nextSessionMessages.getTotalCount());
+    }
+}
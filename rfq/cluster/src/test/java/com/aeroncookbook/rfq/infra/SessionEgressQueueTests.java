@@ -0,0 +1,142 @@
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.EgressBatchReader;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.EgressBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import io.aeron.Publication;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionEgressQueueTests
+{
+    private static final int CANCEL_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + CancelRfqCommandEncoder.BLOCK_LENGTH;
+    private final ExpandableArrayBuffer message = new ExpandableArrayBuffer(64);
+    private final List<UnsafeBuffer> offers = new ArrayList<>();
+    private final List<Long> received = new ArrayList<>();
+    private final ClientSession session = mock(ClientSession.class);
+
+    @BeforeEach
+    void setUp()
+    {
+        when(session.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenAnswer(invocation ->
+        {
+            final DirectBuffer buffer = invocation.getArgument(0);
+            final int offset = invocation.getArgument(1);
+            final int length = invocation.getArgument(2);
+            final UnsafeBuffer copy = new UnsafeBuffer(new byte[length]);
+            copy.putBytes(0, buffer, offset, length);
+            offers.add(copy);
+            return 1L;
+        });
+        when(session.tryClaim(anyInt(), any(BufferClaim.class))).thenReturn(1L);
+    }
+
+    @Test
+    void sendsBatchedMessagesAsOneEnvelope()
+    {
+        final var queue = new SessionEgressQueue(session, 4096, 1024);
+        for (long correlation = 1; correlation <= 3; correlation++)
+        {
+            assertTrue(queue.batch(message, 0, encodeCancel(correlation)));
+        }
+
+        assertEquals(SessionEgressQueue.SendResult.SENT, queue.flushBatch(0));
+        assertEquals(1, offers.size());
+        assertEquals(EgressBatchDecoder.TEMPLATE_ID, new MessageHeaderDecoder().wrap(offers.get(0), 0).templateId());
+        assertEquals(3, new EgressBatchReader().read(offers.get(0), 0, offers.get(0).capacity(), this::onMessage));
+        assertEquals(List.of(1L, 2L, 3L), received);
+        assertEquals(0, queue.batchedMessages());
+    }
+
+    @Test
+    void sendsSingleBatchedMessageUnwrapped()
+    {
+        final var queue = new SessionEgressQueue(session, 4096, 1024);
+        assertTrue(queue.batch(message, 0, encodeCancel(7)));
+
+        queue.flushBatch(0);
+        assertEquals(1, offers.size());
+        assertEquals(CANCEL_LENGTH, offers.get(0).capacity());
+        onMessage(offers.get(0), 0, CANCEL_LENGTH);
+        assertEquals(List.of(7L), received);
+    }
+
+    @Test
+    void refusesMessagesWhichDoNotFitInTheBatch()
+    {
+        final int twoMessages = MessageHeaderEncoder.ENCODED_LENGTH + EgressBatchEncoder.BLOCK_LENGTH +
+            EgressBatchEncoder.MessagesEncoder.HEADER_SIZE +
+            2 * (EgressBatchEncoder.MessagesEncoder.messageHeaderLength() + CANCEL_LENGTH);
+        final var queue = new SessionEgressQueue(session, 4096, twoMessages);
+
+        assertTrue(queue.batch(message, 0, encodeCancel(1)));
+        assertTrue(queue.batch(message, 0, encodeCancel(2)));
+        assertFalse(queue.batch(message, 0, encodeCancel(3)));
+
+        queue.flushBatch(0);
+        assertTrue(queue.batch(message, 0, encodeCancel(3)));
+    }
+
+    @Test
+    void claimsOnlyOnceTheBatchIsSent()
+    {
+        final var queue = new SessionEgressQueue(session, 4096, 1024);
+        final var bufferClaim = new BufferClaim();
+        assertTrue(queue.tryClaim(CANCEL_LENGTH, bufferClaim));
+
+        queue.batch(message, 0, encodeCancel(1));
+        assertFalse(queue.tryClaim(CANCEL_LENGTH, bufferClaim));
+
+        queue.flushBatch(0);
+        assertTrue(queue.tryClaim(CANCEL_LENGTH, bufferClaim));
+    }
+
+    @Test
+    void evictsQueueSmallerThanInitialCapacity()
+    {
+        final var queue = new SessionEgressQueue(session, 1024, 0);
+        when(session.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenReturn(Publication.BACK_PRESSURED);
+        assertEquals(SessionEgressQueue.SendResult.QUEUED, queue.send(message, 0, encodeCancel(1), 0));
+
+        assertEquals(1, queue.evict());
+        verify(session).close();
+        assertEquals(SessionEgressQueue.SendResult.DROPPED, queue.send(message, 0, encodeCancel(2), 0));
+    }
+
+    private void onMessage(final DirectBuffer buffer, final int offset, final int length)
+    {
+        assertEquals(CANCEL_LENGTH, length);
+        final var decoder = new CancelRfqCommandDecoder();
+        decoder.wrapAndApplyHeader(buffer, offset, new MessageHeaderDecoder());
+        received.add(decoder.correlation());
+    }
+
+    private int encodeCancel(final long correlation)
+    {
+        new CancelRfqCommandEncoder()
+            .wrapAndApplyHeader(message, 0, new MessageHeaderEncoder())
+            .correlation(correlation);
+        return CANCEL_LENGTH;
+    }
+}
@@ -0,0 +1,208 @@
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.EndOfSnapshotDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqQueryType;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.CusipKey;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.domain.users.Users;
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.cluster.service.Cluster;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SnapshotManagerTests
+{
+    private static final String APPLE = "037833100";
+    private static final String GOOGLE = "38259P508";
+    private static final int REQUESTER = 500;
+    private static final int RESPONDER = 501;
+    private static final long NOW_MS = 1_000;
+    private final List<UnsafeBuffer> fragments = new ArrayList<>();
+
+    @Test
+    void restoresStateWrittenToSnapshot()
+    {
+        final var source = new Node();
+        source.instruments.addInstrument(InstrumentAddType.INTERACTIVE, 1, APPLE, true, 1);
+        source.instruments.addInstrument(InstrumentAddType.INTERACTIVE, 2, GOOGLE, true, 1);
+        source.rfqs.createRfq(3, 5_000, 100, Side.BUY, CusipKey.pack(APPLE), REQUESTER);
+        source.rfqs.createRfq(4, 6_000, 200, Side.SELL, CusipKey.pack(GOOGLE), REQUESTER);
+        source.rfqs.createRfq(5, 7_000, 300, Side.BUY, CusipKey.pack(GOOGLE), REQUESTER);
+        source.rfqs.quoteRfq(6, 2, RESPONDER, 99);
+        source.rfqs.cancelRfq(7, 3, REQUESTER);
+        source.clientSessions.subscribe(11, RESPONDER, true, cusipKeys(GOOGLE));
+        source.marketDataPublisher.publish(new UnsafeBuffer(new byte[16]), 0, 16, NOW_MS);
+        source.marketDataPublisher.publish(new UnsafeBuffer(new byte[16]), 0, 16, NOW_MS);
+        source.snapshotManager.takeSnapshot(snapshotPublication());
+
+        final var restored = new Node();
+        restored.snapshotManager.loadSnapshot(snapshotImage());
+
+        final var rfq = new Rfq();
+        assertNotNull(restored.rfqs.getRfqRepository().get(2, rfq));
+        assertEquals(RfqStates.QUOTED.getStateId(), rfq.getStateId());
+        assertEquals(RESPONDER, rfq.getResponderUserId());
+        assertEquals(99, rfq.getPrice());
+        assertEquals(GOOGLE, rfq.getCusip());
+        assertNotNull(restored.rfqs.getRfqRepository().get(3, rfq));
+        assertEquals(RfqStates.CANCELED.getStateId(), rfq.getStateId());
+
+        assertEquals(ints(1, 2), restored.query(RfqQueryType.BY_REQUESTER, 0, REQUESTER, (short)0));
+        assertEquals(ints(2), restored.query(RfqQueryType.BY_RESPONDER, 0, RESPONDER, (short)0));
+        assertEquals(ints(2), restored.query(RfqQueryType.BY_CUSIP, CusipKey.pack(GOOGLE), 0, (short)0));
+        assertEquals(ints(2), restored.query(RfqQueryType.BY_STATE, 0, 0, RfqStates.QUOTED.getStateId()));
+
+        assertEquals(5_000, restored.timerManager.getArmedDeadline());
+        assertEquals(3, restored.rfqs.getLastRfqId());
+        assertEquals(2, restored.marketDataPublisher.getLastSequence());
+        final var sessionIds = new LongArrayList();
+        restored.clientSessions.collectInterestedSessions(CusipKey.pack(GOOGLE), REQUESTER, RESPONDER, sessionIds);
+        assertEquals(1, sessionIds.size());
+        assertEquals(11, sessionIds.getLong(0));
+
+        restored.timerManager.onTimerEvent(TimerManager.EXPIRY_TIMER_CORRELATION_ID, 5_000);
+        verify(restored.responder).broadcastRfqExpired(any(Rfq.class));
+        verify(restored.cluster).scheduleTimer(TimerManager.EXPIRY_TIMER_CORRELATION_ID, 6_000);
+        restored.rfqs.createRfq(8, 9_000, 100, Side.BUY, CusipKey.pack(APPLE), REQUESTER);
+        assertNotNull(restored.rfqs.getRfqRepository().get(4, rfq));
+    }
+
+    @Test
+    void throwsIfSnapshotHasNoEndMarker()
+    {
+        new Node().snapshotManager.takeSnapshot(snapshotPublication());
+        final UnsafeBuffer last = fragments.remove(fragments.size() - 1);
+        assertEquals(EndOfSnapshotDecoder.TEMPLATE_ID,
+            new MessageHeaderDecoder().wrap(last, DataHeaderFlyweight.HEADER_LENGTH).templateId());
+
+        final Image image = snapshotImage();
+        assertThrows(ClusterException.class, () -> new Node().snapshotManager.loadSnapshot(image));
+    }
+
+    private ExclusivePublication snapshotPublication()
+    {
+        final ExclusivePublication publication = mock(ExclusivePublication.class);
+        when(publication.maxPayloadLength()).thenReturn(1376);
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class))).thenAnswer(invocation ->
+        {
+            final int length = invocation.getArgument(0);
+            final UnsafeBuffer fragment = new UnsafeBuffer(new byte[DataHeaderFlyweight.HEADER_LENGTH + length]);
+            invocation.<BufferClaim>getArgument(1).wrap(fragment, 0, fragment.capacity());
+            fragments.add(fragment);
+            return (long)fragments.size();
+        });
+        return publication;
+    }
+
+    private Image snapshotImage()
+    {
+        final Image image = mock(Image.class);
+        when(image.isEndOfStream()).thenReturn(false, true);
+        when(image.poll(any(FragmentHandler.class), anyInt())).thenAnswer(invocation ->
+        {
+            final FragmentHandler handler = invocation.getArgument(0);
+            for (final UnsafeBuffer fragment : fragments)
+            {
+                handler.onFragment(fragment, DataHeaderFlyweight.HEADER_LENGTH,
+                    fragment.capacity() - DataHeaderFlyweight.HEADER_LENGTH, null);
+            }
+            return fragments.size();
+        });
+        return image;
+    }
+
+    private static LongArrayList cusipKeys(final String... cusips)
+    {
+        final var keys = new LongArrayList();
+        for (final String cusip : cusips)
+        {
+            keys.addLong(CusipKey.pack(cusip));
+        }
+        return keys;
+    }
+
+    private static IntArrayList ints(final int... values)
+    {
+        final var list = new IntArrayList();
+        for (final int value : values)
+        {
+            list.addInt(value);
+        }
+        return list;
+    }
+
+    private static final class Node
+    {
+        final Cluster cluster = mock(Cluster.class);
+        final ClusterClientResponder responder = mock(ClusterClientResponder.class);
+        final SessionMessageContextImpl context = mock(SessionMessageContextImpl.class);
+        final ClientSessions clientSessions = new ClientSessions();
+        final TimerManager timerManager = new TimerManager(context);
+        final MarketDataPublisher marketDataPublisher =
+            new MarketDataPublisher(mock(ServiceCounters.class), "", MarketDataPublisher.STREAM_ID_DEFAULT, 16);
+        final Instruments instruments;
+        final Users users;
+        final Rfqs rfqs;
+        final SnapshotManager snapshotManager;
+        final IntArrayList queryResults = new IntArrayList();
+
+        Node()
+        {
+            final EventJournal eventJournal = mock(EventJournal.class);
+            when(context.getClusterTime()).thenReturn(NOW_MS);
+            when(cluster.idleStrategy()).thenReturn(NoOpIdleStrategy.INSTANCE);
+            when(cluster.scheduleTimer(anyLong(), anyLong())).thenReturn(true);
+            when(cluster.cancelTimer(anyLong())).thenReturn(true);
+            doAnswer(invocation ->
+            {
+                queryResults.clear();
+                queryResults.addAll(invocation.<IntArrayList>getArgument(2));
+                return null;
+            }).when(responder).sendRfqs(anyLong(), anyBoolean(), any(IntArrayList.class), any(), anyInt());
+            timerManager.setCluster(cluster);
+
+            instruments = new Instruments(responder, eventJournal, RfqShard.SINGLE);
+            users = new Users(responder, instruments);
+            rfqs = new Rfqs(context, instruments, users, responder, timerManager, eventJournal, RfqShard.SINGLE);
+            snapshotManager = new SnapshotManager(
+                context, instruments, users, rfqs, timerManager, clientSessions, marketDataPublisher,
+                new RateLimiter("", ""), mock(ServiceCounters.class));
+            snapshotManager.setIdleStrategy(NoOpIdleStrategy.INSTANCE);
+        }
+
+        IntArrayList query(final RfqQueryType queryType, final long cusipKey, final int userId, final short stateId)
+        {
+            rfqs.queryRfqs(0, queryType, cusipKey, userId, stateId, 0, 0);
+            return queryResults;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.aeroncookbook.rfq.infra;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortedIntSetTests
+{
+    @Test
+    void keepsValuesInAscendingOrder()
+    {
+        final var set = new SortedIntSet();
+        assertTrue(set.add(30));
+        assertTrue(set.add(10));
+        assertTrue(set.add(20));
+        assertTrue(set.add(40));
+        assertFalse(set.add(20));
+
+        assertEquals(4, set.size());
+        assertEquals(10, set.get(0));
+        assertEquals(20, set.get(1));
+        assertEquals(30, set.get(2));
+        assertEquals(40, set.get(3));
+    }
+
+    @Test
+    void removesValues()
+    {
+        final var set = new SortedIntSet();
+        for (int i = 1; i <= 20; i++)
+        {
+            set.add(i);
+        }
+
+        assertTrue(set.remove(1));
+        assertTrue(set.remove(20));
+        assertTrue(set.remove(10));
+        assertFalse(set.remove(10));
+
+        assertEquals(17, set.size());
+        assertEquals(2, set.get(0));
+        assertFalse(set.contains(10));
+        assertTrue(set.contains(11));
+    }
+
+    @Test
+    void findsIndexAfterCursor()
+    {
+        final var set = new SortedIntSet();
+        set.add(5);
+        set.add(10);
+        set.add(15);
+
+        assertEquals(0, set.indexAfter(0));
+        assertEquals(1, set.indexAfter(5));
+        assertEquals(2, set.indexAfter(12));
+        assertEquals(3, set.indexAfter(15));
+    }
+}